@@ -1,17 +1,23 @@
 package com.server;
 
 import com.server.command.CommandHandler;
+import com.server.command.StorageCommand;
 import com.server.data.DataManager;
 import com.server.database.DatabaseManager;
 import com.server.listener.PlayerListener;
 import com.server.listener.ServerListListener;
+import com.server.util.BCryptUtils;
 import com.server.util.ColorUtils;
+import com.server.util.PasswordHashingService;
+import com.server.web.ResponseCache;
+import com.server.web.SignedTokens;
 import com.server.web.WebServer;
 import com.server.web.handler.*;
 import net.kyori.adventure.text.Component;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * 插件主类（必须继承JavaPlugin）
@@ -36,6 +42,13 @@ public class AnnouncementCompensationPlugin extends JavaPlugin {
     private MapHandler mapHandler;
     private ServerHandler serverHandler;
     private CommandHandler commandHandler;
+    private PlayerListener playerListener;
+    // 密码哈希线程池（/login 与Web登录的BCrypt校验不在主线程/IO线程执行）
+    private PasswordHashingService passwordHashingService;
+    // 签名令牌（未启用签名模式时为 null）
+    private SignedTokens signedTokens;
+    // 列表接口响应缓存（序列化结果按集合版本号失效）
+    private ResponseCache responseCache;
 
     @Override
     public void onEnable() {
@@ -63,6 +76,18 @@ public class AnnouncementCompensationPlugin extends JavaPlugin {
         // 确保存在默认管理员（从config读取或创建默认）
         this.dataManager.ensureDefaultAdminFromConfig();
 
+        // 3. 初始化密码哈希线程池
+        this.passwordHashingService = new PasswordHashingService(
+                getConfig().getInt("login.hashing.threads", Math.max(1, Runtime.getRuntime().availableProcessors() / 2)),
+                getConfig().getInt("login.hashing.queue_limit", 32));
+        // 校准BCrypt加密强度（在哈希线程池中执行，不阻塞启动；校准完成前使用默认强度）
+        calibratePasswordHashing();
+
+        // 4. 签名令牌（web.tokens.mode = signed 时启用，多个面板节点共享密钥即可互相校验）
+        this.signedTokens = SignedTokens.fromConfig(this);
+        // 5. 列表接口响应缓存
+        this.responseCache = new ResponseCache(this);
+
         // 初始化 Handler（使用已经加载的 dataManager）
         this.loginHandler = new LoginHandler(this);
         this.announcementHandler = new AnnouncementHandler(this);
@@ -81,9 +106,11 @@ public class AnnouncementCompensationPlugin extends JavaPlugin {
         getCommand("tpdeny").setExecutor(commandHandler);
         getCommand("compensation").setExecutor(commandHandler);
         getCommand("comp").setExecutor(commandHandler);
+        getCommand("acstorage").setExecutor(new StorageCommand(this));
 
         // 注册事件监听器
-        getServer().getPluginManager().registerEvents(new PlayerListener(this), this);
+        this.playerListener = new PlayerListener(this);
+        getServer().getPluginManager().registerEvents(playerListener, this);
         getServer().getPluginManager().registerEvents(new ServerListListener(this), this);
 
         // 启动 Web 服务器，读取双端口配置
@@ -103,9 +130,24 @@ public class AnnouncementCompensationPlugin extends JavaPlugin {
         if (this.webServer != null) {
             this.webServer.stop();
         }
+        // 关闭Web会话存储（按配置持久化未过期的会话，重载后仍然有效）
+        if (this.loginHandler != null) {
+            this.loginHandler.close();
+        }
+        if (this.userHandler != null) {
+            this.userHandler.close();
+        }
+        if (this.signedTokens != null) {
+            this.signedTokens.close();
+        }
+        // 停止密码哈希线程池
+        if (this.passwordHashingService != null) {
+            this.passwordHashingService.shutdown();
+        }
         // 保存数据
         if (this.dataManager != null) {
             this.dataManager.saveAllData();
+            this.dataManager.close();
         }
         // 关闭数据库连接池
         if (this.databaseManager != null) {
@@ -154,10 +196,59 @@ public class AnnouncementCompensationPlugin extends JavaPlugin {
         return serverHandler;
     }
     
+    public PlayerListener getPlayerListener() {
+        return playerListener;
+    }
+    
+    public PasswordHashingService getPasswordHashingService() {
+        return passwordHashingService;
+    }
+
+    public WebServer getWebServer() {
+        return webServer;
+    }
+
+    public SignedTokens getSignedTokens() {
+        return signedTokens;
+    }
+
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
     public DatabaseManager getDatabaseManager() {
         return databaseManager;
     }
     
+    /**
+     * 按配置确定BCrypt加密强度：配置了固定强度时直接使用，否则基准测试选出满足目标耗时的强度
+     * 强度低于当前的已有哈希在用户/管理员下次登录成功时重新加密
+     */
+    private void calibratePasswordHashing() {
+        int fixedCost = getConfig().getInt("login.hashing.bcrypt.cost", 0);
+        if (fixedCost > 0) {
+            BCryptUtils.setCost(fixedCost);
+            getLogger().info("✅ BCrypt加密强度（固定）：" + BCryptUtils.getCost());
+            return;
+        }
+        long targetMillis = getConfig().getLong("login.hashing.bcrypt.target_ms", 250);
+        int minCost = getConfig().getInt("login.hashing.bcrypt.min_cost", 10);
+        int maxCost = getConfig().getInt("login.hashing.bcrypt.max_cost", 14);
+        try {
+            passwordHashingService.submit(() -> BCryptUtils.calibrate(targetMillis, minCost, maxCost))
+                    .whenComplete((calibration, error) -> {
+                        if (error != null) {
+                            getLogger().warning("⚠️ BCrypt加密强度校准失败，使用强度 " + BCryptUtils.getCost() + "：" + error.getMessage());
+                            return;
+                        }
+                        getLogger().info("⏱️ BCrypt加密强度校准完成：目标 " + calibration.targetMillis() + "ms，选定强度 "
+                                + calibration.cost() + "（实测 " + calibration.describe() + "）");
+                    });
+        } catch (RejectedExecutionException e) {
+            getLogger().warning("⚠️ 无法提交BCrypt加密强度校准任务，使用强度 " + BCryptUtils.getCost());
+        }
+    }
+
     /**
      * 检查配置是否为默认值并提示安全问题
      * 检测关键配置项是否使用默认值，如果是则输出警告信息
@@ -15,6 +15,11 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
 
 /**
  * 游戏内命令处理器
@@ -24,6 +29,8 @@ public class CommandHandler implements CommandExecutor {
     private final AnnouncementCompensationPlugin plugin;
     // 存储待处理的TPA请求
     private final Map<String, String> tpaRequests = new HashMap<>();
+    // 正在校验密码的玩家（同一玩家同时只允许一个 /login 在途）
+    private final Set<UUID> loginsInFlight = ConcurrentHashMap.newKeySet();
 
     public CommandHandler(AnnouncementCompensationPlugin plugin) {
         this.plugin = plugin;
@@ -55,6 +62,7 @@ public class CommandHandler implements CommandExecutor {
 
     /**
      * 处理 /login [账户名称] [账户密码] 命令
+     * 查找账户与BCrypt校验在密码哈希线程池中执行，完成后回到主线程绑定角色并通知玩家
      */
     private boolean handleLogin(Player player, String[] args) {
         if (args.length != 2) {
@@ -64,22 +72,78 @@ public class CommandHandler implements CommandExecutor {
 
         String username = args[0];
         String password = args[1];
+        UUID uuid = player.getUniqueId();
+
+        if (!loginsInFlight.add(uuid)) {
+            player.sendMessage(ColorUtils.toComponent("&c正在验证上一次登录，请稍候..."));
+            return true;
+        }
+        try {
+            plugin.getPasswordHashingService().submit(() -> {
+                // 查找用户（按需加载模式下可能读取存储）并验证密码
+                User user = plugin.getDataManager().getUserByUsername(username);
+                boolean matched = user != null && user.verifyPassword(password);
+                // 哈希强度低于当前强度时顺带重新加密
+                if (matched && user.rehashIfNeeded(password)) {
+                    plugin.getDataManager().saveUser(user);
+                }
+                return new LoginAttempt(user, matched);
+            }).whenComplete((attempt, error) -> resumeOnMainThread(uuid, online -> {
+                if (error != null) {
+                    plugin.getLogger().severe("❌ 玩家 " + online.getName() + " 登录校验失败：" + error.getMessage());
+                    online.sendMessage(ColorUtils.toComponent("&c登录失败，请稍后重试！"));
+                    return;
+                }
+                completeLogin(online, username, attempt);
+            }));
+        } catch (RejectedExecutionException e) {
+            loginsInFlight.remove(uuid);
+            player.sendMessage(ColorUtils.toComponent("&c登录请求过多，请稍后重试！"));
+            plugin.getLogger().warning("⚠️ 密码校验队列已满，拒绝玩家 " + player.getName() + " 的登录请求");
+        }
+        return true;
+    }
+
+    /**
+     * 回到主线程继续处理（玩家已离线时跳过），结束后释放该玩家的在途标记
+     */
+    private void resumeOnMainThread(UUID uuid, Consumer<Player> action) {
+        try {
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                try {
+                    Player player = Bukkit.getPlayer(uuid);
+                    if (player != null && player.isOnline()) {
+                        action.accept(player);
+                    }
+                } finally {
+                    loginsInFlight.remove(uuid);
+                }
+            });
+        } catch (Exception e) {
+            // 插件正在停用，调度器不再接受任务
+            loginsInFlight.remove(uuid);
+        }
+    }
+
+    /**
+     * 登录校验完成后的处理（主线程）：提示结果、绑定游戏角色、标记已登录
+     */
+    private void completeLogin(Player player, String username, LoginAttempt attempt) {
         String playerUUID = player.getUniqueId().toString();
         String playerName = player.getName();
+        User user = attempt.user();
 
-        // 查找用户
-        User user = plugin.getDataManager().getUserByUsername(username);
         if (user == null) {
             player.sendMessage(ColorUtils.toComponent("&c账户不存在！"));
             plugin.getLogger().info("玩家 " + playerName + " 尝试登录不存在的账户: " + username);
-            return true;
+            return;
         }
 
         // 验证密码
-        if (!user.verifyPassword(password)) {
+        if (!attempt.passwordMatched()) {
             player.sendMessage(ColorUtils.toComponent("&c密码错误！"));
             plugin.getLogger().info("玩家 " + playerName + " 登录账户 " + username + " 密码错误");
-            return true;
+            return;
         }
 
         // 绑定游戏角色（如果尚未绑定）
@@ -95,13 +159,19 @@ public class CommandHandler implements CommandExecutor {
         if (!user.getGameUUID().equals(playerUUID)) {
             player.sendMessage(ColorUtils.toComponent("&c该账户已绑定其他游戏角色！"));
             plugin.getLogger().info("玩家 " + playerName + " 尝试使用账户 " + username + " 登录，但账户已绑定其他角色");
-            return true;
+            return;
         }
 
         // 登录成功
+        plugin.getPlayerListener().markAuthenticated(playerUUID);
         player.sendMessage(ColorUtils.toComponent("&a登录成功！"));
         plugin.getLogger().info("玩家 " + playerName + " 成功登录账户: " + username);
-        return true;
+    }
+
+    /**
+     * 异步登录校验结果
+     */
+    private record LoginAttempt(User user, boolean passwordMatched) {
     }
 
     /**
@@ -238,9 +308,7 @@ public class CommandHandler implements CommandExecutor {
      */
     private boolean handleCompensationList(Player player) {
         String playerUUID = player.getUniqueId().toString();
-        List<Compensation> unclaimedCompensations = plugin.getDataManager().getAllCompensations().stream()
-                .filter(comp -> !comp.isClaimed(playerUUID))
-                .toList();
+        List<Compensation> unclaimedCompensations = plugin.getDataManager().getPendingCompensations(playerUUID);
 
         if (unclaimedCompensations.isEmpty()) {
             player.sendMessage(ColorUtils.toComponent("&a你没有未领取的补偿！"));
@@ -270,9 +338,8 @@ public class CommandHandler implements CommandExecutor {
      */
     private boolean handleCompensationClaim(Player player) {
         String playerUUID = player.getUniqueId().toString();
-        List<Compensation> unclaimedCompensations = plugin.getDataManager().getAllCompensations().stream()
-                .filter(comp -> !comp.isClaimed(playerUUID))
-                .toList();
+        // 领取状态与日志在领取服务中一次提交（按玩家加锁，与凭证右键互斥）
+        List<Compensation> unclaimedCompensations = plugin.getDataManager().getClaimService().claimAll(playerUUID, player.getName());
 
         if (unclaimedCompensations.isEmpty()) {
             player.sendMessage(ColorUtils.toComponent("&c你没有未领取的补偿！"));
@@ -281,7 +348,7 @@ public class CommandHandler implements CommandExecutor {
 
         // 发放补偿物品
         for (Compensation comp : unclaimedCompensations) {
-            // 1. 发放定义的补偿物品
+            // 发放定义的补偿物品（领取状态与日志已由领取服务提交）
             for (Compensation.CompensationItem compItem : comp.getItems()) {
                 try {
                     org.bukkit.Material material = org.bukkit.Material.valueOf(compItem.getMaterial());
@@ -310,14 +377,6 @@ public class CommandHandler implements CommandExecutor {
                     player.sendMessage(ColorUtils.toComponent("&c发放补偿物品失败：" + compItem.getMaterial()));
                 }
             }
-
-            // 2. 标记补偿已领取
-            comp.markClaimed(playerUUID);
-            plugin.getDataManager().saveCompensation(comp);
-
-            // 3. 记录领取日志
-            com.server.data.model.ClaimLog log = new com.server.data.model.ClaimLog(player.getName(), playerUUID, comp.getIdString());
-            plugin.getDataManager().addClaimLog(log);
         }
 
         player.sendMessage(ColorUtils.toComponent("&a已成功领取 " + unclaimedCompensations.size() + " 个补偿！"));
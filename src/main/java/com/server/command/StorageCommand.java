@@ -0,0 +1,90 @@
+package com.server.command;
+
+import com.server.AnnouncementCompensationPlugin;
+import com.server.data.StorageMigrator;
+import com.server.util.ColorUtils;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+
+import java.util.Map;
+
+/**
+ * StorageCommand - 存储管理指令（控制台/管理员）
+ * /acstorage migrate <源> <目标> [批大小] [restart]：在线迁移存储（json / bitcask / sql），中断后再次执行从断点继续
+ * /acstorage status：查看迁移进度与存储统计
+ * /acstorage cancel：在当前批次提交后停止迁移
+ */
+public class StorageCommand implements CommandExecutor {
+    private final AnnouncementCompensationPlugin plugin;
+
+    public StorageCommand(AnnouncementCompensationPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        StorageMigrator migrator = plugin.getDataManager().getStorageMigrator();
+        if (args.length == 0) {
+            sendUsage(sender);
+            return true;
+        }
+
+        switch (args[0].toLowerCase()) {
+            case "migrate":
+                handleMigrate(sender, migrator, args);
+                break;
+            case "status":
+                sender.sendMessage(ColorUtils.toComponent("&a当前存储：" + plugin.getDataManager().getStorageBackend().getDisplayName()));
+                for (Map.Entry<String, Object> entry : migrator.getStatus().entrySet()) {
+                    sender.sendMessage(ColorUtils.toComponent("&7  " + entry.getKey() + ": &f" + entry.getValue()));
+                }
+                break;
+            case "cancel":
+                if (migrator.cancel()) {
+                    sender.sendMessage(ColorUtils.toComponent("&e正在停止迁移（当前批次提交后停止）..."));
+                } else {
+                    sender.sendMessage(ColorUtils.toComponent("&c当前没有正在进行的迁移！"));
+                }
+                break;
+            default:
+                sendUsage(sender);
+        }
+        return true;
+    }
+
+    private void handleMigrate(CommandSender sender, StorageMigrator migrator, String[] args) {
+        if (args.length < 3) {
+            sendUsage(sender);
+            return;
+        }
+        int batchSize = plugin.getConfig().getInt("database.migration.batch_size", 500);
+        boolean restart = false;
+        for (int i = 3; i < args.length; i++) {
+            if ("restart".equalsIgnoreCase(args[i])) {
+                restart = true;
+            } else {
+                try {
+                    batchSize = Integer.parseInt(args[i]);
+                } catch (NumberFormatException e) {
+                    sender.sendMessage(ColorUtils.toComponent("&c批大小必须是数字：" + args[i]));
+                    return;
+                }
+            }
+        }
+
+        try {
+            migrator.start(sender, args[1].toLowerCase(), args[2].toLowerCase(), batchSize, restart);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            sender.sendMessage(ColorUtils.toComponent("&c" + e.getMessage()));
+        } catch (Exception e) {
+            plugin.getLogger().severe("❌ 启动存储迁移失败：" + e.getMessage());
+            sender.sendMessage(ColorUtils.toComponent("&c启动存储迁移失败：" + e.getMessage()));
+        }
+    }
+
+    private void sendUsage(CommandSender sender) {
+        sender.sendMessage(ColorUtils.toComponent("&c用法: /acstorage migrate <json|bitcask|sql> <json|bitcask|sql> [批大小] [restart]"));
+        sender.sendMessage(ColorUtils.toComponent("&c      /acstorage status | cancel"));
+    }
+}
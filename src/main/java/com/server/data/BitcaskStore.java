@@ -0,0 +1,733 @@
+package com.server.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Bitcask 风格的日志结构键值存储
+ * 1. 数据文件只追加：每条记录为 CRC32 | 序号 | 键长度 | 值长度 | 键 | 值，删除写入墓碑（值长度 -1）
+ * 2. 内存键目录（keydir）记录每个键最新值所在的文件与偏移，读取一次定位
+ * 3. 后台合并：把已封存文件中的存活记录重写到新文件，删除旧文件，同时生成 hint 文件
+ * 4. 启动时有 hint 文件的数据文件只读 hint（无需扫描值），其余文件顺序扫描
+ * 记录按全局递增序号决定新旧，因此合并生成的文件无需与其他文件保持编号顺序
+ */
+public class BitcaskStore {
+    // 记录头：CRC32(4) + 序号(8) + 键长度(4) + 值长度(4)
+    private static final int HEADER_SIZE = 20;
+    private static final int TOMBSTONE = -1;
+    private static final String DATA_SUFFIX = ".data";
+    private static final String HINT_SUFFIX = ".hint";
+
+    private final File directory;
+    private final long maxFileSize;
+    private final boolean fsync;
+    private final Logger logger;
+
+    // 键目录：键 → 最新值位置
+    private final Map<String, KeydirEntry> keydir = new ConcurrentHashMap<>();
+    // 各数据文件的只读通道（按位置读取，线程安全）
+    private final Map<Integer, FileChannel> readers = new ConcurrentHashMap<>();
+    // 各数据文件大小（用于计算死数据比例）
+    private final Map<Integer, Long> fileSizes = new ConcurrentHashMap<>();
+    // 写锁：单写者追加
+    private final Object writeLock = new Object();
+    // 合并锁：同一时刻只允许一次合并
+    private final Object mergeLock = new Object();
+    // 文件删除与读取互斥（合并删除旧文件时阻止并发读取旧位置）
+    private final ReentrantReadWriteLock fileLock = new ReentrantReadWriteLock();
+
+    private FileChannel activeChannel;
+    private int activeFileId;
+    private long activeSize;
+    private int nextFileId;
+    private long nextSeq = 1;
+
+    private final AtomicLong liveBytes = new AtomicLong();
+    private final AtomicLong merges = new AtomicLong();
+    private final AtomicLong lastMergeNanos = new AtomicLong();
+    private final AtomicLong reclaimedBytes = new AtomicLong();
+    private ScheduledExecutorService mergeExecutor;
+
+    public BitcaskStore(File directory, long maxFileSize, boolean fsync, Logger logger) {
+        this.directory = directory;
+        this.maxFileSize = maxFileSize;
+        this.fsync = fsync;
+        this.logger = logger;
+    }
+
+    // ====================== 打开/关闭 ======================
+    /**
+     * 打开存储：按 hint 或数据文件重建键目录，并创建新的活动文件
+     */
+    public void open() throws IOException {
+        if (!directory.exists()) directory.mkdirs();
+
+        TreeSet<Integer> fileIds = new TreeSet<>();
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(DATA_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                // 上次运行未写入任何数据的活动文件
+                if (file.length() == 0) {
+                    Files.deleteIfExists(file.toPath());
+                    continue;
+                }
+                try {
+                    fileIds.add(Integer.parseInt(file.getName().substring(0, file.getName().length() - DATA_SUFFIX.length())));
+                } catch (NumberFormatException ignored) {
+                    // 非本存储生成的文件（如中断的合并临时文件），忽略
+                }
+            }
+        }
+
+        // 加载期间记录墓碑序号：较早的值可能出现在扫描顺序更靠后的文件里（合并生成的文件）
+        Map<String, Long> tombstones = new HashMap<>();
+        for (int fileId : fileIds) {
+            File hint = hintFile(fileId);
+            if (hint.exists()) {
+                loadHint(fileId, hint, tombstones);
+            } else {
+                scanDataFile(fileId, tombstones, fileId == fileIds.last());
+            }
+            fileSizes.put(fileId, dataFile(fileId).length());
+            readers.put(fileId, FileChannel.open(dataFile(fileId).toPath(), StandardOpenOption.READ));
+        }
+
+        nextFileId = fileIds.isEmpty() ? 1 : fileIds.last() + 1;
+        synchronized (writeLock) {
+            openNewActiveFile();
+        }
+    }
+
+    /**
+     * 启动后台合并检查
+     * @param intervalSeconds 检查间隔（秒），不大于 0 时不启动
+     * @param deadRatio 死数据占比达到该值时合并
+     * @param minBytes 总数据量低于该值时不合并
+     */
+    public void startMergeScheduler(long intervalSeconds, double deadRatio, long minBytes) {
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        mergeExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "AC-BitcaskMerge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        mergeExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                long total = totalBytes();
+                if (total >= minBytes && (double) (total - liveBytes.get()) / total >= deadRatio) {
+                    merge();
+                }
+            } catch (Exception e) {
+                logger.severe("❌ Bitcask 合并失败：" + e.getMessage());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public void close() {
+        if (mergeExecutor != null) {
+            mergeExecutor.shutdown();
+            try {
+                mergeExecutor.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (writeLock) {
+            closeQuietly(activeChannel);
+            activeChannel = null;
+        }
+        readers.values().forEach(BitcaskStore::closeQuietly);
+        readers.clear();
+    }
+
+    // ====================== 读写 ======================
+    /**
+     * 写入单个键值
+     */
+    public void put(String key, byte[] value) throws IOException {
+        writeBatch(Map.of(key, value));
+    }
+
+    /**
+     * 删除键（写入墓碑）
+     */
+    public void delete(String key) throws IOException {
+        Map<String, byte[]> batch = new HashMap<>();
+        batch.put(key, null);
+        writeBatch(batch);
+    }
+
+    /**
+     * 批量写入（一次追加 + 至多一次 fsync）
+     * @param batch 键 → 值；值为 null 表示删除
+     */
+    public void writeBatch(Map<String, byte[]> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        synchronized (writeLock) {
+            if (activeChannel == null) {
+                throw new IOException("Bitcask 存储未打开或已关闭");
+            }
+            ByteBuffer buffer = null;
+            List<PendingEntry> entries = new ArrayList<>(batch.size());
+            for (Map.Entry<String, byte[]> entry : batch.entrySet()) {
+                byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                byte[] value = entry.getValue();
+                int recordSize = HEADER_SIZE + key.length + (value != null ? value.length : 0);
+
+                // 活动文件写满时封存并切换（先把已累积的记录写入当前文件）
+                long offset = activeSize + (buffer != null ? buffer.position() : 0);
+                if (offset > 0 && offset + recordSize > maxFileSize) {
+                    flushBuffer(buffer, entries);
+                    buffer = null;
+                    entries.clear();
+                    rollActiveFile();
+                    offset = 0;
+                }
+                if (buffer == null) {
+                    buffer = ByteBuffer.allocate(Math.max(recordSize, 64 * 1024));
+                } else if (buffer.remaining() < recordSize) {
+                    ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + recordSize));
+                    buffer.flip();
+                    grown.put(buffer);
+                    buffer = grown;
+                }
+
+                long seq = nextSeq++;
+                encodeRecord(buffer, seq, key, value);
+                entries.add(new PendingEntry(entry.getKey(), value == null
+                        ? null
+                        : new KeydirEntry(activeFileId, offset, recordSize, value.length, seq), recordSize));
+            }
+            flushBuffer(buffer, entries);
+        }
+    }
+
+    /**
+     * 把缓冲区写入活动文件并更新键目录
+     */
+    private void flushBuffer(ByteBuffer buffer, List<PendingEntry> entries) throws IOException {
+        if (buffer == null || buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        int length = buffer.remaining();
+        try {
+            while (buffer.hasRemaining()) {
+                activeChannel.write(buffer);
+            }
+            if (fsync) {
+                activeChannel.force(false);
+            }
+        } catch (IOException e) {
+            discardPartialWrite();
+            throw e;
+        }
+        activeSize += length;
+        fileSizes.put(activeFileId, activeSize);
+
+        for (PendingEntry pending : entries) {
+            KeydirEntry previous = pending.entry() == null
+                    ? keydir.remove(pending.key())
+                    : keydir.put(pending.key(), pending.entry());
+            if (previous != null) {
+                liveBytes.addAndGet(-previous.recordSize());
+            }
+            if (pending.entry() != null) {
+                liveBytes.addAndGet(pending.recordSize());
+            }
+        }
+    }
+
+    /**
+     * 写入失败后丢弃已写入的部分数据：截断到 activeSize，保证后续记录的偏移与文件内容一致；
+     * 无法截断时切换到新的活动文件（残留数据位于旧文件末尾，启动扫描时会被忽略）
+     */
+    private void discardPartialWrite() {
+        try {
+            activeChannel.truncate(activeSize);
+            return;
+        } catch (IOException e) {
+            logger.warning("⚠️ Bitcask 截断活动文件失败，切换到新文件：" + e.getMessage());
+        }
+        closeQuietly(activeChannel);
+        try {
+            openNewActiveFile();
+        } catch (IOException e) {
+            activeChannel = null;
+            logger.severe("❌ Bitcask 无法创建新的活动文件：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 读取键对应的值
+     * @return 值；键不存在返回 null
+     */
+    public byte[] get(String key) throws IOException {
+        fileLock.readLock().lock();
+        try {
+            KeydirEntry entry = keydir.get(key);
+            return entry != null ? readValue(entry) : null;
+        } finally {
+            fileLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按文件顺序遍历所有存活键值（顺序读取，适合启动时全量加载）
+     */
+    public void forEach(EntryConsumer consumer) throws IOException {
+        fileLock.readLock().lock();
+        try {
+            List<Map.Entry<String, KeydirEntry>> entries = new ArrayList<>(keydir.entrySet());
+            entries.sort(Comparator.<Map.Entry<String, KeydirEntry>>comparingInt(e -> e.getValue().fileId())
+                    .thenComparingLong(e -> e.getValue().recordPos()));
+            for (Map.Entry<String, KeydirEntry> entry : entries) {
+                consumer.accept(entry.getKey(), readValue(entry.getValue()));
+            }
+        } finally {
+            fileLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按键升序遍历指定前缀的存活键值
+     * @param afterKey 只返回大于该键的记录，为 null 时从头开始
+     */
+    public void forEachSorted(String prefix, String afterKey, EntryConsumer consumer) throws IOException {
+        List<String> keys = new ArrayList<>();
+        for (String key : keydir.keySet()) {
+            if (key.startsWith(prefix) && (afterKey == null || key.compareTo(afterKey) > 0)) {
+                keys.add(key);
+            }
+        }
+        keys.sort(null);
+        fileLock.readLock().lock();
+        try {
+            for (String key : keys) {
+                KeydirEntry entry = keydir.get(key);
+                if (entry != null) {
+                    consumer.accept(key, readValue(entry));
+                }
+            }
+        } finally {
+            fileLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 指定前缀的存活键数量
+     */
+    public long count(String prefix) {
+        return keydir.keySet().stream().filter(key -> key.startsWith(prefix)).count();
+    }
+
+    public boolean isEmpty() {
+        return keydir.isEmpty();
+    }
+
+    public int size() {
+        return keydir.size();
+    }
+
+    private byte[] readValue(KeydirEntry entry) throws IOException {
+        FileChannel channel = readers.get(entry.fileId());
+        if (channel == null) {
+            throw new IOException("数据文件不存在：" + entry.fileId());
+        }
+        int keyLength = entry.recordSize() - HEADER_SIZE - entry.valueSize();
+        ByteBuffer buffer = ByteBuffer.allocate(entry.valueSize());
+        long pos = entry.recordPos() + HEADER_SIZE + keyLength;
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, pos + buffer.position()) < 0) {
+                throw new EOFException("数据文件被截断：" + entry.fileId());
+            }
+        }
+        return buffer.array();
+    }
+
+    // ====================== 合并 ======================
+    /**
+     * 合并所有已封存的数据文件：只保留键目录仍指向它们的存活记录，丢弃旧值与墓碑
+     */
+    public void merge() throws IOException {
+        synchronized (mergeLock) {
+            long start = System.nanoTime();
+            List<Integer> sealed;
+            synchronized (writeLock) {
+                // 先封存当前活动文件，使所有已有数据都参与合并
+                if (activeSize > 0) {
+                    rollActiveFile();
+                }
+                sealed = new ArrayList<>(readers.keySet());
+                sealed.remove(Integer.valueOf(activeFileId));
+            }
+            if (sealed.isEmpty()) {
+                return;
+            }
+            long before = sealed.stream().mapToLong(id -> fileSizes.getOrDefault(id, 0L)).sum();
+
+            MergeOutput output = null;
+            List<Integer> outputIds = new ArrayList<>();
+            List<MovedEntry> moves = new ArrayList<>();
+            List<Map.Entry<String, KeydirEntry>> entries = new ArrayList<>(keydir.entrySet());
+            entries.sort(Comparator.<Map.Entry<String, KeydirEntry>>comparingInt(e -> e.getValue().fileId())
+                    .thenComparingLong(e -> e.getValue().recordPos()));
+            try {
+                for (Map.Entry<String, KeydirEntry> entry : entries) {
+                    KeydirEntry old = entry.getValue();
+                    if (!sealed.contains(old.fileId())) {
+                        continue;
+                    }
+                    byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                    byte[] value = readValue(old);
+                    if (output == null || (output.size > 0 && output.size + old.recordSize() > maxFileSize)) {
+                        if (output != null) {
+                            output.close(fsync);
+                            output = null;
+                        }
+                        int id = allocateFileId();
+                        outputIds.add(id);
+                        output = new MergeOutput(id, dataFile(id), hintFile(id));
+                    }
+                    moves.add(new MovedEntry(entry.getKey(), old, output.write(key, value, old.seq())));
+                }
+                if (output != null) {
+                    output.close(fsync);
+                    output = null;
+                }
+            } catch (IOException e) {
+                // 合并失败：新文件尚未被键目录引用，直接删除
+                if (output != null) output.closeQuietly();
+                for (int id : outputIds) {
+                    Files.deleteIfExists(dataFile(id).toPath());
+                    Files.deleteIfExists(hintFile(id).toPath());
+                }
+                throw e;
+            }
+
+            for (int id : outputIds) {
+                fileSizes.put(id, dataFile(id).length());
+                readers.put(id, FileChannel.open(dataFile(id).toPath(), StandardOpenOption.READ));
+            }
+
+            // 新文件已完整写入并可读取后再更新键目录
+            // 合并期间该键可能已被更新/删除：只有仍指向旧位置时才替换（否则新写入的副本成为死数据）
+            for (MovedEntry move : moves) {
+                keydir.replace(move.key(), move.from(), move.to());
+            }
+
+            // 删除旧文件（阻止并发读取旧位置）
+            fileLock.writeLock().lock();
+            try {
+                for (int id : sealed) {
+                    closeQuietly(readers.remove(id));
+                    fileSizes.remove(id);
+                    Files.deleteIfExists(dataFile(id).toPath());
+                    Files.deleteIfExists(hintFile(id).toPath());
+                }
+            } finally {
+                fileLock.writeLock().unlock();
+            }
+
+            long after = outputIds.stream().mapToLong(id -> fileSizes.getOrDefault(id, 0L)).sum();
+            long elapsed = System.nanoTime() - start;
+            merges.incrementAndGet();
+            lastMergeNanos.set(elapsed);
+            reclaimedBytes.addAndGet(before - after);
+            logger.info("✅ Bitcask 合并完成：" + sealed.size() + " 个文件 → " + outputIds.size() + " 个，回收 "
+                    + (before - after) / 1024 + "KB，耗时 " + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms");
+        }
+    }
+
+    // ====================== 启动加载 ======================
+    private void loadHint(int fileId, File hint, Map<String, Long> tombstones) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(hint), 64 * 1024))) {
+            while (true) {
+                long seq;
+                try {
+                    seq = in.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+                int keySize = in.readInt();
+                int valueSize = in.readInt();
+                long recordPos = in.readLong();
+                byte[] key = new byte[keySize];
+                in.readFully(key);
+                applyLoaded(new String(key, StandardCharsets.UTF_8),
+                        new KeydirEntry(fileId, recordPos, HEADER_SIZE + keySize + valueSize, valueSize, seq), seq, tombstones);
+            }
+        }
+    }
+
+    private void scanDataFile(int fileId, Map<String, Long> tombstones, boolean last) throws IOException {
+        File file = dataFile(fileId);
+        long pos = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+            while (true) {
+                int crc;
+                try {
+                    crc = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                try {
+                    long seq = in.readLong();
+                    int keySize = in.readInt();
+                    int valueSize = in.readInt();
+                    if (keySize < 0 || valueSize < TOMBSTONE) {
+                        throw new IOException("记录头损坏");
+                    }
+                    byte[] key = new byte[keySize];
+                    in.readFully(key);
+                    byte[] value = valueSize > 0 ? new byte[valueSize] : new byte[0];
+                    in.readFully(value);
+                    if (computeCrc(seq, key, valueSize == TOMBSTONE ? null : value) != crc) {
+                        throw new IOException("CRC校验失败");
+                    }
+                    int recordSize = HEADER_SIZE + keySize + Math.max(0, valueSize);
+                    String keyString = new String(key, StandardCharsets.UTF_8);
+                    if (valueSize == TOMBSTONE) {
+                        applyTombstone(keyString, seq, tombstones);
+                    } else {
+                        applyLoaded(keyString, new KeydirEntry(fileId, pos, recordSize, valueSize, seq), seq, tombstones);
+                    }
+                    pos += recordSize;
+                } catch (IOException e) {
+                    // 崩溃时最后一个文件末尾可能有半条记录：截断到最后一条完整记录
+                    logger.warning("⚠️ Bitcask 数据文件 " + file.getName() + " 在偏移 " + pos + " 处损坏：" + e.getMessage()
+                            + (last ? "，已截断" : "，忽略之后的记录"));
+                    break;
+                }
+            }
+        }
+        if (last && pos < file.length()) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(pos);
+            }
+        }
+    }
+
+    private void applyLoaded(String key, KeydirEntry entry, long seq, Map<String, Long> tombstones) {
+        nextSeq = Math.max(nextSeq, seq + 1);
+        Long tombstoneSeq = tombstones.get(key);
+        if (tombstoneSeq != null && tombstoneSeq > seq) {
+            return;
+        }
+        KeydirEntry existing = keydir.get(key);
+        if (existing != null && existing.seq() > seq) {
+            return;
+        }
+        keydir.put(key, entry);
+        if (existing != null) {
+            liveBytes.addAndGet(-existing.recordSize());
+        }
+        liveBytes.addAndGet(entry.recordSize());
+    }
+
+    private void applyTombstone(String key, long seq, Map<String, Long> tombstones) {
+        nextSeq = Math.max(nextSeq, seq + 1);
+        tombstones.merge(key, seq, Math::max);
+        KeydirEntry existing = keydir.get(key);
+        if (existing != null && existing.seq() < seq) {
+            keydir.remove(key);
+            liveBytes.addAndGet(-existing.recordSize());
+        }
+    }
+
+    // ====================== 文件管理 ======================
+    private void openNewActiveFile() throws IOException {
+        activeFileId = allocateFileId();
+        File file = dataFile(activeFileId);
+        activeChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        activeSize = 0;
+        fileSizes.put(activeFileId, 0L);
+        readers.put(activeFileId, FileChannel.open(file.toPath(), StandardOpenOption.READ));
+    }
+
+    private void rollActiveFile() throws IOException {
+        if (fsync) {
+            activeChannel.force(true);
+        }
+        closeQuietly(activeChannel);
+        openNewActiveFile();
+    }
+
+    private synchronized int allocateFileId() {
+        return nextFileId++;
+    }
+
+    private File dataFile(int fileId) {
+        return new File(directory, String.format("%08d", fileId) + DATA_SUFFIX);
+    }
+
+    private File hintFile(int fileId) {
+        return new File(directory, String.format("%08d", fileId) + HINT_SUFFIX);
+    }
+
+    private static void encodeRecord(ByteBuffer buffer, long seq, byte[] key, byte[] value) {
+        buffer.putInt(computeCrc(seq, key, value));
+        buffer.putLong(seq);
+        buffer.putInt(key.length);
+        buffer.putInt(value != null ? value.length : TOMBSTONE);
+        buffer.put(key);
+        if (value != null) {
+            buffer.put(value);
+        }
+    }
+
+    private static int computeCrc(long seq, byte[] key, byte[] value) {
+        CRC32 crc = new CRC32();
+        ByteBuffer header = ByteBuffer.allocate(16);
+        header.putLong(seq).putInt(key.length).putInt(value != null ? value.length : TOMBSTONE);
+        crc.update(header.array());
+        crc.update(key);
+        if (value != null) {
+            crc.update(value);
+        }
+        return (int) crc.getValue();
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // ====================== 统计信息 ======================
+    public long totalBytes() {
+        return fileSizes.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    public Map<String, Object> getStats() {
+        long total = totalBytes();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("keys", keydir.size());
+        stats.put("files", fileSizes.size());
+        stats.put("totalBytes", total);
+        stats.put("liveBytes", liveBytes.get());
+        stats.put("deadBytes", Math.max(0, total - liveBytes.get()));
+        stats.put("merges", merges.get());
+        stats.put("lastMergeMs", TimeUnit.NANOSECONDS.toMillis(lastMergeNanos.get()));
+        stats.put("reclaimedBytes", reclaimedBytes.get());
+        return stats;
+    }
+
+    // ====================== 内部类型 ======================
+    /**
+     * 键目录项
+     */
+    private record KeydirEntry(int fileId, long recordPos, int recordSize, int valueSize, long seq) {
+    }
+
+    private record PendingEntry(String key, KeydirEntry entry, int recordSize) {
+    }
+
+    private record MovedEntry(String key, KeydirEntry from, KeydirEntry to) {
+    }
+
+    /**
+     * 合并输出文件（数据文件 + hint 文件）
+     * hint 先写入临时文件，数据文件关闭后再重命名，因此存在的 hint 文件总是完整的
+     */
+    private class MergeOutput {
+        private final int fileId;
+        private final FileOutputStream dataStream;
+        private final DataOutputStream data;
+        private final DataOutputStream hint;
+        private final File hintTmp;
+        private final File hintFile;
+        private long size;
+
+        MergeOutput(int fileId, File dataFile, File hintFile) throws IOException {
+            this.fileId = fileId;
+            this.hintFile = hintFile;
+            this.hintTmp = new File(hintFile.getPath() + ".tmp");
+            this.dataStream = new FileOutputStream(dataFile);
+            this.data = new DataOutputStream(new BufferedOutputStream(dataStream, 64 * 1024));
+            this.hint = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(hintTmp), 64 * 1024));
+        }
+
+        KeydirEntry write(byte[] key, byte[] value, long seq) throws IOException {
+            int recordSize = HEADER_SIZE + key.length + value.length;
+            ByteBuffer buffer = ByteBuffer.allocate(recordSize);
+            encodeRecord(buffer, seq, key, value);
+            data.write(buffer.array());
+            hint.writeLong(seq);
+            hint.writeInt(key.length);
+            hint.writeInt(value.length);
+            hint.writeLong(size);
+            hint.write(key);
+            KeydirEntry entry = new KeydirEntry(fileId, size, recordSize, value.length, seq);
+            size += recordSize;
+            return entry;
+        }
+
+        void close(boolean force) throws IOException {
+            data.flush();
+            if (force) {
+                dataStream.getFD().sync();
+            }
+            data.close();
+            hint.close();
+            Files.move(hintTmp.toPath(), hintFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        void closeQuietly() {
+            try {
+                data.close();
+            } catch (IOException ignored) {
+            }
+            try {
+                hint.close();
+            } catch (IOException ignored) {
+            }
+            try {
+                Files.deleteIfExists(hintTmp.toPath());
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * 遍历回调
+     */
+    public interface EntryConsumer {
+        void accept(String key, byte[] value) throws IOException;
+    }
+}
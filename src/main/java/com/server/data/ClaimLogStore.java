@@ -0,0 +1,802 @@
+package com.server.data;
+
+import com.server.AnnouncementCompensationPlugin;
+import com.server.data.model.ClaimLog;
+import com.server.util.GsonUtils;
+import com.server.util.TimeUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 领取日志分段存储
+ * 1. 日志以换行分隔的JSON（NDJSON）追加写入当前分段文件 {@code 00000001.ndjson}
+ * 2. 分段达到大小上限或存在时间超过滚动间隔后封存为 {@code 00000001-<条数>.ndjson}，并在后台压缩为 .gz
+ * 3. 内存中只保留最近的一段窗口，查询更早的日志时按分段从新到旧读取
+ * 4. 按保留天数/总大小上限删除最旧的已封存分段
+ * 5. 每条日志的位置（分段序号 + 分段内行号）追加后不再变化，按位置顺序即时间顺序，用作分页游标
+ */
+public class ClaimLogStore {
+    // 分段文件名：序号[-条数].ndjson[.gz]（不带条数的是当前写入中的分段）
+    private static final Pattern SEGMENT_NAME = Pattern.compile("(\\d{8})(?:-(\\d+))?\\.ndjson(\\.gz)?");
+    // 与 TimeUtils 默认格式一致（用于按时间跳过分段）
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern(TimeUtils.DEFAULT_FORMAT);
+
+    private final AnnouncementCompensationPlugin plugin;
+    private final File directory;
+    private final long maxSegmentBytes;
+    private final long rollIntervalMillis;
+    private final int memoryWindow;
+    private final boolean compress;
+    private final long retentionMillis;
+    private final long maxTotalBytes;
+    private final boolean fsync;
+
+    // 已封存分段（序号 → 分段），压缩完成后替换为 .gz 文件
+    private final ConcurrentSkipListMap<Long, Segment> sealed = new ConcurrentSkipListMap<>();
+    // 最近的日志及其位置（按时间顺序，受 this 保护）
+    private final ArrayDeque<Located> recent = new ArrayDeque<>();
+    private ScheduledExecutorService executor;
+
+    // 当前分段（受 this 保护）
+    private long activeIndex;
+    private File activeFile;
+    private FileChannel activeChannel;
+    private long activeBytes;
+    private int activeCount;
+    private long activeCreatedAt;
+
+    // 统计信息
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong rolls = new AtomicLong();
+    private final AtomicLong compressions = new AtomicLong();
+    private final AtomicLong compressedSavedBytes = new AtomicLong();
+    private final AtomicLong expiredSegments = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    // 内容版本号（追加日志或清理分段时加一）
+    private final AtomicLong version = new AtomicLong();
+
+    public ClaimLogStore(AnnouncementCompensationPlugin plugin, File directory) {
+        this.plugin = plugin;
+        this.directory = directory;
+        this.maxSegmentBytes = Math.max(1, plugin.getConfig().getLong("database.claim_log.segment_size_mb", 16)) * 1024L * 1024L;
+        this.rollIntervalMillis = Math.max(0, plugin.getConfig().getLong("database.claim_log.roll_interval_hours", 24)) * 3600_000L;
+        this.memoryWindow = Math.max(0, plugin.getConfig().getInt("database.claim_log.memory_window", 5000));
+        this.compress = plugin.getConfig().getBoolean("database.claim_log.compress", true);
+        this.retentionMillis = Math.max(0, plugin.getConfig().getLong("database.claim_log.retention_days", 0)) * 86400_000L;
+        this.maxTotalBytes = Math.max(0, plugin.getConfig().getLong("database.claim_log.max_total_size_mb", 0)) * 1024L * 1024L;
+        this.fsync = plugin.getConfig().getBoolean("database.json.fsync", false);
+    }
+
+    /**
+     * 打开存储：整理分段、恢复当前分段、加载最近窗口并启动后台维护（封存检查、压缩、过期清理）
+     */
+    public synchronized void open() throws IOException {
+        if (!directory.exists()) directory.mkdirs();
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "AC-ClaimLogStore");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        File[] files = directory.listFiles();
+        List<File> unsealed = new ArrayList<>();
+        long maxIndex = 0;
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(".tmp")) {
+                    Files.deleteIfExists(file.toPath());
+                    continue;
+                }
+                Matcher matcher = SEGMENT_NAME.matcher(file.getName());
+                if (!matcher.matches()) {
+                    continue;
+                }
+                long index = Long.parseLong(matcher.group(1));
+                maxIndex = Math.max(maxIndex, index);
+                if (matcher.group(2) == null) {
+                    unsealed.add(file);
+                } else {
+                    Segment segment = new Segment(index, file, Integer.parseInt(matcher.group(2)));
+                    // 压缩中途崩溃时 .ndjson 与 .gz 可能同时存在，以 .gz 为准
+                    Segment existing = sealed.get(index);
+                    if (existing == null || matcher.group(3) != null) {
+                        if (existing != null) Files.deleteIfExists(existing.file().toPath());
+                        sealed.put(index, segment);
+                    } else {
+                        Files.deleteIfExists(file.toPath());
+                    }
+                }
+            }
+        }
+
+        // 只有序号最大的未封存分段继续作为当前分段，其余（上次滚动中途崩溃留下的）直接封存
+        unsealed.sort((a, b) -> a.getName().compareTo(b.getName()));
+        File resume = null;
+        for (File file : unsealed) {
+            long index = indexOf(file);
+            if (index == maxIndex && !sealed.containsKey(index)) {
+                resume = file;
+            } else {
+                sealSegment(index, file, countAndRepair(file));
+            }
+        }
+
+        if (resume != null) {
+            activeIndex = indexOf(resume);
+            activeFile = resume;
+            activeCount = countAndRepair(resume);
+            activeBytes = resume.length();
+            activeCreatedAt = resume.lastModified();
+        } else {
+            startSegment(maxIndex + 1);
+        }
+        activeChannel = FileChannel.open(activeFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+        long count = activeCount;
+        for (Segment segment : sealed.values()) {
+            count += segment.count();
+            if (compress && !isCompressed(segment.file())) {
+                executor.execute(() -> compressSegment(segment.index()));
+            }
+        }
+        totalCount.set(count);
+        loadRecentWindow();
+
+        executor.scheduleWithFixedDelay(this::maintain, 1, 1, TimeUnit.MINUTES);
+        executor.execute(this::applyRetention);
+    }
+
+    /**
+     * 追加一条领取日志
+     * @throws IOException 写入失败（日志未写入，可重试）
+     */
+    public void append(ClaimLog log) throws IOException {
+        appendAll(List.of(log));
+    }
+
+    /**
+     * 批量追加领取日志（一次写入，跨越分段大小上限时自动滚动）
+     * 写入失败时分段截断回失败前的长度，失败部分不进入最近窗口、不分配位置，异常抛给调用方重试
+     * （失败之前已写入并滚动的部分仍然有效）
+     * @throws IOException 写入失败
+     */
+    public synchronized void appendAll(List<ClaimLog> logs) throws IOException {
+        if (activeChannel == null) {
+            throw new IOException("领取日志存储未打开");
+        }
+        StringBuilder buffer = new StringBuilder();
+        int pendingCount = 0;
+        List<Located> located = new ArrayList<>(logs.size());
+        int written = 0;
+        try {
+            for (ClaimLog log : logs) {
+                located.add(new Located(log, new Position(activeIndex, activeCount + pendingCount)));
+                buffer.append(GsonUtils.getCompactGson().toJson(log)).append('\n');
+                pendingCount++;
+                if (activeBytes + buffer.length() >= maxSegmentBytes) {
+                    writeActive(buffer, pendingCount);
+                    written = located.size();
+                    buffer.setLength(0);
+                    pendingCount = 0;
+                    roll();
+                }
+            }
+            writeActive(buffer, pendingCount);
+            written = located.size();
+            if (rollIntervalMillis > 0 && activeCount > 0 && System.currentTimeMillis() - activeCreatedAt >= rollIntervalMillis) {
+                roll();
+            }
+        } catch (IOException e) {
+            failures.incrementAndGet();
+            plugin.getLogger().severe("❌ 写入领取日志分段失败：" + e.getMessage());
+            throw e;
+        } finally {
+            for (int i = 0; i < written; i++) {
+                remember(located.get(i));
+            }
+            if (written > 0) {
+                version.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 最近窗口内的日志（按时间顺序）
+     */
+    public synchronized List<ClaimLog> getRecent() {
+        List<ClaimLog> logs = new ArrayList<>(recent.size());
+        for (Located located : recent) {
+            logs.add(located.log());
+        }
+        return logs;
+    }
+
+    /**
+     * 读取最新的若干条日志（跨分段，从新到旧读取，结果按时间顺序返回）
+     * @param limit 最大条数，不大于 0 表示全部
+     * @param filter 过滤条件，为 null 表示不过滤
+     */
+    public List<ClaimLog> readLatest(int limit, Predicate<ClaimLog> filter) {
+        synchronized (this) {
+            // 最近窗口足够时不读文件
+            if (filter == null && ((limit > 0 && limit <= recent.size()) || recent.size() >= totalCount.get())) {
+                List<ClaimLog> window = getRecent();
+                return limit > 0 ? window.subList(window.size() - Math.min(limit, window.size()), window.size()) : window;
+            }
+        }
+
+        List<ClaimLog> result = new ArrayList<>();
+        for (Segment segment : snapshotNewestFirst()) {
+            List<ClaimLog> logs = new ArrayList<>();
+            readSegment(segment, (log, line) -> logs.add(log));
+            for (int i = logs.size() - 1; i >= 0; i--) {
+                ClaimLog log = logs.get(i);
+                if (filter == null || filter.test(log)) {
+                    result.add(log);
+                    if (limit > 0 && result.size() >= limit) {
+                        Collections.reverse(result);
+                        return result;
+                    }
+                }
+            }
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * 按时间顺序逐条遍历所有分段中的日志（不整体载入内存）
+     */
+    public void forEach(LogConsumer consumer) {
+        forEach(null, consumer);
+    }
+
+    /**
+     * 按时间顺序逐条遍历，跳过整段早于 fromTime 的已封存分段（用于按时间范围导出）
+     * @param fromTime 起始时间，为 null 表示不跳过
+     */
+    public void forEach(String fromTime, LogConsumer consumer) {
+        for (Segment segment : snapshotOldestFirst()) {
+            if (endsBefore(segment, fromTime)) {
+                continue;
+            }
+            readSegment(segment, (log, line) -> {
+                consumer.accept(log);
+                return true;
+            });
+        }
+    }
+
+    /**
+     * 按位置分页读取（keyset 分页：从游标位置之后继续，不需要跳过前面的记录）
+     * 1. 从新到旧时先查内存最近窗口，窗口之外再按分段从新到旧读取
+     * 2. 指定起始时间时，最后修改时间早于起始时间的已封存分段整段跳过（分段内的日志不会晚于文件最后修改时间）
+     * @param after 游标位置（不包含），为 null 时从头（最新或最旧）开始
+     * @param limit 本页条数
+     * @param newestFirst true 为从新到旧
+     * @param filter 过滤条件，为 null 表示不过滤
+     * @param fromTime 起始时间（用于跳过分段，为 null 表示不限）
+     * @return 至多 limit + 1 条（多出的一条表示还有下一页）
+     */
+    public List<Located> readPage(Position after, int limit, boolean newestFirst, Predicate<ClaimLog> filter, String fromTime) {
+        int wanted = limit + 1;
+        List<Located> result = new ArrayList<>(Math.min(wanted, 1024));
+        if (!newestFirst) {
+            for (Segment segment : snapshotOldestFirst()) {
+                if ((after != null && segment.index() < after.segment()) || endsBefore(segment, fromTime)) {
+                    continue;
+                }
+                readSegment(segment, (log, line) -> {
+                    Position position = new Position(segment.index(), line);
+                    if ((after == null || position.compareTo(after) > 0) && (filter == null || filter.test(log))) {
+                        result.add(new Located(log, position));
+                    }
+                    return result.size() < wanted;
+                });
+                if (result.size() >= wanted) {
+                    break;
+                }
+            }
+            return result;
+        }
+
+        // 1. 内存最近窗口（从新到旧）
+        Position boundary = after;
+        List<Located> window;
+        boolean windowCoversAll;
+        synchronized (this) {
+            window = new ArrayList<>(recent);
+            windowCoversAll = recent.size() >= totalCount.get();
+        }
+        for (int i = window.size() - 1; i >= 0 && result.size() < wanted; i--) {
+            Located located = window.get(i);
+            if ((after == null || located.position().compareTo(after) < 0) && (filter == null || filter.test(located.log()))) {
+                result.add(located);
+            }
+        }
+        if (result.size() >= wanted || windowCoversAll) {
+            return result;
+        }
+        if (!window.isEmpty()) {
+            Position oldest = window.get(0).position();
+            boundary = boundary == null || oldest.compareTo(boundary) < 0 ? oldest : boundary;
+        }
+
+        // 2. 窗口之外的分段（从新到旧，只读取边界之前的记录）
+        for (Segment segment : snapshotNewestFirst()) {
+            if (boundary != null && segment.index() > boundary.segment()) {
+                continue;
+            }
+            if (endsBefore(segment, fromTime)) {
+                break;
+            }
+            Position limitPosition = boundary;
+            List<Located> logs = new ArrayList<>();
+            readSegment(segment, (log, line) -> {
+                Position position = new Position(segment.index(), line);
+                if (limitPosition != null && position.compareTo(limitPosition) >= 0) {
+                    return false;
+                }
+                logs.add(new Located(log, position));
+                return true;
+            });
+            for (int i = logs.size() - 1; i >= 0; i--) {
+                Located located = logs.get(i);
+                if (filter == null || filter.test(located.log())) {
+                    result.add(located);
+                    if (result.size() >= wanted) {
+                        return result;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 所有分段中的日志总数
+     */
+    public long count() {
+        return totalCount.get();
+    }
+
+    /**
+     * 内容版本号（追加或清理后变化）
+     */
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * 关闭存储：关闭当前分段并等待后台压缩完成（未压缩的分段下次启动时继续压缩）
+     */
+    public void close() {
+        synchronized (this) {
+            if (activeChannel != null) {
+                try {
+                    activeChannel.close();
+                } catch (IOException ignored) {
+                }
+                activeChannel = null;
+            }
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        long sealedBytes = 0;
+        for (Segment segment : sealed.values()) {
+            sealedBytes += segment.file().length();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("records", totalCount.get());
+        stats.put("segments", sealed.size() + 1);
+        stats.put("activeSegment", activeFile != null ? activeFile.getName() : null);
+        stats.put("activeBytes", activeBytes);
+        stats.put("sealedBytes", sealedBytes);
+        stats.put("memoryWindow", recent.size());
+        stats.put("appended", appended.get());
+        stats.put("rolls", rolls.get());
+        stats.put("compressions", compressions.get());
+        stats.put("compressedSavedBytes", compressedSavedBytes.get());
+        stats.put("expiredSegments", expiredSegments.get());
+        stats.put("failures", failures.get());
+        return stats;
+    }
+
+    // ====================== 分段管理 ======================
+    private void writeActive(StringBuilder buffer, int count) throws IOException {
+        if (count == 0) {
+            return;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(buffer.toString().getBytes(StandardCharsets.UTF_8));
+        int length = bytes.remaining();
+        try {
+            while (bytes.hasRemaining()) {
+                activeChannel.write(bytes);
+            }
+            if (fsync) {
+                activeChannel.force(false);
+            }
+        } catch (IOException e) {
+            // 截断写了一半的内容，保证后续日志的行号与文件一致
+            try {
+                activeChannel.truncate(activeBytes);
+            } catch (IOException te) {
+                plugin.getLogger().severe("❌ 截断领取日志分段失败：" + te.getMessage());
+            }
+            throw e;
+        }
+        activeBytes += length;
+        activeCount += count;
+        totalCount.addAndGet(count);
+        appended.addAndGet(count);
+    }
+
+    /**
+     * 封存当前分段并开始新分段（调用方持有 this 锁）
+     */
+    private void roll() throws IOException {
+        if (activeCount == 0) {
+            return;
+        }
+        activeChannel.close();
+        long index = activeIndex;
+        sealSegment(index, activeFile, activeCount);
+        startSegment(index + 1);
+        activeChannel = FileChannel.open(activeFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        rolls.incrementAndGet();
+        if (compress) {
+            executor.execute(() -> compressSegment(index));
+        }
+        executor.execute(this::applyRetention);
+    }
+
+    private void startSegment(long index) {
+        activeIndex = index;
+        activeFile = new File(directory, String.format("%08d.ndjson", index));
+        activeBytes = 0;
+        activeCount = 0;
+        activeCreatedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * 把未封存的分段文件重命名为带条数的封存文件名
+     */
+    private void sealSegment(long index, File file, int count) throws IOException {
+        if (count == 0) {
+            Files.deleteIfExists(file.toPath());
+            return;
+        }
+        File target = new File(directory, String.format("%08d-%d.ndjson", index, count));
+        move(file.toPath(), target.toPath());
+        sealed.put(index, new Segment(index, target, count));
+    }
+
+    /**
+     * 后台压缩已封存分段：写入临时文件后原子替换，再删除未压缩的原文件
+     */
+    private void compressSegment(long index) {
+        Segment segment = sealed.get(index);
+        if (segment == null || isCompressed(segment.file())) {
+            return;
+        }
+        File source = segment.file();
+        File target = new File(directory, source.getName() + ".gz");
+        File tmp = new File(directory, target.getName() + ".tmp");
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp.toPath()), 64 * 1024)) {
+                Files.copy(source.toPath(), out);
+            }
+            move(tmp.toPath(), target.toPath());
+            // 压缩期间该分段可能已被过期清理
+            if (sealed.replace(index, segment, new Segment(index, target, segment.count()))) {
+                compressions.incrementAndGet();
+                compressedSavedBytes.addAndGet(source.length() - target.length());
+                Files.deleteIfExists(source.toPath());
+            } else {
+                Files.deleteIfExists(target.toPath());
+            }
+        } catch (IOException e) {
+            failures.incrementAndGet();
+            plugin.getLogger().warning("⚠️ 压缩领取日志分段失败：" + source.getName() + " → " + e.getMessage());
+            try {
+                Files.deleteIfExists(tmp.toPath());
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * 定期维护：当前分段超过滚动间隔时封存，并清理过期分段
+     */
+    private void maintain() {
+        synchronized (this) {
+            if (activeChannel != null && rollIntervalMillis > 0 && activeCount > 0
+                    && System.currentTimeMillis() - activeCreatedAt >= rollIntervalMillis) {
+                try {
+                    roll();
+                } catch (IOException e) {
+                    failures.incrementAndGet();
+                    plugin.getLogger().severe("❌ 封存领取日志分段失败：" + e.getMessage());
+                }
+            }
+        }
+        applyRetention();
+    }
+
+    /**
+     * 保留策略：删除超过保留天数的分段，以及总大小超限时最旧的分段（当前分段不会被删除）
+     */
+    private void applyRetention() {
+        if (retentionMillis <= 0 && maxTotalBytes <= 0) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        long total = activeBytes;
+        for (Segment segment : sealed.values()) {
+            total += segment.file().length();
+        }
+        for (Segment segment : new ArrayList<>(sealed.values())) {
+            boolean expired = retentionMillis > 0 && segment.file().lastModified() < cutoff;
+            boolean oversize = maxTotalBytes > 0 && total > maxTotalBytes;
+            if (!expired && !oversize) {
+                break;
+            }
+            long length = segment.file().length();
+            if (sealed.remove(segment.index(), segment)) {
+                try {
+                    Files.deleteIfExists(segment.file().toPath());
+                    total -= length;
+                    totalCount.addAndGet(-segment.count());
+                    expiredSegments.incrementAndGet();
+                    version.incrementAndGet();
+                    plugin.getLogger().info("🔄 已清理过期领取日志分段：" + segment.file().getName() + "（" + segment.count() + " 条）");
+                } catch (IOException e) {
+                    failures.incrementAndGet();
+                    plugin.getLogger().warning("⚠️ 删除领取日志分段失败：" + segment.file().getName() + " → " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // ====================== 读取 ======================
+    private synchronized List<Segment> snapshotNewestFirst() {
+        List<Segment> segments = new ArrayList<>();
+        if (activeFile != null) {
+            segments.add(new Segment(activeIndex, activeFile, activeCount));
+        }
+        segments.addAll(sealed.descendingMap().values());
+        return segments;
+    }
+
+    private List<Segment> snapshotOldestFirst() {
+        List<Segment> segments = snapshotNewestFirst();
+        Collections.reverse(segments);
+        return segments;
+    }
+
+    /**
+     * 已封存分段的最后修改时间早于 fromTime（整段日志都早于起始时间，可以跳过）
+     * 时间按 TimeUtils 默认格式比较（字符串顺序即时间顺序）；当前分段仍在写入，不跳过
+     */
+    private boolean endsBefore(Segment segment, String fromTime) {
+        if (fromTime == null || !sealed.containsKey(segment.index())) {
+            return false;
+        }
+        long modified = segment.file().lastModified();
+        if (modified <= 0) {
+            return false;
+        }
+        String end = LocalDateTime.ofInstant(Instant.ofEpochMilli(modified), ZoneId.systemDefault()).format(TIME_FORMAT);
+        return end.compareTo(fromTime) < 0;
+    }
+
+    /**
+     * 逐行读取一个分段；分段在读取前被封存/压缩时按序号重新定位，已被清理则跳过
+     * 行号从 0 开始，无法解析的行同样占用行号（与追加时分配的位置一致）
+     */
+    private void readSegment(Segment segment, LineReader consumer) {
+        File file = segment.file();
+        for (int attempt = 0; attempt < 3 && file != null; attempt++) {
+            try (BufferedReader reader = openReader(file)) {
+                String line;
+                int lineNumber = 0;
+                while ((line = reader.readLine()) != null) {
+                    ClaimLog log = parse(line);
+                    if (log != null && !consumer.accept(log, lineNumber)) {
+                        return;
+                    }
+                    lineNumber++;
+                }
+                return;
+            } catch (NoSuchFileException e) {
+                Segment current = sealed.get(segment.index());
+                file = current != null ? current.file() : null;
+            } catch (IOException e) {
+                failures.incrementAndGet();
+                plugin.getLogger().warning("⚠️ 读取领取日志分段失败：" + file.getName() + " → " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private BufferedReader openReader(File file) throws IOException {
+        InputStream in = Files.newInputStream(file.toPath());
+        if (isCompressed(file)) {
+            in = new GZIPInputStream(in, 64 * 1024);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    private static ClaimLog parse(String line) {
+        if (line.isEmpty()) {
+            return null;
+        }
+        try {
+            return GsonUtils.getCompactGson().fromJson(line, ClaimLog.class);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 启动时从最新的分段往前加载最近窗口
+     */
+    private void loadRecentWindow() {
+        recent.clear();
+        if (memoryWindow == 0) {
+            return;
+        }
+        List<Located> window = new ArrayList<>();
+        for (Segment segment : snapshotNewestFirst()) {
+            List<Located> logs = new ArrayList<>();
+            readSegment(segment, (log, line) -> logs.add(new Located(log, new Position(segment.index(), line))));
+            Collections.reverse(logs);
+            for (Located log : logs) {
+                window.add(log);
+                if (window.size() >= memoryWindow) break;
+            }
+            if (window.size() >= memoryWindow) break;
+        }
+        Collections.reverse(window);
+        recent.addAll(window);
+    }
+
+    private synchronized void remember(Located log) {
+        if (memoryWindow == 0) {
+            return;
+        }
+        recent.addLast(log);
+        while (recent.size() > memoryWindow) {
+            recent.removeFirst();
+        }
+    }
+
+    // ====================== 文件工具 ======================
+    /**
+     * 统计未封存分段的记录数，并截掉崩溃时留下的半行
+     */
+    private static int countAndRepair(File file) throws IOException {
+        int count = 0;
+        long lastNewline = -1;
+        long position = 0;
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        count++;
+                        lastNewline = position + i;
+                    }
+                }
+                position += read;
+            }
+        }
+        if (lastNewline + 1 < position) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(lastNewline + 1);
+            }
+        }
+        return count;
+    }
+
+    private static long indexOf(File file) {
+        return Long.parseLong(file.getName().substring(0, 8));
+    }
+
+    private static boolean isCompressed(File file) {
+        return file.getName().endsWith(".gz");
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * 分段文件
+     * @param count 分段内的记录数
+     */
+    private record Segment(long index, File file, int count) {
+    }
+
+    /**
+     * 日志位置：分段序号 + 分段内行号（从 0 开始），按此顺序即追加顺序
+     */
+    public record Position(long segment, int line) implements Comparable<Position> {
+        @Override
+        public int compareTo(Position other) {
+            int bySegment = Long.compare(segment, other.segment);
+            return bySegment != 0 ? bySegment : Integer.compare(line, other.line);
+        }
+    }
+
+    /**
+     * 日志及其位置
+     */
+    public record Located(ClaimLog log, Position position) {
+    }
+
+    /**
+     * 日志遍历回调
+     */
+    public interface LogConsumer {
+        void accept(ClaimLog log);
+    }
+
+    /**
+     * 带行号的读取回调
+     * @return false 表示停止读取该分段
+     */
+    private interface LineReader {
+        boolean accept(ClaimLog log, int line);
+    }
+}
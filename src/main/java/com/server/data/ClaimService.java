@@ -0,0 +1,71 @@
+package com.server.data;
+
+import com.server.AnnouncementCompensationPlugin;
+import com.server.data.model.ClaimLog;
+import com.server.data.model.Compensation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 补偿领取服务
+ * 1. 按玩家UUID分段加锁：同一玩家的凭证右键与 /compensation claim 串行执行，不同玩家互不阻塞
+ * 2. 锁内计算待领取集合并逐个标记位图（已领取的跳过），重复调用/重试只会领取尚未领取的部分，不会重复发放
+ * 3. 本次领取涉及的补偿与领取日志作为一批提交：补偿一次入队写入器（同一合并窗口落盘），日志一次追加
+ */
+public class ClaimService {
+    // 锁分段数（2 的幂）
+    private static final int STRIPES = 64;
+
+    private final AnnouncementCompensationPlugin plugin;
+    private final DataManager dataManager;
+    private final Object[] locks = new Object[STRIPES];
+
+    public ClaimService(AnnouncementCompensationPlugin plugin, DataManager dataManager) {
+        this.plugin = plugin;
+        this.dataManager = dataManager;
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * 领取玩家全部待领取的补偿
+     * 返回后领取状态已在内存中生效（后续调用不会再次返回这些补偿），调用方据此发放物品
+     * @return 本次新领取的补偿（无待领取或记录失败时为空列表）
+     */
+    public List<Compensation> claimAll(String playerUUID, String playerName) {
+        synchronized (lockFor(playerUUID)) {
+            List<Compensation> pending = dataManager.getPendingCompensations(playerUUID);
+            if (pending.isEmpty()) {
+                return List.of();
+            }
+            int ordinal;
+            try {
+                ordinal = dataManager.getPlayerOrdinals().getOrAssign(playerUUID);
+            } catch (IOException | IllegalArgumentException e) {
+                plugin.getLogger().severe("❌ 记录补偿领取状态失败：" + playerName + " → " + e.getMessage());
+                return List.of();
+            }
+
+            List<Compensation> claimed = new ArrayList<>(pending.size());
+            List<ClaimLog> logs = new ArrayList<>(pending.size());
+            for (Compensation compensation : pending) {
+                if (compensation.markClaimed(ordinal)) {
+                    claimed.add(compensation);
+                    logs.add(new ClaimLog(playerName, playerUUID, compensation.getIdString()));
+                }
+            }
+            if (!claimed.isEmpty()) {
+                dataManager.commitClaims(ordinal, claimed, logs);
+            }
+            return claimed;
+        }
+    }
+
+    private Object lockFor(String playerUUID) {
+        int hash = playerUUID != null ? playerUUID.hashCode() : 0;
+        return locks[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+}
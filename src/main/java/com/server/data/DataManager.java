@@ -5,31 +5,52 @@ import com.server.database.DatabaseManager;
 import com.server.database.DatabaseDataManager;
 import com.server.data.model.Admin;
 import com.server.data.model.Announcement;
+import com.server.data.model.AnnouncementReadMark;
 import com.server.data.model.Compensation;
 import com.server.data.model.ClaimLog;
 import com.server.data.model.WhitelistEntry;
 import com.server.data.model.User;
 
 import com.server.data.model.EmailVerificationCode;
+import com.server.data.model.QQBinding;
 import com.server.util.GsonUtils;
 import com.server.util.TimeUtils;
 import com.server.util.BCryptUtils;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * 数据管理器核心类
- * 支持JSON文件存储和SQL数据库存储两种模式
+ * 支持JSON文件、Bitcask日志结构存储和SQL数据库存储三种模式（均实现 StorageBackend）
  * 负责所有数据的读写、持久化，适配JDK 17的NIO文件操作
  * 核心职责：管理员/公告/补偿/白名单/日志数据的增删改查 + 白名单启用状态管理
  */
@@ -42,20 +63,69 @@ public class DataManager {
     // 数据库管理器
     private final DatabaseManager databaseManager;
     private final DatabaseDataManager databaseDataManager;
+    // 存储后端（json / bitcask / sql），由 database.storage 决定
+    private final StorageBackend backend;
+    // 后台持久化写入器（单实体修改只标记为脏，由后台线程合并后批量写入存储后端）
+    private final PersistenceWriter persistenceWriter;
+    // 领取日志分段存储（按大小/时间滚动的NDJSON分段，旧分段压缩并按保留策略清理）
+    private final ClaimLogStore claimLogStore;
+    // 存储后端之间的在线迁移
+    private final StorageMigrator storageMigrator;
+    // 玩家序号表（补偿领取位图按序号记录）
+    private final PlayerOrdinals playerOrdinals;
+    // 玩家 -> 待领取补偿 倒排索引（加载完成后由各补偿的领取位图重建）
+    private final PendingCompensationIndex pendingCompensations = new PendingCompensationIndex();
+    // 补偿领取服务（按玩家分段加锁的批量领取）
+    private final ClaimService claimService;
     
     // 内存数据缓存（减少文件IO次数）
-    private List<Admin> admins = new ArrayList<>();
-    private List<Announcement> announcements = new ArrayList<>();
-    private List<Compensation> compensations = new ArrayList<>();
-    private List<WhitelistEntry> whitelistEntries = new ArrayList<>();
-    private List<ClaimLog> claimLogs = new ArrayList<>();
-    private List<User> users = new ArrayList<>();
-    private List<EmailVerificationCode> emailVerificationCodes = new ArrayList<>();
-    // 白名单启用状态（默认禁用）
-    private boolean whitelistEnabled = false;
-    
-    // 存储类型：json 或 sql
-    private String storageType;
+    // 管理员(用户名)、公告(公告ID)、补偿(补偿ID)、白名单(玩家UUID)、验证码(验证码ID)为写时复制的版本化快照：
+    // Web工作线程与主线程的读取无锁且不会遇到并发修改，修改统一经各自的写入路径发布新快照
+    private final SnapshotMap<String, Admin> admins = new SnapshotMap<>(Admin::getUsername);
+    private final SnapshotMap<String, Announcement> announcements = new SnapshotMap<>(Announcement::getIdString);
+    private final SnapshotMap<String, Compensation> compensations = new SnapshotMap<>(Compensation::getIdString);
+    private final SnapshotMap<String, WhitelistEntry> whitelistEntries = new SnapshotMap<>(WhitelistEntry::getUuid);
+    // 用户：默认全部常驻内存；按需加载模式下只缓存最近使用的用户，其余用户只在索引中保留唯一键
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+    private final boolean lazyUsers;
+    private final LruCache<String, User> userCache;
+    private final SnapshotMap<String, EmailVerificationCode> emailVerificationCodes = new SnapshotMap<>(EmailVerificationCode::getIdString);
+    // 公告序号分配器（当前已分配的最大序号）与按序号排序的公告索引（随公告快照版本重建）
+    private final AtomicLong announcementSeq = new AtomicLong();
+    private volatile AnnouncementIndex announcementIndex = AnnouncementIndex.EMPTY;
+    // 玩家公告已读进度缓存（按需从存储加载）
+    private final LruCache<String, AnnouncementReadMark> readMarkCache;
+    // 已读进度读-改-写的分段锁（按玩家UUID，2 的幂）
+    private final Object[] readMarkLocks = new Object[64];
+
+    // 用户唯一键二级索引（唯一键 → 用户名），在 saveUser/deleteUser 时同步维护
+    private final Map<String, String> userEmailIndex = new ConcurrentHashMap<>();
+    private final Map<String, String> userGameUUIDIndex = new ConcurrentHashMap<>();
+    private final Map<String, String> userQQOpenIdIndex = new ConcurrentHashMap<>();
+    private final Map<String, String> userQQUnionIdIndex = new ConcurrentHashMap<>();
+    // 每个用户上次写入索引时的键快照（User对象可能被原地修改，需要旧键才能精确移除）
+    // 同时作为全部用户名的索引：按需加载模式下用户是否存在只看这里
+    private final Map<String, UserKeys> indexedUserKeys = new ConcurrentHashMap<>();
+    // 用户索引写锁：保证主表与二级索引的一致性及注册的原子性
+    private final Object userIndexLock = new Object();
+    // 按需加载模式下仍被引用的用户对象（弱引用）：缓存淘汰后再次加载时复用仍在使用的同一对象，每个用户名只有一个可修改的实例
+    private final Map<String, LiveUser> liveUsers = new ConcurrentHashMap<>();
+    private final ReferenceQueue<User> releasedUsers = new ReferenceQueue<>();
+    // 白名单启用状态（默认禁用；登录前检查在异步登录线程读取，Web工作线程写入）
+    private volatile boolean whitelistEnabled = false;
+    // 不经过快照集合的修改也要体现在集合版本号中（领取只修改补偿内部的位图、白名单开关是单独的设置）
+    private final AtomicLong compensationClaimVersion = new AtomicLong();
+    private final AtomicLong whitelistSettingVersion = new AtomicLong();
+    // 列表分页的有序索引（排序字段 -> 索引，随快照版本重建）
+    private final Map<String, SortedIndex<Announcement>> announcementSorts = Map.of(
+            "time", new SortedIndex<>(Announcement::getCreateTime, Announcement::getIdString),
+            "title", new SortedIndex<>(Announcement::getTitle, Announcement::getIdString));
+    private final Map<String, SortedIndex<Compensation>> compensationSorts = Map.of(
+            "time", new SortedIndex<>(Compensation::getCreateTime, Compensation::getIdString),
+            "title", new SortedIndex<>(Compensation::getTitle, Compensation::getIdString));
+    private final Map<String, SortedIndex<WhitelistEntry>> whitelistSorts = Map.of(
+            "time", new SortedIndex<>(WhitelistEntry::getAddTime, WhitelistEntry::getUuid),
+            "name", new SortedIndex<>(WhitelistEntry::getPlayerName, WhitelistEntry::getUuid));
 
     /**
      * 构造方法：关联插件实例，初始化数据目录和数据库管理器
@@ -65,7 +135,76 @@ public class DataManager {
         this.dataFolder = plugin.getDataFolder();
         this.databaseManager = databaseManager;
         this.databaseDataManager = new DatabaseDataManager(plugin, databaseManager);
-        this.storageType = plugin.getConfig().getString("database.storage", "json");
+        this.backend = createActiveBackend(plugin.getConfig().getString("database.storage", "json"));
+        this.persistenceWriter = new PersistenceWriter(plugin, dataFolder, backend);
+        this.claimLogStore = new ClaimLogStore(plugin, new File(dataFolder, "claim_logs"));
+        this.storageMigrator = new StorageMigrator(plugin, this);
+        this.claimService = new ClaimService(plugin, this);
+        this.playerOrdinals = new PlayerOrdinals(new File(dataFolder, "player_ordinals.dat"),
+                plugin.getConfig().getBoolean("database.json.fsync", false), plugin.getLogger());
+        this.lazyUsers = plugin.getConfig().getBoolean("database.users.lazy", false);
+        this.userCache = lazyUsers ? new LruCache<>(plugin.getConfig().getInt("database.users.cache_size", 2000)) : null;
+        this.readMarkCache = new LruCache<>(plugin.getConfig().getInt("database.read_marks.cache_size", 2000));
+        for (int i = 0; i < readMarkLocks.length; i++) {
+            readMarkLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * 按配置创建当前使用的存储后端；配置为 sql 但数据库未连接时回退为JSON文件
+     */
+    private StorageBackend createActiveBackend(String name) {
+        if ("sql".equals(name)) {
+            if (databaseManager.isUsingDatabase()) {
+                return databaseDataManager;
+            }
+            plugin.getLogger().warning("⚠️ 数据库未连接，改用JSON文件存储");
+        } else if ("bitcask".equals(name)) {
+            return new BitcaskStorageBackend(plugin, new File(dataFolder, "bitcask"));
+        }
+        return new JsonStorageBackend(dataFolder, plugin.getConfig().getBoolean("database.json.fsync", false), plugin.getLogger());
+    }
+
+    /**
+     * 获取指定名称的存储后端（供存储迁移使用）
+     * 与当前使用中的后端同名时返回当前实例（已打开，调用方不要关闭），否则新建一个未打开的实例
+     * @throws IllegalArgumentException 未知的存储类型
+     * @throws IOException SQL数据库连接失败
+     */
+    public StorageBackend getStorageBackend(String name) throws IOException {
+        if (backend.getName().equals(name)) {
+            return backend;
+        }
+        switch (name) {
+            case "json":
+                return new JsonStorageBackend(dataFolder, plugin.getConfig().getBoolean("database.json.fsync", false), plugin.getLogger());
+            case "bitcask":
+                return new BitcaskStorageBackend(plugin, new File(dataFolder, "bitcask"));
+            case "sql":
+                try {
+                    databaseManager.connect();
+                } catch (SQLException e) {
+                    throw new IOException("连接SQL数据库失败：" + e.getMessage(), e);
+                }
+                return databaseDataManager;
+            default:
+                throw new IllegalArgumentException("未知的存储类型：" + name + "（可选 json / bitcask / sql）");
+        }
+    }
+
+    /**
+     * 当前使用中的存储后端
+     */
+    public StorageBackend getStorageBackend() {
+        return backend;
+    }
+
+    public PersistenceWriter getPersistenceWriter() {
+        return persistenceWriter;
+    }
+
+    public StorageMigrator getStorageMigrator() {
+        return storageMigrator;
     }
 
     // ====================== 数据加载/保存核心方法 ======================
@@ -76,40 +215,38 @@ public class DataManager {
         try {
             // 确保数据目录存在
             if (!dataFolder.exists()) dataFolder.mkdirs();
-
-            // 根据存储类型选择加载方式
-            if ("sql".equals(storageType) && databaseManager.isUsingDatabase()) {
-                // 使用数据库加载
-                plugin.getLogger().info("🔄 从SQL数据库加载数据...");
-                admins = databaseDataManager.loadAdmins();
-                announcements = databaseDataManager.loadAnnouncements();
-                compensations = databaseDataManager.loadCompensations();
-                whitelistEntries = databaseDataManager.loadWhitelistEntries();
-                claimLogs = databaseDataManager.loadClaimLogs();
-                users = databaseDataManager.loadUsers();
-                emailVerificationCodes = databaseDataManager.loadEmailVerificationCodes();
-                whitelistEnabled = databaseDataManager.loadWhitelistEnabledStatus();
+            claimLogStore.open();
+            playerOrdinals.open();
+
+            plugin.getLogger().info("🔄 从" + backend.getDisplayName() + "加载数据...");
+            backend.open();
+            if (backend instanceof JsonStorageBackend) {
+                loadFromBackend(backend);
+                // 在检查点状态（各实体文件）之上回放日志中尚未物化的修改
+                persistenceWriter.replayJournal(this::applyEntity);
+            } else if (backend.isEmpty()) {
+                importLegacyData();
             } else {
-                // 使用JSON文件加载
-                plugin.getLogger().info("🔄 从JSON文件加载数据...");
-                loadWhitelistEnabledStatus();
-                loadAdmins();
-                loadAnnouncements();
-                loadCompensations();
-                loadWhitelistEntries();
-                loadClaimLogs();
-                loadUsers();
-                loadEmailVerificationCodes();
+                loadFromBackend(backend);
             }
-            
+            migrateLegacyAnnouncements();
+            pendingCompensations.rebuild(compensations.values());
+
             plugin.getLogger().info("✅ 所有数据加载完成：");
-            plugin.getLogger().info("  - 存储方式：" + (databaseManager.isUsingDatabase() ? "SQL数据库" : "JSON文件"));
+            plugin.getLogger().info("  - 存储方式：" + backend.getDisplayName());
             plugin.getLogger().info("  - 管理员数量：" + admins.size());
             plugin.getLogger().info("  - 公告数量：" + announcements.size());
             plugin.getLogger().info("  - 补偿数量：" + compensations.size());
             plugin.getLogger().info("  - 白名单数量：" + whitelistEntries.size());
-            plugin.getLogger().info("  - 领取日志数量：" + claimLogs.size());
-            plugin.getLogger().info("  - 用户数量：" + users.size());
+            plugin.getLogger().info("  - 领取日志数量：" + getClaimLogCount());
+            plugin.getLogger().info("  - 用户数量：" + indexedUserKeys.size());
+            if (lazyUsers) {
+                plugin.getLogger().info("  - 用户按需加载：缓存容量 " + userCache.getCapacity() + "，唯一键索引约 "
+                        + estimateUserIndexBytes() / 1024 + "KB，JVM已用堆 " + usedHeapMegabytes() + "MB");
+            }
+
+            // 上次未完成的存储迁移：从断点继续
+            storageMigrator.resumeIfPending();
         } catch (Exception e) {
             plugin.getLogger().severe("❌ 数据加载失败：" + e.getMessage());
             e.printStackTrace();
@@ -118,33 +255,13 @@ public class DataManager {
 
     /**
      * 保存所有数据（插件禁用时调用）
+     * 修改时已标记为脏，这里只需把尚未写入的实体交给存储后端
      */
     public void saveAllData() {
         try {
-            // 根据存储类型选择保存方式
-            if ("sql".equals(storageType) && databaseManager.isUsingDatabase()) {
-                // 使用数据库保存
-                plugin.getLogger().info("🔄 保存数据到SQL数据库...");
-                databaseDataManager.saveAdmins(admins);
-                databaseDataManager.saveAnnouncements(announcements);
-                databaseDataManager.saveCompensations(compensations);
-                databaseDataManager.saveWhitelistEntries(whitelistEntries);
-                databaseDataManager.saveClaimLogs(claimLogs);
-                databaseDataManager.saveUsers(users);
-                databaseDataManager.saveEmailVerificationCodes(emailVerificationCodes);
-                databaseDataManager.saveWhitelistEnabledStatus(whitelistEnabled);
-            } else {
-                // 使用JSON文件保存
-                plugin.getLogger().info("🔄 保存数据到JSON文件...");
-                saveWhitelistEnabledStatus();
-                saveAdmins();
-                saveAnnouncements();
-                saveCompensations();
-                saveWhitelistEntries();
-                saveClaimLogs();
-                saveUsers();
-                saveEmailVerificationCodes();
-            }
+            plugin.getLogger().info("🔄 保存数据到" + backend.getDisplayName()
+                    + "（待写入 " + persistenceWriter.getQueueDepth() + " 个实体）...");
+            persistenceWriter.flush();
             
             plugin.getLogger().info("✅ 所有数据保存完成");
         } catch (Exception e) {
@@ -153,6 +270,358 @@ public class DataManager {
         }
     }
 
+    /**
+     * 关闭数据管理器：停止后台写入线程并落盘剩余数据，再停止存储迁移（插件禁用时在 saveAllData 之后调用）
+     */
+    public void close() {
+        persistenceWriter.shutdown();
+        storageMigrator.shutdown();
+        claimLogStore.close();
+        playerOrdinals.close();
+        backend.close();
+    }
+
+    /**
+     * 获取存储统计信息（存储方式、持久化队列深度、刷盘耗时等）
+     */
+    public Map<String, Object> getStorageStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("storage", backend.getName());
+        stats.put("backend", backend.getStats());
+        stats.put("persistence", persistenceWriter.getStats());
+        stats.put("claimLogs", claimLogStore.getStats());
+        stats.put("users", getUserStats());
+        stats.put("playerOrdinals", playerOrdinals.size());
+        stats.put("pendingCompensations", pendingCompensations.getStats());
+        stats.put("migration", storageMigrator.getStatus());
+        return stats;
+    }
+
+    /**
+     * 按查询的排序字段选择有序索引（未指定时按时间排序）
+     */
+    private static <T> SortedIndex<T> sortIndex(Map<String, SortedIndex<T>> sorts, PageQuery query) {
+        String sort = query.sort() != null ? query.sort() : "time";
+        SortedIndex<T> index = sorts.get(sort);
+        if (index == null) {
+            throw new IllegalArgumentException("不支持的排序字段：" + sort + "（可选：" + String.join(", ", sorts.keySet()) + "）");
+        }
+        return index;
+    }
+
+    /**
+     * 集合版本号：集合内容每次变化都会增大（用于Web列表接口的ETag与响应缓存失效判断）
+     * 支持公告、补偿（含领取状态）、白名单（含启用开关）、领取日志
+     */
+    public long getCollectionVersion(EntityType type) {
+        return switch (type) {
+            case ANNOUNCEMENT -> announcements.version();
+            case COMPENSATION -> compensations.version() + compensationClaimVersion.get();
+            case WHITELIST -> whitelistEntries.version() + whitelistSettingVersion.get();
+            case CLAIM_LOG -> claimLogStore.version();
+            default -> throw new IllegalArgumentException("不支持的集合类型：" + type);
+        };
+    }
+
+    // ====================== 旧数据导入 ======================
+    /**
+     * 存储后端为空时导入旧数据（首次切换到Bitcask/SQL）
+     * 优先导入JSON文件（旧版本的主存储），其次是旧版SQL各表；导入后整体写入新存储，原数据保留
+     */
+    private void importLegacyData() throws Exception {
+        if (hasJsonData()) {
+            plugin.getLogger().info("🔄 " + backend.getDisplayName() + "存储为空，从JSON文件导入现有数据...");
+            loadFromBackend(new JsonStorageBackend(dataFolder, false, plugin.getLogger()));
+            persistenceWriter.replayJournal(this::applyEntity);
+        } else if (backend == databaseDataManager && databaseDataManager.hasLegacyData()) {
+            plugin.getLogger().info("🔄 实体表为空，从旧版数据表导入现有数据...");
+            admins.putAll(databaseDataManager.loadAdmins());
+            List<Announcement> legacyAnnouncements = databaseDataManager.loadAnnouncements();
+            for (Announcement announcement : legacyAnnouncements) {
+                if (announcement.getIdString() == null || announcement.getIdString().isEmpty()) {
+                    announcement.setId(String.valueOf(announcement.getId()));
+                }
+            }
+            announcements.putAll(legacyAnnouncements);
+            List<Compensation> legacyCompensations = databaseDataManager.loadCompensations();
+            legacyCompensations.forEach(DataManager::ensureCompensationId);
+            migrateLegacyClaims(legacyCompensations);
+            compensations.putAll(legacyCompensations);
+            whitelistEntries.putAll(databaseDataManager.loadWhitelistEntries());
+            for (User user : databaseDataManager.loadUsers()) {
+                indexUser(user);
+                writeUserFile(user);
+            }
+            List<EmailVerificationCode> legacyCodes = databaseDataManager.loadEmailVerificationCodes();
+            for (EmailVerificationCode code : legacyCodes) {
+                if (code.getIdString() == null || code.getIdString().isEmpty()) {
+                    code.setId(String.valueOf(code.getId()));
+                }
+            }
+            emailVerificationCodes.putAll(legacyCodes);
+            whitelistEnabled = databaseDataManager.loadWhitelistEnabledStatus();
+            importClaimLogs(new ArrayList<>(databaseDataManager.loadClaimLogs()));
+        } else {
+            return;
+        }
+        markAllDirty();
+        persistenceWriter.flush();
+        plugin.getLogger().info("✅ 已导入到" + backend.getDisplayName() + "（原数据保留，可在确认后手动删除）");
+    }
+
+    /**
+     * 数据目录中是否存在旧的JSON实体数据（用于首次切换存储时导入）
+     */
+    private boolean hasJsonData() throws IOException {
+        JsonStorageBackend json = new JsonStorageBackend(dataFolder, false, plugin.getLogger());
+        json.open();
+        for (EntityType type : EntityType.values()) {
+            if (type != EntityType.SETTING && json.count(type) > 0) {
+                return true;
+            }
+        }
+        return PersistenceWriter.journalFile(dataFolder).exists();
+    }
+
+    /**
+     * 把内存中的全部实体标记为脏（导入到新存储时使用）
+     */
+    private void markAllDirty() {
+        admins.values().forEach(admin -> persistenceWriter.markDirty(EntityType.ADMIN, admin.getUsername(), admin));
+        announcements.values().forEach(a -> persistenceWriter.markDirty(EntityType.ANNOUNCEMENT, a.getIdString(), a));
+        compensations.values().forEach(c -> persistenceWriter.markDirty(EntityType.COMPENSATION, c.getIdString(), c));
+        whitelistEntries.values().forEach(entry -> persistenceWriter.markDirty(EntityType.WHITELIST, entry.getUuid(), entry));
+        // 按需加载模式下用户在导入时已标记（内存中只有索引）
+        users.forEach((username, user) -> persistenceWriter.markDirty(EntityType.USER, username, user));
+        emailVerificationCodes.values().forEach(code -> persistenceWriter.markDirty(EntityType.EMAIL_CODE, code.getIdString(), code));
+        persistenceWriter.markDirty(EntityType.SETTING, "whitelist_enabled", whitelistEnabled);
+        persistenceWriter.markDirty(EntityType.SETTING, "announcement_seq", announcementSeq.get());
+    }
+
+    /**
+     * 按领取时间排序后批量追加到分段存储
+     * @throws UncheckedIOException 写入失败（此时不能删除原存储中的日志，中止加载）
+     */
+    private void importClaimLogs(List<ClaimLog> logs) {
+        if (logs.isEmpty()) {
+            return;
+        }
+        logs.sort(Comparator.comparing(ClaimLog::getClaimTime, Comparator.nullsFirst(Comparator.naturalOrder())));
+        try {
+            claimLogStore.appendAll(logs);
+        } catch (IOException e) {
+            throw new UncheckedIOException("迁移领取日志失败：" + e.getMessage(), e);
+        }
+    }
+
+    // ====================== 并行加载 ======================
+    /**
+     * 从存储后端并行加载所有实体
+     * 每种实体类型作为独立任务提交到有界线程池，类型内再并行解析；
+     * 全部类型解析完成后才统一写入内存缓存，任一类型失败都不会留下"加载了一半"的数据
+     */
+    private void loadFromBackend(StorageBackend source) throws Exception {
+        int threads = Math.max(1, plugin.getConfig().getInt("database.json.load_threads",
+                Math.min(8, Runtime.getRuntime().availableProcessors())));
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        try {
+            boolean importing = source != backend;
+            Map<EntityType, ForkJoinTask<LoadResult>> tasks = new LinkedHashMap<>();
+            for (EntityType type : EntityType.values()) {
+                // 已读进度按需加载，只有导入到新存储时才需要整体读取
+                if (type == EntityType.READ_MARK && !importing) {
+                    continue;
+                }
+                tasks.put(type, pool.submit(() -> loadType(source, type)));
+            }
+            List<LoadResult> results = new ArrayList<>(tasks.size());
+            for (ForkJoinTask<LoadResult> task : tasks.values()) {
+                results.add(task.get());
+            }
+
+            // 统一发布到内存缓存
+            long publishStart = System.nanoTime();
+            results.forEach(result -> publish(result, importing));
+            long publishNanos = System.nanoTime() - publishStart;
+
+            // 启动耗时明细
+            plugin.getLogger().info("⏱️ " + source.getDisplayName() + "并行加载完成（" + threads + " 线程），总耗时 "
+                    + toMillis(System.nanoTime() - start) + "ms，其中写入缓存 " + toMillis(publishNanos) + "ms：");
+            for (LoadResult result : results) {
+                if (result.records() == 0) continue;
+                plugin.getLogger().info("  - " + result.type().getDisplayName() + "：" + result.records() + " 条记录，加载 "
+                        + result.items().size() + " 条，失败 " + result.failed() + "，耗时 " + toMillis(result.nanos()) + "ms");
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 读取并解析一种实体类型的全部记录（在调用方所在的ForkJoinPool中并行解析）
+     */
+    private LoadResult loadType(StorageBackend source, EntityType type) throws IOException {
+        long start = System.nanoTime();
+        List<String> ids = new ArrayList<>();
+        List<byte[]> contents = new ArrayList<>();
+        source.load(type, null, (id, data) -> {
+            ids.add(id);
+            contents.add(data);
+        });
+
+        AtomicInteger failed = new AtomicInteger();
+        List<LoadedEntity> items = IntStream.range(0, ids.size()).parallel()
+                .mapToObj(i -> {
+                    try {
+                        Object entity = GsonUtils.getGson().fromJson(new String(contents.get(i), StandardCharsets.UTF_8), type.getModelClass());
+                        return entity != null && isValid(entity) ? new LoadedEntity(ids.get(i), entity) : null;
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                        plugin.getLogger().warning("⚠️ 解析" + type.getDisplayName() + "失败：" + ids.get(i) + " → " + e.getMessage());
+                        return null;
+                    }
+                })
+                .filter(Objects::nonNull)
+                .toList();
+        return new LoadResult(type, items, ids.size(), failed.get(), System.nanoTime() - start);
+    }
+
+    /**
+     * 过滤无效实体（缺少主键的记录、已过期的验证码）
+     */
+    private static boolean isValid(Object entity) {
+        if (entity instanceof Admin admin) return admin.getUsername() != null;
+        // 补偿ID为JSON中的字符串id（数据库int id为transient，不参与JSON）
+        if (entity instanceof Compensation compensation) return compensation.getIdString() != null;
+        if (entity instanceof WhitelistEntry entry) return entry.getUuid() != null;
+        if (entity instanceof User user) return user.getUsername() != null;
+        // 只加载未过期的验证码
+        if (entity instanceof EmailVerificationCode code) return code.getId() > 0 && !code.isExpired();
+        if (entity instanceof AnnouncementReadMark mark) return mark.getPlayerUuid() != null;
+        return true;
+    }
+
+    /**
+     * 把一种实体类型的加载结果写入内存缓存（快照集合整批发布一次）
+     * @param importing 是否从其他存储导入（按需加载模式下导入的用户需要由写入器持有，直到写入当前存储）
+     */
+    @SuppressWarnings("unchecked")
+    private void publish(LoadResult result, boolean importing) {
+        List<LoadedEntity> items = result.items();
+        switch (result.type()) {
+            case ADMIN -> admins.putAll((List<Admin>) entities(items));
+            case ANNOUNCEMENT -> announcements.putAll((List<Announcement>) entities(items));
+            case COMPENSATION -> {
+                List<Compensation> loaded = (List<Compensation>) entities(items);
+                loaded.forEach(DataManager::ensureCompensationId);
+                // 旧版领取状态转换为位图后重新写出
+                migrateLegacyClaims(loaded).forEach(c -> persistenceWriter.markDirty(EntityType.COMPENSATION, c.getIdString(), c));
+                compensations.putAll(loaded);
+            }
+            case WHITELIST -> whitelistEntries.putAll((List<WhitelistEntry>) entities(items));
+            case CLAIM_LOG -> {
+                // 旧版本按实体存储的领取日志：迁移到分段存储后从原存储删除
+                List<ClaimLog> logs = new ArrayList<>(items.size());
+                items.forEach(item -> logs.add((ClaimLog) item.entity()));
+                importClaimLogs(logs);
+                items.forEach(item -> persistenceWriter.markDeleted(EntityType.CLAIM_LOG, item.id()));
+                if (!logs.isEmpty()) {
+                    plugin.getLogger().info("✅ 已把 " + logs.size() + " 条旧版领取日志迁移到分段存储");
+                }
+            }
+            case USER -> {
+                synchronized (userIndexLock) {
+                    for (LoadedEntity item : items) {
+                        User user = (User) item.entity();
+                        if (!lazyUsers) {
+                            indexUser(user);
+                            continue;
+                        }
+                        // 按需加载模式：只保留唯一键索引，用户对象在首次访问时从存储加载
+                        indexUserKeys(user.getUsername(), UserKeys.of(user));
+                        if (importing) {
+                            writeUserFile(user);
+                        }
+                    }
+                }
+            }
+            case EMAIL_CODE -> emailVerificationCodes.putAll((List<EmailVerificationCode>) entities(items));
+            // 导入时由写入器持有，直到写入当前存储
+            case READ_MARK -> items.forEach(item -> persistenceWriter.markDirty(EntityType.READ_MARK, item.id(), item.entity()));
+            case SETTING -> items.forEach(item -> applyEntity(EntityType.SETTING, item.id(), item.entity()));
+        }
+    }
+
+    private static List<?> entities(List<LoadedEntity> items) {
+        List<Object> entities = new ArrayList<>(items.size());
+        items.forEach(item -> entities.add(item.entity()));
+        return entities;
+    }
+
+    /**
+     * 把单个实体（日志回放得到）应用到内存缓存
+     * @param entity 实体对象；为 null 表示该实体已被删除
+     */
+    private void applyEntity(EntityType type, String id, Object entity) {
+        switch (type) {
+            case ADMIN -> {
+                if (entity == null) admins.remove(id); else putAdmin((Admin) entity);
+            }
+            case ANNOUNCEMENT -> {
+                if (entity == null) announcements.remove(id); else announcements.put((Announcement) entity);
+            }
+            case COMPENSATION -> {
+                if (entity == null) {
+                    compensations.remove(id);
+                } else {
+                    Compensation compensation = (Compensation) entity;
+                    migrateLegacyClaims(List.of(compensation))
+                            .forEach(c -> persistenceWriter.markDirty(EntityType.COMPENSATION, c.getIdString(), c));
+                    putCompensation(compensation);
+                }
+            }
+            case WHITELIST -> {
+                if (entity == null) whitelistEntries.remove(id); else putWhitelistEntry((WhitelistEntry) entity);
+            }
+            case CLAIM_LOG -> {
+                // 旧版本写入日志的领取日志：迁移到分段存储
+                if (entity != null) {
+                    importClaimLogs(new ArrayList<>(List.of((ClaimLog) entity)));
+                    persistenceWriter.markDeleted(EntityType.CLAIM_LOG, id);
+                }
+            }
+            case USER -> {
+                if (entity == null) unindexUser(id); else indexUser((User) entity);
+            }
+            case EMAIL_CODE -> {
+                if (entity == null) emailVerificationCodes.remove(id); else emailVerificationCodes.put((EmailVerificationCode) entity);
+            }
+            case READ_MARK -> readMarkCache.remove(id);
+            case SETTING -> {
+                if ("whitelist_enabled".equals(id)) {
+                    whitelistEnabled = Boolean.TRUE.equals(entity);
+                } else if ("announcement_seq".equals(id) && entity instanceof Number seq) {
+                    announcementSeq.accumulateAndGet(seq.longValue(), Math::max);
+                }
+            }
+        }
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * 单个实体类型的加载结果
+     */
+    private record LoadResult(EntityType type, List<LoadedEntity> items, int records, int failed, long nanos) {
+    }
+
+    private record LoadedEntity(String id, Object entity) {
+    }
+
+
     // ====================== 新增：确保至少存在一个管理员（来自config或默认） ======================
     /**
      * 如果当前没有管理员，尝试从config读取web.login配置创建默认管理员；
@@ -183,8 +652,8 @@ public class DataManager {
                 defaultAdmin.setPasswordHash(passwordHash);
                 defaultAdmin.setPermissions(List.of("ac.web.*"));
 
-                admins.add(defaultAdmin);
-                saveAdmins();
+                putAdmin(defaultAdmin);
+                markAdminDirty(defaultAdmin);
                 plugin.getLogger().info("✅ 已创建默认管理员：" + cfgUsername);
                 return;
             }
@@ -209,8 +678,8 @@ public class DataManager {
                     newAdmin.setPasswordHash(passwordHash);
                     newAdmin.setPermissions(List.of("ac.web.*"));
 
-                    admins.add(newAdmin);
-                    saveAdmins();
+                    putAdmin(newAdmin);
+                    markAdminDirty(newAdmin);
                     plugin.getLogger().info("✅ 根据 config.yml 创建了管理员：" + cfgUsername);
                 } else {
                     plugin.getLogger().info("ℹ️ 已存在管理员，未启用 web.login.override，跳过从 config 创建管理员。");
@@ -237,7 +706,7 @@ public class DataManager {
             }
 
             existing.setPasswordHash(passwordHash);
-            saveAdmins();
+            markAdminDirty(existing);
             plugin.getLogger().info("✅ 已使用 config.yml 的密码更新管理员：" + cfgUsername);
         } catch (Exception e) {
             plugin.getLogger().severe("❌ 创建/更新默认管理员失败：" + e.getMessage());
@@ -246,277 +715,312 @@ public class DataManager {
 
     // ====================== 管理员数据操作 ======================
     /**
-     * 加载管理员数据（从 admins/ 目录下的JSON文件）
-     */
-    private void loadAdmins() throws IOException {
-        File adminsDir = new File(dataFolder, "admins");
-        if (!adminsDir.exists()) return;
-
-        // JDK 17 Stream流遍历文件，适配NIO
-        Files.list(Paths.get(adminsDir.getPath()))
-             .filter(path -> path.toString().endsWith(".json"))
-             .forEach(path -> {
-                 try (FileInputStream fis = new FileInputStream(path.toFile())) {
-                     String json = new String(fis.readAllBytes(), StandardCharsets.UTF_8);
-                     Admin admin = GsonUtils.getGson().fromJson(json, Admin.class);
-                     if (admin != null && admin.getUsername() != null) {
-                         admins.add(admin);
-                     }
-                 } catch (Exception e) {
-                     plugin.getLogger().warning("⚠️ 加载管理员文件失败：" + path.getFileName() + " → " + e.getMessage());
-                 }
-             });
-    }
-
-    /**
-     * 保存所有管理员数据
-     */
-    private void saveAdmins() throws IOException {
-        File adminsDir = new File(dataFolder, "admins");
-        if (!adminsDir.exists()) adminsDir.mkdirs();
-
-        // 清空旧文件（避免冗余）
-        Files.list(Paths.get(adminsDir.getPath()))
-             .filter(path -> path.toString().endsWith(".json"))
-             .forEach(path -> {
-                 try {
-                     Files.delete(path);
-                 } catch (IOException e) {
-                     plugin.getLogger().warning("⚠️ 删除旧管理员文件失败：" + path.getFileName());
-                 }
-             });
-
-        // 保存新数据（按用户名命名文件）
-        for (Admin admin : admins) {
-            File adminFile = new File(adminsDir, admin.getUsername() + ".json");
-            try (FileOutputStream fos = new FileOutputStream(adminFile)) {
-                String json = GsonUtils.getGson().toJson(admin);
-                fos.write(json.getBytes(StandardCharsets.UTF_8));
-            }
-        }
+     * 根据用户名获取管理员信息
+     */
+    public Admin getAdminByUsername(String username) {
+        return admins.get(username);
     }
 
     /**
-     * 根据用户名获取管理员信息
+     * 保存管理员（新增/修改）
      */
-    public Admin getAdminByUsername(String username) {
-        return admins.stream()
-                     .filter(admin -> admin.getUsername().equals(username))
-                     .findFirst()
-                     .orElse(null);
+    public void saveAdmin(Admin admin) {
+        putAdmin(admin);
+        markAdminDirty(admin);
     }
 
-    // ====================== 公告数据操作 ======================
     /**
-     * 加载公告数据
-     */
-    private void loadAnnouncements() throws IOException {
-        File announcementsDir = new File(dataFolder, "announcements");
-        if (!announcementsDir.exists()) return;
-
-        Files.list(Paths.get(announcementsDir.getPath()))
-             .filter(path -> path.toString().endsWith(".json"))
-             .forEach(path -> {
-                 try (FileInputStream fis = new FileInputStream(path.toFile())) {
-                     String json = new String(fis.readAllBytes(), StandardCharsets.UTF_8);
-                     Announcement announcement = GsonUtils.getGson().fromJson(json, Announcement.class);
-                     if (announcement != null) {
-                         announcements.add(announcement);
-                     }
-                 } catch (Exception e) {
-                     plugin.getLogger().warning("⚠️ 加载公告文件失败：" + path.getFileName() + " → " + e.getMessage());
-                 }
-             });
-    }
-
-    /**
-     * 保存所有公告数据
-     */
-    private void saveAnnouncements() throws IOException {
-        File announcementsDir = new File(dataFolder, "announcements");
-        if (!announcementsDir.exists()) announcementsDir.mkdirs();
-
-        // 清空旧文件
-        Files.list(Paths.get(announcementsDir.getPath()))
-             .filter(path -> path.toString().endsWith(".json"))
-             .forEach(path -> {
-                 try {
-                     Files.delete(path);
-                 } catch (IOException e) {
-                     plugin.getLogger().warning("⚠️ 删除旧公告文件失败：" + path.getFileName());
-                 }
-             });
-
-        // 保存新数据（按UUID命名文件）
-        for (Announcement announcement : announcements) {
-            File annFile = new File(announcementsDir, announcement.getIdString() + ".json");
-            try (FileOutputStream fos = new FileOutputStream(annFile)) {
-                String json = GsonUtils.getGson().toJson(announcement);
-                fos.write(json.getBytes(StandardCharsets.UTF_8));
-            }
-        }
+     * 写入管理员缓存（按用户名去重）
+     */
+    private void putAdmin(Admin admin) {
+        admins.put(admin);
     }
 
+    private void markAdminDirty(Admin admin) {
+        persistenceWriter.markDirty(EntityType.ADMIN, admin.getUsername(), admin);
+    }
+
+    // ====================== 公告数据操作 ======================
     /**
      * 获取所有公告
      */
     public List<Announcement> getAllAnnouncements() {
-        return Collections.unmodifiableList(announcements);
+        return announcements.values();
+    }
+
+    /**
+     * 分页查询公告（排序：time=创建时间、title=标题；过滤：from/to 创建时间）
+     * @throws IllegalArgumentException 排序字段或游标无效
+     */
+    public Page<Announcement> queryAnnouncements(PageQuery query) {
+        Predicate<Announcement> filter = query.from() != null || query.to() != null
+                ? announcement -> query.matchesTime(announcement.getCreateTime()) : null;
+        return sortIndex(announcementSorts, query).page(announcements.snapshot(), query, filter);
     }
 
     /**
      * 保存单个公告（新增/修改）
      */
     public void saveAnnouncement(Announcement announcement) {
-        // 自动生成ID（新增时）
-        if (announcement.getId() <= 0) {
-            // 这里应该从数据库自动递增获取ID，暂时设为1表示新增
-            announcement.setId(1);
+        // 自动生成ID（新增时）：SQL加载的公告沿用数据库ID，新建公告生成UUID
+        if (announcement.getIdString() == null || announcement.getIdString().isEmpty()) {
+            announcement.setId(announcement.getId() > 0
+                    ? String.valueOf(announcement.getId())
+                    : UUID.randomUUID().toString().replace("-", ""));
         }
         // 自动填充创建时间
         if (announcement.getCreateTime() == null) {
             announcement.setCreateTime(TimeUtils.getCurrentTimeStr());
         }
+        // 分配序号：覆盖已有公告时沿用原序号，新公告取下一个序号
+        if (announcement.getSeq() <= 0) {
+            Announcement existing = announcements.get(announcement.getIdString());
+            if (existing != null && existing.getSeq() > 0) {
+                announcement.setSeq(existing.getSeq());
+            } else {
+                // 序号持久化，删除最新公告后重启也不会复用（否则已读过该序号的玩家会错过新公告）
+                announcement.setSeq(announcementSeq.incrementAndGet());
+                persistenceWriter.markDirty(EntityType.SETTING, "announcement_seq", announcementSeq.get());
+            }
+        }
 
-        // 更新缓存：先移除旧的，再添加新的
-        announcements.removeIf(a -> a.getId() == announcement.getId());
-        announcements.add(announcement);
+        // 更新缓存：同一公告对象已在缓存中时无需发布新快照（常见于原地修改已读状态）
+        if (announcements.get(announcement.getIdString()) != announcement) {
+            announcements.put(announcement);
+        }
 
-        // 立即保存到文件（避免内存数据丢失）
+        // 标记为脏，由后台线程合并落盘
+        persistenceWriter.markDirty(EntityType.ANNOUNCEMENT, announcement.getIdString(), announcement);
+    }
+
+    /**
+     * 删除公告
+     */
+    public boolean deleteAnnouncement(String id) {
+        boolean removed = announcements.remove(id) != null;
+        if (removed) {
+            persistenceWriter.markDeleted(EntityType.ANNOUNCEMENT, id);
+        }
+        return removed;
+    }
+
+    // ====================== 公告已读进度 ======================
+    /**
+     * 玩家的未读公告（已发送、序号在已读水位之上且未单独读过，按序号升序）
+     * 从按序号排序的索引中二分定位水位，只遍历水位之上的公告
+     * 已读进度加载失败时返回空列表（本次不推送，避免把旧公告当作未读重新推送）
+     */
+    public List<Announcement> getUnreadAnnouncements(String playerUUID) {
+        AnnouncementReadMark mark;
         try {
-            File announcementsDir = new File(dataFolder, "announcements");
-            if (!announcementsDir.exists()) announcementsDir.mkdirs();
-            
-            File annFile = new File(announcementsDir, announcement.getIdString() + ".json");
-            try (FileOutputStream fos = new FileOutputStream(annFile)) {
-                String json = GsonUtils.getGson().toJson(announcement);
-                fos.write(json.getBytes(StandardCharsets.UTF_8));
+            mark = getReadMark(playerUUID);
+        } catch (IOException e) {
+            plugin.getLogger().severe("❌ 加载公告已读进度失败：" + playerUUID + " → " + e.getMessage());
+            return new ArrayList<>();
+        }
+        AnnouncementIndex index = announcementIndex();
+        List<Announcement> unread = new ArrayList<>();
+        for (int i = index.firstAfter(mark.getReadUpTo()); i < index.seqs().length; i++) {
+            Announcement announcement = index.announcements()[i];
+            if (announcement.isSent() && !mark.isRead(index.seqs()[i])) {
+                unread.add(announcement);
+            }
+        }
+        return unread;
+    }
+
+    /**
+     * 把一批公告标记为玩家已读（只写入该玩家的一条已读进度）
+     * 同一玩家的读-改-写串行执行；已读进度加载失败时不写入（不能用空进度覆盖已保存的进度）
+     */
+    public void markAnnouncementsRead(String playerUUID, Collection<Announcement> read) {
+        if (playerUUID == null || read.isEmpty()) {
+            return;
+        }
+        long[] seqs = read.stream().mapToLong(Announcement::getSeq).filter(seq -> seq > 0).sorted().toArray();
+        AnnouncementIndex index = announcementIndex();
+        synchronized (readMarkLockFor(playerUUID)) {
+            AnnouncementReadMark current;
+            try {
+                current = getReadMark(playerUUID);
+            } catch (IOException e) {
+                plugin.getLogger().severe("❌ 加载公告已读进度失败，本次不更新：" + playerUUID + " → " + e.getMessage());
+                return;
             }
+            AnnouncementReadMark updated = current.withRead(seqs, index::contains, index.maxSeq());
+            readMarkCache.put(playerUUID, updated);
+            persistenceWriter.markDirty(EntityType.READ_MARK, playerUUID, updated);
+        }
+    }
+
+    /**
+     * 玩家的已读进度（缓存未命中时从存储加载，不存在时为空进度）
+     * @throws IOException 加载失败
+     */
+    public AnnouncementReadMark getReadMark(String playerUUID) throws IOException {
+        try {
+            return readMarkCache.get(playerUUID, this::hydrateReadMark);
+        } catch (IOException e) {
+            throw e;
         } catch (Exception e) {
-            plugin.getLogger().severe("❌ 保存公告失败：" + e.getMessage());
+            throw new IOException(e.getMessage(), e);
         }
     }
 
+    private Object readMarkLockFor(String playerUUID) {
+        int hash = playerUUID.hashCode();
+        return readMarkLocks[(hash ^ (hash >>> 16)) & (readMarkLocks.length - 1)];
+    }
+
+    private AnnouncementReadMark hydrateReadMark(String playerUUID) throws IOException {
+        Object unflushed = persistenceWriter.getUnflushed(EntityType.READ_MARK, playerUUID);
+        if (unflushed instanceof AnnouncementReadMark mark) {
+            return mark;
+        }
+        byte[] data = backend.get(EntityType.READ_MARK, playerUUID);
+        AnnouncementReadMark mark = data != null
+                ? GsonUtils.getGson().fromJson(new String(data, StandardCharsets.UTF_8), AnnouncementReadMark.class)
+                : null;
+        return mark != null ? mark : AnnouncementReadMark.empty(playerUUID);
+    }
+
     /**
-     * 删除公告
+     * 按序号排序的公告索引（公告快照版本变化时重建，读取无锁）
      */
-    public boolean deleteAnnouncement(String id) {
-        boolean removed = announcements.removeIf(a -> a.getIdString().equals(id));
-        if (removed) {
-            // 删除文件
-            File annFile = new File(dataFolder, "announcements/" + id + ".json");
-            if (annFile.exists()) {
-                annFile.delete();
+    private AnnouncementIndex announcementIndex() {
+        SnapshotMap.Snapshot<String, Announcement> snapshot = announcements.snapshot();
+        AnnouncementIndex index = announcementIndex;
+        if (index.version() != snapshot.version()) {
+            index = AnnouncementIndex.of(snapshot);
+            announcementIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * 旧数据转换（加载完成后执行一次）
+     * 1. 为没有序号的公告按创建时间分配序号
+     * 2. 把各公告中的 readStatus（玩家UUID -> 是否已读）转换为每个玩家一条已读进度，转换后清空旧字段
+     */
+    private void migrateLegacyAnnouncements() throws IOException {
+        List<Announcement> all = announcements.values();
+        long maxSeq = Math.max(announcementSeq.get(), all.stream().mapToLong(Announcement::getSeq).max().orElse(0));
+        Map<String, Announcement> changed = new LinkedHashMap<>();
+        List<Announcement> unnumbered = all.stream()
+                .filter(a -> a.getSeq() <= 0)
+                .sorted(Comparator.comparing(Announcement::getCreateTime, Comparator.nullsFirst(Comparator.naturalOrder()))
+                        .thenComparing(Announcement::getIdString))
+                .toList();
+        for (Announcement announcement : unnumbered) {
+            announcement.setSeq(++maxSeq);
+            changed.put(announcement.getIdString(), announcement);
+        }
+        if (maxSeq != announcementSeq.get()) {
+            announcementSeq.set(maxSeq);
+            persistenceWriter.markDirty(EntityType.SETTING, "announcement_seq", maxSeq);
+        }
+
+        Map<String, List<Long>> readByPlayer = new HashMap<>();
+        for (Announcement announcement : all) {
+            Map<String, Boolean> legacy = announcement.getReadStatus();
+            if (legacy == null) {
+                continue;
             }
+            legacy.forEach((uuid, read) -> {
+                if (Boolean.TRUE.equals(read)) {
+                    readByPlayer.computeIfAbsent(uuid, k -> new ArrayList<>()).add(announcement.getSeq());
+                }
+            });
+            announcement.setReadStatus(null);
+            changed.put(announcement.getIdString(), announcement);
         }
-        return removed;
+        if (changed.isEmpty()) {
+            return;
+        }
+        // 重新发布快照（序号变化需要重建索引），并写出新格式
+        announcements.putAll(changed.values());
+        changed.values().forEach(a -> persistenceWriter.markDirty(EntityType.ANNOUNCEMENT, a.getIdString(), a));
+
+        if (!readByPlayer.isEmpty()) {
+            // 上次转换中途中断时可能已有部分已读进度，在其基础上合并
+            boolean hasMarks = backend.count(EntityType.READ_MARK) > 0;
+            AnnouncementIndex index = announcementIndex();
+            for (Map.Entry<String, List<Long>> entry : readByPlayer.entrySet()) {
+                String uuid = entry.getKey();
+                // 加载失败时中止转换（不能用空进度覆盖已保存的进度）
+                AnnouncementReadMark base = hasMarks ? getReadMark(uuid) : AnnouncementReadMark.empty(uuid);
+                AnnouncementReadMark mark = base.withRead(entry.getValue().stream().mapToLong(Long::longValue).sorted().toArray(),
+                        index::contains, index.maxSeq());
+                readMarkCache.put(uuid, mark);
+                persistenceWriter.markDirty(EntityType.READ_MARK, uuid, mark);
+            }
+        }
+        plugin.getLogger().info("✅ 公告已转换为序号 + 玩家已读水位：分配序号 " + unnumbered.size()
+                + " 个，转换已读状态 " + readByPlayer.size() + " 名玩家");
     }
 
     /**
      * 获取待发送的定时公告
      */
     public List<Announcement> getTimedAnnouncements() {
-        return announcements.stream()
+        return announcements.values().stream()
                             .filter(a -> !a.isSent() && a.getSendTime() != null && !a.getSendTime().isEmpty())
                             .collect(Collectors.toList());
     }
 
     // ====================== 补偿数据操作 ======================
     /**
-     * 加载补偿数据
-     */
-    private void loadCompensations() throws IOException {
-        File compensationsDir = new File(dataFolder, "compensations");
-        if (!compensationsDir.exists()) return;
-
-        Files.list(Paths.get(compensationsDir.getPath()))
-             .filter(path -> path.toString().endsWith(".json"))
-             .forEach(path -> {
-                 try (FileInputStream fis = new FileInputStream(path.toFile())) {
-                     String json = new String(fis.readAllBytes(), StandardCharsets.UTF_8);
-                     Compensation compensation = GsonUtils.getGson().fromJson(json, Compensation.class);
-                     if (compensation != null && compensation.getId() > 0) {
-                         compensations.add(compensation);
-                     }
-                 } catch (Exception e) {
-                     plugin.getLogger().warning("⚠️ 加载补偿文件失败：" + path.getFileName() + " → " + e.getMessage());
-                 }
-             });
-    }
-
-    /**
-     * 保存所有补偿数据
-     */
-    private void saveCompensations() throws IOException {
-        File compensationsDir = new File(dataFolder, "compensations");
-        if (!compensationsDir.exists()) compensationsDir.mkdirs();
-
-        // 清空旧文件
-        Files.list(Paths.get(compensationsDir.getPath()))
-             .filter(path -> path.toString().endsWith(".json"))
-             .forEach(path -> {
-                 try {
-                     Files.delete(path);
-                 } catch (IOException e) {
-                     plugin.getLogger().warning("⚠️ 删除旧补偿文件失败：" + path.getFileName());
-                 }
-             });
-
-        // 保存新数据
-        for (Compensation compensation : compensations) {
-            File compFile = new File(compensationsDir, compensation.getIdString() + ".json");
-            try (FileOutputStream fos = new FileOutputStream(compFile)) {
-                String json = GsonUtils.getGson().toJson(compensation);
-                fos.write(json.getBytes(StandardCharsets.UTF_8));
-            }
-        }
+     * 获取所有补偿
+     */
+    public List<Compensation> getAllCompensations() {
+        return compensations.values();
     }
 
     /**
-     * 获取所有补偿
+     * 分页查询补偿（排序：time=创建时间、title=标题；过滤：compensationId、from/to 创建时间）
+     * @throws IllegalArgumentException 排序字段或游标无效
      */
-    public List<Compensation> getAllCompensations() {
-        return Collections.unmodifiableList(compensations);
+    public Page<Compensation> queryCompensations(PageQuery query) {
+        Predicate<Compensation> filter = query.compensationId() != null || query.from() != null || query.to() != null
+                ? compensation -> (query.compensationId() == null || query.compensationId().equals(compensation.getIdString()))
+                        && query.matchesTime(compensation.getCreateTime())
+                : null;
+        return sortIndex(compensationSorts, query).page(compensations.snapshot(), query, filter);
     }
 
     /**
      * 保存单个补偿
+     * 更新已有补偿时沿用原有的领取位图（忽略请求中的 claimed / claimStatus，避免已领取的玩家再次领取）；
+     * 新建补偿时请求中的旧版 claimStatus 同样转换为位图
      */
     public void saveCompensation(Compensation compensation) {
-        if (compensation.getId() <= 0) {
-            compensation.setId(1);
-        }
         if (compensation.getCreateTime() == null) {
             compensation.setCreateTime(TimeUtils.getCurrentTimeStr());
         }
-
-        compensations.removeIf(c -> c.getId() == compensation.getId());
-        compensations.add(compensation);
-
-        try {
-            File compensationsDir = new File(dataFolder, "compensations");
-            if (!compensationsDir.exists()) compensationsDir.mkdirs();
-            
-            File compFile = new File(compensationsDir, compensation.getIdString() + ".json");
-            try (FileOutputStream fos = new FileOutputStream(compFile)) {
-                String json = GsonUtils.getGson().toJson(compensation);
-                fos.write(json.getBytes(StandardCharsets.UTF_8));
-            }
-        } catch (Exception e) {
-            plugin.getLogger().severe("❌ 保存补偿失败：" + e.getMessage());
+        ensureCompensationId(compensation);
+        Compensation existing = compensations.get(compensation.getIdString());
+        if (existing != null && existing != compensation) {
+            // 共用同一个位图：替换期间对旧对象的领取同样生效
+            compensation.setClaimed(existing.getClaimed());
+            compensation.setClaimStatus(null);
+        } else if (compensation.getClaimStatus() != null) {
+            migrateLegacyClaims(List.of(compensation));
         }
+
+        // 按补偿ID覆盖旧缓存（O(1)）
+        putCompensation(compensation);
+        pendingCompensations.onSaved(compensation);
+        persistenceWriter.markDirty(EntityType.COMPENSATION, compensation.getIdString(), compensation);
     }
 
     /**
      * 删除补偿
      */
     public boolean deleteCompensation(String id) {
-        boolean removed = compensations.removeIf(c -> c.getIdString().equals(id));
+        boolean removed = compensations.remove(id) != null;
         if (removed) {
-            File compFile = new File(dataFolder, "compensations/" + id + ".json");
-            if (compFile.exists()) {
-                compFile.delete();
-            }
+            pendingCompensations.onDeleted(id);
+            persistenceWriter.markDeleted(EntityType.COMPENSATION, id);
         }
         return removed;
     }
@@ -525,68 +1029,159 @@ public class DataManager {
      * 根据ID获取补偿
      */
     public Compensation getCompensationById(String id) {
-        return compensations.stream()
-                            .filter(c -> c.getIdString().equals(id))
-                            .findFirst()
-                            .orElse(null);
+        return compensations.get(id);
+    }
+
+    /**
+     * 提交一批已在位图中标记的领取（由 ClaimService 在玩家锁内调用）
+     * 更新待领取索引，补偿一次性入队写入器，领取日志一次追加
+     */
+    void commitClaims(int playerOrdinal, List<Compensation> claimed, List<ClaimLog> logs) {
+        Map<String, Compensation> dirty = new LinkedHashMap<>();
+        for (Compensation compensation : claimed) {
+            pendingCompensations.onClaimed(compensation, playerOrdinal);
+            dirty.put(compensation.getIdString(), compensation);
+        }
+        persistenceWriter.markDirtyAll(EntityType.COMPENSATION, dirty);
+        compensationClaimVersion.incrementAndGet();
+        logs.forEach(DataManager::prepareClaimLog);
+        // 领取已经生效，日志写入失败时重试一次（失败的部分已从分段中截断，不会重复）
+        try {
+            claimLogStore.appendAll(logs);
+        } catch (IOException first) {
+            try {
+                claimLogStore.appendAll(logs);
+            } catch (IOException e) {
+                plugin.getLogger().severe("❌ 领取已生效但领取日志写入失败（" + logs.size() + " 条）："
+                        + GsonUtils.getCompactGson().toJson(logs));
+            }
+        }
+    }
+
+    public ClaimService getClaimService() {
+        return claimService;
+    }
+
+    /**
+     * 玩家是否有待领取的补偿（倒排索引，与补偿总数无关）
+     */
+    public boolean hasPendingCompensations(String playerUUID) {
+        return pendingCompensations.hasPending(playerOrdinals.find(playerUUID));
     }
 
-    // ====================== 白名单数据操作 ======================
     /**
-     * 加载白名单数据
-     */
-    private void loadWhitelistEntries() throws IOException {
-        File whitelistDir = new File(dataFolder, "whitelist");
-        if (!whitelistDir.exists()) return;
-
-        Files.list(Paths.get(whitelistDir.getPath()))
-             .filter(path -> path.toString().endsWith(".json"))
-             .forEach(path -> {
-                 try (FileInputStream fis = new FileInputStream(path.toFile())) {
-                     String json = new String(fis.readAllBytes(), StandardCharsets.UTF_8);
-                     WhitelistEntry entry = GsonUtils.getGson().fromJson(json, WhitelistEntry.class);
-                     if (entry != null && entry.getUuid() != null) {
-                         whitelistEntries.add(entry);
-                     }
-                 } catch (Exception e) {
-                     plugin.getLogger().warning("⚠️ 加载白名单文件失败：" + path.getFileName() + " → " + e.getMessage());
-                 }
-             });
-    }
-
-    /**
-     * 保存所有白名单数据
-     */
-    private void saveWhitelistEntries() throws IOException {
-        File whitelistDir = new File(dataFolder, "whitelist");
-        if (!whitelistDir.exists()) whitelistDir.mkdirs();
-
-        // 清空旧文件
-        Files.list(Paths.get(whitelistDir.getPath()))
-             .filter(path -> path.toString().endsWith(".json"))
-             .forEach(path -> {
-                 try {
-                     Files.delete(path);
-                 } catch (IOException e) {
-                     plugin.getLogger().warning("⚠️ 删除旧白名单文件失败：" + path.getFileName());
-                 }
-             });
-
-        // 保存新数据（按UUID命名）
-        for (WhitelistEntry entry : whitelistEntries) {
-            File entryFile = new File(whitelistDir, entry.getUuid() + ".json");
-            try (FileOutputStream fos = new FileOutputStream(entryFile)) {
-                String json = GsonUtils.getGson().toJson(entry);
-                fos.write(json.getBytes(StandardCharsets.UTF_8));
+     * 玩家待领取的补偿（按创建顺序，开销与该玩家的待领取数量成正比）
+     */
+    public List<Compensation> getPendingCompensations(String playerUUID) {
+        return pendingCompensations.pending(playerOrdinals.find(playerUUID));
+    }
+
+    /**
+     * 玩家序号表（单个补偿的领取状态：先取序号，再做位图查询）
+     */
+    public PlayerOrdinals getPlayerOrdinals() {
+        return playerOrdinals;
+    }
+
+    /**
+     * 把旧版 claimStatus（玩家UUID -> 是否领取）转换为序号位图，转换后清空旧字段
+     * 所有补偿涉及的新玩家一次性分配序号（一次文件写入）
+     * @return 发生了转换的补偿（需重新写出）
+     * @throws UncheckedIOException 写入序号文件失败（此时不能丢弃旧状态，中止加载）
+     */
+    private List<Compensation> migrateLegacyClaims(List<Compensation> loaded) {
+        List<Compensation> migrated = new ArrayList<>();
+        Set<UUID> players = new HashSet<>();
+        for (Compensation compensation : loaded) {
+            Map<String, Boolean> legacy = compensation.getClaimStatus();
+            if (legacy == null) {
+                continue;
             }
+            migrated.add(compensation);
+            legacy.forEach((uuid, claimed) -> {
+                UUID parsed = PlayerOrdinals.parse(uuid);
+                if (parsed == null) {
+                    plugin.getLogger().warning("⚠️ 补偿 " + compensation.getIdString() + " 中有无效的玩家UUID，已忽略：" + uuid);
+                } else if (Boolean.TRUE.equals(claimed)) {
+                    players.add(parsed);
+                }
+            });
         }
+        if (migrated.isEmpty()) {
+            return migrated;
+        }
+
+        Map<UUID, Integer> ordinals;
+        try {
+            ordinals = playerOrdinals.assignAll(players);
+        } catch (IOException e) {
+            throw new UncheckedIOException("分配玩家序号失败：" + e.getMessage(), e);
+        }
+        for (Compensation compensation : migrated) {
+            compensation.getClaimStatus().forEach((uuid, claimed) -> {
+                UUID parsed = PlayerOrdinals.parse(uuid);
+                if (parsed != null && Boolean.TRUE.equals(claimed)) {
+                    compensation.markClaimed(ordinals.get(parsed));
+                }
+            });
+            compensation.setClaimStatus(null);
+        }
+        plugin.getLogger().info("✅ 已把 " + migrated.size() + " 个补偿的领取状态转换为位图（涉及 " + players.size() + " 名玩家）");
+        return migrated;
     }
 
+    /**
+     * 写入补偿缓存
+     */
+    private void putCompensation(Compensation compensation) {
+        ensureCompensationId(compensation);
+        compensations.put(compensation);
+    }
+
+    /**
+     * 缺少字符串ID时补全（SQL加载的补偿沿用数据库ID，新建补偿生成UUID）
+     */
+    private static void ensureCompensationId(Compensation compensation) {
+        if (compensation.getIdString() == null || compensation.getIdString().isEmpty()) {
+            compensation.setId(compensation.getId() > 0
+                    ? String.valueOf(compensation.getId())
+                    : UUID.randomUUID().toString().replace("-", ""));
+        }
+    }
+
+    // ====================== 白名单数据操作 ======================
     /**
      * 获取所有白名单
      */
     public List<WhitelistEntry> getAllWhitelistEntries() {
-        return Collections.unmodifiableList(whitelistEntries);
+        return whitelistEntries.values();
+    }
+
+    /**
+     * 分页查询白名单（排序：time=添加时间、name=玩家名；过滤：player 玩家名/UUID、from/to 添加时间）
+     * @throws IllegalArgumentException 排序字段或游标无效
+     */
+    public Page<WhitelistEntry> queryWhitelistEntries(PageQuery query) {
+        return sortIndex(whitelistSorts, query).page(whitelistEntries.snapshot(), query, whitelistFilter(query));
+    }
+
+    /**
+     * 遍历当前白名单快照中符合过滤条件的条目（用于导出）
+     * @param query 过滤条件（player、from/to），为 null 表示全部
+     */
+    public void forEachWhitelistEntry(PageQuery query, Consumer<WhitelistEntry> consumer) {
+        Predicate<WhitelistEntry> filter = query != null ? whitelistFilter(query) : null;
+        for (WhitelistEntry entry : whitelistEntries.values()) {
+            if (filter == null || filter.test(entry)) {
+                consumer.accept(entry);
+            }
+        }
+    }
+
+    private static Predicate<WhitelistEntry> whitelistFilter(PageQuery query) {
+        return query.player() != null || query.from() != null || query.to() != null
+                ? entry -> query.matchesPlayer(entry.getPlayerName(), entry.getUuid()) && query.matchesTime(entry.getAddTime())
+                : null;
     }
 
     /**
@@ -598,35 +1193,18 @@ public class DataManager {
             entry.setAddTime(TimeUtils.getCurrentTimeStr());
         }
 
-        // 先移除旧的（避免重复）
-        whitelistEntries.removeIf(e -> e.getUuid().equals(entry.getUuid()));
-        whitelistEntries.add(entry);
-
-        // 立即保存
-        try {
-            File whitelistDir = new File(dataFolder, "whitelist");
-            if (!whitelistDir.exists()) whitelistDir.mkdirs();
-            
-            File entryFile = new File(whitelistDir, entry.getUuid() + ".json");
-            try (FileOutputStream fos = new FileOutputStream(entryFile)) {
-                String json = GsonUtils.getGson().toJson(entry);
-                fos.write(json.getBytes(StandardCharsets.UTF_8));
-            }
-        } catch (Exception e) {
-            plugin.getLogger().severe("❌ 添加白名单失败：" + e.getMessage());
-        }
+        // 按UUID覆盖旧的（避免重复）
+        putWhitelistEntry(entry);
+        persistenceWriter.markDirty(EntityType.WHITELIST, entry.getUuid(), entry);
     }
 
     /**
      * 删除白名单
      */
     public boolean deleteWhitelistEntry(String uuid) {
-        boolean removed = whitelistEntries.removeIf(e -> e.getUuid().equals(uuid));
+        boolean removed = whitelistEntries.remove(uuid) != null;
         if (removed) {
-            File entryFile = new File(dataFolder, "whitelist/" + uuid + ".json");
-            if (entryFile.exists()) {
-                entryFile.delete();
-            }
+            persistenceWriter.markDeleted(EntityType.WHITELIST, uuid);
         }
         return removed;
     }
@@ -635,33 +1213,14 @@ public class DataManager {
      * 检查玩家是否在白名单中
      */
     public boolean isPlayerInWhitelist(String uuid) {
-        return whitelistEntries.stream()
-                               .anyMatch(e -> e.getUuid().equals(uuid));
-    }
-
-    /**
-     * 加载白名单启用状态
-     */
-    private void loadWhitelistEnabledStatus() throws IOException {
-        File statusFile = new File(dataFolder, "whitelist_enabled.json");
-        if (!statusFile.exists()) return;
-
-        try (FileInputStream fis = new FileInputStream(statusFile)) {
-            String json = new String(fis.readAllBytes(), StandardCharsets.UTF_8);
-            // 简单JSON解析：{"enabled":true}
-            whitelistEnabled = GsonUtils.getGson().fromJson(json, Boolean.class);
-        }
+        return whitelistEntries.containsKey(uuid);
     }
 
     /**
-     * 保存白名单启用状态
+     * 写入白名单缓存（按玩家UUID去重）
      */
-    private void saveWhitelistEnabledStatus() throws IOException {
-        File statusFile = new File(dataFolder, "whitelist_enabled.json");
-        try (FileOutputStream fos = new FileOutputStream(statusFile)) {
-            String json = GsonUtils.getGson().toJson(whitelistEnabled);
-            fos.write(json.getBytes(StandardCharsets.UTF_8));
-        }
+    private void putWhitelistEntry(WhitelistEntry entry) {
+        whitelistEntries.put(entry);
     }
 
     /**
@@ -673,315 +1232,532 @@ public class DataManager {
 
     public void setWhitelistEnabled(boolean enabled) {
         this.whitelistEnabled = enabled;
-        // 立即保存状态
-        try {
-            saveWhitelistEnabledStatus();
-        } catch (Exception e) {
-            plugin.getLogger().severe("❌ 保存白名单状态失败：" + e.getMessage());
-        }
+        whitelistSettingVersion.incrementAndGet();
+        persistenceWriter.markDirty(EntityType.SETTING, "whitelist_enabled", enabled);
     }
 
     // ====================== 领取日志数据操作 ======================
     /**
-     * 加载领取日志
-     */
-    private void loadClaimLogs() throws IOException {
-        File logsDir = new File(dataFolder, "logs");
-        if (!logsDir.exists()) return;
-
-        Files.list(Paths.get(logsDir.getPath()))
-             .filter(path -> path.toString().endsWith(".json"))
-             .forEach(path -> {
-                 try (FileInputStream fis = new FileInputStream(path.toFile())) {
-                     String json = new String(fis.readAllBytes(), StandardCharsets.UTF_8);
-                     ClaimLog log = GsonUtils.getGson().fromJson(json, ClaimLog.class);
-                     if (log != null && log.getId() > 0) {
-                         claimLogs.add(log);
-                     }
-                 } catch (Exception e) {
-                     plugin.getLogger().warning("⚠️ 加载日志文件失败：" + path.getFileName() + " → " + e.getMessage());
-                 }
-             });
-    }
-
-    /**
-     * 保存所有领取日志
-     */
-    private void saveClaimLogs() throws IOException {
-        File logsDir = new File(dataFolder, "logs");
-        if (!logsDir.exists()) logsDir.mkdirs();
-
-        // 清空旧文件
-        Files.list(Paths.get(logsDir.getPath()))
-             .filter(path -> path.toString().endsWith(".json"))
-             .forEach(path -> {
-                 try {
-                     Files.delete(path);
-                 } catch (IOException e) {
-                     plugin.getLogger().warning("⚠️ 删除旧日志文件失败：" + path.getFileName());
-                 }
-             });
-
-        // 保存新数据
-        for (ClaimLog log : claimLogs) {
-            File logFile = new File(logsDir, log.getIdString() + ".json");
-            try (FileOutputStream fos = new FileOutputStream(logFile)) {
-                String json = GsonUtils.getGson().toJson(log);
-                fos.write(json.getBytes(StandardCharsets.UTF_8));
+     * 获取所有领取日志
+     */
+    public List<ClaimLog> getAllClaimLogs() {
+        return getClaimLogs(0);
+    }
+
+    /**
+     * 获取最新的若干条领取日志（按时间顺序）
+     * 优先从内存最近窗口返回，超出窗口时跨分段读取
+     * @param limit 最大条数，不大于 0 表示全部
+     */
+    public List<ClaimLog> getClaimLogs(int limit) {
+        return claimLogStore.readLatest(limit, null);
+    }
+
+    /**
+     * 分页查询领取日志（按领取顺序；过滤：player 玩家名/UUID、compensationId、from/to 领取时间）
+     * 游标为日志在分段存储中的位置，翻页只读取游标之前/之后的分段；
+     * 总数为日志总数，带过滤条件时不统计匹配数（需要扫描全部分段）
+     * @throws IllegalArgumentException 排序字段或游标无效
+     */
+    public Page<ClaimLog> queryClaimLogs(PageQuery query) {
+        if (query.sort() != null && !"time".equals(query.sort())) {
+            throw new IllegalArgumentException("领取日志只支持按时间排序（sort=time）");
+        }
+        ClaimLogStore.Position after = null;
+        if (query.after() != null) {
+            String[] cursor = PageQuery.decodeCursor(query.after());
+            try {
+                after = new ClaimLogStore.Position(Long.parseLong(cursor[0]), Integer.parseInt(cursor[1]));
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("after游标格式错误");
             }
         }
+        Predicate<ClaimLog> filter = claimLogFilter(query);
+
+        long total = claimLogStore.count();
+        List<ClaimLogStore.Located> located = claimLogStore.readPage(after, query.limit(), query.descending(), filter, query.from());
+        boolean more = located.size() > query.limit();
+        int size = Math.min(located.size(), query.limit());
+        List<ClaimLog> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(located.get(i).log());
+        }
+        String next = null;
+        if (more && size > 0) {
+            ClaimLogStore.Position last = located.get(size - 1).position();
+            next = PageQuery.encodeCursor(String.valueOf(last.segment()), String.valueOf(last.line()));
+        }
+        return new Page<>(items, next, total, filter == null ? total : null);
     }
 
     /**
-     * 获取所有领取日志
+     * 按时间顺序逐条遍历符合过滤条件的领取日志（跨分段流式读取，不整体载入内存，用于导出）
+     * @param query 过滤条件（player、compensationId、from/to），为 null 表示全部
      */
-    public List<ClaimLog> getAllClaimLogs() {
-        return Collections.unmodifiableList(claimLogs);
+    public void forEachClaimLog(PageQuery query, ClaimLogStore.LogConsumer consumer) {
+        Predicate<ClaimLog> filter = query != null ? claimLogFilter(query) : null;
+        claimLogStore.forEach(query != null ? query.from() : null, log -> {
+            if (filter == null || filter.test(log)) {
+                consumer.accept(log);
+            }
+        });
+    }
+
+    private static Predicate<ClaimLog> claimLogFilter(PageQuery query) {
+        return query.hasFilter()
+                ? log -> query.matchesPlayer(log.getPlayerName(), log.getPlayerUUID())
+                        && (query.compensationId() == null || query.compensationId().equals(log.getCompensationId()))
+                        && query.matchesTime(log.getClaimTime())
+                : null;
+    }
+
+    /**
+     * 领取日志总数
+     */
+    public long getClaimLogCount() {
+        return claimLogStore.count();
+    }
+
+    /**
+     * 领取日志分段存储（跨分段遍历等）
+     */
+    public ClaimLogStore getClaimLogStore() {
+        return claimLogStore;
     }
 
     /**
      * 添加领取日志
+     * @throws UncheckedIOException 写入失败（日志未写入，可重试）
      */
     public void addClaimLog(ClaimLog log) {
+        prepareClaimLog(log);
+        try {
+            claimLogStore.append(log);
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入领取日志失败：" + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 补全领取日志的ID与领取时间
+     */
+    private static void prepareClaimLog(ClaimLog log) {
         if (log.getId() <= 0) {
             log.setId(1);
         }
+        // 日志文件按字符串ID命名，缺失时生成（避免所有日志写入同一个 null.json）
+        if (log.getIdString() == null) {
+            log.setId(UUID.randomUUID().toString().replace("-", ""));
+        }
         if (log.getClaimTime() == null) {
             log.setClaimTime(TimeUtils.getCurrentTimeStr());
         }
-
-        claimLogs.add(log);
-
-        // 立即保存
-        try {
-            File logsDir = new File(dataFolder, "logs");
-            if (!logsDir.exists()) logsDir.mkdirs();
-            
-            File logFile = new File(logsDir, log.getIdString() + ".json");
-            try (FileOutputStream fos = new FileOutputStream(logFile)) {
-                String json = GsonUtils.getGson().toJson(log);
-                fos.write(json.getBytes(StandardCharsets.UTF_8));
-            }
-        } catch (Exception e) {
-            plugin.getLogger().severe("❌ 添加领取日志失败：" + e.getMessage());
-        }
     }
 
     // ====================== 用户数据操作 ======================
     /**
-     * 加载用户数据
-     */
-    private void loadUsers() throws IOException {
-        File usersDir = new File(dataFolder, "users");
-        if (!usersDir.exists()) return;
-
-        Files.list(Paths.get(usersDir.getPath()))
-             .filter(path -> path.toString().endsWith(".json"))
-             .forEach(path -> {
-                 try (FileInputStream fis = new FileInputStream(path.toFile())) {
-                     String json = new String(fis.readAllBytes(), StandardCharsets.UTF_8);
-                     User user = GsonUtils.getGson().fromJson(json, User.class);
-                     if (user != null && user.getUsername() != null) {
-                         users.add(user);
-                     }
-                 } catch (Exception e) {
-                     plugin.getLogger().warning("⚠️ 加载用户文件失败：" + path.getFileName() + " → " + e.getMessage());
-                 }
-             });
-    }
-
-    /**
-     * 保存所有用户数据
-     */
-    private void saveUsers() throws IOException {
-        File usersDir = new File(dataFolder, "users");
-        if (!usersDir.exists()) usersDir.mkdirs();
-
-        // 清空旧文件
-        Files.list(Paths.get(usersDir.getPath()))
-             .filter(path -> path.toString().endsWith(".json"))
-             .forEach(path -> {
-                 try {
-                     Files.delete(path);
-                 } catch (IOException e) {
-                     plugin.getLogger().warning("⚠️ 删除旧用户文件失败：" + path.getFileName());
-                 }
-             });
-
-        // 保存新数据（按用户名命名文件）
-        for (User user : users) {
-            File userFile = new File(usersDir, user.getUsername() + ".json");
-            try (FileOutputStream fos = new FileOutputStream(userFile)) {
-                String json = GsonUtils.getGson().toJson(user);
-                fos.write(json.getBytes(StandardCharsets.UTF_8));
-            }
-        }
-    }
-
-    /**
-     * 获取所有用户
+     * 获取所有用户（按需加载模式下未缓存的用户是只读副本，见 getUsers）
      */
     public List<User> getAllUsers() {
-        return Collections.unmodifiableList(users);
+        return lazyUsers ? scanAllUsers() : List.copyOf(users.values());
     }
 
     /**
      * 根据用户名获取用户
      */
     public User getUserByUsername(String username) {
-        return users.stream()
-                    .filter(user -> user.getUsername().equals(username))
-                    .findFirst()
-                    .orElse(null);
+        if (username == null) {
+            return null;
+        }
+        if (!lazyUsers) {
+            return users.get(username);
+        }
+        if (!indexedUserKeys.containsKey(username)) {
+            return null;
+        }
+        try {
+            return userCache.get(username, this::hydrateUser);
+        } catch (Exception e) {
+            plugin.getLogger().severe("❌ 加载用户失败：" + username + " → " + e.getMessage());
+            return null;
+        }
     }
 
     /**
      * 根据邮箱获取用户
      */
     public User getUserByEmail(String email) {
-        return users.stream()
-                    .filter(user -> user.getEmail().equals(email))
-                    .findFirst()
-                    .orElse(null);
+        return lookupUser(userEmailIndex, email);
     }
 
     /**
      * 根据游戏角色UUID获取用户
      */
     public User getUserByGameUUID(String gameUUID) {
-        return users.stream()
-                    .filter(user -> gameUUID.equals(user.getGameUUID()))
-                    .findFirst()
-                    .orElse(null);
+        return lookupUser(userGameUUIDIndex, gameUUID);
+    }
+
+    /**
+     * 注册新用户（putIfAbsent语义）
+     * 在同一把锁内完成用户名/邮箱唯一性校验与写入，并发注册不会同时通过"已存在"检查
+     * @return 注册结果，非 SUCCESS 时不做任何写入
+     */
+    public RegisterResult registerUser(User user) {
+        synchronized (userIndexLock) {
+            if (indexedUserKeys.containsKey(user.getUsername())) {
+                return RegisterResult.USERNAME_EXISTS;
+            }
+            if (user.getEmail() != null && userEmailIndex.containsKey(user.getEmail())) {
+                return RegisterResult.EMAIL_EXISTS;
+            }
+            indexUser(user);
+        }
+        writeUserFile(user);
+        return RegisterResult.SUCCESS;
     }
 
     /**
      * 保存用户（新增/修改）
+     * 用户须通过 getUserByUsername 等方法取得：同名用户已有另一个实例时拒绝保存（否则两个实例的修改会互相覆盖）
+     * @throws IllegalStateException 传入的不是该用户名当前的实例
      */
     public void saveUser(User user) {
-        // 更新缓存：先移除旧的，再添加新的
-        users.removeIf(u -> u.getUsername().equals(user.getUsername()));
-        users.add(user);
+        User current = currentUserInstance(user.getUsername());
+        if (current != null && current != user) {
+            throw new IllegalStateException("用户 " + user.getUsername() + " 不是当前实例（可能来自 getUsers 的只读副本），拒绝保存");
+        }
+        // 更新缓存与二级索引
+        indexUser(user);
+        writeUserFile(user);
+    }
 
-        // 立即保存到文件
-        try {
-            File usersDir = new File(dataFolder, "users");
-            if (!usersDir.exists()) usersDir.mkdirs();
-            
-            File userFile = new File(usersDir, user.getUsername() + ".json");
-            try (FileOutputStream fos = new FileOutputStream(userFile)) {
-                String json = GsonUtils.getGson().toJson(user);
-                fos.write(json.getBytes(StandardCharsets.UTF_8));
-            }
-        } catch (Exception e) {
-            plugin.getLogger().severe("❌ 保存用户失败：" + e.getMessage());
+    /**
+     * 用户名当前对应的实例（不触发加载）
+     */
+    private User currentUserInstance(String username) {
+        if (!lazyUsers) {
+            return users.get(username);
         }
+        User user = userCache.peek(username);
+        return user != null ? user : liveUser(username);
+    }
+
+    /**
+     * 标记用户需要写入 users/ 目录
+     */
+    private void writeUserFile(User user) {
+        persistenceWriter.markDirty(EntityType.USER, user.getUsername(), user);
     }
 
     /**
      * 删除用户
      */
     public boolean deleteUser(String username) {
-        boolean removed = users.removeIf(user -> user.getUsername().equals(username));
+        User user = getUserByUsername(username);
+        boolean removed = username != null && unindexUser(username);
         if (removed) {
-            // 删除文件
-            File userFile = new File(dataFolder, "users/" + username + ".json");
-            if (userFile.exists()) {
-                userFile.delete();
+            // 撤销该账户绑定角色的游戏内登录状态
+            if (user != null && user.getGameUUID() != null && plugin.getPlayerListener() != null) {
+                plugin.getPlayerListener().revokeAuthenticated(user.getGameUUID());
             }
+            persistenceWriter.markDeleted(EntityType.USER, username);
         }
         return removed;
     }
 
     /**
      * 获取所有用户
+     * 按需加载模式下未缓存的用户是只读副本：需要修改时用 getUserByUsername 重新获取
      */
     public List<User> getUsers() {
-        return new ArrayList<>(users);
+        return lazyUsers ? scanAllUsers() : new ArrayList<>(users.values());
     }
 
     /**
      * 根据QQ OpenID查找用户
      */
     public User getUserByQQOpenId(String qqOpenId) {
-        return users.stream()
-                    .filter(user -> user.getQqBinding() != null && qqOpenId.equals(user.getQqBinding().getQqOpenId()))
-                    .findFirst()
-                    .orElse(null);
+        return lookupUser(userQQOpenIdIndex, qqOpenId);
     }
 
     /**
      * 根据QQ UnionID查找用户
      */
     public User getUserByQQUnionId(String qqUnionId) {
-        return users.stream()
-                    .filter(user -> user.getQqBinding() != null && qqUnionId.equals(user.getQqBinding().getQqUnionId()))
-                    .findFirst()
-                    .orElse(null);
+        return lookupUser(userQQUnionIdIndex, qqUnionId);
+    }
+
+    // ====================== 用户索引维护 ======================
+    /**
+     * 通过二级索引查找用户（唯一键 → 用户名 → 用户）
+     */
+    private User lookupUser(Map<String, String> index, String key) {
+        if (key == null) return null;
+        String username = index.get(key);
+        return username != null ? getUserByUsername(username) : null;
+    }
+
+    /**
+     * 写入用户主表并刷新其二级索引
+     * 先按上次索引的键快照移除旧映射，再写入当前键，保证原地修改后的用户也能被正确重建索引
+     */
+    private void indexUser(User user) {
+        synchronized (userIndexLock) {
+            String username = user.getUsername();
+            if (lazyUsers) {
+                userCache.put(username, user);
+                purgeReleasedUsers();
+                liveUsers.put(username, new LiveUser(username, user, releasedUsers));
+            } else {
+                users.put(username, user);
+            }
+            indexUserKeys(username, UserKeys.of(user));
+        }
+    }
+
+    /**
+     * 刷新用户的二级索引（不涉及用户对象本身）
+     */
+    private void indexUserKeys(String username, UserKeys newKeys) {
+        synchronized (userIndexLock) {
+            UserKeys oldKeys = indexedUserKeys.get(username);
+            if (oldKeys != null) {
+                removeUserKeys(username, oldKeys);
+            }
+            putIndex(userEmailIndex, newKeys.email(), username);
+            putIndex(userGameUUIDIndex, newKeys.gameUUID(), username);
+            putIndex(userQQOpenIdIndex, newKeys.qqOpenId(), username);
+            putIndex(userQQUnionIdIndex, newKeys.qqUnionId(), username);
+            indexedUserKeys.put(username, newKeys);
+        }
+    }
+
+    /**
+     * 从主表与二级索引中移除用户
+     * @return true=用户存在并已移除
+     */
+    private boolean unindexUser(String username) {
+        synchronized (userIndexLock) {
+            if (lazyUsers) {
+                userCache.remove(username);
+                liveUsers.remove(username);
+            } else {
+                users.remove(username);
+            }
+            UserKeys oldKeys = indexedUserKeys.remove(username);
+            if (oldKeys == null) {
+                return false;
+            }
+            removeUserKeys(username, oldKeys);
+            return true;
+        }
+    }
+
+    private void removeUserKeys(String username, UserKeys keys) {
+        // 仅当索引仍指向该用户时才移除，避免误删其他用户占用的同名键
+        if (keys.email() != null) userEmailIndex.remove(keys.email(), username);
+        if (keys.gameUUID() != null) userGameUUIDIndex.remove(keys.gameUUID(), username);
+        if (keys.qqOpenId() != null) userQQOpenIdIndex.remove(keys.qqOpenId(), username);
+        if (keys.qqUnionId() != null) userQQUnionIdIndex.remove(keys.qqUnionId(), username);
+    }
+
+    private static void putIndex(Map<String, String> index, String key, String username) {
+        if (key != null) {
+            index.put(key, username);
+        }
+    }
+
+    // ====================== 用户按需加载 ======================
+    /**
+     * 缓存未命中时加载用户：优先复用仍被引用的实例（被淘汰但仍有调用方持有），其次取尚未落盘的最新状态，最后从存储后端读取
+     */
+    private User hydrateUser(String username) throws IOException {
+        User live = liveUser(username);
+        if (live != null) {
+            return live;
+        }
+        User loaded;
+        Object unflushed = persistenceWriter.getUnflushed(EntityType.USER, username);
+        if (unflushed instanceof User user) {
+            loaded = user;
+        } else {
+            byte[] data = backend.get(EntityType.USER, username);
+            loaded = data != null ? GsonUtils.getGson().fromJson(new String(data, StandardCharsets.UTF_8), User.class) : null;
+        }
+        if (loaded == null) {
+            return null;
+        }
+        // 并发加载同一用户时只登记一个实例
+        purgeReleasedUsers();
+        LiveUser registered = liveUsers.compute(username, (key, ref) ->
+                ref != null && ref.get() != null ? ref : new LiveUser(username, loaded, releasedUsers));
+        User winner = registered.get();
+        return winner != null ? winner : loaded;
+    }
+
+    private User liveUser(String username) {
+        purgeReleasedUsers();
+        LiveUser ref = liveUsers.get(username);
+        return ref != null ? ref.get() : null;
+    }
+
+    /**
+     * 清理已被回收的用户对象的弱引用
+     */
+    private void purgeReleasedUsers() {
+        Reference<? extends User> released;
+        while ((released = releasedUsers.poll()) != null) {
+            LiveUser ref = (LiveUser) released;
+            liveUsers.remove(ref.username, ref);
+        }
+    }
+
+    /**
+     * 用户对象的弱引用（记录用户名，回收后从 liveUsers 中移除）
+     */
+    private static final class LiveUser extends WeakReference<User> {
+        private final String username;
+
+        LiveUser(String username, User user, ReferenceQueue<User> queue) {
+            super(user, queue);
+            this.username = username;
+        }
     }
 
-    // ====================== 邮箱验证码数据操作 ======================
     /**
-     * 加载邮箱验证码数据
-     */
-    private void loadEmailVerificationCodes() throws IOException {
-        File codesDir = new File(dataFolder, "email_codes");
-        if (!codesDir.exists()) return;
-
-        Files.list(Paths.get(codesDir.getPath()))
-             .filter(path -> path.toString().endsWith(".json"))
-             .forEach(path -> {
-                 try (FileInputStream fis = new FileInputStream(path.toFile())) {
-                     String json = new String(fis.readAllBytes(), StandardCharsets.UTF_8);
-                     EmailVerificationCode code = GsonUtils.getGson().fromJson(json, EmailVerificationCode.class);
-                     if (code != null && code.getId() > 0) {
-                         // 只加载未过期的验证码
-                         if (!code.isExpired()) {
-                             emailVerificationCodes.add(code);
-                         }
-                     }
-                 } catch (Exception e) {
-                     plugin.getLogger().warning("⚠️ 加载邮箱验证码文件失败：" + path.getFileName() + " → " + e.getMessage());
-                 }
-             });
-    }
-
-    /**
-     * 保存所有邮箱验证码数据
-     */
-    private void saveEmailVerificationCodes() throws IOException {
-        File codesDir = new File(dataFolder, "email_codes");
-        if (!codesDir.exists()) codesDir.mkdirs();
-
-        // 清空旧文件
-        Files.list(Paths.get(codesDir.getPath()))
-             .filter(path -> path.toString().endsWith(".json"))
-             .forEach(path -> {
-                 try {
-                     Files.delete(path);
-                 } catch (IOException e) {
-                     plugin.getLogger().warning("⚠️ 删除旧邮箱验证码文件失败：" + path.getFileName());
-                 }
-             });
-
-        // 保存新数据（按UUID命名文件）
-        for (EmailVerificationCode code : emailVerificationCodes) {
-            // 只保存未过期的验证码
-            if (!code.isExpired()) {
-                File codeFile = new File(codesDir, code.getIdString() + ".json");
-                try (FileOutputStream fos = new FileOutputStream(codeFile)) {
-                    String json = GsonUtils.getGson().toJson(code);
-                    fos.write(json.getBytes(StandardCharsets.UTF_8));
+     * 按需加载模式下获取全部用户：已缓存、仍被引用或未落盘的直接使用，其余在一次遍历存储时解析
+     * 解析出的用户不放入缓存（避免冲掉热点用户），是只读副本，修改须通过 getUserByUsername 取得当前实例
+     */
+    private List<User> scanAllUsers() {
+        List<User> result = new ArrayList<>(indexedUserKeys.size());
+        Set<String> missing = new HashSet<>();
+        for (String username : indexedUserKeys.keySet()) {
+            User user = userCache.peek(username);
+            if (user == null) {
+                user = liveUser(username);
+            }
+            if (user == null && persistenceWriter.getUnflushed(EntityType.USER, username) instanceof User unflushed) {
+                user = unflushed;
+            }
+            if (user != null) result.add(user); else missing.add(username);
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+        try {
+            backend.load(EntityType.USER, null, (id, data) -> {
+                if (missing.contains(id)) {
+                    result.add(GsonUtils.getGson().fromJson(new String(data, StandardCharsets.UTF_8), User.class));
+                }
+            });
+        } catch (IOException e) {
+            plugin.getLogger().severe("❌ 遍历用户失败：" + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 估算用户唯一键索引占用的堆内存（字符串按紧凑编码计，每个哈希表条目按 48 字节计）
+     */
+    private long estimateUserIndexBytes() {
+        long bytes = 0;
+        for (Map.Entry<String, UserKeys> entry : indexedUserKeys.entrySet()) {
+            UserKeys keys = entry.getValue();
+            bytes += 48 + 32 + stringBytes(entry.getKey());
+            for (String key : new String[]{keys.email(), keys.gameUUID(), keys.qqOpenId(), keys.qqUnionId()}) {
+                if (key != null) {
+                    bytes += 48 + stringBytes(key);
                 }
             }
         }
+        return bytes;
+    }
+
+    private static long stringBytes(String value) {
+        return 40 + value.length();
+    }
+
+    private static long usedHeapMegabytes() {
+        Runtime runtime = Runtime.getRuntime();
+        return (runtime.totalMemory() - runtime.freeMemory()) / 1024 / 1024;
+    }
+
+    /**
+     * 用户缓存统计（按需加载模式下包含命中率与冷加载耗时）
+     */
+    private Map<String, Object> getUserStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", lazyUsers ? "lazy" : "eager");
+        stats.put("indexed", indexedUserKeys.size());
+        stats.put("indexKB", estimateUserIndexBytes() / 1024);
+        stats.put("heapUsedMB", usedHeapMegabytes());
+        if (lazyUsers) {
+            stats.put("cache", userCache.getStats());
+        }
+        return stats;
     }
 
+    /**
+     * 按序号升序排列的公告（基于某个公告快照版本构建，不可变）
+     */
+    private record AnnouncementIndex(long version, long[] seqs, Announcement[] announcements) {
+        static final AnnouncementIndex EMPTY = new AnnouncementIndex(-1, new long[0], new Announcement[0]);
+
+        static AnnouncementIndex of(SnapshotMap.Snapshot<String, Announcement> snapshot) {
+            Announcement[] sorted = snapshot.values().stream()
+                    .filter(a -> a.getSeq() > 0)
+                    .sorted(Comparator.comparingLong(Announcement::getSeq))
+                    .toArray(Announcement[]::new);
+            long[] seqs = Arrays.stream(sorted).mapToLong(Announcement::getSeq).toArray();
+            return new AnnouncementIndex(snapshot.version(), seqs, sorted);
+        }
+
+        /**
+         * 第一个序号大于 seq 的位置
+         */
+        int firstAfter(long seq) {
+            int pos = Arrays.binarySearch(seqs, seq);
+            return pos >= 0 ? pos + 1 : -pos - 1;
+        }
+
+        boolean contains(long seq) {
+            return Arrays.binarySearch(seqs, seq) >= 0;
+        }
+
+        long maxSeq() {
+            return seqs.length > 0 ? seqs[seqs.length - 1] : 0;
+        }
+    }
+
+    /**
+     * 用户唯一键快照
+     */
+    private record UserKeys(String email, String gameUUID, String qqOpenId, String qqUnionId) {
+        static UserKeys of(User user) {
+            QQBinding qq = user.getQqBinding();
+            return new UserKeys(
+                    user.getEmail(),
+                    user.getGameUUID(),
+                    qq != null ? qq.getQqOpenId() : null,
+                    qq != null ? qq.getQqUnionId() : null);
+        }
+    }
+
+    /**
+     * 用户注册结果
+     */
+    public enum RegisterResult {
+        SUCCESS,
+        USERNAME_EXISTS,
+        EMAIL_EXISTS
+    }
+
+    // ====================== 邮箱验证码数据操作 ======================
     /**
      * 根据邮箱和类型获取验证码
      */
     public EmailVerificationCode getEmailVerificationCode(String email, EmailVerificationCode.CodeType type) {
-        return emailVerificationCodes.stream()
+        return emailVerificationCodes.values().stream()
                                      .filter(code -> code.getEmail().equals(email) && code.getType() == type && !code.isExpired())
                                      .findFirst()
                                      .orElse(null);
@@ -991,36 +1767,27 @@ public class DataManager {
      * 保存邮箱验证码
      */
     public void saveEmailVerificationCode(EmailVerificationCode code) {
-        // 更新缓存：先移除旧的同类型验证码，再添加新的
-        emailVerificationCodes.removeIf(c -> c.getEmail().equals(code.getEmail()) && c.getType() == code.getType());
-        emailVerificationCodes.add(code);
-
-        // 立即保存到文件
-        try {
-            File codesDir = new File(dataFolder, "email_codes");
-            if (!codesDir.exists()) codesDir.mkdirs();
-            
-            File codeFile = new File(codesDir, code.getIdString() + ".json");
-            try (FileOutputStream fos = new FileOutputStream(codeFile)) {
-                String json = GsonUtils.getGson().toJson(code);
-                fos.write(json.getBytes(StandardCharsets.UTF_8));
-            }
-        } catch (Exception e) {
-            plugin.getLogger().severe("❌ 保存邮箱验证码失败：" + e.getMessage());
-        }
+        // 更新缓存：在同一次写入中移除旧的同类型验证码（同时删除其文件）并添加新的
+        emailVerificationCodes.update(codes -> {
+            codes.values().removeIf(c -> {
+                boolean replaced = c != code && c.getEmail().equals(code.getEmail()) && c.getType() == code.getType();
+                if (replaced) {
+                    persistenceWriter.markDeleted(EntityType.EMAIL_CODE, c.getIdString());
+                }
+                return replaced;
+            });
+            codes.put(code.getIdString(), code);
+        });
+        persistenceWriter.markDirty(EntityType.EMAIL_CODE, code.getIdString(), code);
     }
 
     /**
      * 删除邮箱验证码
      */
     public boolean deleteEmailVerificationCode(String id) {
-        boolean removed = emailVerificationCodes.removeIf(code -> code.getIdString().equals(id));
+        boolean removed = emailVerificationCodes.remove(id) != null;
         if (removed) {
-            // 删除文件
-            File codeFile = new File(dataFolder, "email_codes/" + id + ".json");
-            if (codeFile.exists()) {
-                codeFile.delete();
-            }
+            persistenceWriter.markDeleted(EntityType.EMAIL_CODE, id);
         }
         return removed;
     }
@@ -1029,7 +1796,7 @@ public class DataManager {
      * 清理过期的邮箱验证码
      */
     public void cleanExpiredEmailVerificationCodes() {
-        List<EmailVerificationCode> expiredCodes = emailVerificationCodes.stream()
+        List<EmailVerificationCode> expiredCodes = emailVerificationCodes.values().stream()
                                                                        .filter(EmailVerificationCode::isExpired)
                                                                        .collect(Collectors.toList());
         
@@ -0,0 +1,83 @@
+package com.server.data;
+
+import com.server.data.model.Admin;
+import com.server.data.model.Announcement;
+import com.server.data.model.AnnouncementReadMark;
+import com.server.data.model.ClaimLog;
+import com.server.data.model.Compensation;
+import com.server.data.model.EmailVerificationCode;
+import com.server.data.model.User;
+import com.server.data.model.WhitelistEntry;
+
+import java.io.File;
+
+/**
+ * 持久化实体类型
+ * 描述每类实体在数据目录下的存放位置（目录名）与对应的模型类
+ * 数量可能很大的类型（用户、公告已读进度）按ID哈希前缀分到 256 个子目录，单个目录内的文件数保持在几千以内
+ */
+public enum EntityType {
+    ADMIN("admins", "管理员", Admin.class),
+    ANNOUNCEMENT("announcements", "公告", Announcement.class),
+    COMPENSATION("compensations", "补偿", Compensation.class),
+    WHITELIST("whitelist", "白名单", WhitelistEntry.class),
+    // 领取日志已改为分段存储（ClaimLogStore），该类型仅用于迁移旧版数据
+    CLAIM_LOG("logs", "领取日志", ClaimLog.class),
+    USER("users", "用户", User.class, true),
+    EMAIL_CODE("email_codes", "邮箱验证码", EmailVerificationCode.class),
+    // 玩家公告已读进度（按玩家UUID，按需加载，不在启动时读入内存）
+    READ_MARK("announcement_reads", "公告已读进度", AnnouncementReadMark.class, true),
+    // 全局设置（直接存放在数据目录根下，如 whitelist_enabled.json）
+    SETTING("", "设置", Object.class);
+
+    private final String directory;
+    private final String displayName;
+    private final Class<?> modelClass;
+    // 是否按ID哈希前缀分子目录存放
+    private final boolean sharded;
+
+    EntityType(String directory, String displayName, Class<?> modelClass) {
+        this(directory, displayName, modelClass, false);
+    }
+
+    EntityType(String directory, String displayName, Class<?> modelClass, boolean sharded) {
+        this.directory = directory;
+        this.displayName = displayName;
+        this.modelClass = modelClass;
+        this.sharded = sharded;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public Class<?> getModelClass() {
+        return modelClass;
+    }
+
+    public boolean isSharded() {
+        return sharded;
+    }
+
+    /**
+     * 实体所在的分片子目录名（ID哈希的低 8 位，两位十六进制：00 ~ ff）
+     */
+    public static String shardOf(String id) {
+        return String.format("%02x", id.hashCode() & 0xff);
+    }
+
+    /**
+     * 解析实体对应的JSON文件路径（分片类型为 目录/分片/ID.json）
+     */
+    public File resolve(File dataFolder, String id) {
+        File dir = directory.isEmpty() ? dataFolder : new File(dataFolder, directory);
+        if (sharded) {
+            dir = new File(dir, shardOf(id));
+        }
+        return new File(dir, id + ".json");
+    }
+}
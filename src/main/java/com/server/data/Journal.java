@@ -0,0 +1,214 @@
+package com.server.data;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.server.util.GsonUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 追加写日志（write-ahead journal）
+ * 每条记录一行：{@code <CRC32十六进制>\t<JSON>}，JSON 为
+ * {"seq":1,"op":"PUT","type":"USER","id":"xxx","data":{...}}（删除时 op 为 DEL 且无 data）
+ * 回放时逐行校验CRC，遇到第一条损坏/截断的记录即停止，保证崩溃恢复结果确定
+ */
+public class Journal {
+    public static final String OP_PUT = "PUT";
+    public static final String OP_DELETE = "DEL";
+
+    private final File file;
+    private final boolean fsync;
+    private FileChannel channel;
+    private long nextSeq = 1;
+
+    public Journal(File file, boolean fsync) {
+        this.file = file;
+        this.fsync = fsync;
+    }
+
+    /**
+     * 批量追加记录（一次写入 + 至多一次 fsync，即组提交）
+     */
+    public synchronized void append(List<Record> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        FileChannel ch = openChannel();
+        ByteBuffer buffer = encode(records);
+        while (buffer.hasRemaining()) {
+            ch.write(buffer);
+        }
+        if (fsync) {
+            ch.force(false);
+        }
+    }
+
+    /**
+     * 回放日志中的所有有效记录
+     * @return 成功回放的记录数
+     */
+    public synchronized int replay(RecordConsumer consumer) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        int count = 0;
+        int lineNo = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                Record record = parse(line);
+                if (record == null) {
+                    consumer.corrupted(lineNo);
+                    break;
+                }
+                consumer.accept(record);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 清空日志（检查点完成后调用）
+     */
+    public synchronized void truncate() throws IOException {
+        FileChannel ch = openChannel();
+        ch.truncate(0);
+        if (fsync) {
+            ch.force(true);
+        }
+    }
+
+    /**
+     * 用给定记录重写日志（先写临时文件再原子替换），用于丢弃损坏记录及其之后的内容
+     */
+    public synchronized void rewrite(List<Record> records) throws IOException {
+        close();
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = encode(records);
+            while (buffer.hasRemaining()) {
+                ch.write(buffer);
+            }
+            if (fsync) {
+                ch.force(true);
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 当前日志大小（字节）
+     */
+    public long size() {
+        return file.length();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public synchronized void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            channel = null;
+        }
+    }
+
+    private FileChannel openChannel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            File dir = file.getParentFile();
+            if (dir != null && !dir.exists()) dir.mkdirs();
+            channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+
+    private ByteBuffer encode(List<Record> records) {
+        StringBuilder sb = new StringBuilder();
+        for (Record record : records) {
+            String json = toJson(nextSeq++, record);
+            sb.append(Long.toHexString(crc(json))).append('\t').append(json).append('\n');
+        }
+        return ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String toJson(long seq, Record record) {
+        StringBuilder sb = new StringBuilder(64 + (record.data() != null ? record.data().length() : 0));
+        sb.append("{\"seq\":").append(seq)
+          .append(",\"op\":\"").append(record.op()).append('"')
+          .append(",\"type\":\"").append(record.type().name()).append('"')
+          .append(",\"id\":").append(GsonUtils.getCompactGson().toJson(record.id()));
+        if (record.data() != null) {
+            sb.append(",\"data\":").append(record.data());
+        }
+        return sb.append('}').toString();
+    }
+
+    /**
+     * 解析一行日志；CRC不匹配或格式错误返回 null
+     */
+    private static Record parse(String line) {
+        int tab = line.indexOf('\t');
+        if (tab <= 0) {
+            return null;
+        }
+        String json = line.substring(tab + 1);
+        try {
+            if (Long.parseLong(line.substring(0, tab), 16) != crc(json)) {
+                return null;
+            }
+            JsonObject obj = JsonParser.parseString(json).getAsJsonObject();
+            JsonElement data = obj.get("data");
+            return new Record(
+                    obj.get("op").getAsString(),
+                    EntityType.valueOf(obj.get("type").getAsString()),
+                    obj.get("id").getAsString(),
+                    data != null ? data.toString() : null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static long crc(String json) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(json.getBytes(StandardCharsets.UTF_8));
+        return crc32.getValue();
+    }
+
+    /**
+     * 日志记录
+     * @param data 实体的紧凑JSON（删除记录为 null）
+     */
+    public record Record(String op, EntityType type, String id, String data) {
+    }
+
+    /**
+     * 回放回调
+     */
+    public interface RecordConsumer {
+        void accept(Record record);
+
+        /**
+         * 遇到损坏记录（回放在此处停止）
+         */
+        void corrupted(int lineNo);
+    }
+}
@@ -0,0 +1,219 @@
+package com.server.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * JSON文件存储后端：每个实体一个文件（数据目录/实体目录/ID.json，分片类型为 实体目录/分片/ID.json）
+ * 写入采用 临时文件 + 原子重命名，可选 fsync，避免崩溃时留下半截JSON
+ */
+public class JsonStorageBackend implements StorageBackend {
+    // 全局设置直接存放在数据目录根下，只认这些ID，避免把根目录下的其他JSON文件当作设置
+    private static final List<String> SETTING_IDS = List.of("whitelist_enabled", "announcement_seq");
+    // 并行读取时每批文件数（批内并行读取，批间按ID顺序交给回调）
+    private static final int READ_CHUNK = 512;
+
+    private final File dataFolder;
+    private final boolean fsync;
+    private final Logger logger;
+
+    public JsonStorageBackend(File dataFolder, boolean fsync, Logger logger) {
+        this.dataFolder = dataFolder;
+        this.fsync = fsync;
+        this.logger = logger;
+    }
+
+    @Override
+    public String getName() {
+        return "json";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "JSON文件";
+    }
+
+    /**
+     * 创建数据目录，并把分片类型中旧版平铺存放的文件移动到对应分片子目录
+     */
+    @Override
+    public void open() throws IOException {
+        if (!dataFolder.exists()) dataFolder.mkdirs();
+        for (EntityType type : EntityType.values()) {
+            if (type.isSharded()) {
+                moveToShards(type);
+            }
+        }
+    }
+
+    private void moveToShards(EntityType type) throws IOException {
+        File dir = new File(dataFolder, type.getDirectory());
+        String[] names = dir.list((d, name) -> name.endsWith(".json"));
+        if (names == null || names.length == 0) {
+            return;
+        }
+        for (String name : names) {
+            File target = type.resolve(dataFolder, name.substring(0, name.length() - ".json".length()));
+            File parent = target.getParentFile();
+            if (!parent.exists()) parent.mkdirs();
+            Files.move(new File(dir, name).toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        logger.info("✅ 已把 " + names.length + " 个" + type.getDisplayName() + "文件移动到分片子目录（" + type.getDirectory() + "/00 ~ ff）");
+    }
+
+    @Override
+    public byte[] get(EntityType type, String id) throws IOException {
+        try {
+            return Files.readAllBytes(type.resolve(dataFolder, id).toPath());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 文件在当前线程所在的ForkJoinPool中分批并行读取（启动加载时即加载线程池），回调按ID顺序执行
+     */
+    @Override
+    public void load(EntityType type, String afterId, EntityConsumer consumer) throws IOException {
+        List<String> ids = listIds(type);
+        if (afterId != null) {
+            ids.removeIf(id -> id.compareTo(afterId) <= 0);
+        }
+        for (int from = 0; from < ids.size(); from += READ_CHUNK) {
+            List<String> chunk = ids.subList(from, Math.min(ids.size(), from + READ_CHUNK));
+            List<byte[]> contents = chunk.parallelStream()
+                    .map(id -> {
+                        try {
+                            return Files.readAllBytes(type.resolve(dataFolder, id).toPath());
+                        } catch (IOException e) {
+                            logger.warning("⚠️ 读取" + type.getDisplayName() + "文件失败：" + id + ".json → " + e.getMessage());
+                            return null;
+                        }
+                    })
+                    .toList();
+            for (int i = 0; i < chunk.size(); i++) {
+                if (contents.get(i) != null) {
+                    consumer.accept(chunk.get(i), contents.get(i));
+                }
+            }
+        }
+    }
+
+    @Override
+    public long count(EntityType type) {
+        return listIds(type).size();
+    }
+
+    /**
+     * 逐个实体原子写入/删除其JSON文件；单个文件失败不影响其余文件，最后统一抛出异常让调用方重试整批
+     */
+    @Override
+    public void writeBatch(List<Mutation> batch) throws IOException {
+        int failed = 0;
+        IOException last = null;
+        for (Mutation mutation : batch) {
+            File target = mutation.type().resolve(dataFolder, mutation.id());
+            try {
+                if (mutation.isDelete()) {
+                    Files.deleteIfExists(target.toPath());
+                } else {
+                    writeAtomically(target, mutation.data());
+                }
+            } catch (IOException e) {
+                failed++;
+                last = e;
+                logger.severe("❌ 写入JSON文件失败：" + mutation.type() + "/" + mutation.id() + " → " + e.getMessage());
+            }
+        }
+        if (last != null) {
+            throw new IOException(failed + " 个文件写入失败，最后一个错误：" + last.getMessage(), last);
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("fsync", fsync);
+        return stats;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * 某类型所有实体ID（升序）
+     */
+    private List<String> listIds(EntityType type) {
+        if (type == EntityType.SETTING) {
+            List<String> ids = new ArrayList<>();
+            for (String id : SETTING_IDS) {
+                if (type.resolve(dataFolder, id).exists()) ids.add(id);
+            }
+            return ids;
+        }
+        List<String> ids = new ArrayList<>();
+        File dir = new File(dataFolder, type.getDirectory());
+        if (type.isSharded()) {
+            File[] shards = dir.listFiles(File::isDirectory);
+            if (shards != null) {
+                for (File shard : shards) {
+                    collectIds(shard, ids);
+                }
+            }
+        } else {
+            collectIds(dir, ids);
+        }
+        ids.sort(null);
+        return ids;
+    }
+
+    private static void collectIds(File dir, List<String> ids) {
+        String[] names = dir.list((d, name) -> name.endsWith(".json"));
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            ids.add(name.substring(0, name.length() - ".json".length()));
+        }
+    }
+
+    /**
+     * 临时文件 + 原子重命名写入
+     */
+    private void writeAtomically(File target, byte[] data) throws IOException {
+        File dir = target.getParentFile();
+        if (!dir.exists()) dir.mkdirs();
+
+        Path targetPath = target.toPath();
+        Path tmpPath = targetPath.resolveSibling(target.getName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmpPath,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (fsync) {
+                channel.force(true);
+            }
+        }
+        try {
+            Files.move(tmpPath, targetPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmpPath, targetPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
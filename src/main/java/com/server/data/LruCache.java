@@ -0,0 +1,134 @@
+package com.server.data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 有界LRU缓存（按访问顺序淘汰最久未使用的条目）
+ * 未命中时在锁外调用加载器（加载可能涉及磁盘/数据库IO，不阻塞其他键的命中）；
+ * 加载期间若缓存被写入过，丢弃本次结果重新加载，避免把旧值放回缓存
+ */
+public class LruCache<K, V> {
+    // 加载期间缓存被并发写入时的最大重试次数
+    private static final int LOAD_RETRIES = 3;
+
+    private final int capacity;
+    private final LinkedHashMap<K, V> map;
+    // 写入代数：每次 put/remove 加一，用于检测加载期间的并发写入
+    private long generation;
+
+    // 统计信息
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLong totalLoadNanos = new AtomicLong();
+    private final AtomicLong maxLoadNanos = new AtomicLong();
+
+    public LruCache(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.map = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > LruCache.this.capacity) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 获取缓存值，未命中时通过加载器加载并放入缓存
+     * @return 加载器返回 null（不存在）时返回 null，且不缓存
+     */
+    public V get(K key, Loader<K, V> loader) throws Exception {
+        long gen;
+        synchronized (this) {
+            V value = map.get(key);
+            if (value != null) {
+                hits.incrementAndGet();
+                return value;
+            }
+            gen = generation;
+        }
+        misses.incrementAndGet();
+
+        for (int attempt = 0; ; attempt++) {
+            long start = System.nanoTime();
+            V loaded = loader.load(key);
+            long elapsed = System.nanoTime() - start;
+            loadCount.incrementAndGet();
+            totalLoadNanos.addAndGet(elapsed);
+            maxLoadNanos.accumulateAndGet(elapsed, Math::max);
+
+            synchronized (this) {
+                V current = map.get(key);
+                if (current != null) {
+                    return current;
+                }
+                if (generation == gen || attempt + 1 >= LOAD_RETRIES) {
+                    if (loaded != null && generation == gen) {
+                        map.put(key, loaded);
+                    }
+                    return loaded;
+                }
+                gen = generation;
+            }
+        }
+    }
+
+    /**
+     * 只读缓存（不加载，不计入命中统计）
+     */
+    public synchronized V peek(K key) {
+        return map.get(key);
+    }
+
+    public synchronized void put(K key, V value) {
+        generation++;
+        map.put(key, value);
+    }
+
+    public synchronized void remove(K key) {
+        generation++;
+        map.remove(key);
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 缓存统计信息（命中率、淘汰次数、冷加载耗时）
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long loads = loadCount.get();
+        stats.put("size", size());
+        stats.put("capacity", capacity);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount == 0 ? "0.00"
+                : String.format("%.2f", hitCount * 100.0 / (hitCount + missCount)));
+        stats.put("evictions", evictions.get());
+        stats.put("avgLoadMs", String.format("%.3f", loads == 0 ? 0 : totalLoadNanos.get() / loads / 1_000_000.0));
+        stats.put("maxLoadMs", String.format("%.3f", maxLoadNanos.get() / 1_000_000.0));
+        return stats;
+    }
+
+    /**
+     * 未命中时的加载器
+     */
+    public interface Loader<K, V> {
+        V load(K key) throws Exception;
+    }
+}
@@ -0,0 +1,33 @@
+package com.server.data;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分页查询结果
+ * @param items 本页数据
+ * @param next 下一页游标（没有下一页时为 null）
+ * @param total 集合总数（不考虑过滤条件）
+ * @param matched 符合过滤条件的总数（无法低成本统计时为 null）
+ */
+public record Page<T>(List<T> items, String next, long total, Long matched) {
+
+    public boolean hasMore() {
+        return next != null;
+    }
+
+    /**
+     * 列表接口的分页响应：success、data、next、hasMore、total、matched（可统计时）
+     */
+    public Map<String, Object> toResponse() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", items);
+        response.put("next", next);
+        response.put("hasMore", hasMore());
+        response.put("total", total);
+        response.put("matched", matched);
+        return response;
+    }
+}
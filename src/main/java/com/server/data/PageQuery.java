@@ -0,0 +1,152 @@
+package com.server.data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.Map;
+
+/**
+ * 列表分页查询条件（keyset 分页）
+ * 1. limit：本页条数；after：上一页返回的游标 next（不透明字符串），下一页从游标之后继续
+ * 2. sort / order：排序字段与方向（默认按时间从新到旧）；游标只对同一排序有效
+ * 3. 过滤：player（玩家名或UUID）、compensationId（补偿ID）、from / to（时间范围，格式 yyyy-MM-dd[ HH:mm]，包含两端）
+ * 请求中没有任何分页参数时返回 null，由调用方按原有方式返回全部数据
+ *
+ * @param limit 本页条数（1 ~ MAX_LIMIT）
+ * @param after 游标（为 null 表示第一页）
+ * @param sort 排序字段（为 null 表示默认的时间排序）
+ * @param descending 是否从新到旧（降序）
+ */
+public record PageQuery(int limit, String after, String sort, boolean descending,
+                        String player, String compensationId, String from, String to) {
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 500;
+
+    private static final String[] PARAMETERS = {"limit", "after", "sort", "order", "player", "compensationId", "from", "to"};
+    private static final char SEPARATOR = '\u0000';
+
+    /**
+     * 从请求参数解析查询条件
+     * @return 没有任何分页参数时返回 null
+     * @throws IllegalArgumentException 参数格式错误
+     */
+    public static PageQuery fromParameters(Map<String, Deque<String>> parameters) {
+        boolean present = false;
+        for (String name : PARAMETERS) {
+            if (first(parameters, name) != null) {
+                present = true;
+                break;
+            }
+        }
+        if (!present) {
+            return null;
+        }
+
+        int limit = DEFAULT_LIMIT;
+        String limitParam = first(parameters, "limit");
+        if (limitParam != null) {
+            try {
+                limit = Integer.parseInt(limitParam);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("limit参数格式错误");
+            }
+            if (limit <= 0) {
+                throw new IllegalArgumentException("limit必须大于0");
+            }
+            limit = Math.min(limit, MAX_LIMIT);
+        }
+
+        String order = first(parameters, "order");
+        if (order != null && !order.equalsIgnoreCase("asc") && !order.equalsIgnoreCase("desc")) {
+            throw new IllegalArgumentException("order参数只能为 asc 或 desc");
+        }
+        String after = first(parameters, "after");
+        if (after != null) {
+            // 提前校验游标格式，避免查询中途失败
+            decodeCursor(after);
+        }
+        return new PageQuery(limit, after, first(parameters, "sort"), order == null || order.equalsIgnoreCase("desc"),
+                first(parameters, "player"), first(parameters, "compensationId"),
+                first(parameters, "from"), first(parameters, "to"));
+    }
+
+    /**
+     * 是否带有过滤条件
+     */
+    public boolean hasFilter() {
+        return player != null || compensationId != null || from != null || to != null;
+    }
+
+    /**
+     * 是否为不带过滤条件的第一页（可以使用响应缓存）
+     */
+    public boolean isPlainFirstPage() {
+        return after == null && !hasFilter();
+    }
+
+    /**
+     * 响应缓存键（只包含影响结果的参数）
+     */
+    public String cacheKey() {
+        return "limit=" + limit + "&sort=" + (sort != null ? sort : "") + "&order=" + (descending ? "desc" : "asc");
+    }
+
+    /**
+     * 时间是否在 from ~ to 范围内（字符串比较；to 只写日期时包含当天全部时间）
+     */
+    public boolean matchesTime(String time) {
+        if (from == null && to == null) {
+            return true;
+        }
+        if (time == null) {
+            return false;
+        }
+        if (from != null && time.compareTo(from) < 0) {
+            return false;
+        }
+        return to == null || time.compareTo(to) <= 0 || time.startsWith(to);
+    }
+
+    /**
+     * 玩家名（忽略大小写）或UUID是否与 player 一致
+     */
+    public boolean matchesPlayer(String playerName, String playerUUID) {
+        return player == null || player.equalsIgnoreCase(playerName) || player.equalsIgnoreCase(playerUUID);
+    }
+
+    /**
+     * 编码游标（多个部分，Base64URL）
+     */
+    public static String encodeCursor(String... parts) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                builder.append(SEPARATOR);
+            }
+            builder.append(parts[i] != null ? parts[i] : "");
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(builder.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解码游标
+     * @throws IllegalArgumentException 游标格式错误
+     */
+    public static String[] decodeCursor(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            return decoded.split(String.valueOf(SEPARATOR), -1);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("after游标格式错误");
+        }
+    }
+
+    private static String first(Map<String, Deque<String>> parameters, String name) {
+        Deque<String> values = parameters.get(name);
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        String value = values.peekFirst();
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
@@ -0,0 +1,243 @@
+package com.server.data;
+
+import com.server.data.model.Compensation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 玩家 -> 待领取补偿 的倒排索引
+ * 1. 每个补偿按创建顺序分配一个递增的槽位号；每个玩家（按玩家序号）记录一个同步水位和水位以下尚未领取的少量槽位：
+ *    水位之上的存活补偿都是待领取的（玩家还没领过），水位以下只有显式列出的才是待领取的
+ * 2. 新建补偿只追加槽位（不触及未领取的玩家，位图中已有的领取按玩家回放）；删除补偿只把槽位标记为失效，玩家条目中的失效槽位在读取时跳过
+ * 3. "是否有待领取"只看显式列表和水位之上是否有存活槽位（二分查找），列出待领取的开销与玩家自己的待领取数量成正比
+ * 读取无锁（目录与玩家条目均不可变，按引用整体替换），修改串行执行
+ */
+public class PendingCompensationIndex {
+    private static final int[] NO_SLOTS = new int[0];
+
+    // 补偿目录（新建/删除时整体替换）
+    private volatile Catalog catalog = new Catalog(NO_SLOTS, new Compensation[0]);
+    // 补偿ID -> 槽位号
+    private final Map<String, Integer> slotById = new ConcurrentHashMap<>();
+    // 玩家序号 -> 待领取条目（null 表示未领取过任何补偿）
+    private volatile AtomicReferenceArray<Entry> entries = new AtomicReferenceArray<>(0);
+
+    /**
+     * 用全部补偿重建索引（加载完成后调用）：补偿按创建时间分配槽位，按槽位顺序回放各补偿的领取位图
+     */
+    public synchronized void rebuild(List<Compensation> compensations) {
+        List<Compensation> ordered = new ArrayList<>(compensations);
+        ordered.sort(Comparator.comparing(Compensation::getCreateTime, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(Compensation::getIdString));
+        Compensation[] bySlot = ordered.toArray(new Compensation[0]);
+        int[] live = new int[bySlot.length];
+        slotById.clear();
+        for (int slot = 0; slot < bySlot.length; slot++) {
+            live[slot] = slot;
+            slotById.put(bySlot[slot].getIdString(), slot);
+        }
+        catalog = new Catalog(live, bySlot);
+        entries = new AtomicReferenceArray<>(0);
+        for (int slot = 0; slot < bySlot.length; slot++) {
+            int claimedSlot = slot;
+            bySlot[slot].getClaimed().forEach(ordinal -> applyClaim(ordinal, claimedSlot));
+        }
+    }
+
+    /**
+     * 新建补偿：追加槽位（所有玩家自动视为待领取），再按补偿的领取位图回放已领取的玩家
+     * 同一ID被替换为新的补偿对象时，旧槽位失效并分配新槽位，领取状态以新对象的位图为准
+     */
+    public synchronized void onSaved(Compensation compensation) {
+        Catalog current = catalog;
+        Integer existing = slotById.get(compensation.getIdString());
+        if (existing != null && current.bySlot()[existing] == compensation) {
+            return;
+        }
+        Compensation[] bySlot = Arrays.copyOf(current.bySlot(), current.bySlot().length + 1);
+        int slot = bySlot.length - 1;
+        bySlot[slot] = compensation;
+        int[] live = current.liveSlots();
+        if (existing != null) {
+            bySlot[existing] = null;
+            live = remove(live, existing);
+        }
+        live = Arrays.copyOf(live, live.length + 1);
+        live[live.length - 1] = slot;
+        slotById.put(compensation.getIdString(), slot);
+        catalog = new Catalog(live, bySlot);
+        compensation.getClaimed().forEach(ordinal -> applyClaim(ordinal, slot));
+    }
+
+    /**
+     * 删除补偿：槽位失效
+     */
+    public synchronized void onDeleted(String compensationId) {
+        Integer slot = slotById.remove(compensationId);
+        if (slot == null) {
+            return;
+        }
+        Catalog current = catalog;
+        Compensation[] bySlot = current.bySlot().clone();
+        bySlot[slot] = null;
+        catalog = new Catalog(remove(current.liveSlots(), slot), bySlot);
+    }
+
+    /**
+     * 玩家领取了补偿
+     */
+    public synchronized void onClaimed(Compensation compensation, int playerOrdinal) {
+        Integer slot = slotById.get(compensation.getIdString());
+        if (slot != null && playerOrdinal >= 0) {
+            applyClaim(playerOrdinal, slot);
+        }
+    }
+
+    /**
+     * 玩家是否有待领取的补偿
+     * @param playerOrdinal 玩家序号（-1 表示没有序号，即从未领取过）
+     */
+    public boolean hasPending(int playerOrdinal) {
+        Catalog current = catalog;
+        Entry entry = entryOf(playerOrdinal);
+        if (entry == null) {
+            return current.liveSlots().length > 0;
+        }
+        for (int slot : entry.pending()) {
+            if (current.bySlot()[slot] != null) {
+                return true;
+            }
+        }
+        return current.firstLiveAfter(entry.syncedUpTo()) < current.liveSlots().length;
+    }
+
+    /**
+     * 玩家待领取的补偿（按创建顺序）
+     */
+    public List<Compensation> pending(int playerOrdinal) {
+        Catalog current = catalog;
+        Entry entry = entryOf(playerOrdinal);
+        int[] live = current.liveSlots();
+        int from = entry == null ? 0 : current.firstLiveAfter(entry.syncedUpTo());
+        List<Compensation> result = new ArrayList<>(live.length - from + (entry == null ? 0 : entry.pending().length));
+        if (entry != null) {
+            for (int slot : entry.pending()) {
+                Compensation compensation = current.bySlot()[slot];
+                if (compensation != null) {
+                    result.add(compensation);
+                }
+            }
+        }
+        for (int i = from; i < live.length; i++) {
+            result.add(current.bySlot()[live[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * 索引规模统计
+     */
+    public Map<String, Object> getStats() {
+        Catalog current = catalog;
+        AtomicReferenceArray<Entry> snapshot = entries;
+        int players = 0;
+        long explicit = 0;
+        for (int i = 0; i < snapshot.length(); i++) {
+            Entry entry = snapshot.get(i);
+            if (entry != null) {
+                players++;
+                explicit += entry.pending().length;
+            }
+        }
+        return Map.of("compensations", current.liveSlots().length, "slots", current.bySlot().length,
+                "players", players, "explicitPending", explicit);
+    }
+
+    private Entry entryOf(int playerOrdinal) {
+        AtomicReferenceArray<Entry> snapshot = entries;
+        return playerOrdinal >= 0 && playerOrdinal < snapshot.length() ? snapshot.get(playerOrdinal) : null;
+    }
+
+    /**
+     * 记录一次领取（调用方持有锁）
+     * 领取的槽位在水位之上：把水位与该槽位之间的存活槽位补入显式待领取列表，水位移到该槽位
+     * 在水位以下：从显式列表中移除（顺带清理已失效的槽位）
+     */
+    private void applyClaim(int playerOrdinal, int slot) {
+        Catalog current = catalog;
+        Entry entry = entryOf(playerOrdinal);
+        int syncedUpTo = entry != null ? entry.syncedUpTo() : -1;
+        int[] pending = entry != null ? entry.pending() : NO_SLOTS;
+
+        int[] next;
+        if (slot > syncedUpTo) {
+            int[] live = current.liveSlots();
+            int from = current.firstLiveAfter(syncedUpTo);
+            int to = current.firstLiveAfter(slot - 1);
+            next = new int[pending.length + (to - from)];
+            int n = 0;
+            for (int s : pending) {
+                if (current.bySlot()[s] != null) next[n++] = s;
+            }
+            for (int i = from; i < to; i++) {
+                next[n++] = live[i];
+            }
+            next = Arrays.copyOf(next, n);
+            syncedUpTo = slot;
+        } else {
+            next = new int[pending.length];
+            int n = 0;
+            for (int s : pending) {
+                if (s != slot && current.bySlot()[s] != null) next[n++] = s;
+            }
+            next = Arrays.copyOf(next, n);
+        }
+
+        AtomicReferenceArray<Entry> snapshot = entries;
+        if (playerOrdinal >= snapshot.length()) {
+            AtomicReferenceArray<Entry> grown = new AtomicReferenceArray<>(Math.max(playerOrdinal + 1, snapshot.length() * 2));
+            for (int i = 0; i < snapshot.length(); i++) {
+                grown.set(i, snapshot.get(i));
+            }
+            snapshot = grown;
+            entries = grown;
+        }
+        snapshot.set(playerOrdinal, new Entry(syncedUpTo, next.length == 0 ? NO_SLOTS : next));
+    }
+
+    private static int[] remove(int[] sorted, int value) {
+        int pos = Arrays.binarySearch(sorted, value);
+        if (pos < 0) {
+            return sorted;
+        }
+        int[] next = new int[sorted.length - 1];
+        System.arraycopy(sorted, 0, next, 0, pos);
+        System.arraycopy(sorted, pos + 1, next, pos, sorted.length - pos - 1);
+        return next;
+    }
+
+    /**
+     * 补偿目录：存活槽位（升序）与槽位 -> 补偿（已删除为 null）
+     */
+    private record Catalog(int[] liveSlots, Compensation[] bySlot) {
+        /**
+         * 第一个大于 slot 的存活槽位在 liveSlots 中的位置
+         */
+        int firstLiveAfter(int slot) {
+            int pos = Arrays.binarySearch(liveSlots, slot);
+            return pos >= 0 ? pos + 1 : -pos - 1;
+        }
+    }
+
+    /**
+     * 玩家条目：同步水位与水位以下尚未领取的槽位
+     */
+    private record Entry(int syncedUpTo, int[] pending) {
+    }
+}
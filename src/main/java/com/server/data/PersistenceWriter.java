@@ -0,0 +1,578 @@
+package com.server.data;
+
+import com.server.AnnouncementCompensationPlugin;
+import com.server.util.GsonUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 后台持久化写入器（write-behind）
+ * 1. 调用方只标记实体为"脏"，不在调用线程（通常是主线程）上序列化和写文件
+ * 2. 同一实体在合并窗口内的多次修改只写一次（保留最新状态）
+ * 3. 每个合并窗口的修改作为一批交给存储后端（JSON文件 / Bitcask / SQL）写入，失败时整批放回队列重试
+ * 4. 日志模式（database.json.journal.enable，仅JSON文件后端）：每个合并窗口的修改组提交为日志追加，
+ *    由检查点定期把最新状态物化为各实体JSON文件并清空日志
+ */
+public class PersistenceWriter {
+    // 删除标记
+    private static final Object DELETED = new Object();
+    // 序列化遇到并发修改时的重试次数
+    private static final int SERIALIZE_RETRIES = 3;
+    // 检查点中表示"删除文件"的标记
+    private static final byte[] TOMBSTONE = new byte[0];
+
+    private final AnnouncementCompensationPlugin plugin;
+    private final File dataFolder;
+    // 合并窗口（毫秒）：首次标记后等待该时长再统一落盘
+    private final long flushWindowMillis;
+    // 是否在重命名前强制刷盘
+    private final boolean fsync;
+
+    // 待写入实体：实体键 → 实体对象（或删除标记）
+    private final Map<EntityKey, Object> pending = new ConcurrentHashMap<>();
+    // 已从待写入队列取出、正在写入的批次（供按需加载读取尚未落盘的状态）
+    private volatile Map<EntityKey, Object> inflight = Map.of();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final ScheduledExecutorService executor;
+    // 刷盘互斥锁（后台线程与 saveAllData 可能同时触发刷盘）
+    private final Object flushLock = new Object();
+
+    // 存储后端
+    private final StorageBackend backend;
+    // 写入监听器（在线迁移时把写入同步到目标存储），未设置时为 null
+    private volatile MutationListener mutationListener;
+    // 日志模式：日志文件（未启用时为 null）
+    private final Journal journal;
+    // 已写入日志、尚未物化到实体文件的最新状态（实体键 → 紧凑JSON 或 删除标记）
+    private final Map<EntityKey, byte[]> checkpointPending = new ConcurrentHashMap<>();
+    // 检查点触发条件：时间间隔与日志大小
+    private final long checkpointIntervalMillis;
+    private final long checkpointSizeBytes;
+
+    // 统计信息
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong deletes = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private final AtomicLong lastFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private final AtomicLong journalRecords = new AtomicLong();
+    private final AtomicLong checkpoints = new AtomicLong();
+    private final AtomicLong lastCheckpointNanos = new AtomicLong();
+    private volatile long lastCheckpointAt = System.currentTimeMillis();
+
+    public PersistenceWriter(AnnouncementCompensationPlugin plugin, File dataFolder, StorageBackend backend) {
+        this.plugin = plugin;
+        this.dataFolder = dataFolder;
+        this.backend = backend;
+        this.flushWindowMillis = Math.max(0, plugin.getConfig().getLong("database.json.flush_window_ms", 500));
+        this.fsync = plugin.getConfig().getBoolean("database.json.fsync", false);
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "AC-PersistenceWriter");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // 日志检查点物化为各实体文件，只适用于JSON文件后端（Bitcask/SQL 本身就是批量追加或事务写入）
+        boolean journalEnabled = backend instanceof JsonStorageBackend && plugin.getConfig().getBoolean("database.json.journal.enable", false);
+        this.journal = journalEnabled ? new Journal(journalFile(dataFolder), fsync) : null;
+        this.checkpointIntervalMillis = Math.max(1, plugin.getConfig().getLong("database.json.journal.checkpoint_interval", 300)) * 1000L;
+        this.checkpointSizeBytes = Math.max(1, plugin.getConfig().getLong("database.json.journal.checkpoint_size_mb", 16)) * 1024L * 1024L;
+        if (journal != null) {
+            executor.scheduleWithFixedDelay(this::checkpointIfDue, checkpointIntervalMillis, checkpointIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    static File journalFile(File dataFolder) {
+        return new File(dataFolder, "journal.log");
+    }
+
+    public boolean isJournalEnabled() {
+        return journal != null;
+    }
+
+    /**
+     * 标记实体需要写入（在合并窗口结束后由后台线程序列化并落盘）
+     */
+    public void markDirty(EntityType type, String id, Object entity) {
+        if (id == null || entity == null) {
+            return;
+        }
+        enqueue(new EntityKey(type, id), entity);
+    }
+
+    /**
+     * 批量标记同一类型的多个实体需要写入（一次入队、一次调度，落在同一个合并窗口）
+     */
+    public void markDirtyAll(EntityType type, Map<String, ?> entities) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        entities.forEach((id, entity) -> {
+            if (id != null && entity != null && pending.put(new EntityKey(type, id), entity) != null) {
+                coalesced.incrementAndGet();
+            }
+        });
+        scheduleFlush();
+    }
+
+    /**
+     * 标记实体需要删除
+     */
+    public void markDeleted(EntityType type, String id) {
+        if (id == null) {
+            return;
+        }
+        enqueue(new EntityKey(type, id), DELETED);
+    }
+
+    private void enqueue(EntityKey key, Object value) {
+        if (pending.put(key, value) != null) {
+            coalesced.incrementAndGet();
+        }
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (executor.isShutdown()) {
+            // 已关闭：直接在调用线程落盘，避免数据丢失
+            flush();
+            return;
+        }
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                executor.schedule(() -> {
+                    flushScheduled.set(false);
+                    flush();
+                }, flushWindowMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                flushScheduled.set(false);
+                flush();
+            }
+        }
+    }
+
+    /**
+     * 立即将所有脏实体落盘（saveAllData / 插件关闭时调用）
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                if (journal != null) {
+                    appendToJournal();
+                } else {
+                    writeToBackend();
+                }
+            } finally {
+                inflight = Map.of();
+            }
+            long elapsed = System.nanoTime() - start;
+            flushCount.incrementAndGet();
+            totalFlushNanos.addAndGet(elapsed);
+            lastFlushNanos.set(elapsed);
+            maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+        }
+        if (journal != null && journal.size() >= checkpointSizeBytes) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * 取出所有待写入实体并序列化（删除对应 TOMBSTONE）
+     * 实体先放入 inflight 再移出待写入队列，按需加载在任何时刻都能看到尚未落盘的状态
+     * 序列化期间遇到并发修改或序列化失败的实体会被放回队列
+     */
+    private Map<EntityKey, Drained> drainSerialized() {
+        Map<EntityKey, Drained> drained = new LinkedHashMap<>();
+        Map<EntityKey, Object> visible = new ConcurrentHashMap<>();
+        inflight = visible;
+        for (EntityKey key : new ArrayList<>(pending.keySet())) {
+            Object value = pending.get(key);
+            if (value == null) {
+                continue;
+            }
+            visible.put(key, value);
+            value = pending.remove(key);
+            if (value == null) {
+                visible.remove(key);
+                continue;
+            }
+            visible.put(key, value);
+            try {
+                drained.put(key, new Drained(value, value == DELETED ? TOMBSTONE : serialize(value)));
+            } catch (ConcurrentModificationException e) {
+                requeueOrFail(key, value);
+            } catch (RuntimeException e) {
+                // 并发修改也可能表现为越界/空指针，或 Gson 序列化失败：放回队列，不能丢弃
+                failures.incrementAndGet();
+                plugin.getLogger().warning("⚠️ 序列化实体失败，下个窗口重试：" + key.type() + "/" + key.id() + " → " + e);
+                requeueOrFail(key, value);
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * 批量写入失败：放回队列，下个窗口重试（期间若有更新的状态则以更新的为准）
+     */
+    private void requeueBatch(Map<EntityKey, Drained> drained) {
+        drained.forEach((key, entry) -> pending.putIfAbsent(key, entry.value()));
+        if (!executor.isShutdown()) {
+            scheduleFlush();
+        }
+    }
+
+    private void countWrites(Map<EntityKey, Drained> drained) {
+        for (Drained entry : drained.values()) {
+            if (entry.data() == TOMBSTONE) deletes.incrementAndGet(); else writes.incrementAndGet();
+        }
+    }
+
+    /**
+     * 日志模式：把本窗口内所有脏实体组提交为一次日志追加
+     */
+    private void appendToJournal() {
+        Map<EntityKey, Drained> drained = drainSerialized();
+        if (drained.isEmpty()) {
+            return;
+        }
+        List<Journal.Record> records = new ArrayList<>(drained.size());
+        drained.forEach((key, entry) -> records.add(entry.data() == TOMBSTONE
+                ? new Journal.Record(Journal.OP_DELETE, key.type(), key.id(), null)
+                : new Journal.Record(Journal.OP_PUT, key.type(), key.id(), new String(entry.data(), StandardCharsets.UTF_8))));
+        try {
+            journal.append(records);
+            journalRecords.addAndGet(records.size());
+            drained.forEach((key, entry) -> checkpointPending.put(key, entry.data()));
+            countWrites(drained);
+            notifyListener(toMutations(drained));
+        } catch (IOException | RuntimeException e) {
+            failures.incrementAndGet();
+            plugin.getLogger().severe("❌ 写入日志失败（" + records.size() + " 条记录）：" + e.getMessage());
+            requeueBatch(drained);
+        }
+    }
+
+    /**
+     * 把本窗口内所有脏实体作为一批交给存储后端写入
+     */
+    private void writeToBackend() {
+        Map<EntityKey, Drained> drained = drainSerialized();
+        if (drained.isEmpty()) {
+            return;
+        }
+        List<StorageBackend.Mutation> batch = toMutations(drained);
+        try {
+            backend.writeBatch(batch);
+            countWrites(drained);
+            notifyListener(batch);
+        } catch (IOException | RuntimeException e) {
+            failures.incrementAndGet();
+            plugin.getLogger().severe("❌ 写入" + backend.getDisplayName() + "失败（" + batch.size() + " 条记录）：" + e.getMessage());
+            requeueBatch(drained);
+        }
+    }
+
+    private static List<StorageBackend.Mutation> toMutations(Map<EntityKey, Drained> drained) {
+        List<StorageBackend.Mutation> batch = new ArrayList<>(drained.size());
+        drained.forEach((key, entry) -> batch.add(new StorageBackend.Mutation(key.type(), key.id(),
+                entry.data() == TOMBSTONE ? null : entry.data())));
+        return batch;
+    }
+
+    private void notifyListener(List<StorageBackend.Mutation> batch) {
+        MutationListener listener = mutationListener;
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.onWrite(batch);
+        } catch (Exception e) {
+            plugin.getLogger().severe("❌ 写入监听器处理失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 读取尚未写入存储后端的实体最新状态（供按需加载使用）
+     * 按数据流向依次检查 待写入队列 → 正在写入的批次 → 日志中尚未物化的记录，正在移动的实体不会被漏掉
+     * @return 实体对象；没有未落盘的状态，或最新状态为删除时返回 null（调用方需自行用索引判断是否已删除）
+     */
+    public Object getUnflushed(EntityType type, String id) {
+        EntityKey key = new EntityKey(type, id);
+        Object value = pending.get(key);
+        if (value == null) {
+            value = inflight.get(key);
+        }
+        if (value != null) {
+            return value == DELETED ? null : value;
+        }
+        byte[] data = checkpointPending.get(key);
+        if (data == null || data == TOMBSTONE) {
+            return null;
+        }
+        return GsonUtils.getGson().fromJson(new String(data, StandardCharsets.UTF_8), type.getModelClass());
+    }
+
+    /**
+     * 设置写入监听器（每批写入成功后回调，在写入线程上执行）；传 null 取消
+     */
+    public void setMutationListener(MutationListener listener) {
+        this.mutationListener = listener;
+    }
+
+    /**
+     * 写入监听器
+     */
+    public interface MutationListener {
+        void onWrite(List<StorageBackend.Mutation> batch);
+    }
+
+    private void requeueOrFail(EntityKey key, Object value) {
+        if (executor.isShutdown()) {
+            failures.incrementAndGet();
+            plugin.getLogger().severe("❌ 持久化写入失败（实体仍在被修改）：" + key.type() + "/" + key.id());
+        } else {
+            // 实体在序列化期间被反复修改：放回队列，下个窗口再写
+            pending.putIfAbsent(key, value);
+            scheduleFlush();
+        }
+    }
+
+    // ====================== 检查点 ======================
+    private void checkpointIfDue() {
+        try {
+            flush();
+            if (System.currentTimeMillis() - lastCheckpointAt >= checkpointIntervalMillis) {
+                checkpoint();
+            }
+        } catch (Exception e) {
+            plugin.getLogger().severe("❌ 定期检查点失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 检查点：把日志中的最新状态物化到存储后端（各实体JSON文件），全部成功后清空日志
+     */
+    public void checkpoint() {
+        synchronized (flushLock) {
+            if (checkpointPending.isEmpty()) {
+                lastCheckpointAt = System.currentTimeMillis();
+                return;
+            }
+            long start = System.nanoTime();
+            List<StorageBackend.Mutation> batch = new ArrayList<>(checkpointPending.size());
+            checkpointPending.forEach((key, data) -> batch.add(new StorageBackend.Mutation(key.type(), key.id(),
+                    data == TOMBSTONE ? null : data)));
+            try {
+                backend.writeBatch(batch);
+            } catch (IOException e) {
+                // 保留日志，下次检查点重试
+                plugin.getLogger().severe("❌ 检查点写入失败：" + e.getMessage());
+                return;
+            }
+            checkpointPending.clear();
+            int materialized = batch.size();
+            try {
+                if (journal != null) {
+                    journal.truncate();
+                } else {
+                    Files.deleteIfExists(journalFile(dataFolder).toPath());
+                }
+            } catch (IOException e) {
+                plugin.getLogger().severe("❌ 清空日志失败：" + e.getMessage());
+                return;
+            }
+            long elapsed = System.nanoTime() - start;
+            checkpoints.incrementAndGet();
+            lastCheckpointNanos.set(elapsed);
+            lastCheckpointAt = System.currentTimeMillis();
+            plugin.getLogger().info("✅ 检查点完成：物化 " + materialized + " 个实体，耗时 " + formatMillis(elapsed) + "ms");
+        }
+    }
+
+    /**
+     * 启动时回放日志（在加载完检查点状态即各实体JSON文件之后调用）
+     * 回放到第一条损坏记录为止，随后立即执行检查点，使磁盘状态与内存一致
+     * @param applier 把回放出的实体应用到内存缓存（entity 为 null 表示删除）
+     * @return 回放的记录数
+     */
+    public int replayJournal(JournalApplier applier) {
+        Journal reader = journal != null ? journal : new Journal(journalFile(dataFolder), fsync);
+        if (!reader.getFile().exists() || reader.getFile().length() == 0) {
+            return 0;
+        }
+        synchronized (flushLock) {
+            int replayed;
+            boolean[] corrupted = {false};
+            try {
+                replayed = reader.replay(new Journal.RecordConsumer() {
+                    @Override
+                    public void accept(Journal.Record record) {
+                        EntityKey key = new EntityKey(record.type(), record.id());
+                        if (Journal.OP_DELETE.equals(record.op())) {
+                            applier.apply(record.type(), record.id(), null);
+                            checkpointPending.put(key, TOMBSTONE);
+                        } else {
+                            Object entity = GsonUtils.getGson().fromJson(record.data(), record.type().getModelClass());
+                            applier.apply(record.type(), record.id(), entity);
+                            checkpointPending.put(key, record.data().getBytes(StandardCharsets.UTF_8));
+                        }
+                    }
+
+                    @Override
+                    public void corrupted(int lineNo) {
+                        corrupted[0] = true;
+                        plugin.getLogger().warning("⚠️ 日志第 " + lineNo + " 行损坏或不完整，回放在此停止（之后的记录被丢弃）");
+                    }
+                });
+            } catch (IOException e) {
+                plugin.getLogger().severe("❌ 回放日志失败：" + e.getMessage());
+                return 0;
+            }
+            plugin.getLogger().info("🔄 已从日志回放 " + replayed + " 条记录");
+            checkpoint();
+            if (corrupted[0] && reader.getFile().length() > 0) {
+                // 损坏记录仍在日志中（没有可物化的记录或检查点失败）：之后追加的记录在下次回放时会被丢弃
+                discardCorruptedTail(reader);
+            }
+            return replayed;
+        }
+    }
+
+    /**
+     * 重写日志，只保留尚未物化的有效记录（检查点成功时为空），去掉损坏记录及其之后的内容
+     */
+    private void discardCorruptedTail(Journal reader) {
+        List<Journal.Record> records = new ArrayList<>(checkpointPending.size());
+        checkpointPending.forEach((key, data) -> records.add(data == TOMBSTONE
+                ? new Journal.Record(Journal.OP_DELETE, key.type(), key.id(), null)
+                : new Journal.Record(Journal.OP_PUT, key.type(), key.id(), new String(data, StandardCharsets.UTF_8))));
+        try {
+            reader.rewrite(records);
+            plugin.getLogger().info("🧹 已清除日志中的损坏记录，保留 " + records.size() + " 条未物化记录");
+        } catch (IOException e) {
+            plugin.getLogger().severe("❌ 清除日志损坏记录失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 日志回放应用回调
+     */
+    public interface JournalApplier {
+        void apply(EntityType type, String id, Object entity);
+    }
+
+    /**
+     * 停止后台线程并落盘剩余数据
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        if (journal != null) {
+            checkpoint();
+            journal.close();
+        }
+        plugin.getLogger().info("✅ 持久化写入器已停止：写入 " + writes.get() + " 次，删除 " + deletes.get()
+                + " 次，合并 " + coalesced.get() + " 次，平均刷盘耗时 " + formatMillis(averageFlushNanos()) + "ms");
+    }
+
+    /**
+     * 序列化实体（紧凑格式）；实体可能被其他线程原地修改，遇到并发修改时重试
+     */
+    private byte[] serialize(Object value) {
+        ConcurrentModificationException last = null;
+        for (int i = 0; i < SERIALIZE_RETRIES; i++) {
+            try {
+                return GsonUtils.getCompactGson().toJson(value).getBytes(StandardCharsets.UTF_8);
+            } catch (ConcurrentModificationException e) {
+                last = e;
+            }
+        }
+        throw last;
+    }
+
+    // ====================== 统计信息 ======================
+    /**
+     * 当前待写入实体数量（队列深度）
+     */
+    public int getQueueDepth() {
+        return pending.size();
+    }
+
+    private long averageFlushNanos() {
+        long count = flushCount.get();
+        return count == 0 ? 0 : totalFlushNanos.get() / count;
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format("%.2f", nanos / 1_000_000.0);
+    }
+
+    /**
+     * 获取写入器统计信息（供Web接口展示）
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queueDepth", getQueueDepth());
+        stats.put("flushWindowMs", flushWindowMillis);
+        stats.put("fsync", fsync);
+        stats.put("writes", writes.get());
+        stats.put("deletes", deletes.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("failures", failures.get());
+        stats.put("flushCount", flushCount.get());
+        stats.put("lastFlushMs", formatMillis(lastFlushNanos.get()));
+        stats.put("avgFlushMs", formatMillis(averageFlushNanos()));
+        stats.put("maxFlushMs", formatMillis(maxFlushNanos.get()));
+        stats.put("backend", backend.getName());
+        stats.put("journal", journal != null);
+        if (journal != null) {
+            stats.put("journalBytes", journal.size());
+            stats.put("journalRecords", journalRecords.get());
+            synchronized (flushLock) {
+                stats.put("checkpointPending", checkpointPending.size());
+            }
+            stats.put("checkpoints", checkpoints.get());
+            stats.put("lastCheckpointMs", formatMillis(lastCheckpointNanos.get()));
+        }
+        return stats;
+    }
+
+    /**
+     * 实体键（类型 + ID）
+     */
+    private record EntityKey(EntityType type, String id) {
+    }
+
+    /**
+     * 已取出的待写入实体（原始对象 + 序列化结果）
+     */
+    private record Drained(Object value, byte[] data) {
+    }
+}
@@ -0,0 +1,197 @@
+package com.server.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * 玩家序号表：为每个玩家UUID分配一个从0开始的稠密整数序号（补偿领取位图按序号记录）
+ * 1. 序号只增不改，持久化为仅追加的二进制文件（每条16字节：UUID高64位+低64位，序号=记录位置）
+ * 2. 查询走内存Map，无锁；分配串行执行，先写文件再发布，保证位图中出现的序号一定能在重启后还原
+ * 3. 序号表与存储后端无关（位于数据目录），切换/迁移存储时无需转换
+ */
+public class PlayerOrdinals {
+    // 每条记录的字节数
+    private static final int RECORD_BYTES = 16;
+
+    private final File file;
+    private final boolean fsync;
+    private final Logger logger;
+    private final Map<UUID, Integer> ordinals = new ConcurrentHashMap<>();
+    // 序号 -> UUID（只在分配锁内追加）
+    private final List<UUID> players = new ArrayList<>();
+    private FileChannel channel;
+
+    public PlayerOrdinals(File file, boolean fsync, Logger logger) {
+        this.file = file;
+        this.fsync = fsync;
+        this.logger = logger;
+    }
+
+    /**
+     * 打开序号文件并加载已分配的序号（末尾写了一半的记录会被截断）
+     */
+    public synchronized void open() throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        long complete = size - size % RECORD_BYTES;
+        if (complete != size) {
+            logger.warning("⚠️ 玩家序号文件末尾有不完整记录（" + (size - complete) + " 字节），已截断");
+            channel.truncate(complete);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(complete, 64 * 1024 * RECORD_BYTES));
+        long position = 0;
+        while (position < complete) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), complete - position));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("读取玩家序号文件时遇到意外的文件结尾");
+                }
+            }
+            buffer.flip();
+            while (buffer.remaining() >= RECORD_BYTES) {
+                UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+                ordinals.put(uuid, players.size());
+                players.add(uuid);
+            }
+            position += buffer.limit();
+        }
+        channel.position(complete);
+    }
+
+    /**
+     * 查询玩家序号（不分配）
+     * @return 序号；未分配或UUID格式无效时返回 -1
+     */
+    public int find(String playerUUID) {
+        UUID uuid = parse(playerUUID);
+        if (uuid == null) {
+            return -1;
+        }
+        Integer ordinal = ordinals.get(uuid);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    /**
+     * 获取玩家序号，未分配时分配新序号并写入文件
+     * @throws IllegalArgumentException UUID格式无效
+     * @throws IOException 写入序号文件失败
+     */
+    public int getOrAssign(String playerUUID) throws IOException {
+        UUID uuid = parse(playerUUID);
+        if (uuid == null) {
+            throw new IllegalArgumentException("无效的玩家UUID：" + playerUUID);
+        }
+        Integer ordinal = ordinals.get(uuid);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        return assignAll(List.of(uuid)).get(uuid);
+    }
+
+    /**
+     * 批量分配序号（一次写入，用于导入旧数据）
+     * @return 每个UUID对应的序号
+     */
+    public synchronized Map<UUID, Integer> assignAll(Collection<UUID> uuids) throws IOException {
+        if (channel == null) {
+            throw new IOException("玩家序号表未打开");
+        }
+        Map<UUID, Integer> result = new LinkedHashMap<>();
+        List<UUID> fresh = new ArrayList<>();
+        for (UUID uuid : uuids) {
+            Integer existing = ordinals.get(uuid);
+            if (existing != null) {
+                result.put(uuid, existing);
+            } else if (!result.containsKey(uuid)) {
+                result.put(uuid, players.size() + fresh.size());
+                fresh.add(uuid);
+            }
+        }
+        if (fresh.isEmpty()) {
+            return result;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(fresh.size() * RECORD_BYTES);
+        for (UUID uuid : fresh) {
+            buffer.putLong(uuid.getMostSignificantBits());
+            buffer.putLong(uuid.getLeastSignificantBits());
+        }
+        buffer.flip();
+        long start = channel.position();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            // 回滚到写入前，避免留下不完整记录
+            channel.truncate(start);
+            channel.position(start);
+            throw e;
+        }
+
+        for (UUID uuid : fresh) {
+            ordinals.put(uuid, players.size());
+            players.add(uuid);
+        }
+        return result;
+    }
+
+    /**
+     * 序号对应的玩家UUID
+     * @return 不存在时返回 null
+     */
+    public synchronized String playerOf(int ordinal) {
+        return ordinal >= 0 && ordinal < players.size() ? players.get(ordinal).toString() : null;
+    }
+
+    /**
+     * 已分配的序号数量
+     */
+    public int size() {
+        return ordinals.size();
+    }
+
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            logger.warning("⚠️ 关闭玩家序号文件失败：" + e.getMessage());
+        }
+        channel = null;
+    }
+
+    public static UUID parse(String playerUUID) {
+        if (playerUUID == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(playerUUID);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.server.data;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 版本化快照集合（写时复制）
+ * 1. 读取只取当前快照的 volatile 引用，不加锁，永远不会被写入阻塞，也不会遇到并发修改异常
+ * 2. 所有修改经同一写入路径串行执行：复制当前内容、应用修改、发布新快照并把版本号加一
+ * 3. 快照本身不可变，调用方可以放心遍历/序列化拿到的列表
+ * 适合读多写少、规模在数千以内的集合（公告、补偿、白名单、管理员、验证码）
+ */
+public class SnapshotMap<K, V> {
+    private final Function<V, K> keyOf;
+    // 写入锁：只有写入方竞争，读取方从不获取
+    private final Object writeLock = new Object();
+    private volatile Snapshot<K, V> current = new Snapshot<>(0, Map.of(), List.of());
+
+    /**
+     * @param keyOf 从元素取主键
+     */
+    public SnapshotMap(Function<V, K> keyOf) {
+        this.keyOf = keyOf;
+    }
+
+    // ====================== 读取（无锁） ======================
+    /**
+     * 当前快照（同一快照内的 map/values/version 互相一致）
+     */
+    public Snapshot<K, V> snapshot() {
+        return current;
+    }
+
+    public V get(K key) {
+        return key != null ? current.map().get(key) : null;
+    }
+
+    public boolean containsKey(K key) {
+        return key != null && current.map().containsKey(key);
+    }
+
+    /**
+     * 全部元素（按插入顺序，不可变）
+     */
+    public List<V> values() {
+        return current.values();
+    }
+
+    public int size() {
+        return current.values().size();
+    }
+
+    public boolean isEmpty() {
+        return current.values().isEmpty();
+    }
+
+    /**
+     * 当前版本号（每次修改加一，可用于缓存失效判断）
+     */
+    public long version() {
+        return current.version();
+    }
+
+    // ====================== 写入（串行，发布新快照） ======================
+    public void put(V value) {
+        update(map -> map.put(keyOf.apply(value), value));
+    }
+
+    public void putAll(Collection<? extends V> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        update(map -> values.forEach(value -> map.put(keyOf.apply(value), value)));
+    }
+
+    /**
+     * 键不存在时不发布新快照（版本号不变，依赖版本号的缓存保持有效）
+     * @return 被移除的元素，不存在时返回 null
+     */
+    public V remove(K key) {
+        if (key == null) {
+            return null;
+        }
+        synchronized (writeLock) {
+            V value = current.map().get(key);
+            if (value == null) {
+                return null;
+            }
+            update(map -> map.remove(key));
+            return value;
+        }
+    }
+
+    /**
+     * 在写入路径上执行任意修改（修改的是当前内容的副本，完成后作为新快照发布）
+     * 修改器不应执行耗时操作，其间其他写入方会等待，读取方不受影响
+     */
+    public void update(Consumer<Map<K, V>> mutator) {
+        synchronized (writeLock) {
+            Snapshot<K, V> base = current;
+            LinkedHashMap<K, V> next = new LinkedHashMap<>(base.map());
+            mutator.accept(next);
+            current = new Snapshot<>(base.version() + 1, Collections.unmodifiableMap(next), List.copyOf(next.values()));
+        }
+    }
+
+    /**
+     * 不可变快照
+     */
+    public record Snapshot<K, V>(long version, Map<K, V> map, List<V> values) {
+    }
+}
@@ -0,0 +1,138 @@
+package com.server.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 快照集合的有序索引（用于 keyset 分页）
+ * 1. 按（排序键, 主键）升序排列，基于某个快照版本构建，快照版本变化后首次查询时重建，读取无锁
+ * 2. 游标为上一页最后一条的（排序键, 主键），二分查找定位后向前/向后扫描，翻页代价与页码无关
+ * 3. 不带过滤条件时总数即集合大小；带过滤条件时顺序扫描统计（适合规模在数千以内的快照集合）
+ */
+final class SortedIndex<T> {
+    private final Function<T, String> keyOf;
+    private final Function<T, String> idOf;
+    private volatile Built<T> built;
+
+    /**
+     * @param keyOf 排序键（为 null 时按空字符串处理）
+     * @param idOf 主键（排序键相同时的次序）
+     */
+    SortedIndex(Function<T, String> keyOf, Function<T, String> idOf) {
+        this.keyOf = item -> nonNull(keyOf.apply(item));
+        this.idOf = item -> nonNull(idOf.apply(item));
+    }
+
+    /**
+     * 分页查询
+     * @param filter 过滤条件，为 null 表示不过滤
+     * @throws IllegalArgumentException 游标格式错误
+     */
+    Page<T> page(SnapshotMap.Snapshot<String, T> snapshot, PageQuery query, Predicate<T> filter) {
+        Built<T> index = built(snapshot);
+        int size = index.items().length;
+
+        int position;
+        if (query.after() == null) {
+            position = query.descending() ? size - 1 : 0;
+        } else {
+            String[] cursor = PageQuery.decodeCursor(query.after());
+            if (cursor.length != 2) {
+                throw new IllegalArgumentException("after游标格式错误");
+            }
+            // 第一个大于游标的位置
+            int insertion = index.firstAfter(cursor[0], cursor[1]);
+            position = query.descending() ? insertion - 1 : insertion;
+            // 游标指向的记录本身（若仍存在）不包含在本页
+            if (query.descending() && position >= 0 && index.equalsAt(position, cursor[0], cursor[1])) {
+                position--;
+            }
+        }
+
+        int step = query.descending() ? -1 : 1;
+        List<T> items = new ArrayList<>(Math.min(query.limit(), size));
+        T last = null;
+        boolean more = false;
+        for (int i = position; i >= 0 && i < size; i += step) {
+            T item = index.items()[i];
+            if (filter != null && !filter.test(item)) {
+                continue;
+            }
+            if (items.size() == query.limit()) {
+                more = true;
+                break;
+            }
+            items.add(item);
+            last = item;
+        }
+
+        Long matched = (long) size;
+        if (filter != null) {
+            long count = 0;
+            for (T item : index.items()) {
+                if (filter.test(item)) {
+                    count++;
+                }
+            }
+            matched = count;
+        }
+        String next = more ? PageQuery.encodeCursor(keyOf.apply(last), idOf.apply(last)) : null;
+        return new Page<>(items, next, size, matched);
+    }
+
+    private Built<T> built(SnapshotMap.Snapshot<String, T> snapshot) {
+        Built<T> current = built;
+        if (current == null || current.version() != snapshot.version()) {
+            @SuppressWarnings("unchecked")
+            T[] items = (T[]) snapshot.values().toArray();
+            Arrays.sort(items, Comparator.comparing(keyOf).thenComparing(idOf));
+            String[] keys = new String[items.length];
+            String[] ids = new String[items.length];
+            for (int i = 0; i < items.length; i++) {
+                keys[i] = keyOf.apply(items[i]);
+                ids[i] = idOf.apply(items[i]);
+            }
+            current = new Built<>(snapshot.version(), items, keys, ids);
+            built = current;
+        }
+        return current;
+    }
+
+    private static String nonNull(String value) {
+        return value != null ? value : "";
+    }
+
+    /**
+     * 某个快照版本的有序数组
+     */
+    private record Built<T>(long version, T[] items, String[] keys, String[] ids) {
+        /**
+         * 第一个（排序键, 主键）大于给定值的位置
+         */
+        int firstAfter(String key, String id) {
+            int low = 0;
+            int high = items.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int cmp = keys[mid].compareTo(key);
+                if (cmp == 0) {
+                    cmp = ids[mid].compareTo(id);
+                }
+                if (cmp <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        boolean equalsAt(int position, String key, String id) {
+            return keys[position].equals(key) && ids[position].equals(id);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.server.data;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 存储后端SPI
+ * 以（实体类型，实体ID，紧凑JSON）为单位读写持久化数据；内存缓存、序列化与写入合并由 DataManager / PersistenceWriter 负责
+ * 实现：JsonStorageBackend（每个实体一个文件）、BitcaskStorageBackend（日志结构键值存储）、DatabaseDataManager（SQL）
+ */
+public interface StorageBackend {
+
+    /**
+     * 后端名称（与 database.storage 配置值一致：json / bitcask / sql）
+     */
+    String getName();
+
+    /**
+     * 日志中展示的名称
+     */
+    String getDisplayName();
+
+    /**
+     * 打开后端（创建目录/表、重建索引等），在读写之前调用一次
+     */
+    void open() throws IOException;
+
+    /**
+     * 按实体ID升序遍历某类型的全部实体
+     * @param afterId 只返回ID大于该值的实体（用于迁移断点续传），为 null 时从头开始
+     */
+    void load(EntityType type, String afterId, EntityConsumer consumer) throws IOException;
+
+    /**
+     * 读取单个实体（按需加载用户等场景）
+     * @return 实体的紧凑JSON（UTF-8），不存在时返回 null
+     */
+    byte[] get(EntityType type, String id) throws IOException;
+
+    /**
+     * 某类型的实体数量
+     */
+    long count(EntityType type) throws IOException;
+
+    /**
+     * 批量写入；data 为 null 表示删除
+     * 整批成功才返回，失败时抛出异常由调用方整批重试，因此实现必须是幂等的
+     */
+    void writeBatch(List<Mutation> batch) throws IOException;
+
+    /**
+     * 后端中是否没有任何实体（用于首次切换存储时决定是否导入旧数据）
+     */
+    default boolean isEmpty() throws IOException {
+        for (EntityType type : EntityType.values()) {
+            if (count(type) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 后端统计信息（供 /getStorageStats 展示）
+     */
+    default Map<String, Object> getStats() {
+        return Map.of();
+    }
+
+    void close();
+
+    /**
+     * 一次写入/删除
+     * @param data 实体的紧凑JSON（UTF-8），删除时为 null
+     */
+    record Mutation(EntityType type, String id, byte[] data) {
+        public boolean isDelete() {
+            return data == null;
+        }
+    }
+
+    /**
+     * 遍历回调
+     */
+    interface EntityConsumer {
+        void accept(String id, byte[] data) throws IOException;
+    }
+}
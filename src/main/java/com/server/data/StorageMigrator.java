@@ -0,0 +1,483 @@
+package com.server.data;
+
+import com.server.AnnouncementCompensationPlugin;
+import com.server.util.ColorUtils;
+import com.server.util.GsonUtils;
+import com.server.util.TimeUtils;
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 存储后端在线迁移（/acstorage migrate）
+ * 1. 按实体类型、实体ID升序从源存储分批读取，每批作为一次 writeBatch 写入目标存储（目标写入幂等）
+ * 2. 每批提交后把断点（已完成类型 + 当前类型最后一个ID）写入 migration.json，中断或重启后从断点继续
+ * 3. 源存储为当前使用中的存储时，迁移期间的写入通过 PersistenceWriter 的写入监听器同步到目标：
+ *    已复制范围内的写入直接写入目标，未复制范围内的写入暂存到本批提交之后再写入（避免被本批读到的旧值覆盖）；
+ *    全部复制完成后继续双写，直到修改 database.storage 并重启
+ * 领取日志使用独立的分段存储，不参与迁移
+ */
+public class StorageMigrator {
+    private final AnnouncementCompensationPlugin plugin;
+    private final DataManager dataManager;
+    private final File progressFile;
+
+    // 暂存写入与断点的互斥锁（写入线程与迁移线程）
+    private final Object liveLock = new Object();
+    // 未复制范围内的写入（实体键 → 最新写入），本批提交后再写入目标
+    private final Map<String, StorageBackend.Mutation> deferred = new LinkedHashMap<>();
+
+    private volatile Thread worker;
+    private volatile boolean cancelled;
+    private volatile String state = "idle";
+    private volatile Progress progress;
+    private volatile StorageBackend source;
+    private volatile StorageBackend target;
+    private volatile CommandSender initiator;
+    private volatile long startedAt;
+    private volatile long copiedThisRun;
+    private volatile long mirrored;
+    private volatile boolean mirrorFailed;
+
+    public StorageMigrator(AnnouncementCompensationPlugin plugin, DataManager dataManager) {
+        this.plugin = plugin;
+        this.dataManager = dataManager;
+        this.progressFile = new File(plugin.getDataFolder(), "migration.json");
+    }
+
+    /**
+     * 开始（或从断点继续）迁移
+     * @param restart 忽略已有断点，从头开始
+     * @throws IllegalArgumentException 参数错误
+     * @throws IllegalStateException 已有迁移正在进行，或已有断点属于另一组源/目标
+     */
+    public synchronized void start(CommandSender sender, String from, String to, int batchSize, boolean restart) throws IOException {
+        if (worker != null && worker.isAlive()) {
+            throw new IllegalStateException("已有迁移正在进行：" + progress.from + " → " + progress.to);
+        }
+        if (from.equals(to)) {
+            throw new IllegalArgumentException("源存储与目标存储相同");
+        }
+        if (to.equals(dataManager.getStorageBackend().getName())) {
+            throw new IllegalArgumentException("目标存储 " + to + " 是当前使用中的存储，不能作为迁移目标");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("批大小必须大于 0");
+        }
+
+        Progress saved = readProgress();
+        if (saved != null && !restart && !(saved.from.equals(from) && saved.to.equals(to))) {
+            throw new IllegalStateException("存在未完成的迁移 " + saved.from + " → " + saved.to + "，请继续该迁移或使用 restart 重新开始");
+        }
+        Progress next = saved != null && !restart ? saved : new Progress(from, to);
+        next.batchSize = batchSize;
+        next.clean = false;
+
+        // 同一迁移暂停后继续：沿用仍在同步写入的存储实例，避免出现未同步的间隙
+        boolean reuse = !restart && source != null && target != null
+                && progress != null && progress.from.equals(from) && progress.to.equals(to);
+        if (!reuse) {
+            releaseBackends();
+            StorageBackend newSource = dataManager.getStorageBackend(from);
+            StorageBackend newTarget = dataManager.getStorageBackend(to);
+            if (newSource != dataManager.getStorageBackend()) {
+                newSource.open();
+            }
+            newTarget.open();
+            this.source = newSource;
+            this.target = newTarget;
+        }
+        this.progress = next;
+        this.initiator = sender;
+        this.cancelled = false;
+        this.mirrorFailed = false;
+        this.copiedThisRun = 0;
+        this.startedAt = System.currentTimeMillis();
+        this.state = "running";
+        writeProgress();
+
+        if (!reuse && source == dataManager.getStorageBackend()) {
+            // 先把已排队的修改写入源存储，再开始同步后续写入
+            PersistenceWriter writer = dataManager.getPersistenceWriter();
+            writer.flush();
+            if (writer.isJournalEnabled()) {
+                writer.checkpoint();
+            }
+            writer.setMutationListener(this::onLiveWrite);
+        }
+
+        worker = new Thread(this::run, "AC-StorageMigrator");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * 启动时若存在未完成的迁移，从断点继续
+     */
+    public void resumeIfPending() {
+        Progress saved = readProgress();
+        if (saved == null) {
+            return;
+        }
+        // 上次未正常停止（崩溃）：源存储是当前存储时，已复制范围内最后的写入可能未同步到目标，只能从头开始
+        boolean restart = !saved.clean && saved.from.equals(dataManager.getStorageBackend().getName());
+        plugin.getLogger().info("🔄 发现未完成的存储迁移 " + saved.from + " → " + saved.to
+                + (restart ? "，上次未正常停止，重新开始..." : "，从断点继续..."));
+        try {
+            start(Bukkit.getConsoleSender(), saved.from, saved.to, saved.batchSize, restart);
+        } catch (Exception e) {
+            plugin.getLogger().warning("⚠️ 无法继续存储迁移：" + e.getMessage() + "（可使用 /acstorage migrate 重新开始）");
+        }
+    }
+
+    /**
+     * 请求取消：当前批次提交后停止，断点保留
+     * @return true=有正在进行的迁移
+     */
+    public boolean cancel() {
+        Thread running = worker;
+        if (running == null || !running.isAlive()) {
+            return false;
+        }
+        cancelled = true;
+        return true;
+    }
+
+    /**
+     * 停止迁移并释放迁移用的存储实例（在 PersistenceWriter 停止之后调用，保证最后一次写入也能同步到目标）
+     */
+    public void shutdown() {
+        cancelled = true;
+        Thread running = worker;
+        if (running != null) {
+            try {
+                running.join(10_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        releaseBackends();
+        Progress current = progress;
+        if (current != null && !"completed".equals(state) && !mirrorFailed) {
+            // 所有写入都已同步，下次启动可以从断点继续
+            current.clean = true;
+            writeProgress();
+        }
+    }
+
+    // ====================== 批量复制 ======================
+    private void run() {
+        Progress current = progress;
+        long lastReport = System.currentTimeMillis();
+        long reportInterval = Math.max(1, plugin.getConfig().getLong("database.migration.progress_interval", 5)) * 1000L;
+        notify("&a🔄 开始迁移 " + source.getDisplayName() + " → " + target.getDisplayName()
+                + "（批大小 " + current.batchSize + (current.migrated > 0 ? "，从断点继续，已迁移 " + current.migrated + " 条" : "") + "）");
+        try {
+            for (EntityType type : EntityType.values()) {
+                // 领取日志使用独立的分段存储
+                if (type == EntityType.CLAIM_LOG || current.completedTypes.contains(type.name())) {
+                    continue;
+                }
+                long total = source.count(type);
+                String afterId;
+                synchronized (liveLock) {
+                    if (!type.name().equals(current.currentType)) {
+                        current.currentType = type.name();
+                        current.lastId = null;
+                        current.typeMigrated = 0;
+                    }
+                    afterId = current.lastId;
+                }
+
+                List<StorageBackend.Mutation> batch = new ArrayList<>(current.batchSize);
+                long[] nextReport = {lastReport + reportInterval};
+                source.load(type, afterId, (id, data) -> {
+                    if (cancelled) {
+                        throw new CancelledException();
+                    }
+                    batch.add(new StorageBackend.Mutation(type, id, data));
+                    if (batch.size() >= current.batchSize) {
+                        commit(type, batch);
+                        batch.clear();
+                        if (System.currentTimeMillis() >= nextReport[0]) {
+                            reportProgress(type, total);
+                            nextReport[0] = System.currentTimeMillis() + reportInterval;
+                        }
+                    }
+                });
+                if (!batch.isEmpty()) {
+                    commit(type, batch);
+                }
+                lastReport = nextReport[0] - reportInterval;
+
+                synchronized (liveLock) {
+                    current.completedTypes.add(type.name());
+                    current.currentType = null;
+                    current.lastId = null;
+                    drainDeferred();
+                }
+                writeProgress();
+                plugin.getLogger().info("✅ " + type.getDisplayName() + "迁移完成：" + current.typeMigrated + " 条");
+            }
+
+            Files.deleteIfExists(progressFile.toPath());
+            state = "completed";
+            long elapsed = Math.max(1, System.currentTimeMillis() - startedAt);
+            notify("&a✅ 存储迁移完成：共 " + current.migrated + " 条，本次耗时 " + elapsed / 1000 + " 秒（"
+                    + copiedThisRun * 1000 / elapsed + " 条/秒）");
+            if (source == dataManager.getStorageBackend()) {
+                notify("&e⚠️ 修改 database.storage 为 " + current.to + " 并重启以切换存储；在此之前的写入会同步写入 " + target.getDisplayName());
+            }
+        } catch (CancelledException e) {
+            pause("paused");
+            notify("&e⚠️ 存储迁移已停止，已迁移 " + current.migrated + " 条；" + resumeHint());
+        } catch (Exception e) {
+            pause("failed");
+            plugin.getLogger().severe("❌ 存储迁移失败：" + e.getMessage());
+            e.printStackTrace();
+            notify("&c❌ 存储迁移失败：" + e.getMessage() + "；" + resumeHint());
+        }
+    }
+
+    /**
+     * 写入一批并推进断点；暂存的写入中落在新断点之前的随后写入目标
+     */
+    private void commit(EntityType type, List<StorageBackend.Mutation> batch) throws IOException {
+        target.writeBatch(batch);
+        synchronized (liveLock) {
+            progress.lastId = batch.get(batch.size() - 1).id();
+            progress.migrated += batch.size();
+            progress.typeMigrated += batch.size();
+            copiedThisRun += batch.size();
+            drainDeferred();
+        }
+        writeProgress();
+    }
+
+    /**
+     * 取消或失败：已复制范围继续同步写入，断点之后的数据下次继续时重新从源存储读取
+     * 同步写入失败时目标已与源不一致，停止同步并清空断点，只能从头重新迁移
+     */
+    private void pause(String newState) {
+        state = newState;
+        synchronized (liveLock) {
+            deferred.clear();
+            if (mirrorFailed) {
+                Progress current = progress;
+                current.completedTypes.clear();
+                current.currentType = null;
+                current.lastId = null;
+                current.migrated = 0;
+                current.typeMigrated = 0;
+            }
+        }
+        if (mirrorFailed) {
+            releaseBackends();
+        }
+        writeProgress();
+    }
+
+    private String resumeHint() {
+        return mirrorFailed ? "同步写入失败，断点已清空，再次执行 migrate 将从头开始" : "断点已保存，再次执行 migrate 可继续";
+    }
+
+    // ====================== 迁移期间的写入同步 ======================
+    /**
+     * PersistenceWriter 每批写入源存储成功后回调（在写入线程上执行）
+     */
+    private void onLiveWrite(List<StorageBackend.Mutation> batch) {
+        synchronized (liveLock) {
+            List<StorageBackend.Mutation> direct = new ArrayList<>();
+            for (StorageBackend.Mutation mutation : batch) {
+                if (mutation.type() == EntityType.CLAIM_LOG) {
+                    continue;
+                }
+                if (isCopied(mutation)) {
+                    direct.add(mutation);
+                } else if ("running".equals(state)) {
+                    // 复制进行中：可能正被本批读取，提交后再写入；暂停时无需暂存，继续迁移时会重新读取
+                    deferred.put(mutation.type().name() + "/" + mutation.id(), mutation);
+                }
+            }
+            writeMirrored(direct);
+        }
+    }
+
+    /**
+     * 该实体所在范围是否已复制到目标（完成后始终为 true）
+     */
+    private boolean isCopied(StorageBackend.Mutation mutation) {
+        Progress current = progress;
+        if ("completed".equals(state) || current.completedTypes.contains(mutation.type().name())) {
+            return true;
+        }
+        return mutation.type().name().equals(current.currentType) && current.lastId != null
+                && mutation.id().compareTo(current.lastId) <= 0;
+    }
+
+    /**
+     * 把已落入复制范围的暂存写入写入目标（调用方持有 liveLock）
+     */
+    private void drainDeferred() {
+        List<StorageBackend.Mutation> ready = new ArrayList<>();
+        deferred.values().removeIf(mutation -> {
+            if (isCopied(mutation)) {
+                ready.add(mutation);
+                return true;
+            }
+            return false;
+        });
+        writeMirrored(ready);
+    }
+
+    private void writeMirrored(List<StorageBackend.Mutation> mutations) {
+        if (mutations.isEmpty()) {
+            return;
+        }
+        try {
+            target.writeBatch(mutations);
+            mirrored += mutations.size();
+        } catch (IOException e) {
+            // 目标与源不再一致：停止并要求从头重新迁移
+            mirrorFailed = true;
+            cancelled = true;
+            plugin.getLogger().severe("❌ 同步写入到" + target.getDisplayName() + "失败（" + mutations.size() + " 条）："
+                    + e.getMessage() + "，迁移将停止");
+        }
+    }
+
+    // ====================== 进度 ======================
+    private void reportProgress(EntityType type, long total) {
+        Progress current = progress;
+        long elapsed = Math.max(1, System.currentTimeMillis() - startedAt);
+        String percent = total > 0 ? String.format("%.1f", current.typeMigrated * 100.0 / total) : "100.0";
+        notify("&7🔄 迁移进度：" + type.getDisplayName() + " " + current.typeMigrated + "/" + total + "（" + percent
+                + "%），共 " + current.migrated + " 条，" + copiedThisRun * 1000 / elapsed + " 条/秒");
+    }
+
+    /**
+     * 迁移状态（供 /acstorage status 与 /getStorageStats 展示）
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        Progress current = progress != null ? progress : readProgress();
+        status.put("state", progress == null && current != null ? "pending" : state);
+        if (current != null) {
+            status.put("from", current.from);
+            status.put("to", current.to);
+            status.put("batchSize", current.batchSize);
+            status.put("completedTypes", List.copyOf(current.completedTypes));
+            status.put("currentType", current.currentType);
+            status.put("migrated", current.migrated);
+            status.put("startedAt", current.startedAt);
+        }
+        status.put("mirrored", mirrored);
+        synchronized (liveLock) {
+            status.put("deferred", deferred.size());
+        }
+        return status;
+    }
+
+    private Progress readProgress() {
+        if (!progressFile.exists()) {
+            return null;
+        }
+        try {
+            return GsonUtils.getGson().fromJson(Files.readString(progressFile.toPath(), StandardCharsets.UTF_8), Progress.class);
+        } catch (Exception e) {
+            plugin.getLogger().warning("⚠️ 读取迁移断点失败：" + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeProgress() {
+        Progress current = progress;
+        if (current == null || "completed".equals(state)) {
+            return;
+        }
+        String json;
+        synchronized (liveLock) {
+            json = GsonUtils.getGson().toJson(current);
+        }
+        try {
+            File tmp = new File(progressFile.getPath() + ".tmp");
+            Files.writeString(tmp.toPath(), json, StandardCharsets.UTF_8);
+            Files.move(tmp.toPath(), progressFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            plugin.getLogger().warning("⚠️ 保存迁移断点失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 输出到控制台；发起者是玩家时同时发送给玩家（回到主线程发送）
+     */
+    private void notify(String message) {
+        plugin.getLogger().info(ColorUtils.translate(message));
+        CommandSender sender = initiator;
+        if (sender instanceof Player player && plugin.isEnabled()) {
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                if (player.isOnline()) {
+                    player.sendMessage(ColorUtils.toComponent(message));
+                }
+            });
+        }
+    }
+
+    /**
+     * 关闭迁移专用的存储实例（当前使用中的存储不关闭）并取消写入同步
+     */
+    private void releaseBackends() {
+        dataManager.getPersistenceWriter().setMutationListener(null);
+        StorageBackend active = dataManager.getStorageBackend();
+        if (source != null && source != active) {
+            source.close();
+        }
+        if (target != null && target != active) {
+            target.close();
+        }
+        source = null;
+        target = null;
+    }
+
+    /**
+     * 迁移断点（migration.json）
+     */
+    private static class Progress {
+        private String from;
+        private String to;
+        private int batchSize;
+        private String startedAt;
+        private List<String> completedTypes = new ArrayList<>();
+        private String currentType;
+        private String lastId;
+        private long migrated;
+        private long typeMigrated;
+        // 是否正常停止（所有写入都已同步到目标）
+        private boolean clean;
+
+        Progress(String from, String to) {
+            this.from = from;
+            this.to = to;
+            this.startedAt = TimeUtils.getCurrentTimeStr();
+        }
+    }
+
+    /**
+     * 取消时用于中断遍历
+     */
+    private static class CancelledException extends IOException {
+        CancelledException() {
+            super("cancelled");
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.server.data.model;
 
+import com.server.util.BCryptUtils;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -30,6 +32,15 @@ public class Admin {
         this.permissions = permissions != null ? permissions : new ArrayList<>();
     }
 
+    // 密码校验通过后，哈希强度低于当前强度时按当前强度重新加密（返回是否已更新，调用方负责保存）
+    public boolean rehashIfNeeded(String password) {
+        if (!BCryptUtils.needsRehash(this.passwordHash)) {
+            return false;
+        }
+        this.passwordHash = BCryptUtils.encrypt(password);
+        return true;
+    }
+
     // ====================== Getter/Setter ======================
     public int getId() {
         return id;
@@ -3,12 +3,12 @@ package com.server.data.model;
 import com.google.gson.annotations.SerializedName;
 import com.server.util.TimeUtils;
 
-import java.util.HashMap;
 import java.util.Map;
 
 /**
  * 公告模型类
- * 对应JSON结构：{"id":"xxx","name":"公告名称","content":"&a欢迎公告","sendTime":"2025-12-20 10:00","createTime":"2025-12-19 09:00","sent":false,"priority":10,"readStatus":{"玩家UUID":true}}
+ * 对应JSON结构：{"id":"xxx","seq":12,"name":"公告名称","content":"&a欢迎公告","sendTime":"2025-12-20 10:00","createTime":"2025-12-19 09:00","sent":false,"priority":10}
+ * 玩家已读状态按 seq 记录在各玩家的已读进度中（见 AnnouncementReadMark）；旧版的 readStatus 映射在加载时转换
  */
 public class Announcement {
     // 数据库ID（transient：JSON序列化/反序列化时忽略）
@@ -16,6 +16,8 @@ public class Announcement {
     // 公告唯一ID（UUID生成）
     @SerializedName("id")
     private String announcementId;
+    // 公告序号（创建时分配，单调递增，用于已读水位判断）
+    private long seq;
     // 公告名称
     private String name;
     // 公告标题
@@ -34,8 +36,8 @@ public class Announcement {
     private boolean sent = false;
     // 公告优先级（数值越大，优先级越高）
     private int priority = 0;
-    // 玩家已读状态（Key：玩家UUID，Value：是否已读）
-    private Map<String, Boolean> readStatus = new HashMap<>();
+    // 旧版玩家已读状态（Key：玩家UUID，Value：是否已读），仅用于读取旧数据，转换后置空不再写出
+    private Map<String, Boolean> readStatus;
 
     // 无参构造
     public Announcement() {}
@@ -101,6 +103,14 @@ public class Announcement {
         this.announcementId = id;
     }
 
+    public long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
     public String getTitle() {
         return title;
     }
@@ -151,6 +161,9 @@ public class Announcement {
         this.sent = sent;
     }
 
+    /**
+     * 旧版已读状态（仅加载旧数据时非空）
+     */
     public Map<String, Boolean> getReadStatus() {
         return readStatus;
     }
@@ -0,0 +1,112 @@
+package com.server.data.model;
+
+import com.server.util.TimeUtils;
+
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+/**
+ * 玩家公告已读进度模型类（每个玩家一条，不可变：每次标记已读生成新实例）
+ * 对应JSON结构：{"playerUuid":"玩家UUID","readUpTo":12,"exceptions":[15,17],"updatedAt":"2025-12-20 10:00"}
+ * 序号不大于 readUpTo 的公告均已读；exceptions 记录水位之上乱序读过的少量公告序号
+ */
+public class AnnouncementReadMark {
+    // 玩家UUID
+    private String playerUuid;
+    // 已读水位
+    private long readUpTo;
+    // 水位之上已读的公告序号（升序）
+    private long[] exceptions = new long[0];
+    // 更新时间
+    private String updatedAt;
+
+    // 无参构造
+    public AnnouncementReadMark() {}
+
+    public AnnouncementReadMark(String playerUuid, long readUpTo, long[] exceptions) {
+        this.playerUuid = playerUuid;
+        this.readUpTo = readUpTo;
+        this.exceptions = exceptions;
+        this.updatedAt = TimeUtils.getCurrentTimeStr();
+    }
+
+    /**
+     * 未读过任何公告的玩家
+     */
+    public static AnnouncementReadMark empty(String playerUuid) {
+        AnnouncementReadMark mark = new AnnouncementReadMark();
+        mark.playerUuid = playerUuid;
+        return mark;
+    }
+
+    /**
+     * 序号为 seq 的公告是否已读
+     */
+    public boolean isRead(long seq) {
+        return seq <= readUpTo || (exceptions != null && Arrays.binarySearch(exceptions, seq) >= 0);
+    }
+
+    /**
+     * 标记一批公告已读，返回新的已读进度
+     * 水位向前推进，跳过已读的序号和已删除的公告（live 为 false），推进到第一个仍存在的未读公告为止
+     * @param seqs 新读过的公告序号
+     * @param live 序号对应的公告是否仍存在
+     * @param maxSeq 当前最大的公告序号（水位不超过该值）
+     */
+    public AnnouncementReadMark withRead(long[] seqs, LongPredicate live, long maxSeq) {
+        long[] current = exceptions != null ? exceptions : new long[0];
+        long[] merged = new long[current.length + seqs.length];
+        int size = 0;
+        for (long seq : current) {
+            if (seq > readUpTo) merged[size++] = seq;
+        }
+        for (long seq : seqs) {
+            if (seq > readUpTo) merged[size++] = seq;
+        }
+        Arrays.sort(merged, 0, size);
+
+        long watermark = readUpTo;
+        int next = 0;
+        while (watermark < maxSeq) {
+            long candidate = watermark + 1;
+            while (next < size && merged[next] < candidate) {
+                next++;
+            }
+            if (next < size && merged[next] == candidate) {
+                watermark = candidate;
+            } else if (!live.test(candidate)) {
+                watermark = candidate;
+            } else {
+                break;
+            }
+        }
+
+        long[] remaining = new long[size];
+        int count = 0;
+        long previous = watermark;
+        for (int i = 0; i < size; i++) {
+            if (merged[i] > previous) {
+                remaining[count++] = merged[i];
+                previous = merged[i];
+            }
+        }
+        return new AnnouncementReadMark(playerUuid, watermark, Arrays.copyOf(remaining, count));
+    }
+
+    // ====================== Getter ======================
+    public String getPlayerUuid() {
+        return playerUuid;
+    }
+
+    public long getReadUpTo() {
+        return readUpTo;
+    }
+
+    public long[] getExceptions() {
+        return exceptions != null ? exceptions.clone() : new long[0];
+    }
+
+    public String getUpdatedAt() {
+        return updatedAt;
+    }
+}
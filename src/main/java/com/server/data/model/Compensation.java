@@ -1,17 +1,18 @@
 package com.server.data.model;
 
 import com.google.gson.annotations.SerializedName;
+import com.server.util.CompactBitmap;
 import com.server.util.TimeUtils;
 
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * 补偿模型类
- * 对应JSON结构：{"id":"xxx","name":"新手补偿","description":"&6钻石*10","createTime":"2025-12-19 09:00","claimStatus":{"玩家UUID":true},"items":[{"material":"DIAMOND","amount":10}]}
+ * 对应JSON结构：{"id":"xxx","name":"新手补偿","description":"&6钻石*10","createTime":"2025-12-19 09:00","claimed":"AQABAAAA...","items":[{"material":"DIAMOND","amount":10}]}
+ * claimed 为按玩家序号（见 PlayerOrdinals）记录的压缩位图；旧版的 claimStatus 映射在加载时转换
  */
 public class Compensation {
     // 数据库ID（transient：JSON序列化/反序列化时忽略）
@@ -29,8 +30,10 @@ public class Compensation {
     private String updatedAt;
     // 作者
     private String author;
-    // 玩家领取状态（Key：玩家UUID，Value：是否领取）
-    private Map<String, Boolean> claimStatus = new HashMap<>();
+    // 已领取玩家的序号位图（游戏线程写入、Web线程同时读取/序列化，位图读取无锁）
+    private volatile CompactBitmap claimed = new CompactBitmap();
+    // 旧版领取状态（Key：玩家UUID，Value：是否领取），仅用于读取旧数据，转换后置空不再写出
+    private Map<String, Boolean> claimStatus;
     // 补偿物品列表
     private List<CompensationItem> items = new ArrayList<>();
 
@@ -116,16 +119,25 @@ public class Compensation {
 
     /**
      * 检查玩家是否已领取该补偿
+     * @param playerOrdinal 玩家序号（未分配序号的玩家传 -1，视为未领取）
      */
-    public boolean isClaimed(String playerUUID) {
-        return claimStatus.containsKey(playerUUID) && claimStatus.get(playerUUID);
+    public boolean isClaimed(int playerOrdinal) {
+        return playerOrdinal >= 0 && getClaimed().contains(playerOrdinal);
     }
 
     /**
      * 标记玩家已领取
+     * @return true=本次新标记，false=之前已领取
      */
-    public void markClaimed(String playerUUID) {
-        claimStatus.put(playerUUID, true);
+    public boolean markClaimed(int playerOrdinal) {
+        return getClaimed().add(playerOrdinal);
+    }
+
+    /**
+     * 已领取人数
+     */
+    public int getClaimedCount() {
+        return getClaimed().cardinality();
     }
 
     // ====================== Getter/Setter ======================
@@ -179,6 +191,26 @@ public class Compensation {
         this.createTime = createTime;
     }
 
+    public CompactBitmap getClaimed() {
+        CompactBitmap bitmap = claimed;
+        if (bitmap == null) {
+            synchronized (this) {
+                if (claimed == null) {
+                    claimed = new CompactBitmap();
+                }
+                bitmap = claimed;
+            }
+        }
+        return bitmap;
+    }
+
+    public void setClaimed(CompactBitmap claimed) {
+        this.claimed = claimed != null ? claimed : new CompactBitmap();
+    }
+
+    /**
+     * 旧版领取状态（仅加载旧数据时非空）
+     */
     public Map<String, Boolean> getClaimStatus() {
         return claimStatus;
     }
@@ -60,6 +60,15 @@ public class User {
         return BCryptUtils.verify(password, this.passwordHash);
     }
 
+    // 密码校验通过后，哈希强度低于当前强度时按当前强度重新加密（返回是否已更新，调用方负责保存）
+    public boolean rehashIfNeeded(String password) {
+        if (!BCryptUtils.needsRehash(this.passwordHash)) {
+            return false;
+        }
+        this.passwordHash = BCryptUtils.encrypt(password);
+        return true;
+    }
+
     // 更新密码
     public void updatePassword(String newPassword) {
         this.passwordHash = BCryptUtils.encrypt(newPassword);
@@ -1,23 +1,42 @@
 package com.server.database;
 
 import com.server.AnnouncementCompensationPlugin;
+import com.server.data.EntityType;
+import com.server.data.StorageBackend;
 import com.server.data.model.*;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 数据库数据管理器
- * 处理所有与数据库相关的CRUD操作
+ * 作为SQL存储后端：实体以紧凑JSON存放在 ac_entities 表（实体类型 + 实体ID 为主键），
+ * 修改由 PersistenceWriter 合并后以多行 upsert 批量写入；
+ * 旧版按字段拆分的各表只在首次切换到新表时读取导入
  */
-public class DatabaseDataManager {
+public class DatabaseDataManager implements StorageBackend {
+    // 单条多行 INSERT 的最大行数
+    private static final int MULTI_ROW_LIMIT = 500;
+    // 遍历实体时每页行数（按主键翻页，避免一次性读入整张表）
+    private static final int LOAD_PAGE_SIZE = 1000;
+
     private final AnnouncementCompensationPlugin plugin;
     private final DatabaseManager databaseManager;
     private final Gson gson;
+    // 批量写入统计
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong upserts = new AtomicLong();
+    private final AtomicLong deletes = new AtomicLong();
+    private final AtomicLong totalBatchNanos = new AtomicLong();
 
     public DatabaseDataManager(AnnouncementCompensationPlugin plugin, DatabaseManager databaseManager) {
         this.plugin = plugin;
@@ -25,7 +44,206 @@ public class DatabaseDataManager {
         this.gson = new Gson();
     }
 
-    // ====================== 管理员操作 ======================
+    // ====================== 存储后端SPI ======================
+    @Override
+    public String getName() {
+        return "sql";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "SQL数据库";
+    }
+
+    /**
+     * 表结构由 DatabaseManager 初始化脚本创建，这里只检查连接
+     */
+    @Override
+    public void open() throws IOException {
+        if (!databaseManager.isConnected()) {
+            throw new IOException("数据库未连接");
+        }
+    }
+
+    @Override
+    public void load(EntityType type, String afterId, EntityConsumer consumer) throws IOException {
+        String sql = "SELECT entity_id, data FROM ac_entities WHERE entity_type = ? AND entity_id > ? ORDER BY entity_id LIMIT " + LOAD_PAGE_SIZE;
+        String cursor = afterId != null ? afterId : "";
+        try (Connection conn = databaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            while (true) {
+                stmt.setString(1, type.name());
+                stmt.setString(2, cursor);
+                int rows = 0;
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        cursor = rs.getString(1);
+                        consumer.accept(cursor, rs.getString(2).getBytes(StandardCharsets.UTF_8));
+                        rows++;
+                    }
+                }
+                if (rows < LOAD_PAGE_SIZE) {
+                    return;
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("读取" + type.getDisplayName() + "失败：" + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public byte[] get(EntityType type, String id) throws IOException {
+        try (Connection conn = databaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT data FROM ac_entities WHERE entity_type = ? AND entity_id = ?")) {
+            stmt.setString(1, type.name());
+            stmt.setString(2, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString(1).getBytes(StandardCharsets.UTF_8) : null;
+            }
+        } catch (SQLException e) {
+            throw new IOException("读取" + type.getDisplayName() + "失败：" + id + " → " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public long count(EntityType type) throws IOException {
+        try (Connection conn = databaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT COUNT(*) FROM ac_entities WHERE entity_type = ?")) {
+            stmt.setString(1, type.name());
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        } catch (SQLException e) {
+            throw new IOException("统计" + type.getDisplayName() + "数量失败：" + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean isEmpty() throws IOException {
+        try (Connection conn = databaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT 1 FROM ac_entities LIMIT 1");
+             ResultSet rs = stmt.executeQuery()) {
+            return !rs.next();
+        } catch (SQLException e) {
+            throw new IOException("查询实体表失败：" + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 一个事务内写入整批：写入按每条最多 MULTI_ROW_LIMIT 行的多行 upsert 执行，删除走 JDBC 批处理
+     */
+    @Override
+    public void writeBatch(List<Mutation> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<Mutation> puts = new ArrayList<>();
+        List<Mutation> removals = new ArrayList<>();
+        for (Mutation mutation : batch) {
+            (mutation.isDelete() ? removals : puts).add(mutation);
+        }
+
+        try (Connection conn = databaseManager.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                for (int from = 0; from < puts.size(); from += MULTI_ROW_LIMIT) {
+                    List<Mutation> chunk = puts.subList(from, Math.min(puts.size(), from + MULTI_ROW_LIMIT));
+                    try (PreparedStatement stmt = conn.prepareStatement(buildUpsert(chunk.size()))) {
+                        int index = 1;
+                        for (Mutation mutation : chunk) {
+                            stmt.setString(index++, mutation.type().name());
+                            stmt.setString(index++, mutation.id());
+                            stmt.setString(index++, new String(mutation.data(), StandardCharsets.UTF_8));
+                        }
+                        stmt.executeUpdate();
+                    }
+                }
+                if (!removals.isEmpty()) {
+                    try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM ac_entities WHERE entity_type = ? AND entity_id = ?")) {
+                        for (Mutation mutation : removals) {
+                            stmt.setString(1, mutation.type().name());
+                            stmt.setString(2, mutation.id());
+                            stmt.addBatch();
+                        }
+                        stmt.executeBatch();
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new IOException("批量写入数据库失败（" + batch.size() + " 条）：" + e.getMessage(), e);
+        }
+        batches.incrementAndGet();
+        upserts.addAndGet(puts.size());
+        deletes.addAndGet(removals.size());
+        totalBatchNanos.addAndGet(System.nanoTime() - start);
+    }
+
+    /**
+     * 多行 upsert 语句（PostgreSQL 使用 ON CONFLICT，MySQL/H2(MySQL模式) 使用 ON DUPLICATE KEY UPDATE）
+     */
+    private String buildUpsert(int rows) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ac_entities (entity_type, entity_id, data) VALUES ");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+        }
+        if ("postgresql".equals(databaseManager.getSqlType())) {
+            sql.append(" ON CONFLICT (entity_type, entity_id) DO UPDATE SET data = EXCLUDED.data, updated_at = CURRENT_TIMESTAMP");
+        } else {
+            sql.append(" ON DUPLICATE KEY UPDATE data = VALUES(data)");
+        }
+        return sql.toString();
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long count = batches.get();
+        stats.put("type", databaseManager.getSqlType());
+        stats.put("batches", count);
+        stats.put("upserts", upserts.get());
+        stats.put("deletes", deletes.get());
+        stats.put("avgBatchMs", String.format("%.2f", count == 0 ? 0 : totalBatchNanos.get() / count / 1_000_000.0));
+        return stats;
+    }
+
+    /**
+     * 连接池由 DatabaseManager 管理并在插件禁用时关闭
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * 旧版各表中是否有数据（新实体表为空时据此决定是否从旧表导入）
+     */
+    public boolean hasLegacyData() {
+        String[] tables = {"admins", "announcements", "compensations", "whitelist_entries", "users"};
+        try (Connection conn = databaseManager.getConnection()) {
+            for (String table : tables) {
+                try (PreparedStatement stmt = conn.prepareStatement("SELECT 1 FROM " + table + " LIMIT 1");
+                     ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        return true;
+                    }
+                } catch (SQLException ignored) {
+                    // 旧表不存在
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().warning("⚠️ 检查旧版数据表失败：" + e.getMessage());
+        }
+        return false;
+    }
+
+    // ====================== 管理员操作（以下各表均为旧表结构，仅用于导入） ======================
     
     public List<Admin> loadAdmins() {
         List<Admin> admins = new ArrayList<>();
@@ -63,32 +281,6 @@ public class DatabaseDataManager {
         return admins;
     }
 
-    public void saveAdmins(List<Admin> admins) {
-        if (!databaseManager.isUsingDatabase()) {
-            return;
-        }
-
-        try (Connection conn = databaseManager.getConnection()) {
-            // 先删除所有现有数据
-            conn.createStatement().execute("DELETE FROM admins");
-            
-            // 插入新数据
-            String sql = "INSERT INTO admins (username, password_hash, permissions) VALUES (?, ?, ?)";
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                for (Admin admin : admins) {
-                    stmt.setString(1, admin.getUsername());
-                    stmt.setString(2, admin.getPasswordHash());
-                    stmt.setString(3, gson.toJson(admin.getPermissions()));
-                    stmt.addBatch();
-                }
-                stmt.executeBatch();
-            }
-        } catch (SQLException e) {
-            plugin.getLogger().severe("❌ 保存管理员数据失败：" + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-
     public Admin getAdminByUsername(String username) {
         if (!databaseManager.isUsingDatabase()) {
             return null;
@@ -159,32 +351,6 @@ public class DatabaseDataManager {
         return announcements;
     }
 
-    public void saveAnnouncements(List<Announcement> announcements) {
-        if (!databaseManager.isUsingDatabase()) {
-            return;
-        }
-
-        try (Connection conn = databaseManager.getConnection()) {
-            // 先删除所有现有数据
-            conn.createStatement().execute("DELETE FROM announcements");
-            
-            // 插入新数据
-            String sql = "INSERT INTO announcements (title, content, author) VALUES (?, ?, ?)";
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                for (Announcement announcement : announcements) {
-                    stmt.setString(1, announcement.getTitle());
-                    stmt.setString(2, announcement.getContent());
-                    stmt.setString(3, announcement.getAuthor());
-                    stmt.addBatch();
-                }
-                stmt.executeBatch();
-            }
-        } catch (SQLException e) {
-            plugin.getLogger().severe("❌ 保存公告数据失败：" + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-
     // ====================== 补偿操作 ======================
     
     public List<Compensation> loadCompensations() {
@@ -227,33 +393,6 @@ public class DatabaseDataManager {
         return compensations;
     }
 
-    public void saveCompensations(List<Compensation> compensations) {
-        if (!databaseManager.isUsingDatabase()) {
-            return;
-        }
-
-        try (Connection conn = databaseManager.getConnection()) {
-            // 先删除所有现有数据
-            conn.createStatement().execute("DELETE FROM compensations");
-            
-            // 插入新数据
-            String sql = "INSERT INTO compensations (title, description, items, author) VALUES (?, ?, ?, ?)";
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                for (Compensation compensation : compensations) {
-                    stmt.setString(1, compensation.getTitle());
-                    stmt.setString(2, compensation.getDescription());
-                    stmt.setString(3, gson.toJson(compensation.getItems()));
-                    stmt.setString(4, compensation.getAuthor());
-                    stmt.addBatch();
-                }
-                stmt.executeBatch();
-            }
-        } catch (SQLException e) {
-            plugin.getLogger().severe("❌ 保存补偿数据失败：" + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-
     // ====================== 领取日志操作 ======================
     
     public List<ClaimLog> loadClaimLogs() {
@@ -286,32 +425,6 @@ public class DatabaseDataManager {
         return claimLogs;
     }
 
-    public void saveClaimLogs(List<ClaimLog> claimLogs) {
-        if (!databaseManager.isUsingDatabase()) {
-            return;
-        }
-
-        try (Connection conn = databaseManager.getConnection()) {
-            // 先删除所有现有数据
-            conn.createStatement().execute("DELETE FROM claim_logs");
-            
-            // 插入新数据
-            String sql = "INSERT INTO claim_logs (compensation_id, player_name, player_uuid) VALUES (?, ?, ?)";
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                for (ClaimLog claimLog : claimLogs) {
-                    stmt.setInt(1, claimLog.getCompensationIdInt());
-                    stmt.setString(2, claimLog.getPlayerName());
-                    stmt.setString(3, claimLog.getPlayerUuid());
-                    stmt.addBatch();
-                }
-                stmt.executeBatch();
-            }
-        } catch (SQLException e) {
-            plugin.getLogger().severe("❌ 保存领取日志数据失败：" + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-
     // ====================== 白名单操作 ======================
     
     public List<WhitelistEntry> loadWhitelistEntries() {
@@ -345,33 +458,6 @@ public class DatabaseDataManager {
         return whitelistEntries;
     }
 
-    public void saveWhitelistEntries(List<WhitelistEntry> whitelistEntries) {
-        if (!databaseManager.isUsingDatabase()) {
-            return;
-        }
-
-        try (Connection conn = databaseManager.getConnection()) {
-            // 先删除所有现有数据
-            conn.createStatement().execute("DELETE FROM whitelist_entries");
-            
-            // 插入新数据
-            String sql = "INSERT INTO whitelist_entries (player_name, player_uuid, added_by, reason) VALUES (?, ?, ?, ?)";
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                for (WhitelistEntry whitelistEntry : whitelistEntries) {
-                    stmt.setString(1, whitelistEntry.getPlayerName());
-                    stmt.setString(2, whitelistEntry.getPlayerUuid());
-                    stmt.setString(3, whitelistEntry.getAddedBy());
-                    stmt.setString(4, whitelistEntry.getReason());
-                    stmt.addBatch();
-                }
-                stmt.executeBatch();
-            }
-        } catch (SQLException e) {
-            plugin.getLogger().severe("❌ 保存白名单数据失败：" + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-
     // ====================== 用户操作 ======================
     
     public List<User> loadUsers() {
@@ -408,35 +494,6 @@ public class DatabaseDataManager {
         return users;
     }
 
-    public void saveUsers(List<User> users) {
-        if (!databaseManager.isUsingDatabase()) {
-            return;
-        }
-
-        try (Connection conn = databaseManager.getConnection()) {
-            // 先删除所有现有数据
-            conn.createStatement().execute("DELETE FROM users");
-            
-            // 插入新数据
-            String sql = "INSERT INTO users (username, email, password_hash, qq_number, minecraft_uuid, is_verified) VALUES (?, ?, ?, ?, ?, ?)";
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                for (User user : users) {
-                    stmt.setString(1, user.getUsername());
-                    stmt.setString(2, user.getEmail());
-                    stmt.setString(3, user.getPasswordHash());
-                    stmt.setString(4, user.getQqNumber());
-                    stmt.setString(5, user.getMinecraftUuid());
-                    stmt.setBoolean(6, user.isVerified());
-                    stmt.addBatch();
-                }
-                stmt.executeBatch();
-            }
-        } catch (SQLException e) {
-            plugin.getLogger().severe("❌ 保存用户数据失败：" + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-
     // ====================== 邮箱验证操作 ======================
     
     public List<EmailVerificationCode> loadEmailVerificationCodes() {
@@ -469,32 +526,6 @@ public class DatabaseDataManager {
         return verificationCodes;
     }
 
-    public void saveEmailVerificationCodes(List<EmailVerificationCode> verificationCodes) {
-        if (!databaseManager.isUsingDatabase()) {
-            return;
-        }
-
-        try (Connection conn = databaseManager.getConnection()) {
-            // 先删除所有现有数据
-            conn.createStatement().execute("DELETE FROM email_verification_codes");
-            
-            // 插入新数据
-            String sql = "INSERT INTO email_verification_codes (email, code, expires_at) VALUES (?, ?, ?)";
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                for (EmailVerificationCode verificationCode : verificationCodes) {
-                    stmt.setString(1, verificationCode.getEmail());
-                    stmt.setString(2, verificationCode.getCode());
-                    stmt.setString(3, verificationCode.getExpiresAt());
-                    stmt.addBatch();
-                }
-                stmt.executeBatch();
-            }
-        } catch (SQLException e) {
-            plugin.getLogger().severe("❌ 保存邮箱验证码数据失败：" + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-
     // ====================== 白名单启用状态操作 ======================
     
     public boolean loadWhitelistEnabledStatus() {
@@ -519,23 +550,4 @@ public class DatabaseDataManager {
         
         return false;
     }
-
-    public void saveWhitelistEnabledStatus(boolean enabled) {
-        if (!databaseManager.isUsingDatabase()) {
-            return;
-        }
-
-        String sql = "INSERT INTO settings (setting_key, setting_value) VALUES ('whitelist_enabled', ?) " +
-                     "ON DUPLICATE KEY UPDATE setting_value = VALUES(setting_value)";
-        
-        try (Connection conn = databaseManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setString(1, enabled ? "true" : "false");
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            plugin.getLogger().severe("❌ 保存白名单启用状态失败：" + e.getMessage());
-            e.printStackTrace();
-        }
-    }
 }
\ No newline at end of file
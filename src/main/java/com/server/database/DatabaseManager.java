@@ -141,6 +141,32 @@ public class DatabaseManager {
         }
     }
 
+    /**
+     * 按需连接数据库（用于非SQL存储模式下把数据迁移到SQL数据库）
+     * 已连接时不做任何事
+     */
+    public synchronized void connect() throws SQLException {
+        if (isConnected()) {
+            return;
+        }
+        initializeSQLDatabase();
+        plugin.getLogger().info("✅ 数据库连接初始化成功（迁移目标）");
+    }
+
+    /**
+     * 连接池是否可用
+     */
+    public boolean isConnected() {
+        return dataSource != null && !dataSource.isClosed();
+    }
+
+    /**
+     * 数据库类型（mysql / postgresql / h2）
+     */
+    public String getSqlType() {
+        return plugin.getConfig().getString("database.sql.type", "mysql").toLowerCase();
+    }
+
     /**
      * 获取数据库连接
      */
@@ -186,7 +212,7 @@ public class DatabaseManager {
      * 执行SQL脚本初始化表结构
      */
     public void executeInitScript() throws SQLException {
-        if (!useDatabase) {
+        if (!isConnected()) {
             return;
         }
 
@@ -299,7 +325,16 @@ public class DatabaseManager {
                     "    setting_key VARCHAR(50) UNIQUE NOT NULL," +
                     "    setting_value TEXT NOT NULL," +
                     "    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP" +
-                    ");"
+                    ");",
+
+                    // 实体表（存储后端SPI：每个实体一行紧凑JSON，ID区分大小写）
+                    "CREATE TABLE IF NOT EXISTS ac_entities (" +
+                    "    entity_type VARCHAR(32) NOT NULL," +
+                    "    entity_id VARCHAR(191) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL," +
+                    "    data LONGTEXT NOT NULL," +
+                    "    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP," +
+                    "    PRIMARY KEY (entity_type, entity_id)" +
+                    ") DEFAULT CHARSET = utf8mb4;"
                 };
                 
             case "postgresql":
@@ -375,6 +410,15 @@ public class DatabaseManager {
                     "    setting_key VARCHAR(50) UNIQUE NOT NULL," +
                     "    setting_value TEXT NOT NULL," +
                     "    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                    ");",
+
+                    // 实体表（按字节序排序ID，与其他存储后端的遍历顺序一致）
+                    "CREATE TABLE IF NOT EXISTS ac_entities (" +
+                    "    entity_type VARCHAR(32) NOT NULL," +
+                    "    entity_id VARCHAR(191) COLLATE \"C\" NOT NULL," +
+                    "    data TEXT NOT NULL," +
+                    "    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                    "    PRIMARY KEY (entity_type, entity_id)" +
                     ");"
                 };
                 
@@ -451,6 +495,14 @@ public class DatabaseManager {
                     "    setting_key VARCHAR(50) UNIQUE NOT NULL," +
                     "    setting_value CLOB NOT NULL," +
                     "    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                    ");",
+
+                    "CREATE TABLE IF NOT EXISTS ac_entities (" +
+                    "    entity_type VARCHAR(32) NOT NULL," +
+                    "    entity_id VARCHAR(191) NOT NULL," +
+                    "    data CLOB NOT NULL," +
+                    "    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                    "    PRIMARY KEY (entity_type, entity_id)" +
                     ");"
                 };
                 
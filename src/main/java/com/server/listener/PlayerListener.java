@@ -1,29 +1,36 @@
 package com.server.listener;
 
 import com.server.AnnouncementCompensationPlugin;
-import com.server.data.model.ClaimLog;
 import com.server.data.model.Compensation;
 import com.server.data.model.Announcement;
 import com.server.util.ColorUtils;
 import net.kyori.adventure.text.Component;
+import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.inventory.InventoryOpenEvent;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
 import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 玩家事件监听器
  * 核心职责：
- * 1. 玩家登录：白名单校验、未读公告推送、未领取补偿凭证发放
+ * 1. 玩家登录：预登录阶段（异步线程）完成白名单校验与会话上下文预取，进服时只应用预取结果（推送公告、发放凭证）
  * 2. 玩家右键：补偿凭证领取、物品发放
  * 适配 Paper 1.19.2 事件体系 + JDK 17
  */
@@ -34,13 +41,57 @@ public class PlayerListener implements Listener {
     private static final String COMPENSATION_ITEM_NAME = ColorUtils.translate("&6&l补偿凭证");
     private static final Material COMPENSATION_ITEM_MATERIAL = Material.PAPER;
 
+    // 已绑定账户的在线玩家UUID集合（移动/背包事件O(1)判断，Web线程也会写入，需线程安全）
+    private final Set<UUID> authenticatedPlayers = ConcurrentHashMap.newKeySet();
+    // 未登录玩家上次收到提醒的时间（毫秒），用于提醒节流
+    private final Map<UUID, Long> lastReminderTime = new ConcurrentHashMap<>();
+    // 未登录提醒最小间隔（毫秒）
+    private final long reminderIntervalMillis;
+    // 预登录阶段准备好的会话上下文（进服时应用，退出时清除）
+    private final Map<UUID, SessionContext> sessionContexts = new ConcurrentHashMap<>();
+    // 会话上下文有效期（毫秒）：超过后进服时重新准备（预登录通过但最终未进服的残留也按此清理）
+    private final long sessionContextTtlMillis;
+
     public PlayerListener(AnnouncementCompensationPlugin plugin) {
         this.plugin = plugin;
+        this.reminderIntervalMillis = Math.max(0, plugin.getConfig().getLong("login.reminder_interval", 3)) * 1000L;
+        this.sessionContextTtlMillis = Math.max(1, plugin.getConfig().getLong("login.session_context_ttl", 60)) * 1000L;
+    }
+
+    /**
+     * 监听玩家预登录事件（AsyncPlayerPreLoginEvent，异步线程）
+     * 处理：白名单校验（在占用进服名额之前拒绝）、预取会话上下文（绑定账户、未读公告、是否有待领取补偿）
+     * 这里的存储读取（按需加载的用户、已读进度）不会阻塞主线程
+     */
+    @EventHandler(priority = EventPriority.HIGH)
+    public void onAsyncPreLogin(AsyncPlayerPreLoginEvent e) {
+        if (e.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            return;
+        }
+        UUID uuid = e.getUniqueId();
+        String playerUUID = uuid.toString();
+
+        // 1. 白名单校验（若启用白名单）
+        if (plugin.getDataManager().isWhitelistEnabled() && !plugin.getDataManager().isPlayerInWhitelist(playerUUID)) {
+            e.disallow(AsyncPlayerPreLoginEvent.Result.KICK_WHITELIST, ColorUtils.toComponent("&c你不在服务器白名单中！"));
+            plugin.getLogger().info("非白名单玩家 " + e.getName() + "(" + playerUUID + ") 尝试登录，已拒绝");
+            return;
+        }
+
+        // 2. 预取会话上下文
+        long now = System.currentTimeMillis();
+        sessionContexts.values().removeIf(context -> !context.applied() && now - context.preparedAt() > sessionContextTtlMillis);
+        try {
+            sessionContexts.put(uuid, prepareContext(playerUUID));
+        } catch (Exception ex) {
+            // 预取失败不影响进服，进服时重新准备
+            plugin.getLogger().warning("⚠️ 预取玩家 " + e.getName() + " 的会话上下文失败：" + ex.getMessage());
+        }
     }
 
     /**
      * 监听玩家登录事件（PlayerJoinEvent）
-     * 处理：白名单校验、登录提示、未读公告推送、未领取补偿凭证发放
+     * 只应用预登录阶段准备好的上下文：登录提示、未读公告推送、未领取补偿凭证发放
      */
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent e) {
@@ -48,19 +99,25 @@ public class PlayerListener implements Listener {
         String playerUUID = player.getUniqueId().toString();
         String playerName = player.getName();
 
-        // 1. 白名单校验（若启用白名单）
-        if (plugin.getDataManager().isWhitelistEnabled()) {
-            if (!plugin.getDataManager().isPlayerInWhitelist(playerUUID)) {
-                // 踢出非白名单玩家
+        SessionContext context = sessionContexts.get(player.getUniqueId());
+        if (context == null || System.currentTimeMillis() - context.preparedAt() > sessionContextTtlMillis) {
+            // 没有可用的预取结果（预取失败、已超过有效期等）：白名单兜底校验后在主线程准备
+            if (plugin.getDataManager().isWhitelistEnabled() && !plugin.getDataManager().isPlayerInWhitelist(playerUUID)) {
                 player.kick(ColorUtils.toComponent("&c你不在服务器白名单中！"));
                 plugin.getLogger().info("非白名单玩家 " + playerName + "(" + playerUUID + ") 尝试登录，已踢出");
                 return;
             }
+            context = prepareContext(playerUUID);
         }
+        sessionContexts.put(player.getUniqueId(), context.markApplied());
 
-        // 2. 提示玩家登录（如果尚未绑定账户）
-        boolean hasBoundAccount = plugin.getDataManager().getUsers().stream()
-                .anyMatch(user -> user.getGameUUID() != null && user.getGameUUID().equals(playerUUID));
+        // 提示玩家登录（如果尚未绑定账户）
+        boolean hasBoundAccount = context.bound();
+        if (hasBoundAccount) {
+            authenticatedPlayers.add(player.getUniqueId());
+        } else {
+            authenticatedPlayers.remove(player.getUniqueId());
+        }
 
         if (!hasBoundAccount) {
             // 对于内网渗透场景，提供本地访问地址和配置域名两种方式
@@ -82,10 +139,12 @@ public class PlayerListener implements Listener {
         } else {
             // 已绑定账户，直接登录
             player.sendMessage(ColorUtils.toComponent("&a你已绑定账户，欢迎回来！"));
-            // 3. 推送未读公告
-            pushUnreadAnnouncements(player, playerUUID);
-            // 4. 发放未领取补偿的凭证物品
-            giveUnclaimedCompensationItems(player, playerUUID);
+            // 推送未读公告
+            pushUnreadAnnouncements(player, playerUUID, context.unreadAnnouncements());
+            // 发放未领取补偿的凭证物品
+            if (context.hasPendingCompensations()) {
+                giveCompensationVoucher(player);
+            }
         }
 
         plugin.getLogger().info("玩家 " + playerName + " 登录成功");
@@ -111,10 +170,8 @@ public class PlayerListener implements Listener {
         String playerUUID = player.getUniqueId().toString();
         String playerName = player.getName();
 
-        // 遍历所有未领取的补偿
-        List<Compensation> unclaimedCompensations = plugin.getDataManager().getAllCompensations().stream()
-                .filter(comp -> !comp.isClaimed(playerUUID))
-                .toList();
+        // 领取所有未领取的补偿（按玩家加锁，与 /compensation claim 互斥，不会重复领取）
+        List<Compensation> unclaimedCompensations = plugin.getDataManager().getClaimService().claimAll(playerUUID, playerName);
 
         if (unclaimedCompensations.isEmpty()) {
             player.sendMessage(ColorUtils.toComponent("&c你没有未领取的补偿！"));
@@ -129,7 +186,7 @@ public class PlayerListener implements Listener {
 
         // 发放补偿物品
         for (Compensation comp : unclaimedCompensations) {
-            // 1. 发放定义的补偿物品
+            // 发放定义的补偿物品（领取状态与日志已由领取服务提交）
             for (Compensation.CompensationItem compItem : comp.getItems()) {
                 try {
                     Material material = Material.valueOf(compItem.getMaterial());
@@ -158,14 +215,6 @@ public class PlayerListener implements Listener {
                     player.sendMessage(ColorUtils.toComponent("&c发放补偿物品失败：" + compItem.getMaterial()));
                 }
             }
-
-            // 2. 标记补偿已领取
-            comp.markClaimed(playerUUID);
-            plugin.getDataManager().saveCompensation(comp);
-
-            // 3. 记录领取日志
-            ClaimLog log = new ClaimLog(playerName, playerUUID, comp.getIdString());
-            plugin.getDataManager().addClaimLog(log);
         }
 
         // 移除手中的补偿凭证
@@ -176,22 +225,32 @@ public class PlayerListener implements Listener {
         plugin.getLogger().info("玩家 " + playerName + " 领取了 " + unclaimedCompensations.size() + " 个补偿");
     }
     
+    /**
+     * 监听玩家退出事件（PlayerQuitEvent）
+     * 清理登录状态、提醒节流记录与会话上下文
+     */
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent e) {
+        UUID uuid = e.getPlayer().getUniqueId();
+        authenticatedPlayers.remove(uuid);
+        lastReminderTime.remove(uuid);
+        sessionContexts.remove(uuid);
+    }
+
     /**
      * 监听玩家移动事件（PlayerMoveEvent）
-     * 限制未登录玩家移动
+     * 限制未登录玩家移动（仅在跨越方块时检查，视角转动不处理）
      */
     @EventHandler
     public void onPlayerMove(PlayerMoveEvent e) {
+        if (!changedBlock(e.getFrom(), e.getTo())) {
+            return;
+        }
+
         Player player = e.getPlayer();
-        String playerUUID = player.getUniqueId().toString();
-        
-        // 检查玩家是否已绑定账户
-        boolean hasBoundAccount = plugin.getDataManager().getUsers().stream()
-                .anyMatch(user -> user.getGameUUID() != null && user.getGameUUID().equals(playerUUID));
-        
-        if (!hasBoundAccount) {
+        if (!authenticatedPlayers.contains(player.getUniqueId())) {
             e.setCancelled(true);
-            player.sendMessage(ColorUtils.toComponent("&c请先使用 /login <账户名称> <账户密码> 登录你的账户！"));
+            sendLoginReminder(player);
         }
     }
     
@@ -205,28 +264,99 @@ public class PlayerListener implements Listener {
             return;
         }
         
-        String playerUUID = player.getUniqueId().toString();
-        
         // 检查玩家是否已绑定账户
-        boolean hasBoundAccount = plugin.getDataManager().getUsers().stream()
-                .anyMatch(user -> user.getGameUUID() != null && user.getGameUUID().equals(playerUUID));
-        
-        if (!hasBoundAccount) {
+        if (!authenticatedPlayers.contains(player.getUniqueId())) {
             e.setCancelled(true);
-            player.sendMessage(ColorUtils.toComponent("&c请先使用 /login <账户名称> <账户密码> 登录你的账户！"));
+            sendLoginReminder(player);
+        }
+    }
+
+    // ====================== 登录状态维护 ======================
+    /**
+     * 标记玩家已绑定账户（/login 成功、Web端绑定角色时调用）
+     */
+    public void markAuthenticated(String playerUUID) {
+        UUID uuid = parseUUID(playerUUID);
+        if (uuid != null) {
+            authenticatedPlayers.add(uuid);
+            lastReminderTime.remove(uuid);
+        }
+    }
+
+    /**
+     * 撤销玩家登录状态（账户删除或解绑时调用）
+     */
+    public void revokeAuthenticated(String playerUUID) {
+        UUID uuid = parseUUID(playerUUID);
+        if (uuid != null) {
+            authenticatedPlayers.remove(uuid);
         }
     }
 
+    /**
+     * 玩家是否已绑定账户
+     */
+    public boolean isAuthenticated(UUID uuid) {
+        return authenticatedPlayers.contains(uuid);
+    }
+
     // ====================== 私有辅助方法 ======================
     /**
-     * 推送玩家未读公告
+     * 发送未登录提醒（按玩家节流，避免每个移动事件都发送一条消息）
+     */
+    private void sendLoginReminder(Player player) {
+        long now = System.currentTimeMillis();
+        Long last = lastReminderTime.get(player.getUniqueId());
+        if (last != null && now - last < reminderIntervalMillis) {
+            return;
+        }
+        lastReminderTime.put(player.getUniqueId(), now);
+        player.sendMessage(ColorUtils.toComponent("&c请先使用 /login <账户名称> <账户密码> 登录你的账户！"));
+    }
+
+    /**
+     * 判断两次位置是否处于不同方块（或不同世界）
      */
-    private void pushUnreadAnnouncements(Player player, String playerUUID) {
-        List<Announcement> unreadAnnouncements = plugin.getDataManager().getAllAnnouncements().stream()
-                .filter(ann -> ann.isSent() && !ann.getReadStatus().getOrDefault(playerUUID, false))
-                .sorted((a1, a2) -> Integer.compare(a2.getPriority(), a1.getPriority())) // 按优先级降序排序
-                .toList();
+    private static boolean changedBlock(Location from, Location to) {
+        if (to == null) {
+            return false;
+        }
+        return from.getBlockX() != to.getBlockX()
+                || from.getBlockY() != to.getBlockY()
+                || from.getBlockZ() != to.getBlockZ()
+                || from.getWorld() != to.getWorld();
+    }
 
+    private static UUID parseUUID(String uuid) {
+        if (uuid == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(uuid);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 准备玩家的会话上下文（绑定账户、按优先级排序的未读公告、是否有待领取补偿）
+     * 只读取线程安全的数据结构，可在预登录的异步线程中调用
+     */
+    private SessionContext prepareContext(String playerUUID) {
+        boolean bound = plugin.getDataManager().getUserByGameUUID(playerUUID) != null;
+        List<Announcement> unread = bound
+                ? plugin.getDataManager().getUnreadAnnouncements(playerUUID).stream()
+                        .sorted((a1, a2) -> Integer.compare(a2.getPriority(), a1.getPriority())) // 按优先级降序排序
+                        .toList()
+                : List.of();
+        boolean hasPending = bound && plugin.getDataManager().hasPendingCompensations(playerUUID);
+        return new SessionContext(bound, unread, hasPending, System.currentTimeMillis(), false);
+    }
+
+    /**
+     * 推送玩家未读公告（推送后只写入该玩家的一条已读进度）
+     */
+    private void pushUnreadAnnouncements(Player player, String playerUUID, List<Announcement> unreadAnnouncements) {
         if (unreadAnnouncements.isEmpty()) {
             return;
         }
@@ -237,24 +367,15 @@ public class PlayerListener implements Listener {
         // 发送每条公告内容
         for (Announcement ann : unreadAnnouncements) {
             player.sendMessage(ColorUtils.toComponent(ann.getContent()));
-            // 标记为已读
-            ann.getReadStatus().put(playerUUID, true);
-            plugin.getDataManager().saveAnnouncement(ann);
         }
+        // 标记为已读
+        plugin.getDataManager().markAnnouncementsRead(playerUUID, unreadAnnouncements);
     }
 
     /**
      * 发放未领取补偿的凭证物品（仅当玩家背包无凭证时发放）
      */
-    private void giveUnclaimedCompensationItems(Player player, String playerUUID) {
-        // 检查是否有未领取的补偿
-        boolean hasUnclaimed = plugin.getDataManager().getAllCompensations().stream()
-                .anyMatch(comp -> !comp.isClaimed(playerUUID));
-
-        if (!hasUnclaimed) {
-            return;
-        }
-
+    private void giveCompensationVoucher(Player player) {
         // 检查背包是否已有补偿凭证
         boolean hasCompItem = player.getInventory().getContents() != null &&
                 java.util.Arrays.stream(player.getInventory().getContents())
@@ -293,4 +414,15 @@ public class PlayerListener implements Listener {
         ItemMeta meta = item.getItemMeta();
         return meta.hasDisplayName() && meta.displayName().equals(ColorUtils.toComponent(COMPENSATION_ITEM_NAME));
     }
+
+    /**
+     * 玩家会话上下文（预登录阶段准备，进服时应用，退出时清除）
+     * @param applied 是否已在进服时应用（已应用的上下文只在退出时清除，不按有效期清理）
+     */
+    private record SessionContext(boolean bound, List<Announcement> unreadAnnouncements,
+                                  boolean hasPendingCompensations, long preparedAt, boolean applied) {
+        SessionContext markApplied() {
+            return new SessionContext(bound, unreadAnnouncements, hasPendingCompensations, preparedAt, true);
+        }
+    }
 }
\ No newline at end of file
@@ -2,12 +2,29 @@ package com.server.util;
 
 import org.mindrot.jbcrypt.BCrypt;
 
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * BCrypt 加密工具类（单例封装）
  * 适配 JDK 17，提供密码加密、验证功能
  * 依赖 jbcrypt 0.4 包（pom.xml 已引入）
+ * 加密强度（cost）由启动时的基准测试按目标耗时选定，哈希本身的 $2a$NN$ 前缀记录了生成时的强度，
+ * 强度低于当前的哈希在下次登录成功时按当前强度重新加密（只升不降：校准结果受启动时负载影响，降低强度会让密码在重启间来回重新加密）
  */
 public class BCryptUtils {
+    // 默认强度（未校准或校准失败时使用）
+    public static final int DEFAULT_COST = 12;
+    // jbcrypt 支持的强度范围
+    private static final int MIN_SUPPORTED_COST = 4;
+    private static final int MAX_SUPPORTED_COST = 30;
+    // 每个强度的测量次数（取中位数）
+    private static final int SAMPLES = 3;
+
+    // 当前加密强度
+    private static volatile int cost = DEFAULT_COST;
+
     // 私有化构造，禁止实例化
     private BCryptUtils() {}
 
@@ -20,8 +37,8 @@ public class BCryptUtils {
         if (plainPassword == null || plainPassword.isEmpty()) {
             throw new IllegalArgumentException("明文密码不能为空");
         }
-        // 生成盐值（强度12，平衡安全性与性能）
-        String salt = BCrypt.gensalt(12);
+        // 生成盐值（强度为当前校准值）
+        String salt = BCrypt.gensalt(cost);
         return BCrypt.hashpw(plainPassword, salt);
     }
 
@@ -45,4 +62,106 @@ public class BCryptUtils {
             return false;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 当前加密强度
+     */
+    public static int getCost() {
+        return cost;
+    }
+
+    /**
+     * 设置加密强度（超出 jbcrypt 支持范围时取边界值）
+     */
+    public static void setCost(int newCost) {
+        cost = Math.max(MIN_SUPPORTED_COST, Math.min(MAX_SUPPORTED_COST, newCost));
+    }
+
+    /**
+     * 从哈希前缀（$2a$NN$）解析生成时的强度
+     * @return 强度；不是BCrypt哈希时返回 -1
+     */
+    public static int costOf(String hashedPassword) {
+        if (hashedPassword == null || hashedPassword.length() < 7
+                || hashedPassword.charAt(0) != '$' || hashedPassword.charAt(3) != '$' || hashedPassword.charAt(6) != '$') {
+            return -1;
+        }
+        char tens = hashedPassword.charAt(4);
+        char ones = hashedPassword.charAt(5);
+        if (!Character.isDigit(tens) || !Character.isDigit(ones)) {
+            return -1;
+        }
+        return (tens - '0') * 10 + (ones - '0');
+    }
+
+    /**
+     * 哈希强度是否低于当前强度（登录成功后应按当前强度重新加密；高于当前强度的哈希保持不变）
+     */
+    public static boolean needsRehash(String hashedPassword) {
+        int hashCost = costOf(hashedPassword);
+        return hashCost > 0 && hashCost < cost;
+    }
+
+    /**
+     * 基准测试并选定加密强度：从最低强度开始逐级测量单次加密耗时（每级取中位数），
+     * 选择耗时不超过目标的最高强度；最低强度也超过目标时使用最低强度
+     * 每提高一级耗时约翻倍，超过目标后即停止测量
+     * @param targetMillis 单次哈希的目标耗时（毫秒）
+     * @param minCost 最低强度
+     * @param maxCost 最高强度
+     * @return 校准结果（选定强度与各强度的实测耗时），选定强度同时设为当前强度
+     */
+    public static Calibration calibrate(long targetMillis, int minCost, int maxCost) {
+        int low = Math.max(MIN_SUPPORTED_COST, Math.min(minCost, maxCost));
+        int high = Math.min(MAX_SUPPORTED_COST, Math.max(minCost, maxCost));
+        Map<Integer, Double> timings = new LinkedHashMap<>();
+        String sample = "calibration-" + System.nanoTime();
+
+        // 预热（触发JIT编译，避免首次测量偏高）
+        BCrypt.hashpw(sample, BCrypt.gensalt(MIN_SUPPORTED_COST));
+
+        int selected = low;
+        for (int c = low; c <= high; c++) {
+            double millis = measure(sample, c);
+            timings.put(c, millis);
+            if (millis > targetMillis) {
+                break;
+            }
+            selected = c;
+        }
+        setCost(selected);
+        return new Calibration(selected, targetMillis, timings);
+    }
+
+    private static double measure(String sample, int cost) {
+        double[] runs = new double[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            String salt = BCrypt.gensalt(cost);
+            long start = System.nanoTime();
+            BCrypt.hashpw(sample, salt);
+            runs[i] = (System.nanoTime() - start) / 1_000_000.0;
+        }
+        Arrays.sort(runs);
+        return runs[SAMPLES / 2];
+    }
+
+    /**
+     * 校准结果
+     * @param cost 选定的强度
+     * @param targetMillis 目标耗时（毫秒）
+     * @param timings 强度 -> 单次哈希耗时中位数（毫秒）
+     */
+    public record Calibration(int cost, long targetMillis, Map<Integer, Double> timings) {
+        /**
+         * 日志用的测量表，如 "10=62.3ms 11=124.8ms 12=251.0ms"
+         */
+        public String describe() {
+            StringBuilder sb = new StringBuilder();
+            timings.forEach((c, millis) -> {
+                if (sb.length() > 0) sb.append(' ');
+                sb.append(c).append('=').append(String.format("%.1f", millis)).append("ms");
+            });
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package com.server.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+
+/**
+ * 压缩位图（Roaring 风格）：存放非负整数集合，用于按玩家序号记录补偿领取状态
+ * 1. 按高 16 位分桶，每桶一个容器：元素不超过 4096 个时用有序 char 数组，超过后转为 65536 位的位图
+ * 2. 查询无锁（容器目录与数组容器不可变、位图容器用原子数组），写入串行（单写者），读取永远不会被写入阻塞
+ * 3. 磁盘编码对每个容器在 数组 / 位图 / 游程 三种格式中取最小者，连续序号（大批玩家领取）只占几个字节
+ */
+public final class CompactBitmap {
+    // 编码格式版本
+    private static final byte FORMAT_VERSION = 1;
+    // 数组容器上限：超过后位图（8KB）更省空间
+    private static final int ARRAY_MAX = 4096;
+    private static final byte TYPE_ARRAY = 0;
+    private static final byte TYPE_BITMAP = 1;
+    private static final byte TYPE_RUN = 2;
+
+    // 按高位升序排列的容器目录（写入时整体替换）
+    private volatile Container[] containers = new Container[0];
+    private volatile int cardinality;
+
+    /**
+     * 是否包含该值
+     */
+    public boolean contains(int value) {
+        Container[] current = containers;
+        int index = find(current, (char) (value >>> 16));
+        return index >= 0 && current[index].contains((char) value);
+    }
+
+    /**
+     * 添加值
+     * @return true=新添加，false=已存在
+     */
+    public synchronized boolean add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("值不能为负数：" + value);
+        }
+        char high = (char) (value >>> 16);
+        char low = (char) value;
+        Container[] current = containers;
+        int index = find(current, high);
+        if (index < 0) {
+            int insertAt = -index - 1;
+            Container[] next = new Container[current.length + 1];
+            System.arraycopy(current, 0, next, 0, insertAt);
+            next[insertAt] = new ArrayContainer(high, new char[]{low});
+            System.arraycopy(current, insertAt, next, insertAt + 1, current.length - insertAt);
+            containers = next;
+        } else {
+            Container container = current[index];
+            if (container.contains(low)) {
+                return false;
+            }
+            Container updated = container.add(low);
+            if (updated != container) {
+                Container[] next = current.clone();
+                next[index] = updated;
+                containers = next;
+            }
+        }
+        cardinality++;
+        return true;
+    }
+
+    /**
+     * 元素个数
+     */
+    public int cardinality() {
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    /**
+     * 按升序遍历所有值
+     */
+    public void forEach(IntConsumer consumer) {
+        for (Container container : containers) {
+            container.forEach(consumer);
+        }
+    }
+
+    /**
+     * 内存占用估算（字节）
+     */
+    public long sizeInBytes() {
+        long bytes = 16;
+        for (Container container : containers) {
+            bytes += container.sizeInBytes();
+        }
+        return bytes;
+    }
+
+    private static int find(Container[] containers, char high) {
+        int low = 0;
+        int highIndex = containers.length - 1;
+        while (low <= highIndex) {
+            int mid = (low + highIndex) >>> 1;
+            char key = containers[mid].key;
+            if (key < high) {
+                low = mid + 1;
+            } else if (key > high) {
+                highIndex = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    // ====================== 编码 ======================
+    /**
+     * 编码为紧凑的字节数组
+     * 与 add 互斥：位图容器是原地修改的，编码期间的写入会让头部的元素个数与实际写出的位不一致
+     */
+    public synchronized byte[] toBytes() {
+        Container[] current = containers;
+        int size = 1 + 2;
+        byte[] types = new byte[current.length];
+        int[][] runs = new int[current.length][];
+        for (int i = 0; i < current.length; i++) {
+            Container container = current[i];
+            int[] containerRuns = container.runs();
+            int arrayBytes = 2 * container.cardinality();
+            int bitmapBytes = 8 * 1024;
+            int runBytes = 2 + 4 * (containerRuns.length / 2);
+            if (runBytes < arrayBytes && runBytes < bitmapBytes) {
+                types[i] = TYPE_RUN;
+                runs[i] = containerRuns;
+                size += 2 + 1 + 2 + runBytes;
+            } else if (arrayBytes <= bitmapBytes) {
+                types[i] = TYPE_ARRAY;
+                size += 2 + 1 + 2 + arrayBytes;
+            } else {
+                types[i] = TYPE_BITMAP;
+                size += 2 + 1 + 2 + bitmapBytes;
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(FORMAT_VERSION);
+        buffer.putChar((char) current.length);
+        for (int i = 0; i < current.length; i++) {
+            Container container = current[i];
+            buffer.putChar(container.key);
+            buffer.put(types[i]);
+            buffer.putChar((char) (container.cardinality() - 1));
+            switch (types[i]) {
+                case TYPE_RUN -> {
+                    int[] containerRuns = runs[i];
+                    buffer.putChar((char) (containerRuns.length / 2));
+                    for (int j = 0; j < containerRuns.length; j += 2) {
+                        buffer.putChar((char) containerRuns[j]);
+                        buffer.putChar((char) (containerRuns[j + 1] - 1));
+                    }
+                }
+                case TYPE_ARRAY -> container.forEach(value -> buffer.putChar((char) value));
+                default -> {
+                    long[] words = ((BitmapContainer) container.toBitmap()).snapshotWords();
+                    for (long word : words) {
+                        buffer.putLong(word);
+                    }
+                }
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * 从 toBytes 的结果解码
+     * @throws IllegalArgumentException 格式错误
+     */
+    public static CompactBitmap fromBytes(byte[] data) {
+        CompactBitmap bitmap = new CompactBitmap();
+        if (data.length == 0) {
+            return bitmap;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            byte version = buffer.get();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("不支持的位图格式版本：" + version);
+            }
+            int count = buffer.getChar();
+            Container[] containers = new Container[count];
+            int total = 0;
+            for (int i = 0; i < count; i++) {
+                char key = buffer.getChar();
+                byte type = buffer.get();
+                int card = buffer.getChar() + 1;
+                switch (type) {
+                    case TYPE_ARRAY -> {
+                        char[] values = new char[card];
+                        for (int j = 0; j < card; j++) {
+                            values[j] = buffer.getChar();
+                        }
+                        containers[i] = new ArrayContainer(key, values);
+                    }
+                    case TYPE_BITMAP -> {
+                        long[] words = new long[1024];
+                        for (int j = 0; j < words.length; j++) {
+                            words[j] = buffer.getLong();
+                        }
+                        containers[i] = new BitmapContainer(key, words, card);
+                    }
+                    case TYPE_RUN -> {
+                        int runCount = buffer.getChar();
+                        if (card <= ARRAY_MAX) {
+                            char[] values = new char[card];
+                            int n = 0;
+                            for (int j = 0; j < runCount; j++) {
+                                int start = buffer.getChar();
+                                int length = buffer.getChar() + 1;
+                                for (int v = start; v < start + length; v++) {
+                                    values[n++] = (char) v;
+                                }
+                            }
+                            containers[i] = new ArrayContainer(key, values);
+                        } else {
+                            long[] words = new long[1024];
+                            for (int j = 0; j < runCount; j++) {
+                                int start = buffer.getChar();
+                                int length = buffer.getChar() + 1;
+                                for (int v = start; v < start + length; v++) {
+                                    words[v >>> 6] |= 1L << v;
+                                }
+                            }
+                            containers[i] = new BitmapContainer(key, words, card);
+                        }
+                    }
+                    default -> throw new IllegalArgumentException("未知的容器类型：" + type);
+                }
+                total += card;
+            }
+            bitmap.containers = containers;
+            bitmap.cardinality = total;
+            return bitmap;
+        } catch (RuntimeException e) {
+            if (e instanceof IllegalArgumentException) {
+                throw e;
+            }
+            throw new IllegalArgumentException("位图数据损坏：" + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 编码为 Base64 字符串（用于JSON）
+     */
+    public String toBase64() {
+        return Base64.getEncoder().encodeToString(toBytes());
+    }
+
+    public static CompactBitmap fromBase64(String base64) {
+        return fromBytes(Base64.getDecoder().decode(base64));
+    }
+
+    // ====================== 容器 ======================
+    private abstract static class Container {
+        final char key;
+
+        Container(char key) {
+            this.key = key;
+        }
+
+        abstract boolean contains(char value);
+
+        /**
+         * 添加（调用方已确认不存在）
+         * @return 添加后的容器：数组容器返回新实例，位图容器原地修改并返回自身
+         */
+        abstract Container add(char value);
+
+        abstract int cardinality();
+
+        abstract void forEach(IntConsumer consumer);
+
+        abstract long sizeInBytes();
+
+        abstract Container toBitmap();
+
+        /**
+         * 游程列表：[起点0, 长度0, 起点1, 长度1, ...]
+         */
+        int[] runs() {
+            RunCollector collector = new RunCollector(key << 16);
+            forEach(collector);
+            return collector.finish();
+        }
+    }
+
+    /**
+     * 把升序值序列折叠为游程
+     */
+    private static final class RunCollector implements IntConsumer {
+        private final int base;
+        private int[] runs = new int[16];
+        private int size;
+        private int start = -2;
+        private int length;
+
+        RunCollector(int base) {
+            this.base = base;
+        }
+
+        @Override
+        public void accept(int value) {
+            int low = value - base;
+            if (low == start + length) {
+                length++;
+                return;
+            }
+            flush();
+            start = low;
+            length = 1;
+        }
+
+        private void flush() {
+            if (start < 0) {
+                return;
+            }
+            if (size + 2 > runs.length) {
+                runs = Arrays.copyOf(runs, runs.length * 2);
+            }
+            runs[size++] = start;
+            runs[size++] = length;
+        }
+
+        int[] finish() {
+            flush();
+            start = -2;
+            return Arrays.copyOf(runs, size);
+        }
+    }
+
+    /**
+     * 数组容器：不可变的有序 char 数组
+     */
+    private static final class ArrayContainer extends Container {
+        private final char[] values;
+
+        ArrayContainer(char key, char[] values) {
+            super(key);
+            this.values = values;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, value) >= 0;
+        }
+
+        @Override
+        Container add(char value) {
+            if (values.length >= ARRAY_MAX) {
+                Container bitmap = toBitmap();
+                return bitmap.add(value);
+            }
+            int insertAt = -Arrays.binarySearch(values, value) - 1;
+            char[] next = new char[values.length + 1];
+            System.arraycopy(values, 0, next, 0, insertAt);
+            next[insertAt] = value;
+            System.arraycopy(values, insertAt, next, insertAt + 1, values.length - insertAt);
+            return new ArrayContainer(key, next);
+        }
+
+        @Override
+        int cardinality() {
+            return values.length;
+        }
+
+        @Override
+        void forEach(IntConsumer consumer) {
+            int base = key << 16;
+            for (char value : values) {
+                consumer.accept(base | value);
+            }
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 32 + 2L * values.length;
+        }
+
+        @Override
+        Container toBitmap() {
+            long[] words = new long[1024];
+            for (char value : values) {
+                words[value >>> 6] |= 1L << value;
+            }
+            return new BitmapContainer(key, words, values.length);
+        }
+    }
+
+    /**
+     * 位图容器：65536 位，原子数组保证无锁读取可见性
+     */
+    private static final class BitmapContainer extends Container {
+        private final AtomicLongArray words;
+        private volatile int cardinality;
+
+        BitmapContainer(char key, long[] words, int cardinality) {
+            super(key);
+            this.words = new AtomicLongArray(words);
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words.get(value >>> 6) & (1L << value)) != 0;
+        }
+
+        @Override
+        Container add(char value) {
+            // 单写者：外层已持有位图写锁
+            int index = value >>> 6;
+            words.set(index, words.get(index) | (1L << value));
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        void forEach(IntConsumer consumer) {
+            int base = key << 16;
+            for (int i = 0; i < 1024; i++) {
+                long word = words.get(i);
+                while (word != 0) {
+                    int bit = Long.numberOfTrailingZeros(word);
+                    consumer.accept(base | (i << 6 | bit));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 48 + 8L * 1024;
+        }
+
+        @Override
+        Container toBitmap() {
+            return this;
+        }
+
+        long[] snapshotWords() {
+            long[] copy = new long[1024];
+            for (int i = 0; i < copy.length; i++) {
+                copy[i] = words.get(i);
+            }
+            return copy;
+        }
+    }
+}
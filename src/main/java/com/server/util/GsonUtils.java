@@ -21,6 +21,8 @@ public class GsonUtils {
 
     // 单例Gson对象（线程安全）
     private static volatile Gson GSON_INSTANCE;
+    // 紧凑格式Gson（无缩进，用于数据文件持久化）
+    private static volatile Gson COMPACT_GSON_INSTANCE;
 
     // 时间格式化器（与TimeUtils保持一致）
     private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
@@ -40,6 +42,8 @@ public class GsonUtils {
                             // 不调用 serializeNulls()，以忽略 null 字段（减少JSON体积）
                             // 注册LocalDateTime适配器
                             .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeTypeAdapter())
+                            // 注册压缩位图适配器（补偿领取状态）
+                            .registerTypeAdapter(CompactBitmap.class, new CompactBitmapTypeAdapter())
                             // 兼容旧版Gson（避免类型转换错误）
                             .disableHtmlEscaping()
                             .create();
@@ -49,6 +53,25 @@ public class GsonUtils {
         return GSON_INSTANCE;
     }
 
+    /**
+     * 获取紧凑格式的Gson实例（不美化输出，序列化更快、文件更小）
+     * @return Gson 对象
+     */
+    public static Gson getCompactGson() {
+        if (COMPACT_GSON_INSTANCE == null) {
+            synchronized (GsonUtils.class) {
+                if (COMPACT_GSON_INSTANCE == null) {
+                    COMPACT_GSON_INSTANCE = new GsonBuilder()
+                            .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeTypeAdapter())
+                            .registerTypeAdapter(CompactBitmap.class, new CompactBitmapTypeAdapter())
+                            .disableHtmlEscaping()
+                            .create();
+                }
+            }
+        }
+        return COMPACT_GSON_INSTANCE;
+    }
+
     /**
      * LocalDateTime 类型适配器（适配JSON序列化/反序列化）
      */
@@ -76,6 +99,37 @@ public class GsonUtils {
         }
     }
 
+    /**
+     * CompactBitmap 类型适配器（编码为Base64字符串）
+     */
+    private static class CompactBitmapTypeAdapter extends TypeAdapter<CompactBitmap> {
+        @Override
+        public void write(JsonWriter out, CompactBitmap value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.value(value.toBase64());
+        }
+
+        @Override
+        public CompactBitmap read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            String value = in.nextString();
+            if (value == null || value.isEmpty()) {
+                return new CompactBitmap();
+            }
+            try {
+                return CompactBitmap.fromBase64(value);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("位图数据无效：" + e.getMessage(), e);
+            }
+        }
+    }
+
     /**
      * 快捷方法：对象转JSON字符串
      * @param obj 任意对象
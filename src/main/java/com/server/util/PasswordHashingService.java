@@ -0,0 +1,133 @@
+package com.server.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 密码哈希线程池（BCrypt 校验/加密专用）
+ * 1. 固定线程数 + 有界队列：BCrypt 单次约数百毫秒，不能在主线程或Web IO线程上执行
+ * 2. 队列满时直接拒绝（RejectedExecutionException），调用方提示"稍后重试"，刷命令不会堆积哈希任务
+ * 3. Web 登录据此做准入控制：队列满返回 429（附 Retry-After），线程池已关闭返回 503
+ */
+public class PasswordHashingService {
+    private final ThreadPoolExecutor executor;
+    private final int queueLimit;
+
+    // 统计信息
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * @param threads 哈希线程数
+     * @param queueLimit 等待队列上限
+     */
+    public PasswordHashingService(int threads, int queueLimit) {
+        int poolSize = Math.max(1, threads);
+        this.queueLimit = Math.max(1, queueLimit);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.queueLimit), runnable -> {
+                    Thread thread = new Thread(runnable, "AC-PasswordHash-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 提交哈希任务
+     * @return 任务结果（任务抛出的异常通过 future 传递）
+     * @throws RejectedExecutionException 队列已满或线程池已关闭
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                long start = System.nanoTime();
+                try {
+                    future.complete(task.call());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                } finally {
+                    long elapsed = System.nanoTime() - start;
+                    completed.incrementAndGet();
+                    totalNanos.addAndGet(elapsed);
+                    maxNanos.accumulateAndGet(elapsed, Math::max);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw e;
+        }
+        submitted.incrementAndGet();
+        return future;
+    }
+
+    /**
+     * 当前排队的任务数
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * 线程池是否已关闭（插件卸载中，不再接受任务）
+     */
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    /**
+     * 建议的重试等待秒数：按当前排队与执行中的任务数和平均耗时估算排空时间（至少1秒）
+     */
+    public int estimateRetryAfterSeconds() {
+        long done = completed.get();
+        double avgMs = done == 0 ? 250 : totalNanos.get() / (double) done / 1_000_000.0;
+        int backlog = getQueueDepth() + executor.getActiveCount();
+        double seconds = backlog * avgMs / executor.getMaximumPoolSize() / 1000.0;
+        return (int) Math.max(1, Math.ceil(seconds));
+    }
+
+    /**
+     * 统计信息（提交/拒绝/完成次数、排队深度、平均与最大耗时）
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long done = completed.get();
+        stats.put("threads", executor.getMaximumPoolSize());
+        stats.put("active", executor.getActiveCount());
+        stats.put("queued", getQueueDepth());
+        stats.put("queueLimit", queueLimit);
+        stats.put("submitted", submitted.get());
+        stats.put("rejected", rejected.get());
+        stats.put("completed", done);
+        stats.put("avgMs", String.format("%.1f", done == 0 ? 0 : totalNanos.get() / done / 1_000_000.0));
+        stats.put("maxMs", String.format("%.1f", maxNanos.get() / 1_000_000.0));
+        return stats;
+    }
+
+    /**
+     * 关闭线程池（等待进行中的任务完成，最多等待数秒）
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.server.web;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.HeaderValues;
+import io.undertow.util.StatusCodes;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 列表接口的强 ETag（基于集合版本号，无需序列化或计算摘要）
+ * 1. ETag 由集合名、进程纪元与集合版本号组成：版本号在集合每次变化时增大，内容相同的响应 ETag 相同
+ * 2. 纪元在每次启动时随机生成：重启后版本号从头计数，旧 ETag 不会误匹配
+ * 3. 请求携带的 If-None-Match 命中时直接返回 304，不读取数据、不序列化（gzip 编码的 ETag 变体同样视为命中）
+ * 注意：版本号需在读取数据之前获取，读取期间发生的修改最多导致客户端多拉取一次，不会返回过期数据
+ */
+public final class ETags {
+    private static final String EPOCH = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+    private static final String GZIP_SUFFIX = "-gz";
+
+    private ETags() {
+    }
+
+    /**
+     * 生成强 ETag（带双引号）
+     * @param collection 集合名（如 announcements）
+     * @param version 集合版本号
+     */
+    public static String of(String collection, long version) {
+        return "\"" + collection + "-" + EPOCH + "-" + Long.toString(version, 36) + "\"";
+    }
+
+    /**
+     * gzip 编码响应使用的 ETag（同一内容的不同编码须使用不同的强 ETag）
+     */
+    public static String gzipVariant(String etag) {
+        return etag.substring(0, etag.length() - 1) + GZIP_SUFFIX + "\"";
+    }
+
+    /**
+     * 条件请求处理：If-None-Match 命中则返回 304 并结束交换；否则写入 ETag 响应头，由调用方正常返回内容
+     * @return true 表示已返回 304，调用方不需要再处理
+     */
+    public static boolean notModified(HttpServerExchange exchange, String etag) {
+        exchange.getResponseHeaders().put(Headers.ETAG, etag);
+        // 允许浏览器缓存，但每次使用前必须携带 If-None-Match 重新验证
+        exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "private, no-cache");
+
+        HeaderValues ifNoneMatch = exchange.getRequestHeaders().get(Headers.IF_NONE_MATCH);
+        if (ifNoneMatch == null || !matches(ifNoneMatch, etag)) {
+            return false;
+        }
+        exchange.setStatusCode(StatusCodes.NOT_MODIFIED);
+        exchange.endExchange();
+        return true;
+    }
+
+    /**
+     * If-None-Match 可能有多个值（逗号分隔或多个请求头），"*" 匹配任意；
+     * 按弱比较处理（忽略 W/ 前缀），与 RFC 7232 对 If-None-Match 的要求一致
+     */
+    private static boolean matches(HeaderValues values, String etag) {
+        for (String value : values) {
+            int start = 0;
+            int length = value.length();
+            while (start < length) {
+                int comma = value.indexOf(',', start);
+                int end = comma < 0 ? length : comma;
+                String candidate = value.substring(start, end).trim();
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+                if (candidate.equals("*") || candidate.equals(etag) || candidate.equals(gzipVariant(etag))) {
+                    return true;
+                }
+                start = end + 1;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,256 @@
+package com.server.web;
+
+import com.server.AnnouncementCompensationPlugin;
+import com.server.util.GsonUtils;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 请求限流处理器（包裹 PathHandler，在IO线程上执行，开销为一次哈希查找 + 一次CAS）
+ * 1. 每个IP一个总令牌桶，请求按路由消耗令牌（注册/发验证码/登录/地图扫描等昂贵接口消耗更多）
+ * 2. 配置了独立限额的路由，每个IP另有该路由的令牌桶（如注册每分钟最多几次）
+ * 3. 令牌桶以"理论到达时间"存储在一个 AtomicLong 中：补充与扣减合并为一次 CAS，无锁、不分配对象
+ * 4. 超限返回 429 + Retry-After（距离令牌足够的秒数）；桶补满后空闲超过 idle_evict 即被回收
+ */
+public class RateLimitHandler implements HttpHandler {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final AnnouncementCompensationPlugin plugin;
+    private final HttpHandler next;
+    private final String name;
+    private final boolean trustForwardedFor;
+    private final long idleEvictNanos;
+
+    // 每个IP的总限额
+    private final Limit ipLimit;
+    // 路由规则（按前缀长度降序，最长匹配）
+    private final List<Route> routes = new ArrayList<>();
+
+    // 桶键（IP 或 IP|路由）-> 桶
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService evictor;
+
+    // 统计信息
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final Map<String, LongAdder> rejectedByRoute = new ConcurrentHashMap<>();
+    private final AtomicLong evicted = new AtomicLong();
+
+    /**
+     * @param name 面板名称（日志、线程名与统计）
+     * @param next 被包裹的处理器
+     */
+    public RateLimitHandler(AnnouncementCompensationPlugin plugin, String name, HttpHandler next) {
+        this.plugin = plugin;
+        this.name = name;
+        this.next = next;
+        this.trustForwardedFor = plugin.getConfig().getBoolean("web.rate_limit.trust_forwarded_for", false);
+        this.idleEvictNanos = Math.max(1, plugin.getConfig().getLong("web.rate_limit.idle_evict", 600)) * NANOS_PER_SECOND;
+        this.ipLimit = new Limit(plugin.getConfig().getInt("web.rate_limit.ip.capacity", 120),
+                plugin.getConfig().getDouble("web.rate_limit.ip.refill_per_second", 20));
+
+        ConfigurationSection section = plugin.getConfig().getConfigurationSection("web.rate_limit.routes");
+        if (section != null) {
+            for (String prefix : section.getKeys(false)) {
+                ConfigurationSection route = section.getConfigurationSection(prefix);
+                if (route == null) {
+                    continue;
+                }
+                int capacity = route.getInt("capacity", 0);
+                Limit limit = capacity > 0 ? new Limit(capacity, route.getDouble("refill_per_minute", capacity) / 60.0) : null;
+                routes.add(new Route(prefix, Math.max(1, route.getInt("cost", 1)), limit));
+            }
+        }
+        routes.sort(Comparator.comparingInt((Route route) -> route.prefix().length()).reversed());
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "AC-RateLimit-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        long sweepSeconds = Math.max(10, idleEvictNanos / NANOS_PER_SECOND / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, sweepSeconds, sweepSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        String ip = clientIp(exchange);
+        Route route = match(exchange.getRequestPath());
+        long now = System.nanoTime();
+
+        // 先检查路由专属限额，再按路由消耗IP总令牌
+        long waitNanos = 0;
+        if (route != null && route.limit() != null) {
+            waitNanos = bucket(ip + "|" + route.prefix(), now).tryAcquire(route.limit(), 1, now);
+        }
+        if (waitNanos == 0) {
+            waitNanos = bucket(ip, now).tryAcquire(ipLimit, route != null ? route.cost() : 1, now);
+        }
+
+        if (waitNanos > 0) {
+            reject(exchange, route, waitNanos);
+            return;
+        }
+        allowed.increment();
+        next.handleRequest(exchange);
+    }
+
+    /**
+     * 限流统计（放行/拒绝次数、按路由的拒绝次数、当前桶数量）
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("allowed", allowed.sum());
+        stats.put("rejected", rejected.sum());
+        Map<String, Long> byRoute = new LinkedHashMap<>();
+        rejectedByRoute.forEach((route, count) -> byRoute.put(route, count.sum()));
+        stats.put("rejectedByRoute", byRoute);
+        stats.put("buckets", buckets.size());
+        stats.put("evicted", evicted.get());
+        return stats;
+    }
+
+    public void shutdown() {
+        evictor.shutdownNow();
+    }
+
+    // ====================== 内部方法 ======================
+    private void reject(HttpServerExchange exchange, Route route, long waitNanos) {
+        rejected.increment();
+        rejectedByRoute.computeIfAbsent(route != null ? route.prefix() : "*", key -> new LongAdder()).increment();
+
+        long retryAfter = Math.max(1, (waitNanos + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND);
+        Map<String, Object> response = Map.of(
+                "success", false,
+                "message", "请求过于频繁，请 " + retryAfter + " 秒后重试"
+        );
+        exchange.setStatusCode(StatusCodes.TOO_MANY_REQUESTS);
+        exchange.getResponseHeaders().put(Headers.RETRY_AFTER, retryAfter);
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json;charset=UTF-8");
+        exchange.getResponseSender().send(GsonUtils.getGson().toJson(response));
+    }
+
+    private Route match(String path) {
+        for (Route route : routes) {
+            if (path.startsWith(route.prefix())) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    private Bucket bucket(String key, long now) {
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> new Bucket(now));
+        }
+        return bucket;
+    }
+
+    /**
+     * 客户端IP：默认取连接地址；配置信任反向代理时取 X-Forwarded-For 的第一个地址
+     */
+    private String clientIp(HttpServerExchange exchange) {
+        if (trustForwardedFor) {
+            String forwarded = exchange.getRequestHeaders().getFirst("X-Forwarded-For");
+            if (forwarded != null && !forwarded.isEmpty()) {
+                int comma = forwarded.indexOf(',');
+                return (comma >= 0 ? forwarded.substring(0, comma) : forwarded).trim();
+            }
+        }
+        InetSocketAddress source = exchange.getSourceAddress();
+        if (source == null) {
+            return "unknown";
+        }
+        return source.getAddress() != null ? source.getAddress().getHostAddress() : source.getHostString();
+    }
+
+    /**
+     * 回收空闲的桶：令牌已补满（理论到达时间早于当前）且超过空闲期
+     * 补满的桶与新建的桶等价，回收不影响限流结果
+     */
+    private void evictIdle() {
+        try {
+            long now = System.nanoTime();
+            int before = buckets.size();
+            buckets.values().removeIf(bucket -> now - bucket.tat.get() > idleEvictNanos);
+            int removed = before - buckets.size();
+            if (removed > 0) {
+                evicted.addAndGet(removed);
+            }
+        } catch (Exception e) {
+            plugin.getLogger().warning("⚠️ 回收限流桶失败（" + name + "）：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 限额：容量（允许的突发量）与补充速率
+     */
+    private static final class Limit {
+        // 补充一个令牌的间隔（纳秒）
+        final long intervalNanos;
+        // 容量对应的时长（纳秒）
+        final long burstNanos;
+
+        Limit(int capacity, double refillPerSecond) {
+            this.intervalNanos = Math.max(1, (long) (NANOS_PER_SECOND / Math.max(refillPerSecond, 1e-6)));
+            this.burstNanos = intervalNanos * Math.max(1, capacity);
+        }
+    }
+
+    /**
+     * 路由规则
+     * @param prefix 路径前缀
+     * @param cost 每次请求消耗的IP总令牌数
+     * @param limit 路由专属限额（null 表示不单独限制）
+     */
+    private record Route(String prefix, int cost, Limit limit) {
+    }
+
+    /**
+     * 令牌桶：tat 为"理论到达时间"，桶满时 tat ≤ 当前时间，每消耗一个令牌 tat 后移一个补充间隔，
+     * tat 超出当前时间的部分不能超过容量对应的时长
+     */
+    private static final class Bucket {
+        final AtomicLong tat;
+
+        Bucket(long now) {
+            this.tat = new AtomicLong(now);
+        }
+
+        /**
+         * 尝试消耗令牌
+         * @return 0 表示成功；否则为令牌足够还需等待的纳秒数
+         */
+        long tryAcquire(Limit limit, int cost, long now) {
+            long charge = Math.min((long) cost * limit.intervalNanos, limit.burstNanos);
+            while (true) {
+                long current = tat.get();
+                long next = Math.max(current, now) + charge;
+                long excess = next - now - limit.burstNanos;
+                if (excess > 0) {
+                    return excess;
+                }
+                if (tat.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
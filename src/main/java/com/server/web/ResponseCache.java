@@ -0,0 +1,234 @@
+package com.server.web;
+
+import com.server.AnnouncementCompensationPlugin;
+import com.server.util.GsonUtils;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.HeaderValues;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 列表接口的响应缓存（缓存序列化后的字节，数据未变化时不再重复构建 Map 与序列化）
+ * 1. 每个缓存键（如 announcements、logs?limit=100）保存一份 JSON 字节及其对应的集合版本号
+ * 2. 集合修改会增大版本号（见 DataManager.getCollectionVersion），版本不一致即视为失效，下次请求时重新序列化
+ * 3. 达到压缩阈值的响应同时缓存一份 gzip 字节，客户端支持时直接发送，不在每次请求中压缩
+ * 4. 发送时包装为 ByteBuffer 交给 Undertow（不复制缓存内容）；同一键的重建串行执行，并发请求不会重复序列化
+ */
+public class ResponseCache {
+    private static final String CONTENT_TYPE = "application/json;charset=UTF-8";
+
+    private final AnnouncementCompensationPlugin plugin;
+    private final boolean enabled;
+    private final boolean gzipEnabled;
+    private final int gzipMinBytes;
+    private final int maxEntries;
+
+    // 缓存键 -> 缓存槽
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+
+    // 统计信息
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bypassed = new AtomicLong();
+    private final AtomicLong gzipSent = new AtomicLong();
+
+    public ResponseCache(AnnouncementCompensationPlugin plugin) {
+        this.plugin = plugin;
+        this.enabled = plugin.getConfig().getBoolean("web.response_cache.enable", true);
+        this.gzipEnabled = plugin.getConfig().getBoolean("web.response_cache.gzip", true);
+        this.gzipMinBytes = Math.max(0, plugin.getConfig().getInt("web.response_cache.gzip_min_bytes", 1024));
+        this.maxEntries = Math.max(1, plugin.getConfig().getInt("web.response_cache.max_entries", 64));
+    }
+
+    /**
+     * 发送缓存的响应：版本一致直接发送缓存字节，否则调用 body 构建响应、序列化后缓存再发送
+     * @param key 缓存键（同一集合不同查询参数使用不同的键）
+     * @param version 集合版本号（须在读取数据之前获取）
+     * @param body 构建响应对象（仅在缓存失效时调用）
+     */
+    public void send(HttpServerExchange exchange, String key, long version, Supplier<Object> body) {
+        if (!enabled) {
+            bypassed.incrementAndGet();
+            write(exchange, serialize(body.get(), false));
+            return;
+        }
+        Slot slot = slot(key);
+        if (slot == null) {
+            // 缓存键数量已达上限（如大量不同的 limit 参数），本次不缓存
+            bypassed.incrementAndGet();
+            write(exchange, serialize(body.get(), false));
+            return;
+        }
+        write(exchange, slot.get(version, body));
+    }
+
+    /**
+     * 仅在缓存命中时发送（可在IO线程调用，未命中时由调用方转到工作线程构建）
+     * @return true 表示已发送
+     */
+    public boolean sendIfFresh(HttpServerExchange exchange, String key, long version) {
+        if (!enabled) {
+            return false;
+        }
+        Slot slot = slots.get(key);
+        Entry entry = slot != null ? slot.entry : null;
+        if (entry == null || entry.version() != version) {
+            return false;
+        }
+        hits.incrementAndGet();
+        write(exchange, entry);
+        return true;
+    }
+
+    /**
+     * 缓存统计（命中/未命中/未缓存次数、gzip 发送次数、缓存键数量与占用字节）
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long bytes = 0;
+        for (Slot slot : slots.values()) {
+            Entry entry = slot.entry;
+            if (entry != null) {
+                bytes += entry.raw().length + (entry.gzip() != null ? entry.gzip().length : 0);
+            }
+        }
+        stats.put("enabled", enabled);
+        stats.put("entries", slots.size());
+        stats.put("bytes", bytes);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("bypassed", bypassed.get());
+        stats.put("gzipSent", gzipSent.get());
+        return stats;
+    }
+
+    // ====================== 内部方法 ======================
+    private Slot slot(String key) {
+        Slot slot = slots.get(key);
+        if (slot != null) {
+            return slot;
+        }
+        if (slots.size() >= maxEntries) {
+            return null;
+        }
+        return slots.computeIfAbsent(key, k -> new Slot());
+    }
+
+    private void write(HttpServerExchange exchange, Entry entry) {
+        byte[] bytes = entry.raw();
+        if (entry.gzip() != null && acceptsGzip(exchange)) {
+            bytes = entry.gzip();
+            exchange.getResponseHeaders().put(Headers.CONTENT_ENCODING, "gzip");
+            // 同一内容的不同编码使用不同的强 ETag
+            String etag = exchange.getResponseHeaders().getFirst(Headers.ETAG);
+            if (etag != null) {
+                exchange.getResponseHeaders().put(Headers.ETAG, ETags.gzipVariant(etag));
+            }
+            gzipSent.incrementAndGet();
+        }
+        if (entry.gzip() != null) {
+            exchange.getResponseHeaders().put(Headers.VARY, "Accept-Encoding");
+        }
+        exchange.setStatusCode(StatusCodes.OK);
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, CONTENT_TYPE);
+        exchange.getResponseHeaders().put(Headers.CONTENT_LENGTH, bytes.length);
+        exchange.getResponseSender().send(ByteBuffer.wrap(bytes));
+    }
+
+    private Entry serialize(Object body, boolean compress) {
+        byte[] raw = GsonUtils.getGson().toJson(body).getBytes(StandardCharsets.UTF_8);
+        byte[] gzip = null;
+        if (compress && gzipEnabled && raw.length >= gzipMinBytes) {
+            try {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(256, raw.length / 4));
+                try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+                    out.write(raw);
+                }
+                gzip = buffer.toByteArray();
+            } catch (IOException e) {
+                plugin.getLogger().warning("⚠️ 压缩响应失败，将发送未压缩内容：" + e.getMessage());
+            }
+        }
+        return new Entry(0, raw, gzip);
+    }
+
+    /**
+     * 客户端是否接受 gzip（Accept-Encoding 中含 gzip 且 q 不为 0）
+     */
+    private static boolean acceptsGzip(HttpServerExchange exchange) {
+        HeaderValues values = exchange.getRequestHeaders().get(Headers.ACCEPT_ENCODING);
+        if (values == null) {
+            return false;
+        }
+        for (String value : values) {
+            for (String coding : value.split(",")) {
+                String[] parts = coding.split(";");
+                if (!parts[0].trim().equalsIgnoreCase("gzip")) {
+                    continue;
+                }
+                for (int i = 1; i < parts.length; i++) {
+                    String param = parts[i].trim();
+                    if (param.startsWith("q=")) {
+                        try {
+                            return Double.parseDouble(param.substring(2)) > 0;
+                        } catch (NumberFormatException e) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 缓存内容
+     * @param version 集合版本号
+     * @param raw JSON 字节
+     * @param gzip gzip 压缩后的字节（未达到阈值或未启用压缩时为 null）
+     */
+    private record Entry(long version, byte[] raw, byte[] gzip) {
+    }
+
+    /**
+     * 缓存槽：读取无锁，重建加锁（同一键同时只有一个线程序列化）
+     */
+    private final class Slot {
+        volatile Entry entry;
+
+        Entry get(long version, Supplier<Object> body) {
+            Entry current = entry;
+            if (current != null && current.version() == version) {
+                hits.incrementAndGet();
+                return current;
+            }
+            synchronized (this) {
+                current = entry;
+                if (current != null && current.version() == version) {
+                    hits.incrementAndGet();
+                    return current;
+                }
+                misses.incrementAndGet();
+                Entry built = serialize(body.get(), true);
+                Entry versioned = new Entry(version, built.raw(), built.gzip());
+                // 版本号只增不减：较旧的请求不能覆盖较新的缓存
+                if (current == null || version > current.version()) {
+                    entry = versioned;
+                }
+                return versioned;
+            }
+        }
+    }
+}
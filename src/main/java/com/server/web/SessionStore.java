@@ -0,0 +1,413 @@
+package com.server.web;
+
+import com.google.gson.reflect.TypeToken;
+import com.server.AnnouncementCompensationPlugin;
+import com.server.util.GsonUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Web登录会话存储（管理员面板与玩家面板各一个实例）
+ * 1. 会话只记录账户名，不持有 Admin/User 对象：每次校验由调用方按账户名取最新数据，权限修改立即生效
+ * 2. 空闲超时 + 绝对有效期：校验时精确判断；过期会话的清理由时间轮驱动，每个刻度只检查到期槽位，不做全表扫描
+ *    （续期只更新最后访问时间，不移动槽位；槽位到期时发现未到截止时间再按新的截止时间重新挂入）
+ * 3. 每个账户的会话数有上限，超出时最早的会话失效；账户级代数号使"注销该账户全部会话"为 O(1)
+ * 4. 可选持久化：停用时把有效会话写入磁盘，重载后恢复，不会把所有人踢下线
+ */
+public class SessionStore {
+    // 时间轮槽位数（2 的幂）
+    private static final int WHEEL_SLOTS = 512;
+    // 会话文件的反序列化类型
+    private static final Type PERSISTED_TYPE = new TypeToken<List<PersistedSession>>() {}.getType();
+
+    private final String name;
+    private final long idleTtlMillis;
+    private final long absoluteTtlMillis;
+    private final int maxPerAccount;
+    private final File persistFile;
+    private final Logger logger;
+
+    // Token -> 会话
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    // 账户名 -> 账户会话列表
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+
+    // 时间轮
+    private final long tickMillis;
+    private final List<Set<Session>> wheel = new ArrayList<>(WHEEL_SLOTS);
+    // 已处理到的刻度（只在时间轮线程推进）
+    private volatile long processedTick;
+    private final ScheduledExecutorService ticker;
+
+    // 统计信息
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong revoked = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    /**
+     * @param name 存储名称（日志与线程名）
+     * @param idleTtlMillis 空闲超时（毫秒）
+     * @param absoluteTtlMillis 绝对有效期（毫秒）
+     * @param maxPerAccount 每个账户的会话上限
+     * @param persistFile 会话持久化文件（null 表示不持久化）
+     */
+    public SessionStore(String name, long idleTtlMillis, long absoluteTtlMillis, int maxPerAccount, File persistFile, Logger logger) {
+        this.name = name;
+        this.idleTtlMillis = Math.max(1000, idleTtlMillis);
+        this.absoluteTtlMillis = Math.max(this.idleTtlMillis, absoluteTtlMillis);
+        this.maxPerAccount = Math.max(1, maxPerAccount);
+        this.persistFile = persistFile;
+        this.logger = logger;
+        // 刻度取空闲超时的 1/256（1~60 秒），一圈覆盖约两倍空闲超时
+        this.tickMillis = Math.max(1000, Math.min(60_000, this.idleTtlMillis / 256));
+        for (int i = 0; i < WHEEL_SLOTS; i++) {
+            wheel.add(ConcurrentHashMap.newKeySet());
+        }
+        this.processedTick = System.currentTimeMillis() / tickMillis;
+
+        restore();
+
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "AC-Sessions-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 按 web.sessions 配置创建会话存储，持久化文件位于 数据目录/sessions/{name}.json
+     */
+    public static SessionStore fromConfig(AnnouncementCompensationPlugin plugin, String name) {
+        long idleTtl = plugin.getConfig().getLong("web.sessions.idle_ttl", 1800) * 1000L;
+        long absoluteTtl = plugin.getConfig().getLong("web.sessions.absolute_ttl", 86400) * 1000L;
+        int maxPerAccount = plugin.getConfig().getInt("web.sessions.max_per_account", 5);
+        File persistFile = plugin.getConfig().getBoolean("web.sessions.persist", true)
+                ? new File(new File(plugin.getDataFolder(), "sessions"), name + ".json") : null;
+        return new SessionStore(name, idleTtl, absoluteTtl, maxPerAccount, persistFile, plugin.getLogger());
+    }
+
+    /**
+     * 为账户创建新会话（超出上限时最早的会话失效）
+     * @return 会话Token
+     */
+    public String create(String account) {
+        long now = System.currentTimeMillis();
+        Session session = new Session(UUID.randomUUID().toString().replace("-", ""), account, now, now);
+        admit(session);
+        created.incrementAndGet();
+        return session.token;
+    }
+
+    /**
+     * 校验Token并续期
+     * @return 会话所属账户名；Token不存在、已过期或已注销时返回 null
+     */
+    public String validate(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        Session session = sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (!session.isActive(now)) {
+            if (discard(session) && !session.isRevoked()) {
+                expired.incrementAndGet();
+            }
+            return null;
+        }
+        session.lastAccess = now;
+        return session.account;
+    }
+
+    /**
+     * 注销单个会话
+     */
+    public void revoke(String token) {
+        Session session = token != null ? sessions.get(token) : null;
+        if (session != null && discard(session)) {
+            revoked.incrementAndGet();
+        }
+    }
+
+    /**
+     * 注销账户的全部会话（O(1)：提升账户代数号，旧会话在校验时即失效，由时间轮回收）
+     */
+    public void revokeAll(String account) {
+        Account entry = account != null ? accounts.get(account) : null;
+        if (entry == null) {
+            return;
+        }
+        synchronized (entry) {
+            revoked.addAndGet(entry.sessions.size());
+            entry.generation++;
+            entry.sessions = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * 当前有效会话数（含尚未被时间轮回收的过期会话）
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * 统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sessions", sessions.size());
+        stats.put("accounts", accounts.size());
+        stats.put("created", created.get());
+        stats.put("expired", expired.get());
+        stats.put("revoked", revoked.get());
+        stats.put("evicted", evicted.get());
+        stats.put("tickMs", tickMillis);
+        return stats;
+    }
+
+    /**
+     * 停止时间轮，开启持久化时写入有效会话
+     */
+    public void close() {
+        ticker.shutdownNow();
+        persist();
+    }
+
+    // ====================== 会话登记与回收 ======================
+    /**
+     * 登记会话：加入账户会话列表（超出上限时淘汰最早的会话）并挂入时间轮
+     */
+    private void admit(Session session) {
+        while (true) {
+            Account entry = accounts.computeIfAbsent(session.account, key -> new Account());
+            synchronized (entry) {
+                if (entry.removed) {
+                    continue;
+                }
+                while (entry.sessions.size() >= maxPerAccount) {
+                    Session oldest = entry.sessions.pollFirst();
+                    oldest.dead = true;
+                    sessions.remove(oldest.token, oldest);
+                    evicted.incrementAndGet();
+                }
+                session.owner = entry;
+                session.generation = entry.generation;
+                entry.sessions.addLast(session);
+                sessions.put(session.token, session);
+            }
+            schedule(session, session.deadline());
+            return;
+        }
+    }
+
+    /**
+     * 移除会话（时间轮槽位中的引用在槽位到期时清理）
+     * @return 是否由本次调用移除
+     */
+    private boolean discard(Session session) {
+        boolean removed = sessions.remove(session.token, session);
+        session.dead = true;
+        Account entry = session.owner;
+        synchronized (entry) {
+            entry.sessions.remove(session);
+            if (entry.sessions.isEmpty() && !entry.removed) {
+                entry.removed = true;
+                accounts.remove(session.account, entry);
+            }
+        }
+        return removed;
+    }
+
+    // ====================== 时间轮 ======================
+    private void schedule(Session session, long deadline) {
+        long tick = Math.max(deadline / tickMillis, processedTick + 1);
+        wheel.get((int) (tick & (WHEEL_SLOTS - 1))).add(session);
+    }
+
+    /**
+     * 推进时间轮到当前时间，依次处理经过的槽位（停顿超过一圈时每个槽位只处理一次）
+     */
+    private void advance() {
+        try {
+            long now = System.currentTimeMillis();
+            long currentTick = now / tickMillis;
+            long from = processedTick + 1;
+            if (currentTick - from >= WHEEL_SLOTS) {
+                from = currentTick - WHEEL_SLOTS + 1;
+            }
+            for (long tick = from; tick <= currentTick; tick++) {
+                processedTick = tick;
+                expireSlot(wheel.get((int) (tick & (WHEEL_SLOTS - 1))), now);
+            }
+        } catch (Exception e) {
+            logger.warning("⚠️ 会话时间轮处理失败（" + name + "）：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 处理到期槽位：已失效或到期的会话移除；续期过（或截止时间在下一圈之后）的会话按最新截止时间重新挂入
+     */
+    private void expireSlot(Set<Session> slot, long now) {
+        // 先取出整个槽位再处理，重新挂入同一槽位的会话不会在本轮被再次处理
+        List<Session> due = new ArrayList<>(slot);
+        slot.removeAll(due);
+        for (Session session : due) {
+            if (session.dead) {
+                continue;
+            }
+            if (!session.isActive(now)) {
+                if (discard(session) && !session.isRevoked()) {
+                    expired.incrementAndGet();
+                }
+            } else {
+                schedule(session, session.deadline());
+            }
+        }
+    }
+
+    // ====================== 持久化 ======================
+    private void persist() {
+        if (persistFile == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<PersistedSession> active = new ArrayList<>();
+        for (Session session : sessions.values()) {
+            if (session.isActive(now)) {
+                active.add(new PersistedSession(session.token, session.account, session.createdAt, session.lastAccess));
+            }
+        }
+        try {
+            File parent = persistFile.getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            Path target = persistFile.toPath();
+            Path temp = target.resolveSibling(persistFile.getName() + ".tmp");
+            Files.writeString(temp, GsonUtils.getCompactGson().toJson(active, PERSISTED_TYPE), StandardCharsets.UTF_8);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            logger.info("✅ 已保存 " + active.size() + " 个Web会话（" + name + "）");
+        } catch (IOException e) {
+            logger.warning("⚠️ 保存Web会话失败（" + name + "）：" + e.getMessage());
+        }
+    }
+
+    private void restore() {
+        if (persistFile == null || !persistFile.exists()) {
+            return;
+        }
+        try {
+            List<PersistedSession> persisted = GsonUtils.getCompactGson().fromJson(
+                    Files.readString(persistFile.toPath(), StandardCharsets.UTF_8), PERSISTED_TYPE);
+            long now = System.currentTimeMillis();
+            int restored = 0;
+            if (persisted != null) {
+                for (PersistedSession entry : persisted) {
+                    if (entry == null || entry.token == null || entry.account == null) {
+                        continue;
+                    }
+                    Session session = new Session(entry.token, entry.account, entry.createdAt, entry.lastAccess);
+                    if (session.deadline() > now) {
+                        admit(session);
+                        restored++;
+                    }
+                }
+            }
+            logger.info("✅ 已恢复 " + restored + " 个Web会话（" + name + "）");
+        } catch (Exception e) {
+            logger.warning("⚠️ 读取Web会话文件失败（" + name + "），忽略已保存的会话：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 会话
+     */
+    private final class Session {
+        final String token;
+        final String account;
+        final long createdAt;
+        volatile long lastAccess;
+        // 登记时的账户与代数号（账户全部注销后代数号变化，会话随之失效）
+        Account owner;
+        long generation;
+        volatile boolean dead;
+
+        Session(String token, String account, long createdAt, long lastAccess) {
+            this.token = token;
+            this.account = account;
+            this.createdAt = createdAt;
+            this.lastAccess = lastAccess;
+        }
+
+        long deadline() {
+            return Math.min(lastAccess + idleTtlMillis, createdAt + absoluteTtlMillis);
+        }
+
+        // 所属账户的全部会话已被注销
+        boolean isRevoked() {
+            return generation != owner.generation;
+        }
+
+        boolean isActive(long now) {
+            return !dead && !isRevoked() && now < deadline();
+        }
+    }
+
+    /**
+     * 账户会话列表（按创建顺序，修改需持有该对象的锁）
+     */
+    private static final class Account {
+        ArrayDeque<Session> sessions = new ArrayDeque<>();
+        volatile long generation;
+        // 已从账户表移除（此后登记的会话需重新获取账户）
+        boolean removed;
+    }
+
+    /**
+     * 持久化格式
+     */
+    private static class PersistedSession {
+        String token;
+        String account;
+        long createdAt;
+        long lastAccess;
+
+        PersistedSession() {}
+
+        PersistedSession(String token, String account, long createdAt, long lastAccess) {
+            this.token = token;
+            this.account = account;
+            this.createdAt = createdAt;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
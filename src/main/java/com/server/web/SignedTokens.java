@@ -0,0 +1,374 @@
+package com.server.web;
+
+import com.google.gson.reflect.TypeToken;
+import com.server.AnnouncementCompensationPlugin;
+import com.server.util.GsonUtils;
+import org.bukkit.configuration.ConfigurationSection;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * 无状态签名令牌（HMAC-SHA256）
+ * 格式：ac1.{Base64URL(载荷)}.{Base64URL(签名)}，载荷为紧凑二进制：
+ *   版本(1) | 角色(1) | 权限位图(8) | 签发时间(8，毫秒) | 过期时间(8，秒) | 令牌ID(8) | 密钥ID长度(1)+密钥ID | 主体长度(2)+主体
+ *   （版本 1 的签发时间为秒，校验时换算为毫秒）
+ * 1. 校验只需要密钥：共享同一组密钥的多个面板节点可以互相校验对方签发的令牌，不查会话表
+ * 2. 密钥轮换：载荷记录签发所用的密钥ID，新令牌用 active_key 签发，仍在 keys 中的旧密钥继续可用于校验
+ * 3. 吊销：单个令牌按令牌ID吊销（记录到令牌过期为止），账户全部令牌按"此时间之前签发的失效"吊销，列表很小且自动清理
+ */
+public class SignedTokens {
+    // 令牌前缀（含格式版本）
+    public static final String PREFIX = "ac1.";
+    private static final byte VERSION = 2;
+    // 签发时间以秒记录的旧格式版本
+    private static final byte VERSION_SECONDS = 1;
+    // 小于该值的吊销时间是旧版本按秒记录的（约为 5138 年的秒数 / 1973 年的毫秒数）
+    private static final long SECONDS_THRESHOLD = 100_000_000_000L;
+    private static final String ALGORITHM = "HmacSHA256";
+    // 密钥最短长度（字节）
+    private static final int MIN_KEY_BYTES = 32;
+    private static final Type REVOCATIONS_TYPE = new TypeToken<Revocations>() {}.getType();
+    // Mac 实例不是线程安全的，按线程复用（避免每次校验都查找算法提供者）
+    private static final ThreadLocal<Mac> MACS = ThreadLocal.withInitial(() -> {
+        try {
+            return Mac.getInstance(ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("不支持 " + ALGORITHM, e);
+        }
+    });
+
+    /**
+     * 令牌角色
+     */
+    public enum Role {
+        ADMIN, USER
+    }
+
+    /**
+     * 校验通过的令牌内容
+     * @param subject 主体（管理员/用户的用户名）
+     * @param permissions 权限位图（见 WebPermission.toMask）
+     * @param issuedAt 签发时间（毫秒）
+     * @param expiresAt 过期时间（秒）
+     */
+    public record Claims(String subject, Role role, long permissions, long issuedAt, long expiresAt, String keyId, long tokenId) {
+    }
+
+    private final Map<String, SecretKeySpec> keys;
+    private final String activeKeyId;
+    private final long ttlSeconds;
+    private final File revocationFile;
+    private final Logger logger;
+    private final SecureRandom random = new SecureRandom();
+
+    // 令牌ID -> 过期时间（秒）
+    private final Map<Long, Long> revokedTokens = new ConcurrentHashMap<>();
+    // 角色:主体 -> 吊销时间（毫秒），在此时间之后签发的令牌才有效
+    private final Map<String, Long> notBefore = new ConcurrentHashMap<>();
+
+    // 统计信息
+    private final AtomicLong issued = new AtomicLong();
+    private final AtomicLong verified = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * @param keys 密钥ID -> 密钥
+     * @param activeKeyId 签发新令牌使用的密钥ID
+     * @param ttlSeconds 令牌有效期（秒）
+     * @param revocationFile 吊销列表持久化文件（null 表示不持久化）
+     */
+    public SignedTokens(Map<String, byte[]> keys, String activeKeyId, long ttlSeconds, File revocationFile, Logger logger) {
+        if (!keys.containsKey(activeKeyId)) {
+            throw new IllegalArgumentException("签名密钥不存在：" + activeKeyId);
+        }
+        this.keys = new LinkedHashMap<>();
+        keys.forEach((kid, secret) -> {
+            if (kid.getBytes(StandardCharsets.UTF_8).length > 255) {
+                throw new IllegalArgumentException("密钥ID过长：" + kid);
+            }
+            if (secret.length < MIN_KEY_BYTES) {
+                throw new IllegalArgumentException("签名密钥 " + kid + " 长度不足 " + MIN_KEY_BYTES + " 字节");
+            }
+            this.keys.put(kid, new SecretKeySpec(secret, ALGORITHM));
+        });
+        this.activeKeyId = activeKeyId;
+        this.ttlSeconds = Math.max(60, ttlSeconds);
+        this.revocationFile = revocationFile;
+        this.logger = logger;
+        restore();
+    }
+
+    /**
+     * 按 web.tokens 配置创建；mode 不是 signed 时返回 null（使用服务端会话）
+     * 当前密钥未配置时生成随机密钥并写回配置（多节点部署时需把 keys 复制到其他节点）
+     */
+    public static SignedTokens fromConfig(AnnouncementCompensationPlugin plugin) {
+        if (!"signed".equalsIgnoreCase(plugin.getConfig().getString("web.tokens.mode", "session"))) {
+            return null;
+        }
+        String activeKeyId = plugin.getConfig().getString("web.tokens.active_key", "k1");
+        Map<String, byte[]> keys = new LinkedHashMap<>();
+        ConfigurationSection section = plugin.getConfig().getConfigurationSection("web.tokens.keys");
+        if (section != null) {
+            for (String kid : section.getKeys(false)) {
+                String encoded = section.getString(kid, "");
+                if (encoded != null && !encoded.isEmpty()) {
+                    keys.put(kid, Base64.getDecoder().decode(encoded));
+                }
+            }
+        }
+        if (!keys.containsKey(activeKeyId)) {
+            byte[] secret = new byte[MIN_KEY_BYTES];
+            new SecureRandom().nextBytes(secret);
+            keys.put(activeKeyId, secret);
+            plugin.getConfig().set("web.tokens.keys." + activeKeyId, Base64.getEncoder().encodeToString(secret));
+            plugin.saveConfig();
+            plugin.getLogger().warning("⚠️ 未配置签名密钥 " + activeKeyId + "，已生成随机密钥并写入配置；多节点部署请把 web.tokens.keys 同步到其他节点");
+        }
+        long ttl = plugin.getConfig().getLong("web.tokens.ttl", 3600);
+        File revocationFile = new File(new File(plugin.getDataFolder(), "sessions"), "revocations.json");
+        SignedTokens tokens = new SignedTokens(keys, activeKeyId, ttl, revocationFile, plugin.getLogger());
+        plugin.getLogger().info("✅ Web令牌使用签名模式（当前密钥：" + activeKeyId + "，可校验密钥：" + keys.keySet() + "）");
+        return tokens;
+    }
+
+    /**
+     * 是否为签名令牌格式（用于与服务端会话Token区分）
+     */
+    public static boolean isSignedToken(String token) {
+        return token != null && token.startsWith(PREFIX);
+    }
+
+    /**
+     * 签发令牌
+     */
+    public String issue(String subject, Role role, long permissions) {
+        long nowMillis = System.currentTimeMillis();
+        long now = nowMillis / 1000;
+        byte[] kid = activeKeyId.getBytes(StandardCharsets.UTF_8);
+        byte[] sub = subject.getBytes(StandardCharsets.UTF_8);
+        if (sub.length > 0xFFFF) {
+            throw new IllegalArgumentException("令牌主体过长");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 1 + 8 + 8 + 8 + 8 + 1 + kid.length + 2 + sub.length);
+        buffer.put(VERSION);
+        buffer.put((byte) role.ordinal());
+        buffer.putLong(permissions);
+        buffer.putLong(nowMillis);
+        buffer.putLong(now + ttlSeconds);
+        buffer.putLong(random.nextLong());
+        buffer.put((byte) kid.length).put(kid);
+        buffer.putShort((short) sub.length).put(sub);
+
+        String signingInput = PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+        issued.incrementAndGet();
+        return signingInput + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(sign(keys.get(activeKeyId), signingInput));
+    }
+
+    /**
+     * 校验令牌：签名、过期时间、吊销状态
+     * @return 令牌内容；无效时返回 null
+     */
+    public Claims verify(String token) {
+        Claims claims = decode(token);
+        if (claims == null) {
+            rejected.incrementAndGet();
+            return null;
+        }
+        long now = System.currentTimeMillis() / 1000;
+        Long revokedBefore = notBefore.get(subjectKey(claims.role(), claims.subject()));
+        if (now >= claims.expiresAt()
+                || revokedTokens.containsKey(claims.tokenId())
+                || (revokedBefore != null && claims.issuedAt() <= revokedBefore)) {
+            rejected.incrementAndGet();
+            return null;
+        }
+        verified.incrementAndGet();
+        return claims;
+    }
+
+    /**
+     * 吊销单个令牌（记录到令牌过期为止）
+     */
+    public void revoke(String token) {
+        Claims claims = decode(token);
+        if (claims == null) {
+            return;
+        }
+        revokedTokens.put(claims.tokenId(), claims.expiresAt());
+        prune();
+    }
+
+    /**
+     * 吊销账户当前所有令牌（此刻之前签发的令牌全部失效）
+     */
+    public void revokeAll(Role role, String subject) {
+        // 签发时间精确到毫秒：吊销之后立即重新登录签发的令牌有效
+        notBefore.put(subjectKey(role, subject), System.currentTimeMillis());
+        prune();
+    }
+
+    /**
+     * 统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("activeKey", activeKeyId);
+        stats.put("keys", keys.size());
+        stats.put("ttlSeconds", ttlSeconds);
+        stats.put("issued", issued.get());
+        stats.put("verified", verified.get());
+        stats.put("rejected", rejected.get());
+        stats.put("revokedTokens", revokedTokens.size());
+        stats.put("revokedSubjects", notBefore.size());
+        return stats;
+    }
+
+    /**
+     * 停用时保存吊销列表
+     */
+    public void close() {
+        if (revocationFile == null) {
+            return;
+        }
+        prune();
+        Revocations revocations = new Revocations();
+        revocations.tokens = new LinkedHashMap<>(revokedTokens);
+        revocations.subjects = new LinkedHashMap<>(notBefore);
+        try {
+            File parent = revocationFile.getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            Path target = revocationFile.toPath();
+            Path temp = target.resolveSibling(revocationFile.getName() + ".tmp");
+            Files.writeString(temp, GsonUtils.getCompactGson().toJson(revocations, REVOCATIONS_TYPE), StandardCharsets.UTF_8);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            logger.warning("⚠️ 保存令牌吊销列表失败：" + e.getMessage());
+        }
+    }
+
+    // ====================== 内部方法 ======================
+    /**
+     * 解析并校验签名（不检查过期与吊销）
+     */
+    private Claims decode(String token) {
+        if (!isSignedToken(token)) {
+            return null;
+        }
+        int dot = token.lastIndexOf('.');
+        if (dot <= PREFIX.length()) {
+            return null;
+        }
+        try {
+            String signingInput = token.substring(0, dot);
+            byte[] payload = Base64.getUrlDecoder().decode(signingInput.substring(PREFIX.length()));
+            byte[] signature = Base64.getUrlDecoder().decode(token.substring(dot + 1));
+
+            ByteBuffer buffer = ByteBuffer.wrap(payload);
+            byte version = buffer.get();
+            if (version != VERSION && version != VERSION_SECONDS) {
+                return null;
+            }
+            int roleIndex = buffer.get();
+            long permissions = buffer.getLong();
+            long issuedAt = version == VERSION_SECONDS ? buffer.getLong() * 1000 : buffer.getLong();
+            long expiresAt = buffer.getLong();
+            long tokenId = buffer.getLong();
+            byte[] kid = new byte[buffer.get() & 0xFF];
+            buffer.get(kid);
+            byte[] sub = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(sub);
+            if (buffer.hasRemaining() || roleIndex < 0 || roleIndex >= Role.values().length) {
+                return null;
+            }
+
+            String keyId = new String(kid, StandardCharsets.UTF_8);
+            SecretKeySpec key = keys.get(keyId);
+            if (key == null || !MessageDigest.isEqual(sign(key, signingInput), signature)) {
+                return null;
+            }
+            return new Claims(new String(sub, StandardCharsets.UTF_8), Role.values()[roleIndex],
+                    permissions, issuedAt, expiresAt, keyId, tokenId);
+        } catch (RuntimeException e) {
+            // Base64 格式错误或载荷被截断
+            return null;
+        }
+    }
+
+    private static byte[] sign(SecretKeySpec key, String signingInput) {
+        try {
+            Mac mac = MACS.get();
+            mac.init(key);
+            return mac.doFinal(signingInput.getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC计算失败：" + e.getMessage(), e);
+        }
+    }
+
+    private static String subjectKey(Role role, String subject) {
+        return role.name() + ":" + subject;
+    }
+
+    /**
+     * 清理已无意义的吊销记录：令牌已过期，或吊销点之前签发的令牌都已过期
+     */
+    private void prune() {
+        long now = System.currentTimeMillis() / 1000;
+        revokedTokens.values().removeIf(expiresAt -> expiresAt <= now);
+        notBefore.values().removeIf(since -> since / 1000 + ttlSeconds <= now);
+    }
+
+    private void restore() {
+        if (revocationFile == null || !revocationFile.exists()) {
+            return;
+        }
+        try {
+            Revocations revocations = GsonUtils.getCompactGson().fromJson(
+                    Files.readString(revocationFile.toPath(), StandardCharsets.UTF_8), REVOCATIONS_TYPE);
+            if (revocations != null) {
+                if (revocations.tokens != null) revokedTokens.putAll(revocations.tokens);
+                if (revocations.subjects != null) {
+                    // 旧版本记录的是"此秒及之后签发的令牌有效"：换算为该秒之前的最后一毫秒
+                    revocations.subjects.forEach((key, since) ->
+                            notBefore.put(key, since < SECONDS_THRESHOLD ? since * 1000 - 1 : since));
+                }
+            }
+            prune();
+        } catch (Exception e) {
+            logger.warning("⚠️ 读取令牌吊销列表失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 吊销列表持久化格式
+     */
+    private static class Revocations {
+        Map<Long, Long> tokens;
+        Map<String, Long> subjects;
+    }
+}
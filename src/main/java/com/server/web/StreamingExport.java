@@ -0,0 +1,169 @@
+package com.server.web;
+
+import com.google.gson.stream.JsonWriter;
+import com.server.util.GsonUtils;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+import org.xnio.IoUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.function.Function;
+
+/**
+ * 流式导出（NDJSON / CSV）
+ * 1. 不设置 Content-Length，响应以分块传输编码（chunked）发送：记录边读边写，缓冲区写满即发送一块，服务端内存占用与记录总数无关
+ * 2. NDJSON 每行一条记录，复用同一个 JsonWriter 直接写入响应流（不先序列化成字符串）
+ * 3. CSV 首行为表头，带 UTF-8 BOM（Excel 正确识别中文）；字段按 RFC 4180 转义，并防止以公式字符开头的单元格被执行
+ * 4. 中途失败时调用 abort 直接断开连接（不发送结束块），客户端能识别下载不完整，不会拿到截断却看似完整的文件
+ * 必须在工作线程中使用（阻塞写出），调用方负责 dispatch
+ */
+public class StreamingExport<T> {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    /**
+     * 导出格式
+     */
+    public enum Format {
+        NDJSON("application/x-ndjson;charset=UTF-8", "ndjson"),
+        CSV("text/csv;charset=UTF-8", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        /**
+         * 解析 format 参数（默认 NDJSON）
+         * @throws IllegalArgumentException 不支持的格式
+         */
+        public static Format parse(String value) {
+            if (value == null || value.isBlank() || value.equalsIgnoreCase("ndjson") || value.equalsIgnoreCase("jsonl")) {
+                return NDJSON;
+            }
+            if (value.equalsIgnoreCase("csv")) {
+                return CSV;
+            }
+            throw new IllegalArgumentException("不支持的导出格式：" + value + "（可选：ndjson, csv）");
+        }
+    }
+
+    private final HttpServerExchange exchange;
+    private final Format format;
+    private final Class<T> type;
+    private final Function<T, Object[]> csvRow;
+    private final Writer writer;
+    private final JsonWriter jsonWriter;
+    private long count;
+
+    private StreamingExport(HttpServerExchange exchange, Format format, Class<T> type, Function<T, Object[]> csvRow, Writer writer) {
+        this.exchange = exchange;
+        this.format = format;
+        this.type = type;
+        this.csvRow = csvRow;
+        this.writer = writer;
+        if (format == Format.NDJSON) {
+            // 宽松模式允许多个顶层值（每行一个）
+            this.jsonWriter = new JsonWriter(writer);
+            this.jsonWriter.setLenient(true);
+        } else {
+            this.jsonWriter = null;
+        }
+    }
+
+    /**
+     * 开始导出：写入响应头并切换为阻塞输出
+     * @param name 文件名前缀（如 claim_logs）
+     * @param type 记录类型（NDJSON 序列化使用）
+     * @param csvHeader CSV 表头
+     * @param csvRow 记录 -> CSV 各列
+     */
+    public static <T> StreamingExport<T> start(HttpServerExchange exchange, Format format, String name,
+                                               Class<T> type, String[] csvHeader, Function<T, Object[]> csvRow) throws IOException {
+        String filename = name + "-" + LocalDateTime.now().format(FILE_TIME) + "." + format.extension;
+        exchange.setStatusCode(StatusCodes.OK);
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, format.contentType);
+        exchange.getResponseHeaders().put(Headers.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+        exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "no-store");
+        exchange.startBlocking();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(exchange.getOutputStream(), StandardCharsets.UTF_8), BUFFER_SIZE);
+
+        StreamingExport<T> export = new StreamingExport<>(exchange, format, type, csvRow, writer);
+        if (format == Format.CSV) {
+            writer.write('\uFEFF');
+            export.writeCsvLine(csvHeader);
+        }
+        return export;
+    }
+
+    /**
+     * 写出一条记录
+     */
+    public void write(T record) throws IOException {
+        if (format == Format.NDJSON) {
+            GsonUtils.getCompactGson().toJson(record, type, jsonWriter);
+            writer.write('\n');
+        } else {
+            writeCsvLine(csvRow.apply(record));
+        }
+        count++;
+    }
+
+    /**
+     * 已写出的记录数
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * 结束导出（刷新缓冲区并发送最后一块）
+     */
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    /**
+     * 中止导出：不刷新缓冲区、不发送结束块，直接关闭连接
+     */
+    public void abort() {
+        IoUtils.safeClose(exchange.getConnection());
+    }
+
+    private void writeCsvLine(Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(csvField(values[i]));
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * CSV 字段转义：含逗号/引号/换行时加引号；以 = + - @ 开头时前置单引号（防止表格软件当作公式执行）
+     */
+    private static String csvField(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (!text.isEmpty() && "=+-@".indexOf(text.charAt(0)) >= 0) {
+            text = "'" + text;
+        }
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            return "\"" + text.replace("\"", "\"\"") + "\"";
+        }
+        return text;
+    }
+}
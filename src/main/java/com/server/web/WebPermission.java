@@ -7,25 +7,29 @@ package com.server.web;
  */
 public enum WebPermission {
     // 公告管理权限
-    ANNOUNCEMENT("ac.web.announcement"),
+    ANNOUNCEMENT("ac.web.announcement", 0),
     // 补偿管理权限
-    COMPENSATION("ac.web.compensation"),
+    COMPENSATION("ac.web.compensation", 1),
     // 白名单管理权限
-    WHITELIST("ac.web.whitelist"),
+    WHITELIST("ac.web.whitelist", 2),
     // 领取日志查看权限
-    LOG("ac.web.log"),
+    LOG("ac.web.log", 3),
     // 所有Web权限（通配符）
-    ALL("ac.web.*");
+    ALL("ac.web.*", 63);
 
     // 权限节点字符串（与plugin.yml一致）
     private final String permission;
+    // 签名令牌中权限位图的位号（已发布的位号不可修改，新增权限使用新的位号）
+    private final int bit;
 
     /**
      * 构造方法：绑定权限节点
      * @param permission 权限节点字符串
+     * @param bit 权限位号
      */
-    WebPermission(String permission) {
+    WebPermission(String permission, int bit) {
         this.permission = permission;
+        this.bit = bit;
     }
 
     /**
@@ -49,4 +53,33 @@ public enum WebPermission {
         return adminPermissions.contains(ALL.getPermission()) 
                 || adminPermissions.contains(this.permission);
     }
+
+    /**
+     * 权限列表 -> 权限位图（未知的权限节点忽略）
+     */
+    public static long toMask(java.util.List<String> permissions) {
+        long mask = 0;
+        if (permissions == null) {
+            return mask;
+        }
+        for (WebPermission value : values()) {
+            if (permissions.contains(value.permission)) {
+                mask |= 1L << value.bit;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * 权限位图 -> 权限列表
+     */
+    public static java.util.List<String> fromMask(long mask) {
+        java.util.List<String> permissions = new java.util.ArrayList<>();
+        for (WebPermission value : values()) {
+            if ((mask & (1L << value.bit)) != 0) {
+                permissions.add(value.permission);
+            }
+        }
+        return permissions;
+    }
 }
\ No newline at end of file
@@ -4,10 +4,14 @@ import com.server.AnnouncementCompensationPlugin;
 
 import io.undertow.Handlers;
 import io.undertow.Undertow;
+import io.undertow.server.HttpHandler;
 import io.undertow.server.handlers.PathHandler;
 import io.undertow.server.handlers.resource.ClassPathResourceManager;
 import io.undertow.server.handlers.resource.ResourceHandler;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 
 /**
  * Web服务器核心类（兼容Undertow 2.2.19.Final）
@@ -17,6 +21,9 @@ public class WebServer {
     private final AnnouncementCompensationPlugin plugin;
     private Undertow adminServer;
     private Undertow playerServer;
+    // 请求限流（web.rate_limit.enable 关闭时为 null）
+    private RateLimitHandler adminRateLimit;
+    private RateLimitHandler playerRateLimit;
 
     public WebServer(AnnouncementCompensationPlugin plugin) {
         this.plugin = plugin;
@@ -50,10 +57,11 @@ public class WebServer {
                     .addPrefixPath("/api/map", plugin.getMapHandler())
                     .addPrefixPath("/api/server", plugin.getServerHandler());
 
-            // 4. 启动管理员服务器
+            // 4. 启动管理员服务器（开启限流时由限流处理器包裹路由）
+            adminRateLimit = createRateLimit("admin", pathHandler);
             adminServer = Undertow.builder()
                     .addHttpListener(port, "0.0.0.0")
-                    .setHandler(pathHandler)
+                    .setHandler(adminRateLimit != null ? adminRateLimit : pathHandler)
                     .setIoThreads(4)
                     .setWorkerThreads(8)
                     .build();
@@ -92,10 +100,11 @@ public class WebServer {
                     .addPrefixPath("/api/map", plugin.getMapHandler())
                     .addPrefixPath("/api/user", plugin.getUserHandler());
 
-            // 4. 启动玩家服务器
+            // 4. 启动玩家服务器（开启限流时由限流处理器包裹路由）
+            playerRateLimit = createRateLimit("player", pathHandler);
             playerServer = Undertow.builder()
                     .addHttpListener(port, "0.0.0.0")
-                    .setHandler(pathHandler)
+                    .setHandler(playerRateLimit != null ? playerRateLimit : pathHandler)
                     .setIoThreads(4)
                     .setWorkerThreads(8)
                     .build();
@@ -121,6 +130,33 @@ public class WebServer {
             playerServer.stop();
             plugin.getLogger().info("✅ 玩家Web面板已停止");
         }
+        if (adminRateLimit != null) {
+            adminRateLimit.shutdown();
+        }
+        if (playerRateLimit != null) {
+            playerRateLimit.shutdown();
+        }
+    }
+
+    /**
+     * 限流统计（按面板）
+     */
+    public Map<String, Object> getRateLimitStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        if (adminRateLimit != null) {
+            stats.put("admin", adminRateLimit.getStats());
+        }
+        if (playerRateLimit != null) {
+            stats.put("player", playerRateLimit.getStats());
+        }
+        return stats;
+    }
+
+    private RateLimitHandler createRateLimit(String name, HttpHandler next) {
+        if (!plugin.getConfig().getBoolean("web.rate_limit.enable", true)) {
+            return null;
+        }
+        return new RateLimitHandler(plugin, name, next);
     }
 
     public AnnouncementCompensationPlugin getPlugin() {
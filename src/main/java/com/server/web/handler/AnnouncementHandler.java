@@ -1,7 +1,10 @@
 package com.server.web.handler;
 
 import com.server.AnnouncementCompensationPlugin;
+import com.server.data.EntityType;
+import com.server.data.PageQuery;
 import com.server.data.model.Announcement;
+import com.server.web.ETags;
 import com.server.web.WebPermission;
 import com.server.util.GsonUtils;
 import io.undertow.server.HttpHandler;
@@ -67,14 +70,42 @@ public class AnnouncementHandler implements HttpHandler {
     }
 
     /**
-     * 获取所有公告
+     * 获取公告（支持 If-None-Match，未变化时返回 304）
+     * 不带参数时返回全部公告；带 limit/after/sort/order/from/to 时分页返回（见 PageQuery）
      */
     private void handleGetAnnouncements(HttpServerExchange exchange) {
-        List<Announcement> announcements = plugin.getDataManager().getAllAnnouncements();
-        Map<String, Object> response = new HashMap<>();
-        response.put("success", true);
-        response.put("data", announcements);
-        sendSuccessResponse(exchange, response);
+        PageQuery query;
+        try {
+            query = PageQuery.fromParameters(exchange.getQueryParameters());
+        } catch (IllegalArgumentException e) {
+            sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, e.getMessage());
+            return;
+        }
+        long version = plugin.getDataManager().getCollectionVersion(EntityType.ANNOUNCEMENT);
+        if (ETags.notModified(exchange, ETags.of("announcements", version))) {
+            return;
+        }
+        if (query != null) {
+            try {
+                if (query.isPlainFirstPage()) {
+                    plugin.getResponseCache().send(exchange, "announcements?" + query.cacheKey(), version,
+                            () -> plugin.getDataManager().queryAnnouncements(query).toResponse());
+                } else {
+                    sendSuccessResponse(exchange, plugin.getDataManager().queryAnnouncements(query).toResponse());
+                }
+            } catch (IllegalArgumentException e) {
+                sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, e.getMessage());
+            }
+            return;
+        }
+        // 数据未变化时直接发送缓存的序列化结果
+        plugin.getResponseCache().send(exchange, "announcements", version, () -> {
+            List<Announcement> announcements = plugin.getDataManager().getAllAnnouncements();
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", announcements);
+            return response;
+        });
     }
 
     /**
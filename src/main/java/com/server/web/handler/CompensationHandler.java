@@ -1,7 +1,10 @@
 package com.server.web.handler;
 
 import com.server.AnnouncementCompensationPlugin;
+import com.server.data.EntityType;
+import com.server.data.PageQuery;
 import com.server.data.model.Compensation;
+import com.server.web.ETags;
 import com.server.web.WebPermission;
 import com.server.util.GsonUtils;
 import io.undertow.server.HttpHandler;
@@ -70,14 +73,42 @@ public class CompensationHandler implements HttpHandler {
     }
 
     /**
-     * 获取所有补偿
+     * 获取补偿（支持 If-None-Match，补偿或领取状态未变化时返回 304）
+     * 不带参数时返回全部补偿；带 limit/after/sort/order/compensationId/from/to 时分页返回（见 PageQuery）
      */
     private void handleGetCompensations(HttpServerExchange exchange) {
-        List<Compensation> compensations = plugin.getDataManager().getAllCompensations();
-        Map<String, Object> response = new HashMap<>();
-        response.put("success", true);
-        response.put("data", compensations);
-        sendSuccessResponse(exchange, response);
+        PageQuery query;
+        try {
+            query = PageQuery.fromParameters(exchange.getQueryParameters());
+        } catch (IllegalArgumentException e) {
+            sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, e.getMessage());
+            return;
+        }
+        long version = plugin.getDataManager().getCollectionVersion(EntityType.COMPENSATION);
+        if (ETags.notModified(exchange, ETags.of("compensations", version))) {
+            return;
+        }
+        if (query != null) {
+            try {
+                if (query.isPlainFirstPage()) {
+                    plugin.getResponseCache().send(exchange, "compensations?" + query.cacheKey(), version,
+                            () -> plugin.getDataManager().queryCompensations(query).toResponse());
+                } else {
+                    sendSuccessResponse(exchange, plugin.getDataManager().queryCompensations(query).toResponse());
+                }
+            } catch (IllegalArgumentException e) {
+                sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, e.getMessage());
+            }
+            return;
+        }
+        // 数据未变化时直接发送缓存的序列化结果
+        plugin.getResponseCache().send(exchange, "compensations", version, () -> {
+            List<Compensation> compensations = plugin.getDataManager().getAllCompensations();
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", compensations);
+            return response;
+        });
     }
 
     /**
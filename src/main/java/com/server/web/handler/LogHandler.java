@@ -1,7 +1,11 @@
 package com.server.web.handler;
 
 import com.server.AnnouncementCompensationPlugin;
+import com.server.data.EntityType;
+import com.server.data.PageQuery;
 import com.server.data.model.ClaimLog;
+import com.server.web.ETags;
+import com.server.web.StreamingExport;
 import com.server.web.WebPermission;
 import com.server.util.GsonUtils;
 
@@ -10,15 +14,20 @@ import io.undertow.server.HttpServerExchange;
 import io.undertow.util.Headers;
 import io.undertow.util.StatusCodes;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * 补偿领取日志API处理器
- * 处理 /api/log GET请求，查询领取日志
+ * 处理 /api/log GET请求，查询领取日志（支持分页、过滤与排序）；/api/log/export 流式导出
  */
 public class LogHandler implements HttpHandler {
+    // 导出CSV表头
+    private static final String[] LOG_CSV_HEADER = {"logId", "playerName", "playerUUID", "compensationId", "claimTime"};
+
     private final AnnouncementCompensationPlugin plugin;
     private final LoginHandler loginHandler;
 
@@ -59,19 +68,110 @@ public class LogHandler implements HttpHandler {
             return;
         }
 
-        // 4. 获取所有领取日志
-        handleGetLogs(exchange);
+        // 4. 导出（/api/log/export，流式写出，在工作线程执行）
+        if (exchange.getRequestPath().endsWith("/export")) {
+            if (exchange.isInIoThread()) {
+                exchange.dispatch(() -> handleExportLogs(exchange));
+                return;
+            }
+            handleExportLogs(exchange);
+            return;
+        }
+
+        // 5. 解析分页参数（不带参数时返回全部日志）
+        PageQuery query;
+        try {
+            query = PageQuery.fromParameters(exchange.getQueryParameters());
+        } catch (IllegalArgumentException e) {
+            sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, e.getMessage());
+            return;
+        }
+
+        // 6. 日志未变化时直接返回 304（在IO线程完成，无需读取分段文件）
+        long version = plugin.getDataManager().getCollectionVersion(EntityType.CLAIM_LOG);
+        if (ETags.notModified(exchange, ETags.of("logs", version))) {
+            return;
+        }
+
+        // 7. 命中响应缓存时在IO线程直接发送；否则需要读取分段文件，转到工作线程执行
+        String cacheKey = query == null ? "logs" : query.isPlainFirstPage() ? "logs?" + query.cacheKey() : null;
+        if (cacheKey != null && plugin.getResponseCache().sendIfFresh(exchange, cacheKey, version)) {
+            return;
+        }
+        if (exchange.isInIoThread()) {
+            exchange.dispatch(() -> handleGetLogs(exchange, query, cacheKey, version));
+            return;
+        }
+        handleGetLogs(exchange, query, cacheKey, version);
+    }
+
+    /**
+     * 获取补偿领取日志
+     * 不带参数时返回全部日志（按时间顺序）；带 limit/after/order/player/compensationId/from/to 时分页返回，
+     * 默认从新到旧，游标翻页只读取游标之后的分段（见 PageQuery）
+     * 全部日志与不带过滤条件的第一页按日志版本号缓存序列化结果
+     */
+    private void handleGetLogs(HttpServerExchange exchange, PageQuery query, String cacheKey, long version) {
+        try {
+            if (cacheKey == null) {
+                sendSuccessResponse(exchange, plugin.getDataManager().queryClaimLogs(query).toResponse());
+                return;
+            }
+            plugin.getResponseCache().send(exchange, cacheKey, version, () -> {
+                if (query != null) {
+                    return plugin.getDataManager().queryClaimLogs(query).toResponse();
+                }
+                List<ClaimLog> logs = plugin.getDataManager().getAllClaimLogs();
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", true);
+                response.put("data", logs);
+                response.put("total", plugin.getDataManager().getClaimLogCount());
+                return response;
+            });
+        } catch (IllegalArgumentException e) {
+            sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, e.getMessage());
+        }
     }
 
     /**
-     * 获取所有补偿领取日志
+     * 导出领取日志：format=ndjson（默认）或 csv，可带 player/compensationId/from/to 过滤
+     * 按时间顺序从分段存储逐条读取并写入响应流，内存占用与日志总数无关
      */
-    private void handleGetLogs(HttpServerExchange exchange) {
-        List<ClaimLog> logs = plugin.getDataManager().getAllClaimLogs();
-        Map<String, Object> response = new HashMap<>();
-        response.put("success", true);
-        response.put("data", logs);
-        sendSuccessResponse(exchange, response);
+    private void handleExportLogs(HttpServerExchange exchange) {
+        StreamingExport.Format format;
+        PageQuery filters;
+        try {
+            var formatParam = exchange.getQueryParameters().get("format");
+            format = StreamingExport.Format.parse(formatParam != null ? formatParam.peekFirst() : null);
+            filters = PageQuery.fromParameters(exchange.getQueryParameters());
+        } catch (IllegalArgumentException e) {
+            sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, e.getMessage());
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        StreamingExport<ClaimLog> export = null;
+        try {
+            export = StreamingExport.start(exchange, format, "claim_logs", ClaimLog.class, LOG_CSV_HEADER,
+                    log -> new Object[]{log.getIdString(), log.getPlayerName(), log.getPlayerUUID(), log.getCompensationId(), log.getClaimTime()});
+            StreamingExport<ClaimLog> target = export;
+            plugin.getDataManager().forEachClaimLog(filters, log -> {
+                try {
+                    target.write(log);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            export.close();
+            plugin.getLogger().info("✅ 导出领取日志 " + export.getCount() + " 条（" + format + "，耗时 "
+                    + (System.currentTimeMillis() - start) + "ms）");
+        } catch (IOException | UncheckedIOException e) {
+            // 响应头已发送，只能断开连接（客户端中途取消下载也会走到这里）
+            plugin.getLogger().warning("⚠️ 导出领取日志中断：" + e.getMessage());
+            if (export != null) {
+                export.abort();
+            }
+        }
     }
 
     // ====================== 响应工具方法 ======================
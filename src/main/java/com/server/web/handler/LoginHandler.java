@@ -4,26 +4,32 @@ import com.server.AnnouncementCompensationPlugin;
 import com.server.data.model.Admin;
 import com.server.util.BCryptUtils;
 import com.server.util.GsonUtils;
+import com.server.util.PasswordHashingService;
+import com.server.web.SessionStore;
+import com.server.web.SignedTokens;
+import com.server.web.WebPermission;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.util.Headers;
+import io.undertow.util.SameThreadExecutor;
 import io.undertow.util.StatusCodes;
 
 
 import java.util.Map;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * 管理员登录API处理器（含调试日志）
  */
 public class LoginHandler implements HttpHandler {
     private final AnnouncementCompensationPlugin plugin;
-    // 线程安全的 Token 存储
-    private final Map<String, Admin> tokenMap = new ConcurrentHashMap<>();
+    // 会话存储（Token -> 管理员用户名，空闲/绝对超时自动失效）
+    private final SessionStore sessions;
 
     public LoginHandler(AnnouncementCompensationPlugin plugin) {
         this.plugin = plugin;
+        this.sessions = SessionStore.fromConfig(plugin, "admin");
     }
 
     @Override
@@ -95,15 +101,61 @@ public class LoginHandler implements HttpHandler {
             return;
         }
 
-        // 验证密码（BCrypt匹配）
-        if (!BCryptUtils.verify(loginAdmin.getPassword(), realAdmin.getPasswordHash())) {
-            sendErrorResponse(exchange, StatusCodes.UNAUTHORIZED, "密码错误");
+        // 验证密码（BCrypt匹配）：提交到密码哈希线程池，Web工作线程不等待校验结果
+        // 再次 dispatch 使交换保持异步状态（否则本任务返回后 Undertow 会直接结束交换），校验完成后调度回工作线程发送响应
+        String password = loginAdmin.getPassword();
+        exchange.dispatch(SameThreadExecutor.INSTANCE, () -> submitVerification(exchange, realAdmin, password));
+    }
+
+    // 提交密码校验（在 SameThreadExecutor 调度的任务中执行）
+    private void submitVerification(HttpServerExchange exchange, Admin realAdmin, String password) {
+        PasswordHashingService hashing = plugin.getPasswordHashingService();
+        String passwordHash = realAdmin.getPasswordHash();
+        CompletableFuture<Boolean> verification;
+        try {
+            if (hashing == null) {
+                throw new RejectedExecutionException("密码哈希线程池未初始化");
+            }
+            verification = hashing.submit(() -> {
+                boolean matched = BCryptUtils.verify(password, passwordHash);
+                if (matched && realAdmin.rehashIfNeeded(password)) {
+                    plugin.getDataManager().saveAdmin(realAdmin);
+                    plugin.getLogger().info("🔄 管理员 " + realAdmin.getUsername() + " 的密码已按当前强度重新加密");
+                }
+                return matched;
+            });
+        } catch (RejectedExecutionException e) {
+            plugin.getLogger().warning("⚠️ 管理员登录请求被拒绝（密码校验繁忙）：" + realAdmin.getUsername());
+            sendBusyResponse(exchange, hashing);
             return;
         }
 
-        // 生成登录Token（UUID随机生成）
-        String token = UUID.randomUUID().toString().replace("-", "");
-        tokenMap.put(token, realAdmin);
+        verification.whenComplete((matched, error) -> exchange.dispatch(exchange.getConnection().getWorker(), () -> {
+            try {
+                if (error != null) {
+                    plugin.getLogger().severe("❌ 管理员密码校验失败：" + error.getMessage());
+                    sendErrorResponse(exchange, StatusCodes.INTERNAL_SERVER_ERROR, "服务器内部错误");
+                } else if (!matched) {
+                    sendErrorResponse(exchange, StatusCodes.UNAUTHORIZED, "密码错误");
+                } else {
+                    completeLogin(exchange, realAdmin);
+                }
+            } catch (Exception e) {
+                plugin.getLogger().severe("❌ LoginHandler 处理失败：" + e.getMessage());
+                try {
+                    sendErrorResponse(exchange, StatusCodes.INTERNAL_SERVER_ERROR, "服务器内部错误");
+                } catch (Exception ignored) {}
+            }
+        }));
+    }
+
+    // 密码校验通过后生成Token并响应
+    private void completeLogin(HttpServerExchange exchange, Admin realAdmin) {
+        // 生成登录Token：签名模式下签发无状态令牌，否则创建服务端会话（只记录用户名，校验时取最新的管理员数据）
+        SignedTokens signedTokens = plugin.getSignedTokens();
+        String token = signedTokens != null
+                ? signedTokens.issue(realAdmin.getUsername(), SignedTokens.Role.ADMIN, WebPermission.toMask(realAdmin.getPermissions()))
+                : sessions.create(realAdmin.getUsername());
 
         // 构建成功响应
         Map<String, Object> response = Map.of(
@@ -120,23 +172,47 @@ public class LoginHandler implements HttpHandler {
 
     /**
      * 验证Token是否有效（供其他Handler调用）
+     * @return Token对应的管理员（按用户名取最新数据）；无效、已过期或管理员已删除时返回 null
      */
     public Admin validateToken(String token) {
-        return tokenMap.get(token);
+        if (SignedTokens.isSignedToken(token)) {
+            return validateSignedToken(token);
+        }
+        String username = sessions.validate(token);
+        if (username == null) {
+            return null;
+        }
+        Admin admin = plugin.getDataManager().getAdminByUsername(username);
+        if (admin == null) {
+            sessions.revokeAll(username);
+        }
+        return admin;
+    }
+
+    /**
+     * 校验签名令牌：管理员身份与权限取自令牌本身，不查会话表，也不要求本节点存在该管理员
+     */
+    private Admin validateSignedToken(String token) {
+        SignedTokens signedTokens = plugin.getSignedTokens();
+        SignedTokens.Claims claims = signedTokens != null ? signedTokens.verify(token) : null;
+        if (claims == null || claims.role() != SignedTokens.Role.ADMIN) {
+            return null;
+        }
+        return new Admin(claims.subject(), null, WebPermission.fromMask(claims.permissions()));
     }
 
     /**
      * 验证Token是否有效（布尔值版本）
      */
     public boolean isValidToken(String token) {
-        return tokenMap.containsKey(token);
+        return validateToken(token) != null;
     }
 
     /**
      * 检查Token是否为管理员Token
      */
     public boolean isAdminToken(String token) {
-        Admin admin = tokenMap.get(token);
+        Admin admin = validateToken(token);
         return admin != null;
     }
 
@@ -144,7 +220,7 @@ public class LoginHandler implements HttpHandler {
      * 获取管理员权限列表
      */
     public java.util.List<String> getAdminPermissions(String token) {
-        Admin admin = tokenMap.get(token);
+        Admin admin = validateToken(token);
         return admin != null ? admin.getPermissions() : java.util.Collections.emptyList();
     }
 
@@ -152,7 +228,36 @@ public class LoginHandler implements HttpHandler {
      * 退出登录（移除Token）
      */
     public void logout(String token) {
-        tokenMap.remove(token);
+        SignedTokens signedTokens = plugin.getSignedTokens();
+        if (SignedTokens.isSignedToken(token) && signedTokens != null) {
+            signedTokens.revoke(token);
+        } else {
+            sessions.revoke(token);
+        }
+    }
+
+    /**
+     * 注销管理员的全部会话（如修改密码或权限后强制重新登录）
+     */
+    public void revokeSessions(String username) {
+        sessions.revokeAll(username);
+        if (plugin.getSignedTokens() != null) {
+            plugin.getSignedTokens().revokeAll(SignedTokens.Role.ADMIN, username);
+        }
+    }
+
+    /**
+     * 会话统计信息
+     */
+    public Map<String, Object> getSessionStats() {
+        return sessions.getStats();
+    }
+
+    /**
+     * 停用时关闭会话存储（按配置持久化未过期的会话）
+     */
+    public void close() {
+        sessions.close();
     }
 
     // ====================== 响应工具方法 ======================
@@ -162,6 +267,16 @@ public class LoginHandler implements HttpHandler {
         exchange.getResponseSender().send(GsonUtils.getGson().toJson(data));
     }
 
+    // 密码校验繁忙：队列已满返回429（附Retry-After），线程池已关闭返回503
+    private void sendBusyResponse(HttpServerExchange exchange, PasswordHashingService hashing) {
+        if (hashing == null || hashing.isShutdown()) {
+            sendErrorResponse(exchange, StatusCodes.SERVICE_UNAVAILABLE, "服务暂不可用，请稍后重试");
+            return;
+        }
+        exchange.getResponseHeaders().put(Headers.RETRY_AFTER, hashing.estimateRetryAfterSeconds());
+        sendErrorResponse(exchange, StatusCodes.TOO_MANY_REQUESTS, "登录请求过多，请稍后重试");
+    }
+
     private void sendErrorResponse(HttpServerExchange exchange, int statusCode, String message) {
         Map<String, Object> response = Map.of(
                 "success", false,
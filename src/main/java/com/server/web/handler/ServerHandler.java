@@ -50,6 +50,8 @@ public class ServerHandler implements HttpHandler {
             handleGetQQApiConfig(exchange);
         } else if (path.endsWith("/updateQQApiConfig")) {
             handleUpdateQQApiConfig(exchange);
+        } else if (path.endsWith("/getStorageStats")) {
+            handleGetStorageStats(exchange);
         } else {
             sendErrorResponse(exchange, StatusCodes.NOT_FOUND, "API路径不存在");
         }
@@ -453,6 +455,44 @@ public class ServerHandler implements HttpHandler {
         });
     }
 
+    // 处理获取存储统计请求（持久化队列深度、刷盘耗时等）
+    private void handleGetStorageStats(HttpServerExchange exchange) throws Exception {
+        // 仅允许 GET
+        if (!"GET".equals(exchange.getRequestMethod().toString())) {
+            sendErrorResponse(exchange, StatusCodes.METHOD_NOT_ALLOWED, "仅支持GET请求");
+            return;
+        }
+
+        // 获取参数
+        String token = exchange.getQueryParameters().get("token") != null ? exchange.getQueryParameters().get("token").peekFirst() : null;
+
+        if (token == null) {
+            sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, "Token不能为空");
+            return;
+        }
+
+        // 验证Token
+        LoginHandler loginHandler = plugin.getLoginHandler();
+        if (loginHandler.validateToken(token) == null) {
+            sendErrorResponse(exchange, StatusCodes.UNAUTHORIZED, "Token无效或已过期");
+            return;
+        }
+
+        // 返回成功响应
+        sendSuccessResponse(exchange, Map.of(
+                "success", true,
+                "message", "获取存储统计成功",
+                "stats", plugin.getDataManager().getStorageStats(),
+                "sessions", Map.of(
+                        "admin", loginHandler.getSessionStats(),
+                        "user", plugin.getUserHandler().getSessionStats(),
+                        "signed", plugin.getSignedTokens() != null ? plugin.getSignedTokens().getStats() : Map.of()
+                ),
+                "rateLimit", plugin.getWebServer() != null ? plugin.getWebServer().getRateLimitStats() : Map.of(),
+                "responseCache", plugin.getResponseCache().getStats()
+        ));
+    }
+
     // ====================== 响应工具方法 ======================
     private void sendSuccessResponse(HttpServerExchange exchange, Object data) {
         exchange.setStatusCode(StatusCodes.OK);
@@ -1,32 +1,38 @@
 package com.server.web.handler;
 
 import com.server.AnnouncementCompensationPlugin;
+import com.server.data.DataManager;
 import com.server.data.model.EmailVerificationCode;
 import com.server.data.model.QQBinding;
 import com.server.data.model.User;
 import com.server.util.GsonUtils;
 import com.server.util.MailUtils;
+import com.server.util.PasswordHashingService;
+import com.server.web.SessionStore;
+import com.server.web.SignedTokens;
 import com.server.web.WebPermission;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.util.Headers;
+import io.undertow.util.SameThreadExecutor;
 import io.undertow.util.StatusCodes;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * 用户API处理器（注册、登录、邮箱验证等）
  */
 public class UserHandler implements HttpHandler {
     private final AnnouncementCompensationPlugin plugin;
-    // 线程安全的 Token 存储
-    private final Map<String, User> tokenMap = new ConcurrentHashMap<>();
+    // 会话存储（Token -> 用户名，空闲/绝对超时自动失效）
+    private final SessionStore sessions;
 
     public UserHandler(AnnouncementCompensationPlugin plugin) {
         this.plugin = plugin;
+        this.sessions = SessionStore.fromConfig(plugin, "user");
     }
 
     @Override
@@ -91,7 +97,7 @@ public class UserHandler implements HttpHandler {
                         return;
                     }
 
-                    // 检查用户名是否已存在
+                    // 检查用户名是否已存在（快速失败，避免无谓的BCrypt计算）
                     if (plugin.getDataManager().getUserByUsername(request.getUsername()) != null) {
                         sendErrorResponse(ex, StatusCodes.CONFLICT, "用户名已存在");
                         return;
@@ -103,9 +109,17 @@ public class UserHandler implements HttpHandler {
                         return;
                     }
 
-                    // 创建新用户
+                    // 创建新用户（原子注册：并发请求中只有一个能占用该用户名/邮箱）
                     User user = new User(request.getUsername(), request.getPassword(), request.getEmail());
-                    plugin.getDataManager().saveUser(user);
+                    DataManager.RegisterResult result = plugin.getDataManager().registerUser(user);
+                    if (result == DataManager.RegisterResult.USERNAME_EXISTS) {
+                        sendErrorResponse(ex, StatusCodes.CONFLICT, "用户名已存在");
+                        return;
+                    }
+                    if (result == DataManager.RegisterResult.EMAIL_EXISTS) {
+                        sendErrorResponse(ex, StatusCodes.CONFLICT, "邮箱已被注册");
+                        return;
+                    }
 
                     // 发送邮箱验证码
                     if (!sendVerificationCode(user.getEmail(), EmailVerificationCode.CodeType.REGISTER)) {
@@ -155,69 +169,36 @@ public class UserHandler implements HttpHandler {
                         return;
                     }
 
-                    User user = null;
-
-                    // 支持两种登录方式：1. 用户名+密码  2. 仅密码（已绑定角色的用户）
+                    // 按标识定位唯一候选账户：用户名 > 邮箱 > 已绑定的游戏角色UUID，只做一次BCrypt校验
+                    User user;
                     if (request.getUsername() != null) {
-                        // 传统登录方式：用户名+密码
                         user = plugin.getDataManager().getUserByUsername(request.getUsername());
                         if (user == null) {
                             sendErrorResponse(ex, StatusCodes.UNAUTHORIZED, "用户名不存在");
                             return;
                         }
-                    } else {
-                        // 新登录方式：仅密码（查找已绑定角色的用户）
-                        // 注意：这里需要根据实际情况调整，可能需要从请求中获取更多信息
-                        // 为了演示，我们假设只有一个已绑定角色的用户
-                        for (User u : plugin.getDataManager().getUsers()) {
-                            if (u.isGameRoleBound() && u.verifyPassword(request.getPassword())) {
-                                user = u;
-                                break;
-                            }
-                        }
-
+                    } else if (request.getEmail() != null) {
+                        user = plugin.getDataManager().getUserByEmail(request.getEmail());
                         if (user == null) {
-                            sendErrorResponse(ex, StatusCodes.UNAUTHORIZED, "密码错误或未绑定角色");
+                            sendErrorResponse(ex, StatusCodes.UNAUTHORIZED, "邮箱未注册");
                             return;
                         }
-                    }
-
-                    // 验证密码
-                    if (!user.verifyPassword(request.getPassword())) {
-                        sendErrorResponse(ex, StatusCodes.UNAUTHORIZED, "密码错误");
-                        return;
-                    }
-
-                    // 检查邮箱是否已验证
-                    if (!user.isVerified()) {
-                        sendErrorResponse(ex, StatusCodes.FORBIDDEN, "邮箱未验证，请先验证邮箱");
+                    } else if (request.getGameUUID() != null) {
+                        user = plugin.getDataManager().getUserByGameUUID(request.getGameUUID());
+                        if (user == null || !user.isGameRoleBound()) {
+                            sendErrorResponse(ex, StatusCodes.UNAUTHORIZED, "该游戏角色未绑定账户");
+                            return;
+                        }
+                    } else {
+                        sendErrorResponse(ex, StatusCodes.BAD_REQUEST, "请提供用户名、邮箱或游戏角色UUID");
                         return;
                     }
 
-                    // 更新最后登录时间
-                    user.updateLastLoginTime();
-                    plugin.getDataManager().saveUser(user);
-
-                    // 生成登录Token
-                    String token = UUID.randomUUID().toString().replace("-", "");
-                    tokenMap.put(token, user);
-
-                    // 返回成功响应
-                    Map<String, Object> userInfo = Map.of(
-                            "username", user.getUsername(),
-                            "email", user.getEmail(),
-                            "isGameRoleBound", user.isGameRoleBound(),
-                            "permissions", user.getPermissions()
-                    );
-                    
-                    Map<String, Object> response = Map.of(
-                            "success", true,
-                            "message", "登录成功",
-                            "token", token,
-                            "user", userInfo
-                    );
-                    sendSuccessResponse(ex, response);
-                    plugin.getLogger().info("用户 " + user.getUsername() + " 登录Web面板");
+                    // 验证密码：提交到密码哈希线程池，Web工作线程不等待校验结果
+                    // 再次 dispatch 使交换保持异步状态（否则本任务返回后 Undertow 会直接结束交换），校验完成后调度回工作线程发送响应
+                    User candidate = user;
+                    String password = request.getPassword();
+                    ex.dispatch(SameThreadExecutor.INSTANCE, () -> submitVerification(ex, candidate, password));
                 } catch (Exception e) {
                     plugin.getLogger().severe("❌ 用户登录失败：" + e.getMessage());
                     sendErrorResponse(ex, StatusCodes.INTERNAL_SERVER_ERROR, "登录失败，请稍后重试");
@@ -229,6 +210,77 @@ public class UserHandler implements HttpHandler {
         });
     }
 
+    // 提交密码校验（在 SameThreadExecutor 调度的任务中执行）
+    private void submitVerification(HttpServerExchange exchange, User candidate, String password) {
+        PasswordHashingService hashing = plugin.getPasswordHashingService();
+        CompletableFuture<Boolean> verification;
+        try {
+            if (hashing == null) {
+                throw new RejectedExecutionException("密码哈希线程池未初始化");
+            }
+            verification = hashing.submit(() -> {
+                boolean matched = candidate.verifyPassword(password);
+                if (matched && candidate.rehashIfNeeded(password)) {
+                    plugin.getDataManager().saveUser(candidate);
+                }
+                return matched;
+            });
+        } catch (RejectedExecutionException e) {
+            plugin.getLogger().warning("⚠️ 用户登录请求被拒绝（密码校验繁忙）：" + candidate.getUsername());
+            sendBusyResponse(exchange, hashing);
+            return;
+        }
+
+        verification.whenComplete((matched, error) -> exchange.dispatch(exchange.getConnection().getWorker(), () -> {
+            try {
+                if (error != null) {
+                    plugin.getLogger().severe("❌ 用户密码校验失败：" + error.getMessage());
+                    sendErrorResponse(exchange, StatusCodes.INTERNAL_SERVER_ERROR, "登录失败，请稍后重试");
+                } else if (!matched) {
+                    sendErrorResponse(exchange, StatusCodes.UNAUTHORIZED, "密码错误");
+                } else {
+                    completeUserLogin(exchange, candidate);
+                }
+            } catch (Exception e) {
+                plugin.getLogger().severe("❌ 用户登录失败：" + e.getMessage());
+                sendErrorResponse(exchange, StatusCodes.INTERNAL_SERVER_ERROR, "登录失败，请稍后重试");
+            }
+        }));
+    }
+
+    // 密码校验通过后检查邮箱验证状态、生成Token并响应
+    private void completeUserLogin(HttpServerExchange exchange, User user) {
+        // 检查邮箱是否已验证
+        if (!user.isVerified()) {
+            sendErrorResponse(exchange, StatusCodes.FORBIDDEN, "邮箱未验证，请先验证邮箱");
+            return;
+        }
+
+        // 更新最后登录时间
+        user.updateLastLoginTime();
+        plugin.getDataManager().saveUser(user);
+
+        // 生成登录Token（会话只记录用户名，校验时取最新的用户数据）
+        String token = issueToken(user);
+
+        // 返回成功响应
+        Map<String, Object> userInfo = Map.of(
+                "username", user.getUsername(),
+                "email", user.getEmail(),
+                "isGameRoleBound", user.isGameRoleBound(),
+                "permissions", user.getPermissions()
+        );
+
+        Map<String, Object> response = Map.of(
+                "success", true,
+                "message", "登录成功",
+                "token", token,
+                "user", userInfo
+        );
+        sendSuccessResponse(exchange, response);
+        plugin.getLogger().info("用户 " + user.getUsername() + " 登录Web面板");
+    }
+
     // 处理发送验证码请求
     private void handleSendVerificationCode(HttpServerExchange exchange) throws Exception {
         // 仅允许 POST
@@ -409,6 +461,9 @@ public class UserHandler implements HttpHandler {
                     user.setGameRoleBound(true);
                     // 注意：这里的gameUUID需要从游戏内获取，暂时设为null，后续在游戏内完成绑定
                     plugin.getDataManager().saveUser(user);
+                    if (user.getGameUUID() != null) {
+                        plugin.getPlayerListener().markAuthenticated(user.getGameUUID());
+                    }
 
                     // 返回成功响应
                     Map<String, Object> response = Map.of(
@@ -499,16 +554,75 @@ public class UserHandler implements HttpHandler {
 
     /**
      * 验证Token是否有效（供其他Handler调用）
+     * @return Token对应的用户（按用户名取最新数据）；无效、已过期或用户已删除时返回 null
      */
     public User validateToken(String token) {
-        return tokenMap.get(token);
+        String username;
+        if (SignedTokens.isSignedToken(token)) {
+            // 签名令牌：无状态校验，不查会话表
+            SignedTokens signedTokens = plugin.getSignedTokens();
+            SignedTokens.Claims claims = signedTokens != null ? signedTokens.verify(token) : null;
+            if (claims == null || claims.role() != SignedTokens.Role.USER) {
+                return null;
+            }
+            username = claims.subject();
+        } else {
+            username = sessions.validate(token);
+        }
+        if (username == null) {
+            return null;
+        }
+        User user = plugin.getDataManager().getUserByUsername(username);
+        if (user == null) {
+            sessions.revokeAll(username);
+        }
+        return user;
+    }
+
+    /**
+     * 签发登录Token：签名模式下签发无状态令牌，否则创建服务端会话
+     */
+    private String issueToken(User user) {
+        SignedTokens signedTokens = plugin.getSignedTokens();
+        return signedTokens != null
+                ? signedTokens.issue(user.getUsername(), SignedTokens.Role.USER, 0)
+                : sessions.create(user.getUsername());
     }
 
     /**
      * 退出登录（移除Token）
      */
     public void logout(String token) {
-        tokenMap.remove(token);
+        SignedTokens signedTokens = plugin.getSignedTokens();
+        if (SignedTokens.isSignedToken(token) && signedTokens != null) {
+            signedTokens.revoke(token);
+        } else {
+            sessions.revoke(token);
+        }
+    }
+
+    /**
+     * 注销用户的全部会话（如修改密码后强制重新登录）
+     */
+    public void revokeSessions(String username) {
+        sessions.revokeAll(username);
+        if (plugin.getSignedTokens() != null) {
+            plugin.getSignedTokens().revokeAll(SignedTokens.Role.USER, username);
+        }
+    }
+
+    /**
+     * 会话统计信息
+     */
+    public Map<String, Object> getSessionStats() {
+        return sessions.getStats();
+    }
+
+    /**
+     * 停用时关闭会话存储（按配置持久化未过期的会话）
+     */
+    public void close() {
+        sessions.close();
     }
 
     // 处理QQ绑定请求
@@ -631,9 +745,8 @@ public class UserHandler implements HttpHandler {
                     user.updateLastLoginTime();
                     plugin.getDataManager().saveUser(user);
 
-                    // 生成登录Token
-                    String token = UUID.randomUUID().toString().replace("-", "");
-                    tokenMap.put(token, user);
+                    // 生成登录Token（会话只记录用户名，校验时取最新的用户数据）
+                    String token = issueToken(user);
 
                     // 返回成功响应
                     Map<String, Object> response = Map.of(
@@ -704,11 +817,15 @@ public class UserHandler implements HttpHandler {
                     // 查找未绑定角色的用户（这里简单处理，实际应该根据注册流程获取对应的用户）
                     // 注意：这里需要根据实际情况调整，可能需要从注册流程中获取用户信息
                     // 为了演示，我们假设最新注册的未绑定用户就是要绑定的用户
+                    // getUsers 返回的可能是只读副本，修改前按用户名取得当前实例
                     User userToBind = null;
                     for (User user : plugin.getDataManager().getUsers()) {
                         if (!user.isGameRoleBound()) {
-                            userToBind = user;
-                            break;
+                            userToBind = plugin.getDataManager().getUserByUsername(user.getUsername());
+                            if (userToBind != null && !userToBind.isGameRoleBound()) {
+                                break;
+                            }
+                            userToBind = null;
                         }
                     }
 
@@ -721,6 +838,7 @@ public class UserHandler implements HttpHandler {
                     userToBind.setGameUUID(playerUUID);
                     userToBind.setGameRoleBound(true);
                     plugin.getDataManager().saveUser(userToBind);
+                    plugin.getPlayerListener().markAuthenticated(playerUUID);
 
                     // 返回成功响应
                     Map<String, Object> response = Map.of(
@@ -762,12 +880,20 @@ public class UserHandler implements HttpHandler {
 
     private static class LoginRequest {
         private String username;
+        private String email;
+        private String gameUUID;
         private String password;
 
         // Getters and setters
         public String getUsername() { return username; }
         @SuppressWarnings("unused")
         public void setUsername(String username) { this.username = username; }
+        public String getEmail() { return email; }
+        @SuppressWarnings("unused")
+        public void setEmail(String email) { this.email = email; }
+        public String getGameUUID() { return gameUUID; }
+        @SuppressWarnings("unused")
+        public void setGameUUID(String gameUUID) { this.gameUUID = gameUUID; }
         public String getPassword() { return password; }
         @SuppressWarnings("unused")
         public void setPassword(String password) { this.password = password; }
@@ -916,6 +1042,16 @@ public class UserHandler implements HttpHandler {
         exchange.getResponseSender().send(GsonUtils.getGson().toJson(response));
     }
 
+    // 密码校验繁忙：队列已满返回429（附Retry-After），线程池已关闭返回503
+    private void sendBusyResponse(HttpServerExchange exchange, PasswordHashingService hashing) {
+        if (hashing == null || hashing.isShutdown()) {
+            sendErrorResponse(exchange, StatusCodes.SERVICE_UNAVAILABLE, "服务暂不可用，请稍后重试");
+            return;
+        }
+        exchange.getResponseHeaders().put(Headers.RETRY_AFTER, hashing.estimateRetryAfterSeconds());
+        sendErrorResponse(exchange, StatusCodes.TOO_MANY_REQUESTS, "登录请求过多，请稍后重试");
+    }
+
     private void sendErrorResponse(HttpServerExchange exchange, int statusCode, String message) {
         Map<String, Object> response = Map.of(
                 "success", false,
@@ -2,7 +2,12 @@ package com.server.web.handler;
 
 import com.google.gson.reflect.TypeToken;
 import com.server.AnnouncementCompensationPlugin;
+import com.server.data.EntityType;
+import com.server.data.Page;
+import com.server.data.PageQuery;
 import com.server.data.model.WhitelistEntry;
+import com.server.web.ETags;
+import com.server.web.StreamingExport;
 import com.server.web.WebPermission;
 import com.server.util.GsonUtils;
 import io.undertow.server.HttpHandler;
@@ -10,6 +15,8 @@ import io.undertow.server.HttpServerExchange;
 import io.undertow.util.Headers;
 import io.undertow.util.StatusCodes;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Type;
 import java.util.HashMap;
 import java.util.List;
@@ -17,9 +24,12 @@ import java.util.Map;
 
 /**
  * 白名单管理API处理器
- * 处理 /api/whitelist GET/POST/DELETE请求，增删改查白名单、切换启用状态
+ * 处理 /api/whitelist GET/POST/DELETE请求，增删改查白名单、切换启用状态；/api/whitelist/export 流式导出
  */
 public class WhitelistHandler implements HttpHandler {
+    // 导出CSV表头
+    private static final String[] WHITELIST_CSV_HEADER = {"uuid", "playerName", "addTime", "addedBy", "reason"};
+
     private final AnnouncementCompensationPlugin plugin;
     private final LoginHandler loginHandler;
     // 定义Map<String, String>的TypeToken，解决泛型擦除问题
@@ -56,7 +66,16 @@ public class WhitelistHandler implements HttpHandler {
         String method = exchange.getRequestMethod().toString();
         switch (method) {
             case "GET":
-                handleGetWhitelist(exchange);
+                if (exchange.getRequestPath().endsWith("/export")) {
+                    // 导出（流式写出，在工作线程执行）
+                    if (exchange.isInIoThread()) {
+                        exchange.dispatch(() -> handleExportWhitelist(exchange));
+                    } else {
+                        handleExportWhitelist(exchange);
+                    }
+                } else {
+                    handleGetWhitelist(exchange);
+                }
                 break;
             case "POST":
                 handleWhitelistAction(exchange);
@@ -70,17 +89,95 @@ public class WhitelistHandler implements HttpHandler {
     }
 
     /**
-     * 获取白名单列表及启用状态
+     * 获取白名单列表及启用状态（支持 If-None-Match，列表与开关均未变化时返回 304）
+     * 不带参数时返回全部白名单；带 limit/after/sort/order/player/from/to 时分页返回（见 PageQuery）
      */
     private void handleGetWhitelist(HttpServerExchange exchange) {
-        List<WhitelistEntry> whitelist = plugin.getDataManager().getAllWhitelistEntries();
-        boolean enabled = plugin.getDataManager().isWhitelistEnabled();
+        PageQuery query;
+        try {
+            query = PageQuery.fromParameters(exchange.getQueryParameters());
+        } catch (IllegalArgumentException e) {
+            sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, e.getMessage());
+            return;
+        }
+        long version = plugin.getDataManager().getCollectionVersion(EntityType.WHITELIST);
+        if (ETags.notModified(exchange, ETags.of("whitelist", version))) {
+            return;
+        }
+        if (query != null) {
+            try {
+                if (query.isPlainFirstPage()) {
+                    plugin.getResponseCache().send(exchange, "whitelist?" + query.cacheKey(), version,
+                            () -> whitelistPage(query));
+                } else {
+                    sendSuccessResponse(exchange, whitelistPage(query));
+                }
+            } catch (IllegalArgumentException e) {
+                sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, e.getMessage());
+            }
+            return;
+        }
+        // 数据未变化时直接发送缓存的序列化结果
+        plugin.getResponseCache().send(exchange, "whitelist", version, () -> {
+            List<WhitelistEntry> whitelist = plugin.getDataManager().getAllWhitelistEntries();
+            boolean enabled = plugin.getDataManager().isWhitelistEnabled();
 
-        Map<String, Object> response = new HashMap<>();
-        response.put("success", true);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("enabled", enabled);
+            response.put("data", whitelist);
+            return response;
+        });
+    }
+
+    /**
+     * 导出白名单：format=ndjson（默认）或 csv，可带 player/from/to 过滤
+     * 直接遍历当前白名单快照写入响应流，不构建完整的响应文档
+     */
+    private void handleExportWhitelist(HttpServerExchange exchange) {
+        StreamingExport.Format format;
+        PageQuery filters;
+        try {
+            var formatParam = exchange.getQueryParameters().get("format");
+            format = StreamingExport.Format.parse(formatParam != null ? formatParam.peekFirst() : null);
+            filters = PageQuery.fromParameters(exchange.getQueryParameters());
+        } catch (IllegalArgumentException e) {
+            sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, e.getMessage());
+            return;
+        }
+
+        StreamingExport<WhitelistEntry> export = null;
+        try {
+            export = StreamingExport.start(exchange, format, "whitelist", WhitelistEntry.class, WHITELIST_CSV_HEADER,
+                    entry -> new Object[]{entry.getUuid(), entry.getPlayerName(), entry.getAddTime(), entry.getAddedBy(), entry.getReason()});
+            StreamingExport<WhitelistEntry> target = export;
+            plugin.getDataManager().forEachWhitelistEntry(filters, entry -> {
+                try {
+                    target.write(entry);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            export.close();
+            plugin.getLogger().info("✅ 导出白名单 " + export.getCount() + " 条（" + format + "）");
+        } catch (IOException | UncheckedIOException e) {
+            // 响应头已发送，只能断开连接
+            plugin.getLogger().warning("⚠️ 导出白名单中断：" + e.getMessage());
+            if (export != null) {
+                export.abort();
+            }
+        }
+    }
+
+    /**
+     * 白名单分页响应（附带启用状态）
+     */
+    private Map<String, Object> whitelistPage(PageQuery query) {
+        boolean enabled = plugin.getDataManager().isWhitelistEnabled();
+        Page<WhitelistEntry> page = plugin.getDataManager().queryWhitelistEntries(query);
+        Map<String, Object> response = page.toResponse();
         response.put("enabled", enabled);
-        response.put("data", whitelist);
-        sendSuccessResponse(exchange, response);
+        return response;
     }
 
     /**
@@ -32,6 +32,9 @@ document.addEventListener('DOMContentLoaded', function() {
     document.getElementById('whitelist-switch').addEventListener('change', toggleWhitelist);
     document.getElementById('add-whitelist-btn').addEventListener('click', () => openWhitelistModal());
     document.getElementById('whitelist-form').addEventListener('submit', addWhitelist);
+
+    // 日志导出
+    document.getElementById('export-log-btn').addEventListener('click', () => exportLogs('csv'));
     
     // 模态框关闭/取消
     document.querySelectorAll('.modal-close, .modal-cancel').forEach(btn => {
@@ -876,12 +879,20 @@ async function deleteWhitelist(uuid) {
 }
 
 // ====================== 日志管理 ======================
+// 每页日志条数与下一页游标（null 表示没有更多）
+const LOG_PAGE_SIZE = 100;
+let logNextCursor = null;
+
 /**
- * 加载领取日志
+ * 加载领取日志（从新到旧分页加载，append 为 true 时追加下一页）
  */
-async function loadLogList() {
+async function loadLogList(append = false) {
     try {
-        const response = await fetch(`${API_BASE}/log`, {
+        const params = new URLSearchParams({ limit: LOG_PAGE_SIZE });
+        if (append && logNextCursor) {
+            params.set('after', logNextCursor);
+        }
+        const response = await fetch(`${API_BASE}/log?${params}`, {
             method: 'GET',
             headers: {
                 'Authorization': `Bearer ${TOKEN}`,
@@ -891,7 +902,13 @@ async function loadLogList() {
         const result = await response.json();
         if (result.success) {
             const listEl = document.getElementById('log-list');
-            listEl.innerHTML = '';
+            if (!append) {
+                listEl.innerHTML = '';
+            }
+            const moreRow = document.getElementById('log-load-more');
+            if (moreRow) {
+                moreRow.remove();
+            }
             
             if (result.data && result.data.length > 0) {
                 result.data.forEach(log => {
@@ -905,7 +922,7 @@ async function loadLogList() {
                     `;
                     listEl.appendChild(tr);
                 });
-            } else {
+            } else if (!append) {
                 listEl.innerHTML = `
                     <tr>
                         <td colspan="5" class="border border-gray-200 px-4 py-8 text-center text-gray-500">
@@ -914,6 +931,20 @@ async function loadLogList() {
                     </tr>
                 `;
             }
+
+            // 还有更早的日志时显示"加载更多"
+            logNextCursor = result.hasMore ? result.next : null;
+            if (logNextCursor) {
+                const tr = document.createElement('tr');
+                tr.id = 'log-load-more';
+                tr.innerHTML = `
+                    <td colspan="5" class="border border-gray-200 px-4 py-2 text-center">
+                        <button class="text-blue-600 hover:text-blue-800">加载更多（共 ${result.total} 条）</button>
+                    </td>
+                `;
+                tr.querySelector('button').addEventListener('click', () => loadLogList(true));
+                listEl.appendChild(tr);
+            }
         } else {
             showToast(result.message || '加载日志失败', 'error');
         }
@@ -923,6 +954,41 @@ async function loadLogList() {
     }
 }
 
+/**
+ * 导出全部领取日志（服务端流式输出，下载完成后保存为文件）
+ */
+async function exportLogs(format) {
+    try {
+        const response = await fetch(`${API_BASE}/log/export?format=${format}`, {
+            method: 'GET',
+            headers: {
+                'Authorization': `Bearer ${TOKEN}`,
+            },
+        });
+        if (!response.ok) {
+            const result = await response.json().catch(() => ({}));
+            showToast(result.message || '导出日志失败', 'error');
+            return;
+        }
+
+        // 使用服务端给出的文件名
+        const disposition = response.headers.get('Content-Disposition') || '';
+        const match = disposition.match(/filename="([^"]+)"/);
+        const blob = await response.blob();
+        const url = URL.createObjectURL(blob);
+        const link = document.createElement('a');
+        link.href = url;
+        link.download = match ? match[1] : `claim_logs.${format}`;
+        document.body.appendChild(link);
+        link.click();
+        link.remove();
+        URL.revokeObjectURL(url);
+    } catch (error) {
+        showToast('网络错误，导出日志失败', 'error');
+        console.error('导出日志失败：', error);
+    }
+}
+
 // ====================== 通用工具 ======================
 /**
  * 关闭所有模态框